@@ -27,4 +27,15 @@ public class Config {
     public String getProperty(String key) {
         return this.configFile.getProperty(key);
     }
+
+    /**
+     * Retrieve the value for the given key, falling back to the default value if the key is not in the config file.
+     *
+     * @param key - the key of the configuration option to retrieve.
+     * @param defaultValue - the value to return if the configuration option is not specified.
+     * @return the value of the configuration option or the given default value if it is not specified.
+     */
+    public String getProperty(String key, String defaultValue) {
+        return this.configFile.getProperty(key, defaultValue);
+    }
 }
\ No newline at end of file
@@ -13,6 +13,7 @@ import ca.sfu.cs.factorbase.exception.DataExtractionException;
 import ca.sfu.cs.factorbase.exception.ScoringException;
 import ca.sfu.cs.factorbase.lattice.RelationshipLattice;
 import ca.sfu.cs.factorbase.learning.BayesBaseH;
+import ca.sfu.cs.factorbase.learning.CTTableQueue;
 import ca.sfu.cs.factorbase.learning.CountingStrategy;
 import ca.sfu.cs.factorbase.learning.CountsManager;
 import ca.sfu.cs.factorbase.util.LoggerConfig;
@@ -35,7 +36,7 @@ public class RunBB {
 
     public static void main(
         String[] args
-    ) throws DataBaseException, SQLException, IOException, DataExtractionException, ParsingException, ScoringException {
+    ) throws DataBaseException, SQLException, IOException, DataExtractionException, ParsingException, ScoringException, InterruptedException {
         // Load configurations and setup the logger.
         long start = System.currentTimeMillis();
         LoggerConfig.setGlobalLevel();
@@ -52,7 +53,7 @@ public class RunBB {
         RuntimeLogger.logRunTime(logger, "Logger + Config Initialization", start, configEnd);
 
         long databaseStart = System.currentTimeMillis();
-        FactorBaseDataBase factorBaseDatabase = new MySQLFactorBaseDataBase(
+        MySQLFactorBaseDataBase factorBaseDatabase = new MySQLFactorBaseDataBase(
             new FactorBaseDataBaseInfo(config),
             config.getProperty("dbaddress"),
             config.getProperty("dbname"),
@@ -77,29 +78,45 @@ public class RunBB {
         RelationshipLattice globalLattice = factorBaseDatabase.getGlobalLattice();
         RuntimeLogger.logRunTime(logger, "Creating Global Lattice", globalLatticeStart, System.currentTimeMillis());
 
-        // Learn a Bayesian Network.
-        if (countingStrategy.isPrecount()) {
-            long buildCTStart = System.currentTimeMillis();
-            CountsManager.buildCT(countingStrategy);
-            RuntimeLogger.logRunTime(logger, "Creating CT Tables", buildCTStart, System.currentTimeMillis());
-        } else if (countingStrategy.isHybrid()) {
-            long buildGlobalCountsStart = System.currentTimeMillis();
-            CountsManager.buildRChainsGlobalCounts();
-            RuntimeLogger.logRunTime(logger, "Creating Global Counts Tables", buildGlobalCountsStart, System.currentTimeMillis());
+        // Choose the counting strategy with the lowest estimated cost if specified to.
+        if (CountingStrategy.isAutomatic(config.getProperty("CountingStrategy"))) {
+            long planStart = System.currentTimeMillis();
+            countingStrategy = CountsManager.planCountingStrategy(globalLattice);
+            factorBaseDatabase.setCountingStrategy(countingStrategy);
+            logger.info("Planned Counting Strategy: " + countingStrategy);
+            RuntimeLogger.logRunTime(logger, "Planning Counting Strategy", planStart, System.currentTimeMillis());
         }
 
-        long bayesBaseHStart = System.currentTimeMillis();
-        BayesBaseH.runBBH(
-            factorBaseDatabase,
-            globalLattice,
-            countingStrategy
-        );
-        RuntimeLogger.logRunTime(logger, "Running BayesBaseH", bayesBaseHStart, System.currentTimeMillis());
+        // Learn a Bayesian Network.
+        if (countingStrategy.isPrecount() && config.getProperty("PipelinedLearning", "0").equals("1")) {
+            runPipelined(config, factorBaseDatabase, globalLattice, countingStrategy);
+        } else {
+            if (countingStrategy.isPrecount()) {
+                long buildCTStart = System.currentTimeMillis();
+                CountsManager.buildCT(countingStrategy);
+                RuntimeLogger.logRunTime(logger, "Creating CT Tables", buildCTStart, System.currentTimeMillis());
+            } else if (countingStrategy.isHybrid()) {
+                long buildGlobalCountsStart = System.currentTimeMillis();
+                CountsManager.buildRChainsGlobalCounts();
+                RuntimeLogger.logRunTime(logger, "Creating Global Counts Tables", buildGlobalCountsStart, System.currentTimeMillis());
+            }
+
+            long bayesBaseHStart = System.currentTimeMillis();
+            BayesBaseH.runBBH(
+                factorBaseDatabase,
+                globalLattice,
+                countingStrategy
+            );
+            RuntimeLogger.logRunTime(logger, "Running BayesBaseH", bayesBaseHStart, System.currentTimeMillis());
+        }
 
         // Now eliminate temporary tables. Keep only the tables for the longest Rchain. Turn this off for debugging.
-        long cleanupStart = System.currentTimeMillis();
-        factorBaseDatabase.cleanupDatabase();
-        RuntimeLogger.logRunTime(logger, "Cleanup Database", cleanupStart, System.currentTimeMillis());
+        // The tables are kept when the counts are updated incrementally since the next run updates them.
+        if (!CountsManager.isIncremental()) {
+            long cleanupStart = System.currentTimeMillis();
+            factorBaseDatabase.cleanupDatabase();
+            RuntimeLogger.logRunTime(logger, "Cleanup Database", cleanupStart, System.currentTimeMillis());
+        }
 
         // Disconnect from the database.
         CountsManager.disconnectDB();
@@ -109,4 +126,65 @@ public class RunBB {
 
         logger.info("Program Done!");
     }
+
+
+    /**
+     * Build the CT tables in a separate thread and learn the Bayesian network structure for each PVariable and RChain
+     * as soon as its CT table has been built, instead of waiting for all the CT tables to be built first.
+     *
+     * @param config - the configuration to read the pipeline settings from.
+     * @param factorBaseDatabase - {@code FactorBaseDataBase} to help extract the necessary information required to
+     *                             learn a Bayesian network for the input database.
+     * @param globalLattice - global relationship lattice for the input database.
+     * @param countingStrategy - the counting strategy to use when building the CT tables and learning the structure.
+     * @throws DataBaseException if a database error occurs when retrieving information or building the CT tables.
+     * @throws SQLException if there are issues executing the SQL queries.
+     * @throws IOException if there are issues reading and writing various files.
+     * @throws DataExtractionException if a non database error occurs when retrieving the DataExtractor.
+     * @throws ParsingException if there are issues reading the BIF file.
+     * @throws ScoringException if an error occurs when trying to compute the score for the graphs being generated.
+     * @throws InterruptedException if the thread is interrupted while waiting for the CT tables or the learning.
+     */
+    private static void runPipelined(
+        Config config,
+        FactorBaseDataBase factorBaseDatabase,
+        RelationshipLattice globalLattice,
+        CountingStrategy countingStrategy
+    ) throws DataBaseException, SQLException, IOException, DataExtractionException, ParsingException, ScoringException, InterruptedException {
+        CTTableQueue queue = new CTTableQueue(
+            Integer.parseInt(config.getProperty("PipelineQueueSize", "4")),
+            Long.parseLong(config.getProperty("PipelineMaxPendingRows", "10000000"))
+        );
+
+        Thread ctBuilder = new Thread(() -> {
+            long buildCTStart = System.currentTimeMillis();
+            try {
+                CountsManager.buildCT(countingStrategy, queue);
+                queue.close();
+                RuntimeLogger.logRunTime(logger, "Creating CT Tables", buildCTStart, System.currentTimeMillis());
+            } catch (SQLException | RuntimeException e) {
+                queue.fail(e);
+            } catch (Error e) {
+                // Fail the queue so that the learning doesn't wait forever for the remaining CT tables.
+                queue.fail(e);
+                throw e;
+            }
+        }, "CT Builder");
+
+        long bayesBaseHStart = System.currentTimeMillis();
+        ctBuilder.start();
+        try {
+            queue.awaitOpen();
+            BayesBaseH.runBBH(
+                factorBaseDatabase,
+                globalLattice,
+                countingStrategy,
+                queue
+            );
+        } finally {
+            // Stop building the CT tables if the structure learning failed.
+            ctBuilder.interrupt();
+        }
+        RuntimeLogger.logRunTime(logger, "Running BayesBaseH", bayesBaseHStart, System.currentTimeMillis());
+    }
 }
\ No newline at end of file
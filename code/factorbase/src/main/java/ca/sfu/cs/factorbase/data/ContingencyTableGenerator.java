@@ -1,7 +1,9 @@
 package ca.sfu.cs.factorbase.data;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.SplittableRandom;
 import ca.sfu.cs.factorbase.exception.DataExtractionException;
 import ca.sfu.cs.factorbase.util.Mapper;
 
@@ -11,6 +13,23 @@ import ca.sfu.cs.factorbase.util.Mapper;
  */
 public class ContingencyTableGenerator {
 
+    /**
+     * The error of Stirling's approximation of log(k!) for k = 0 to 9, where the series used for larger k isn't
+     * accurate enough.
+     */
+    private static final double[] STIRLING_TAILS = {
+        0.08106146679532733,
+        0.04134069595540946,
+        0.027677925684997717,
+        0.02079067210376584,
+        0.016644691189820815,
+        0.013876128823072431,
+        0.01189670994589287,
+        0.010411265261973224,
+        0.009255462182709007,
+        0.008330563433359028
+    };
+
     private boolean isDiscrete;
     private double[][] data;
     private DataSetMetaData metadata;
@@ -30,6 +49,20 @@ public class ContingencyTableGenerator {
     }
 
 
+    /**
+     * Generates contingency tables based on the given data, which has the same format as the given metadata.
+     *
+     * @param data - the rows of the CT table, with the counts in the column given by the metadata.
+     * @param metadata - the metadata for the given data.
+     * @param isDiscrete - true if the data only contains discrete information; otherwise false.
+     */
+    private ContingencyTableGenerator(double[][] data, DataSetMetaData metadata, boolean isDiscrete) {
+        this.data = data;
+        this.metadata = metadata;
+        this.isDiscrete = isDiscrete;
+    }
+
+
     /**
      * Indicates whether or not the dataset given to the ContingencyTableGenerator only contains
      * discrete information.
@@ -89,6 +122,203 @@ public class ContingencyTableGenerator {
     }
 
 
+    /**
+     * Create a bootstrap replicate of the dataset given to the ContingencyTableGenerator without generating the CT
+     * table again.  Since each row of the CT table stands for as many groundings as its count, drawing the same
+     * number of groundings with replacement is the same as drawing multinomial weights for the rows, with
+     * probabilities proportional to their counts.
+     * <p>
+     * Note: The multinomial weights are drawn one row at a time, where the weight of each row is binomial given the
+     *       number of groundings left for it and the rows after it, so this takes O(R) time for R rows regardless of
+     *       the number of groundings.
+     * </p>
+     *
+     * @param random - the random number generator to draw the weights with.
+     * @return {@code ContingencyTableGenerator} for the bootstrap replicate, which only contains the rows that were
+     *         drawn at least once and has the same metadata as this one.
+     */
+    public ContingencyTableGenerator resample(SplittableRandom random) {
+        int countColumnIndex = this.metadata.getCountColumnIndex();
+        long totalCounts = 0;
+        for (double[] row : this.data) {
+            totalCounts += (long) row[countColumnIndex];
+        }
+
+        long[] weights = new long[this.data.length];
+        long remainingDraws = totalCounts;
+        long remainingCounts = totalCounts;
+        int numberOfRows = 0;
+
+        // for loop to draw the weight of each row given the draws left for it and the rows after it.
+        for (int rowIndex = 0; rowIndex < this.data.length && remainingDraws > 0; rowIndex++) {
+            long counts = (long) this.data[rowIndex][countColumnIndex];
+            if (counts >= remainingCounts) {
+                weights[rowIndex] = remainingDraws;
+            } else {
+                weights[rowIndex] = drawBinomial(random, remainingDraws, (double) counts / remainingCounts);
+            }
+
+            remainingDraws -= weights[rowIndex];
+            remainingCounts -= counts;
+            if (weights[rowIndex] > 0) {
+                numberOfRows++;
+            }
+        }
+
+        double[][] resampledData = new double[numberOfRows][];
+        int resampledRowIndex = 0;
+        for (int rowIndex = 0; rowIndex < this.data.length; rowIndex++) {
+            if (weights[rowIndex] > 0) {
+                double[] row = Arrays.copyOf(this.data[rowIndex], this.data[rowIndex].length);
+                row[countColumnIndex] = weights[rowIndex];
+                resampledData[resampledRowIndex++] = row;
+            }
+        }
+
+        return new ContingencyTableGenerator(resampledData, this.metadata, this.isDiscrete);
+    }
+
+
+    /**
+     * Draw the number of successes out of the given number of trials with the given probability of success.
+     * <p>
+     * Note: When the expected number of successes is small, the trials between successes are drawn from a geometric
+     *       distribution, which takes O(n * p) time.  Otherwise, the BTRS transformed rejection algorithm is used,
+     *       which takes O(1) expected time (Hormann, 1993).
+     * </p>
+     *
+     * @param random - the random number generator to draw the successes with.
+     * @param trials - the number of trials (n).
+     * @param probability - the probability of success of each trial (p).
+     * @return the number of successes, between 0 and {@code trials} (inclusive).
+     */
+    static long drawBinomial(SplittableRandom random, long trials, double probability) {
+        if (trials == 0 || probability <= 0) {
+            return 0;
+        }
+
+        if (probability >= 1) {
+            return trials;
+        }
+
+        if (probability > 0.5) {
+            return trials - drawBinomial(random, trials, 1 - probability);
+        }
+
+        if (trials * probability < 10) {
+            double logFailure = Math.log1p(-probability);
+            long successes = 0;
+            long trialsUsed = 0;
+            while (true) {
+                // The number of trials up to and including the next success.
+                trialsUsed += Math.max(1, (long) Math.ceil(Math.log(1 - random.nextDouble()) / logFailure));
+                if (trialsUsed > trials || trialsUsed <= 0) {
+                    return successes;
+                }
+
+                successes++;
+            }
+        }
+
+        double n = trials;
+        double spq = Math.sqrt(n * probability * (1 - probability));
+        double b = 1.15 + 2.53 * spq;
+        double a = -0.0873 + 0.0248 * b + 0.01 * probability;
+        double c = n * probability + 0.5;
+        double vr = 0.92 - 4.2 / b;
+        double alpha = (2.83 + 5.1 / b) * spq;
+        double lpq = Math.log(probability / (1 - probability));
+        double m = Math.floor((n + 1) * probability);
+        double h = stirlingTail(m) + stirlingTail(n - m);
+
+        while (true) {
+            double u = random.nextDouble() - 0.5;
+            double v = random.nextDouble();
+            double us = 0.5 - Math.abs(u);
+            double k = Math.floor((2 * a / us + b) * u + c);
+            if (k < 0 || k > n) {
+                continue;
+            }
+
+            if (us >= 0.07 && v <= vr) {
+                return (long) k;
+            }
+
+            v = Math.log(v * alpha / (a / (us * us) + b));
+            double bound =
+                h - stirlingTail(k) - stirlingTail(n - k) +
+                (m + 0.5) * Math.log((m + 1) / (n - m + 1)) +
+                (n + 1) * Math.log((n - m + 1) / (n - k + 1)) +
+                (k + 0.5) * Math.log((n - k + 1) / (k + 1)) +
+                (k - m) * lpq;
+            if (v <= bound) {
+                return (long) k;
+            }
+        }
+    }
+
+
+    /**
+     * Compute the error of Stirling's approximation of log(k!), i.e.
+     * log(k!) - [(k + 0.5) * log(k + 1) - (k + 1) + 0.5 * log(2 * pi)].
+     *
+     * @param k - the non-negative integer to compute the error for.
+     * @return the error of Stirling's approximation of log(k!).
+     */
+    private static double stirlingTail(double k) {
+        if (k < STIRLING_TAILS.length) {
+            return STIRLING_TAILS[(int) k];
+        }
+
+        double kPlusOneSquared = (k + 1) * (k + 1);
+        return (1.0 / 12 - (1.0 / 360 - 1.0 / 1260 / kPlusOneSquared) / kPlusOneSquared) / (k + 1);
+    }
+
+
+    /**
+     * Generate the CT tables for every pair of the given variables in a single pass over the dataset given to the
+     * ContingencyTableGenerator.
+     *
+     * @param columnIndices - the column indices of the variables to create the pairwise CT tables for.
+     * @return the counts for each pair of the given variables, where pairwiseCounts[i][j], for i < j, contains the
+     *         counts for the variables at positions i and j of {@code columnIndices}, indexed by
+     *         (state of i) * (number of states of j) + (state of j).
+     */
+    public long[][][] generatePairwiseCounts(int[] columnIndices) {
+        int numberOfVariables = columnIndices.length;
+        int[] numberOfStates = new int[numberOfVariables];
+        for (int index = 0; index < numberOfVariables; index++) {
+            numberOfStates[index] = this.getNumberOfStates(columnIndices[index]);
+        }
+
+        long[][][] pairwiseCounts = new long[numberOfVariables][numberOfVariables][];
+        for (int first = 0; first < numberOfVariables; first++) {
+            for (int second = first + 1; second < numberOfVariables; second++) {
+                pairwiseCounts[first][second] = new long[numberOfStates[first] * numberOfStates[second]];
+            }
+        }
+
+        int countColumnIndex = this.metadata.getCountColumnIndex();
+        int[] rowStates = new int[numberOfVariables];
+
+        // for loop to add the counts of each row in the dataset to the CT table of every pair of variables.
+        for (int rowIndex = 0; rowIndex < this.data.length; rowIndex++) {
+            long counts = (long) this.data[rowIndex][countColumnIndex];
+            for (int index = 0; index < numberOfVariables; index++) {
+                rowStates[index] = (int) this.data[rowIndex][columnIndices[index]];
+            }
+
+            for (int first = 0; first < numberOfVariables; first++) {
+                for (int second = first + 1; second < numberOfVariables; second++) {
+                    pairwiseCounts[first][second][rowStates[first] * numberOfStates[second] + rowStates[second]] += counts;
+                }
+            }
+        }
+
+        return pairwiseCounts;
+    }
+
+
     /**
      * Create the Cartesian product of all the states for each random variable in the given list.
      *
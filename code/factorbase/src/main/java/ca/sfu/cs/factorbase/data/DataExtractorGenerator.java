@@ -2,7 +2,6 @@ package ca.sfu.cs.factorbase.data;
 
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -107,7 +106,6 @@ public class DataExtractorGenerator {
         Map<String, DataExtractor> dataExtractors = new HashMap<String, DataExtractor>();
         String pvid;
         String extractionQuery;
-        PreparedStatement dbQuery;
 
         try(Statement statement = dbConnection.createStatement()) {
             // Retrieve main variables.
@@ -120,8 +118,10 @@ public class DataExtractorGenerator {
             while(results.next()) {
                 pvid = results.getString("pvid");
                 extractionQuery = "SELECT * FROM " + dbInfo.getCTDatabaseName() + ".`" + pvid + "_counts` WHERE MULT > 0;";
-                dbQuery = dbConnection.prepareStatement(extractionQuery);
-                dataExtractors.put(pvid, new MySQLDataExtractor(dbQuery, dbInfo.getCountColumnName(), dbInfo.isDiscrete()));
+                dataExtractors.put(
+                    pvid,
+                    new MySQLDataExtractor(dbConnection, extractionQuery, dbInfo.getCountColumnName(), dbInfo.isDiscrete())
+                );
             }
         } catch (SQLException e) {
             throw new DataExtractionException("Ran into a database issue when generating the MySQLDataExtractors", e);
@@ -150,7 +150,6 @@ public class DataExtractorGenerator {
         String rchain;
         String shortRchain;
         String extractionQuery;
-        PreparedStatement dbQuery;
         try(Statement statement = dbConnection.createStatement()) {
             ResultSet results = statement.executeQuery(
                 "SELECT short_rnid AS short_RChain, orig_rnid AS RChain " +
@@ -164,8 +163,10 @@ public class DataExtractorGenerator {
                 rchain = results.getString("RChain");
                 shortRchain = results.getString("short_RChain");
                 extractionQuery = "SELECT * FROM " + dbInfo.getCTDatabaseName() + ".`" + shortRchain + "_CT` WHERE MULT > 0;";
-                dbQuery = dbConnection.prepareStatement(extractionQuery);
-                dataExtractors.put(rchain, new MySQLDataExtractor(dbQuery, dbInfo.getCountColumnName(), dbInfo.isDiscrete()));
+                dataExtractors.put(
+                    rchain,
+                    new MySQLDataExtractor(dbConnection, extractionQuery, dbInfo.getCountColumnName(), dbInfo.isDiscrete())
+                );
             }
         } catch(SQLException e) {
             throw new DataExtractionException("Ran into a database issue when generating the MySQLDataExtractors", e);
@@ -0,0 +1,300 @@
+package ca.sfu.cs.factorbase.data;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import ca.sfu.cs.factorbase.exception.DataBaseException;
+import ca.sfu.cs.factorbase.exception.DataExtractionException;
+import ca.sfu.cs.factorbase.util.RuntimeLogger;
+
+/**
+ * Class to extract the {@code DataSet}s for the upcoming lattice points on a background thread while the structure
+ * learning is being done for the current lattice point, so that the time spent transferring and encoding the CT tables
+ * is hidden behind the search.
+ * <p>
+ * The {@code DataSet}s are extracted in the order that the lattice points are expected to be learned in, and no more
+ * than the given number of {@code DataSet}s, using no more than the given amount of memory, are held before they are
+ * taken by a learner.  The memory used by a {@code DataSet} is estimated before it is extracted, and a {@code DataSet}
+ * that would never fit in the given amount of memory is left for the learner to extract.
+ * </p>
+ */
+public class DataSetPrefetcher {
+    private static Logger logger = Logger.getLogger(DataSetPrefetcher.class.getName());
+    private final List<String> ids;
+    private final DataExtractorLoader loader;
+    private final SizeEstimator estimator;
+    private final int depth;
+    private final long memoryBudget;
+    private final Map<String, DataSet> prefetchedDataSets = new HashMap<String, DataSet>();
+    private final Map<String, Exception> failures = new HashMap<String, Exception>();
+    private final Set<String> takenIDs = new HashSet<String>();
+    private long prefetchedBytes = 0;
+    private String loadingID;
+    private boolean stopped = false;
+    private Thread worker;
+
+
+    /**
+     * Create a prefetcher for the {@code DataSet}s of the given lattice points.
+     *
+     * @param ids - the PVariables and RChains to extract the {@code DataSet}s for, in the order that they are expected
+     *              to be learned in.
+     * @param loader - {@code DataExtractorLoader} to retrieve the {@code DataExtractor} for each lattice point.
+     * @param estimator - {@code SizeEstimator} to estimate the number of bytes used by the {@code DataSet} of each
+     *                    lattice point before it is extracted.
+     * @param depth - the maximum number of {@code DataSet}s to hold before they are taken by a learner.
+     * @param memoryBudget - the maximum number of bytes (estimated) that the held {@code DataSet}s can use.
+     */
+    public DataSetPrefetcher(
+        List<String> ids,
+        DataExtractorLoader loader,
+        SizeEstimator estimator,
+        int depth,
+        long memoryBudget
+    ) {
+        this.ids = ids;
+        this.loader = loader;
+        this.estimator = estimator;
+        this.depth = Math.max(1, depth);
+        this.memoryBudget = memoryBudget;
+    }
+
+
+    /**
+     * Start extracting the {@code DataSet}s on a background thread.
+     */
+    public synchronized void start() {
+        this.worker = new Thread(this::prefetchDataSets, "DataSet Prefetcher");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+
+    /**
+     * Stop extracting the {@code DataSet}s and release the ones that haven't been taken.
+     */
+    public synchronized void stop() {
+        this.stopped = true;
+        this.prefetchedDataSets.clear();
+        this.prefetchedBytes = 0;
+        if (this.worker != null) {
+            this.worker.interrupt();
+        }
+
+        this.notifyAll();
+    }
+
+
+    /**
+     * Extract the {@code DataSet}s one after another, waiting whenever too many are being held.
+     */
+    private void prefetchDataSets() {
+        // for loop to extract the DataSet for each lattice point in the order that they are expected to be learned in.
+        for (String id : this.ids) {
+            synchronized (this) {
+                try {
+                    while (!this.stopped && this.isFull()) {
+                        this.wait();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                if (this.stopped) {
+                    return;
+                }
+
+                // Skip the lattice points that a learner has already started on.
+                if (this.takenIDs.contains(id)) {
+                    continue;
+                }
+
+                this.loadingID = id;
+            }
+
+            long start = System.currentTimeMillis();
+            DataSet dataset = null;
+            Exception failure = null;
+            try {
+                if (this.reserveMemory(id, this.estimator.estimateSize(id))) {
+                    dataset = this.loader.load(id).extractData();
+                }
+            } catch (DataBaseException | DataExtractionException | InterruptedException | RuntimeException e) {
+                failure = e;
+            }
+
+            synchronized (this) {
+                this.loadingID = null;
+                if (failure != null) {
+                    this.failures.put(id, failure);
+                } else if (dataset != null && !this.stopped) {
+                    this.prefetchedDataSets.put(id, dataset);
+                    this.prefetchedBytes += estimateSize(dataset);
+                    RuntimeLogger.logRunTimeDetails(logger, "Prefetching DataSet " + id, start, System.currentTimeMillis());
+                }
+
+                this.notifyAll();
+            }
+        }
+    }
+
+
+    /**
+     * Wait until the {@code DataSet} of the given lattice point fits in the memory budget.
+     *
+     * @param id - the PVariable or RChain that the {@code DataSet} is for.
+     * @param estimatedSize - the estimated number of bytes used by the {@code DataSet}.
+     * @return true if the {@code DataSet} should be extracted; false if it doesn't fit in the memory budget or the
+     *         prefetcher has been stopped.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    private synchronized boolean reserveMemory(String id, long estimatedSize) throws InterruptedException {
+        if (estimatedSize > this.memoryBudget) {
+            logger.fine("Not prefetching DataSet " + id + " since it is estimated to use " + estimatedSize + " bytes.");
+            return false;
+        }
+
+        // The learner extracts the DataSet itself if it asks for it before there is enough memory to prefetch it.
+        while (!this.stopped && !this.takenIDs.contains(id) && this.prefetchedBytes + estimatedSize > this.memoryBudget) {
+            this.wait();
+        }
+
+        return !this.stopped && this.prefetchedBytes + estimatedSize <= this.memoryBudget;
+    }
+
+
+    /**
+     * Take the {@code DataExtractor} for the given lattice point, waiting for its {@code DataSet} to be extracted if
+     * the extraction is already in progress.
+     *
+     * @param id - the PVariable or RChain to take the {@code DataExtractor} for.
+     * @return a {@code DataExtractor} returning the prefetched {@code DataSet}, or the {@code DataExtractor} retrieved
+     *         from the loader if the {@code DataSet} hasn't been prefetched.
+     * @throws DataBaseException if a database error occurs when retrieving the {@code DataExtractor}.
+     * @throws DataExtractionException if an error occurs when extracting the {@code DataSet}.
+     * @throws InterruptedException if the thread is interrupted while waiting for the {@code DataSet}.
+     */
+    public DataExtractor take(String id) throws DataBaseException, DataExtractionException, InterruptedException {
+        synchronized (this) {
+            this.takenIDs.add(id);
+            this.notifyAll();
+            while (id.equals(this.loadingID)) {
+                this.wait();
+            }
+
+            Exception failure = this.failures.remove(id);
+            if (failure != null) {
+                rethrow(failure);
+            }
+
+            DataSet dataset = this.prefetchedDataSets.remove(id);
+            if (dataset != null) {
+                this.prefetchedBytes -= estimateSize(dataset);
+                this.notifyAll();
+
+                return () -> dataset;
+            }
+        }
+
+        return this.loader.load(id);
+    }
+
+
+    /**
+     * Check if the prefetcher is holding as many {@code DataSet}s as it is allowed to.
+     *
+     * @return true if no more {@code DataSet}s should be extracted until some are taken; otherwise false.
+     */
+    private boolean isFull() {
+        return this.prefetchedDataSets.size() >= this.depth || this.prefetchedBytes >= this.memoryBudget;
+    }
+
+
+    /**
+     * Estimate the number of bytes used by the given {@code DataSet}.
+     *
+     * @param dataset - the {@code DataSet} to estimate the size of.
+     * @return the estimated number of bytes used by the data of the given {@code DataSet}.
+     */
+    private static long estimateSize(DataSet dataset) {
+        double[][] data = dataset.getData();
+
+        return estimateSize(data.length, data.length == 0 ? 0 : data[0].length);
+    }
+
+
+    /**
+     * Estimate the number of bytes used by a {@code DataSet} with the given dimensions.
+     *
+     * @param numberOfRows - the number of rows in the {@code DataSet}.
+     * @param numberOfColumns - the number of columns in the {@code DataSet}.
+     * @return the estimated number of bytes used by the data of a {@code DataSet} with the given dimensions.
+     */
+    public static long estimateSize(long numberOfRows, long numberOfColumns) {
+        // Each row is an array with a header of roughly 16 bytes.
+        return numberOfRows * (numberOfColumns * Double.BYTES + 16);
+    }
+
+
+    /**
+     * Rethrow the exception that caused the extraction of a {@code DataSet} to fail.
+     *
+     * @param failure - the exception thrown when extracting the {@code DataSet}.
+     * @throws DataBaseException if a database error occurred when retrieving the {@code DataExtractor}.
+     * @throws DataExtractionException if an error occurred when extracting the {@code DataSet}.
+     * @throws InterruptedException if the extraction was interrupted.
+     */
+    private static void rethrow(
+        Exception failure
+    ) throws DataBaseException, DataExtractionException, InterruptedException {
+        if (failure instanceof DataBaseException) {
+            throw (DataBaseException) failure;
+        } else if (failure instanceof DataExtractionException) {
+            throw (DataExtractionException) failure;
+        } else if (failure instanceof InterruptedException) {
+            throw (InterruptedException) failure;
+        }
+
+        throw (RuntimeException) failure;
+    }
+
+
+    /**
+     * Method to retrieve the {@code DataExtractor} for a lattice point once its CT table is available.
+     */
+    @FunctionalInterface
+    public interface DataExtractorLoader {
+        /**
+         * Retrieve the {@code DataExtractor} for the given lattice point.
+         *
+         * @param id - the PVariable or RChain to retrieve the {@code DataExtractor} for.
+         * @return the {@code DataExtractor} for the given lattice point.
+         * @throws DataBaseException if a database error occurs when retrieving the {@code DataExtractor}.
+         * @throws DataExtractionException if a non database error occurs when retrieving the {@code DataExtractor}.
+         * @throws InterruptedException if the thread is interrupted while waiting for the CT table.
+         */
+        DataExtractor load(String id) throws DataBaseException, DataExtractionException, InterruptedException;
+    }
+
+
+    /**
+     * Method to estimate the memory used by the {@code DataSet} of a lattice point before it is extracted.
+     */
+    @FunctionalInterface
+    public interface SizeEstimator {
+        /**
+         * Estimate the number of bytes used by the {@code DataSet} of the given lattice point, waiting for its CT
+         * table to be built if necessary.
+         *
+         * @param id - the PVariable or RChain to estimate the size of the {@code DataSet} for.
+         * @return the estimated number of bytes used by the {@code DataSet} of the given lattice point.
+         * @throws DataBaseException if a database error occurs when estimating the size of the {@code DataSet}.
+         * @throws InterruptedException if the thread is interrupted while waiting for the CT table.
+         */
+        long estimateSize(String id) throws DataBaseException, InterruptedException;
+    }
+}
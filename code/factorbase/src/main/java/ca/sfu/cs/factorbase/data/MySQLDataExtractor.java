@@ -1,5 +1,6 @@
 package ca.sfu.cs.factorbase.data;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
@@ -19,6 +20,7 @@ import ca.sfu.cs.factorbase.util.Mapper;
  */
 public class MySQLDataExtractor implements DataExtractor {
     private PreparedStatement dbQuery;
+    private String extractionQuery;
     private String countsColumn;
     private boolean isDiscrete;
 
@@ -38,6 +40,27 @@ public class MySQLDataExtractor implements DataExtractor {
     }
 
 
+    /**
+     * Create a data extractor for a MySQL based data source that can also extract the information using a different
+     * connection, see {@link #extractData(Connection)}.
+     *
+     * @param dbConnection - connection to the MySQL database to extract the information from by default.
+     * @param extractionQuery - the query to generate a {@code ResultSet} containing the information to extract.
+     * @param countsColumn - the column that contains the count values for a CT table.
+     * @param isDiscrete - true if the dataset only contains discrete information; otherwise false.
+     * @throws SQLException if an error occurs when preparing the query.
+     */
+    public MySQLDataExtractor(
+        Connection dbConnection,
+        String extractionQuery,
+        String countsColumn,
+        boolean isDiscrete
+    ) throws SQLException {
+        this(dbConnection.prepareStatement(extractionQuery), countsColumn, isDiscrete);
+        this.extractionQuery = extractionQuery;
+    }
+
+
     /* (non-Javadoc)
      * @see ca.sfu.cs.factorbase.data.DataExtractor#extractData()
      */
@@ -51,6 +74,35 @@ public class MySQLDataExtractor implements DataExtractor {
     }
 
 
+    /**
+     * Extract the information using the given connection instead of the one that the {@code PreparedStatement} was
+     * created with, so that it can be done on a different thread than the one using the original connection.
+     * <p>
+     * Note: The original connection is used if the data extractor wasn't created with the query to execute.
+     * </p>
+     *
+     * @param dbConnection - connection to the MySQL database to extract the information from.
+     * @return a {@code DataSet} containing the extracted information.
+     * @throws DataExtractionException if an error occurs when extracting the information.
+     */
+    public DataSet extractData(Connection dbConnection) throws DataExtractionException {
+        if (this.extractionQuery == null) {
+            return this.extractData();
+        }
+
+        try {
+            this.dbQuery.close();
+            return this.convertDataToStateIndices(
+                dbConnection.prepareStatement(this.extractionQuery),
+                this.countsColumn,
+                this.isDiscrete
+            );
+        } catch (SQLException e) {
+            throw new DataExtractionException("An error occurred when attempting to extract information from the data source.", e);
+        }
+    }
+
+
     /**
      * Encode all the values in the given dataset into state Integers so that it's quicker to compute a state index
      * for the counts array of any CT table object that gets created by the {@code generateCT()} method.
@@ -0,0 +1,144 @@
+package ca.sfu.cs.factorbase.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Class to share a bounded number of database connections between threads.  Connections are only opened when all the
+ * opened connections are in use, and threads wait for a connection to be released once the maximum number of
+ * connections has been opened.
+ */
+public class ConnectionPool {
+    private ConnectionFactory connectionFactory;
+    private int maxConnections;
+    private List<Connection> connections = new ArrayList<Connection>();
+    private Deque<Connection> idleConnections = new ArrayDeque<Connection>();
+    private int openingConnections;
+    private boolean closed;
+
+
+    /**
+     * Create a pool that opens at most the given number of connections.
+     *
+     * @param connectionFactory - opens a new connection when one is needed.
+     * @param maxConnections - the maximum number of connections to open.
+     */
+    public ConnectionPool(ConnectionFactory connectionFactory, int maxConnections) {
+        this.connectionFactory = connectionFactory;
+        this.maxConnections = maxConnections;
+    }
+
+
+    /**
+     * Retrieve a connection from the pool, waiting for one to be released if they are all in use.
+     * <p>
+     * Note: The connection must be given back with {@link #release(Connection)} once it is no longer needed.
+     * </p>
+     *
+     * @return a connection that isn't used by any other thread.
+     * @throws SQLException if an error occurs when opening a new connection.
+     * @throws InterruptedException if the thread is interrupted while waiting for a connection.
+     */
+    public Connection acquire() throws SQLException, InterruptedException {
+        synchronized (this) {
+            while (this.idleConnections.isEmpty() && this.connections.size() + this.openingConnections >= this.maxConnections) {
+                if (this.closed) {
+                    throw new IllegalStateException("The connection pool has been closed.");
+                }
+
+                this.wait();
+            }
+
+            if (this.closed) {
+                throw new IllegalStateException("The connection pool has been closed.");
+            }
+
+            if (!this.idleConnections.isEmpty()) {
+                return this.idleConnections.pop();
+            }
+
+            // Reserve a slot for the new connection so that it can be opened without holding the lock.
+            this.openingConnections++;
+        }
+
+        Connection connection = null;
+        boolean poolClosed;
+        try {
+            connection = this.connectionFactory.connect();
+        } finally {
+            synchronized (this) {
+                this.openingConnections--;
+                poolClosed = this.closed;
+                if (connection != null && !poolClosed) {
+                    this.connections.add(connection);
+                }
+
+                this.notifyAll();
+            }
+        }
+
+        // Close the new connection if the pool was closed while it was being opened.
+        if (poolClosed) {
+            connection.close();
+            throw new IllegalStateException("The connection pool has been closed.");
+        }
+
+        return connection;
+    }
+
+
+    /**
+     * Give back a connection retrieved with {@link #acquire()} so that other threads can use it.
+     *
+     * @param connection - the connection to give back to the pool.
+     */
+    public synchronized void release(Connection connection) {
+        this.idleConnections.push(connection);
+        this.notifyAll();
+    }
+
+
+    /**
+     * Close all the connections opened by the pool.
+     *
+     * @throws SQLException if an error occurs when closing the connections.
+     */
+    public synchronized void close() throws SQLException {
+        this.closed = true;
+        this.notifyAll();
+
+        SQLException closeException = null;
+        for (Connection connection : this.connections) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                closeException = e;
+            }
+        }
+
+        this.connections.clear();
+        this.idleConnections.clear();
+        if (closeException != null) {
+            throw closeException;
+        }
+    }
+
+
+    /**
+     * Interface to open a new connection for the pool.
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        /**
+         * Open a new connection to the database.
+         *
+         * @return the new connection.
+         * @throws SQLException if an error occurs when opening the connection.
+         */
+        Connection connect() throws SQLException;
+    }
+}
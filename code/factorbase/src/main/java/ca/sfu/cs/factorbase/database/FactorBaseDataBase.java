@@ -1,6 +1,7 @@
 package ca.sfu.cs.factorbase.database;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import ca.sfu.cs.factorbase.data.ContingencyTable;
@@ -64,6 +65,59 @@ public interface FactorBaseDataBase {
     List<Edge> getRequiredEdges(List<String> rnodeIDs) throws DataBaseException;
 
 
+    /**
+     * Retrieve all the edges that have been inherited from the sub-chains of the given rnode IDs.
+     *
+     * @param rnodeIDs - a list of the rnode IDs to get the inherited edges for.
+     * @return a List of the edges that are inherited for the given rnode IDs.
+     *
+     * @throws DataBaseException if an error occurs when attempting to retrieve the information.
+     */
+    List<Edge> getInheritedEdges(List<String> rnodeIDs) throws DataBaseException;
+
+
+    /**
+     * Retrieve the population variables that the given RChain is defined over.
+     *
+     * @param rchain - the RChain to get the population variables for.
+     * @return a Set of the pvids for the population variables of the RNodes in the given RChain.
+     *
+     * @throws DataBaseException if an error occurs when attempting to retrieve the information.
+     */
+    Set<String> getPopulationVariables(String rchain) throws DataBaseException;
+
+
+    /**
+     * Retrieve all the edges in the specified table of the database.
+     *
+     * @param tableName - the table to retrieve the edges from, e.g. Path_BayesNets.
+     * @return the edges in the specified table, grouped by the RChain they belong to.
+     *
+     * @throws DataBaseException if an error occurs when attempting to retrieve the information.
+     */
+    Map<String, Set<Edge>> getAllEdges(String tableName) throws DataBaseException;
+
+
+    /**
+     * Retrieve the RNodes that each RChain in the relationship lattice is made of.
+     *
+     * @return the rnids of the RNodes in each RChain.
+     *
+     * @throws DataBaseException if an error occurs when attempting to retrieve the information.
+     */
+    Map<String, Set<String>> getRChainMembers() throws DataBaseException;
+
+
+    /**
+     * Retrieve the nodes that can appear in the Bayesian network of each RChain in the relationship lattice.
+     *
+     * @return the functor node IDs for the nodes in the Bayesian network of each RChain.
+     *
+     * @throws DataBaseException if an error occurs when attempting to retrieve the information.
+     */
+    Map<String, Set<String>> getRChainNodes() throws DataBaseException;
+
+
     /**
      * Retrieve the CT table {@code DataExtractor} for the given RNode/PVar ID.
      * <p>
@@ -124,6 +178,48 @@ public interface FactorBaseDataBase {
     void insertLearnedEdges(String id, List<Edge> graphEdges, String destTableName, boolean removeForbiddenEdges) throws DataBaseException;
 
 
+    /**
+     * Insert the graph learned for the given setting of the BDeu hyperparameters, along with its score, into the
+     * tables for the hyperparameter grid.
+     *
+     * @param id - the ID of the RChain or PVariable.
+     * @param samplePrior - the equivalent sample size (N') used to learn the graph.
+     * @param structurePrior - the prior probability for the network structure used to learn the graph.
+     * @param graphEdges - the edges of the graph learned for the given hyperparameters.
+     * @param score - the score of the graph learned for the given hyperparameters.
+     * @throws DataBaseException if an error occurs when trying to insert the information.
+     */
+    void insertHyperparameterResults(
+        String id,
+        double samplePrior,
+        double structurePrior,
+        List<Edge> graphEdges,
+        double score
+    ) throws DataBaseException;
+
+
+    /**
+     * Insert the given edge frequencies, i.e. the fraction of the bootstrap replicates whose learned graph contains
+     * each edge, into the specified table of the database.
+     *
+     * @param id - the ID of the RChain or PVariable.
+     * @param edgeFrequencies - the frequency of each edge learned for at least one bootstrap replicate.
+     * @param destTableName - the table to insert the edge frequencies into.
+     * @throws DataBaseException if an error occurs when trying to insert the information.
+     */
+    void insertEdgeFrequencies(String id, Map<Edge, Double> edgeFrequencies, String destTableName) throws DataBaseException;
+
+
+    /**
+     * Replace the content of the specified table of the database with the given edges.
+     *
+     * @param tableName - the table to replace the edges of, e.g. Path_BayesNets.
+     * @param edges - the edges to store in the specified table, grouped by the RChain they belong to.
+     * @throws DataBaseException if an error occurs when trying to replace the information.
+     */
+    void replaceEdges(String tableName, Map<String, Set<Edge>> edges) throws DataBaseException;
+
+
     /**
      * Propagate the edge information to the next level in the relationship lattice.
      *
@@ -133,4 +229,32 @@ public interface FactorBaseDataBase {
      * @throws DataBaseException if an error occurs when propagating the information.
      */
     void propagateEdgeInformation(int height, boolean linkAnalysisOn) throws DataBaseException;
-}
\ No newline at end of file
+
+
+    /**
+     * Collect the edge information propagated from the sub-chains of the given RChain, i.e. its required and forbidden
+     * edges.
+     * <p>
+     * Note: This method should only be called once {@link #propagateEdgeInformation(String, boolean)} has been called
+     *       for every sub-chain of the given RChain.
+     * </p>
+     *
+     * @param rchain - the name of the RChain to collect the edge information for.
+     * @param linkAnalysisOn - True if the LinkCorrelations setting is enabled; otherwise false.
+     * @throws DataBaseException if an error occurs when collecting the information.
+     */
+    void collectEdgeInformation(String rchain, boolean linkAnalysisOn) throws DataBaseException;
+
+
+    /**
+     * Propagate the edge information of the given RChain to the RChains that contain it in the relationship lattice.
+     * <p>
+     * Note: This method should be called once the edges learned for the given RChain have been inserted.
+     * </p>
+     *
+     * @param rchain - the name of the RChain to propagate the edge information from.
+     * @param linkAnalysisOn - True if the LinkCorrelations setting is enabled; otherwise false.
+     * @throws DataBaseException if an error occurs when propagating the information.
+     */
+    void propagateEdgeInformation(String rchain, boolean linkAnalysisOn) throws DataBaseException;
+}
@@ -7,11 +7,13 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -23,6 +25,7 @@ import ca.sfu.cs.factorbase.data.ContingencyTable;
 import ca.sfu.cs.factorbase.data.ContingencyTableGenerator;
 import ca.sfu.cs.factorbase.data.DataExtractor;
 import ca.sfu.cs.factorbase.data.DataExtractorGenerator;
+import ca.sfu.cs.factorbase.data.DataSet;
 import ca.sfu.cs.factorbase.data.FunctorNode;
 import ca.sfu.cs.factorbase.data.FunctorNodesInfo;
 import ca.sfu.cs.factorbase.data.MySQLDataExtractor;
@@ -172,6 +175,16 @@ public class MySQLFactorBaseDataBase implements FactorBaseDataBase {
     }
 
 
+    /**
+     * Set the counting strategy to use during structure learning, e.g. once it has been planned.
+     *
+     * @param countingStrategy - the counting strategy to use during structure learning.
+     */
+    public void setCountingStrategy(CountingStrategy countingStrategy) {
+        this.countingStrategy = countingStrategy;
+    }
+
+
     @Override
     public void cleanupDatabase() throws DataBaseException {
         try {
@@ -225,7 +238,7 @@ public class MySQLFactorBaseDataBase implements FactorBaseDataBase {
 
 
     @Override
-    public List<Edge> getForbiddenEdges(List<String> rnodeIDs) throws DataBaseException {
+    public synchronized List<Edge> getForbiddenEdges(List<String> rnodeIDs) throws DataBaseException {
         String query = QueryGenerator.createSimpleInQuery(
             this.baseDatabaseName + "_BN.Path_Forbidden_Edges",
             "RChain",
@@ -241,7 +254,7 @@ public class MySQLFactorBaseDataBase implements FactorBaseDataBase {
 
 
     @Override
-    public List<Edge> getRequiredEdges(List<String> rnodeIDs) throws DataBaseException {
+    public synchronized List<Edge> getRequiredEdges(List<String> rnodeIDs) throws DataBaseException {
         String query = QueryGenerator.createSimpleInQuery(
             this.baseDatabaseName + "_BN.Path_Required_Edges",
             "RChain",
@@ -257,12 +270,138 @@ public class MySQLFactorBaseDataBase implements FactorBaseDataBase {
 
 
     @Override
-    public DataExtractor getAndRemoveCTDataExtractor(String dataExtractorID) throws DataExtractionException {
+    public synchronized List<Edge> getInheritedEdges(List<String> rnodeIDs) throws DataBaseException {
+        String query = QueryGenerator.createSimpleInQuery(
+            this.baseDatabaseName + "_BN.InheritedEdges",
+            "RChain",
+            rnodeIDs
+        );
+
+        try (PreparedStatement st = this.dbConnection.prepareStatement(query)) {
+            return extractEdges(st);
+        } catch (SQLException e) {
+            throw new DataBaseException("Failed to retrieve the inherited edges.", e);
+        }
+    }
+
+
+    @Override
+    public synchronized Set<String> getPopulationVariables(String rchain) throws DataBaseException {
+        String setupDatabaseName = this.dbInfo.getSetupDatabaseName();
+        String query =
+            "SELECT DISTINCT RNodes_pvars.pvid " +
+            "FROM " +
+                setupDatabaseName + ".lattice_membership, " +
+                setupDatabaseName + ".RNodes_pvars " +
+            "WHERE lattice_membership.member = RNodes_pvars.rnid " +
+            "AND lattice_membership.name = ?;";
+
+        Set<String> pvids = new HashSet<String>();
+        try (PreparedStatement st = this.dbConnection.prepareStatement(query)) {
+            st.setString(1, rchain);
+            ResultSet results = st.executeQuery();
+            while (results.next()) {
+                pvids.add(results.getString("pvid"));
+            }
+        } catch (SQLException e) {
+            throw new DataBaseException("Failed to retrieve the population variables.", e);
+        }
+
+        return pvids;
+    }
+
+
+    @Override
+    public synchronized Map<String, Set<Edge>> getAllEdges(String tableName) throws DataBaseException {
+        String query =
+            "SELECT Rchain, child, parent " +
+            "FROM " + this.dbInfo.getBNDatabaseName() + "." + tableName + ";";
+
+        Map<String, Set<Edge>> edges = new HashMap<String, Set<Edge>>();
+        try (PreparedStatement st = this.dbConnection.prepareStatement(query)) {
+            ResultSet results = st.executeQuery();
+            while (results.next()) {
+                edges.computeIfAbsent(
+                    results.getString("Rchain"),
+                    rchain -> new LinkedHashSet<Edge>()
+                ).add(new Edge(results.getString("parent"), results.getString("child")));
+            }
+        } catch (SQLException e) {
+            throw new DataBaseException("Failed to retrieve the edges from the specified table.", e);
+        }
+
+        return edges;
+    }
+
+
+    @Override
+    public synchronized Map<String, Set<String>> getRChainMembers() throws DataBaseException {
+        String query =
+            "SELECT name AS Rchain, member " +
+            "FROM " + this.dbInfo.getSetupDatabaseName() + ".lattice_membership;";
+
+        try (PreparedStatement st = this.dbConnection.prepareStatement(query)) {
+            return extractRChainValues(st, "member");
+        } catch (SQLException e) {
+            throw new DataBaseException("Failed to retrieve the members of the RChains.", e);
+        }
+    }
+
+
+    @Override
+    public synchronized Map<String, Set<String>> getRChainNodes() throws DataBaseException {
+        String query =
+            "SELECT Rchain, node " +
+            "FROM " + this.dbInfo.getBNDatabaseName() + ".Path_BN_nodes;";
+
+        try (PreparedStatement st = this.dbConnection.prepareStatement(query)) {
+            return extractRChainValues(st, "node");
+        } catch (SQLException e) {
+            throw new DataBaseException("Failed to retrieve the Bayes Net nodes of the RChains.", e);
+        }
+    }
+
+
+    /**
+     * Helper method to extract the values of the given column for each RChain from the given PreparedStatement.
+     *
+     * @param statement - the PreparedStatement to extract the information from, which must have an Rchain column.
+     * @param columnName - the column to extract the values from.
+     * @return the values of the given column for each RChain.
+     * @throws SQLException if an error occurs when attempting to retrieve the information.
+     */
+    private Map<String, Set<String>> extractRChainValues(
+        PreparedStatement statement,
+        String columnName
+    ) throws SQLException {
+        Map<String, Set<String>> values = new HashMap<String, Set<String>>();
+        ResultSet results = statement.executeQuery();
+        while (results.next()) {
+            values.computeIfAbsent(
+                results.getString("Rchain"),
+                rchain -> new LinkedHashSet<String>()
+            ).add(results.getString(columnName));
+        }
+
+        return values;
+    }
+
+
+    @Override
+    public synchronized DataExtractor getAndRemoveCTDataExtractor(String dataExtractorID) throws DataExtractionException {
         if (this.dataExtractors == null) {
             this.dataExtractors = this.generateDataExtractors();
         }
 
-        return this.dataExtractors.remove(dataExtractorID);
+        DataExtractor dataExtractor = this.dataExtractors.remove(dataExtractorID);
+
+        // Use the CT table built in memory by the Mobius Join if there is one.
+        DataSet dataset = CountsManager.getAndRemoveInMemoryCTTable(dataExtractorID);
+        if (dataset != null) {
+            return () -> dataset;
+        }
+
+        return dataExtractor;
     }
 
 
@@ -436,7 +575,7 @@ public class MySQLFactorBaseDataBase implements FactorBaseDataBase {
 
 
     @Override
-    public ContingencyTable getContingencyTable(
+    public synchronized ContingencyTable getContingencyTable(
         FunctorNodesInfo functorInfos,
         String child,
         Set<String> parents,
@@ -533,7 +672,7 @@ public class MySQLFactorBaseDataBase implements FactorBaseDataBase {
 
 
     @Override
-    public void insertLearnedEdges(
+    public synchronized void insertLearnedEdges(
         String id,
         List<Edge> graphEdges,
         String destTableName,
@@ -575,7 +714,116 @@ public class MySQLFactorBaseDataBase implements FactorBaseDataBase {
 
 
     @Override
-    public void propagateEdgeInformation(int height, boolean linkAnalysisOn) throws DataBaseException {
+    public synchronized void insertHyperparameterResults(
+        String id,
+        double samplePrior,
+        double structurePrior,
+        List<Edge> graphEdges,
+        double score
+    ) throws DataBaseException {
+        try {
+            this.dbConnection.setCatalog(this.dbInfo.getBNDatabaseName());
+
+            try (
+                PreparedStatement edgeStatement = this.dbConnection.prepareStatement(
+                    "INSERT IGNORE INTO Hyperparameter_BayesNets VALUES (?, ?, ?, ?, ?);"
+                );
+                PreparedStatement scoreStatement = this.dbConnection.prepareStatement(
+                    "REPLACE INTO Hyperparameter_Scores VALUES (?, ?, ?, ?);"
+                )
+            ) {
+                for (Edge graphEdge : graphEdges) {
+                    edgeStatement.setString(1, id);
+                    edgeStatement.setDouble(2, samplePrior);
+                    edgeStatement.setDouble(3, structurePrior);
+                    edgeStatement.setString(4, graphEdge.getChild());
+                    edgeStatement.setString(5, graphEdge.getParent());
+                    edgeStatement.addBatch();
+                }
+
+                edgeStatement.executeBatch();
+
+                scoreStatement.setString(1, id);
+                scoreStatement.setDouble(2, samplePrior);
+                scoreStatement.setDouble(3, structurePrior);
+
+                // The score isn't available if the search didn't record it.
+                if (Double.isNaN(score) || Double.isInfinite(score)) {
+                    scoreStatement.setNull(4, Types.DOUBLE);
+                } else {
+                    scoreStatement.setDouble(4, score);
+                }
+
+                scoreStatement.execute();
+            }
+        } catch (SQLException e) {
+            throw new DataBaseException("Failed to insert the results for the hyperparameter grid.", e);
+        }
+    }
+
+
+    @Override
+    public synchronized void insertEdgeFrequencies(
+        String id,
+        Map<Edge, Double> edgeFrequencies,
+        String destTableName
+    ) throws DataBaseException {
+        try {
+            this.dbConnection.setCatalog(this.dbInfo.getBNDatabaseName());
+
+            try (
+                PreparedStatement statement = this.dbConnection.prepareStatement(
+                    "REPLACE INTO " + destTableName + " VALUES (?, ?, ?, ?);"
+                )
+            ) {
+                for (Entry<Edge, Double> edgeFrequency : edgeFrequencies.entrySet()) {
+                    statement.setString(1, id);
+                    statement.setString(2, edgeFrequency.getKey().getChild());
+                    statement.setString(3, edgeFrequency.getKey().getParent());
+                    statement.setDouble(4, edgeFrequency.getValue());
+                    statement.addBatch();
+                }
+
+                statement.executeBatch();
+            }
+        } catch (SQLException e) {
+            throw new DataBaseException("Failed to insert the edge frequencies into the specified table.", e);
+        }
+    }
+
+
+    @Override
+    public synchronized void replaceEdges(String tableName, Map<String, Set<Edge>> edges) throws DataBaseException {
+        try {
+            this.dbConnection.setCatalog(this.dbInfo.getBNDatabaseName());
+
+            try (
+                Statement deleteStatement = this.dbConnection.createStatement();
+                PreparedStatement insertStatement = this.dbConnection.prepareStatement(
+                    "INSERT IGNORE INTO " + tableName + " VALUES (?, ?, ?);"
+                )
+            ) {
+                deleteStatement.execute("DELETE FROM " + tableName + ";");
+
+                for (Entry<String, Set<Edge>> rchainEdges : edges.entrySet()) {
+                    for (Edge edge : rchainEdges.getValue()) {
+                        insertStatement.setString(1, rchainEdges.getKey());
+                        insertStatement.setString(2, edge.getChild());
+                        insertStatement.setString(3, edge.getParent());
+                        insertStatement.addBatch();
+                    }
+                }
+
+                insertStatement.executeBatch();
+            }
+        } catch (SQLException e) {
+            throw new DataBaseException("Failed to replace the edges in the specified table.", e);
+        }
+    }
+
+
+    @Override
+    public synchronized void propagateEdgeInformation(int height, boolean linkAnalysisOn) throws DataBaseException {
         // Import edge information to the database.
         try {
             this.dbConnection.setCatalog(this.dbInfo.getBNDatabaseName());
@@ -804,6 +1052,204 @@ public class MySQLFactorBaseDataBase implements FactorBaseDataBase {
     }
 
 
+    @Override
+    public synchronized void collectEdgeInformation(String rchain, boolean linkAnalysisOn) throws DataBaseException {
+        try {
+            this.dbConnection.setCatalog(this.dbInfo.getBNDatabaseName());
+            try(Statement statement = this.dbConnection.createStatement()) {
+                if (!linkAnalysisOn) {
+                    statement.execute(
+                        "INSERT IGNORE INTO Path_BayesNets " +
+                            "SELECT " +
+                                "* " +
+                            "FROM " +
+                                "InheritedEdges " +
+                            "WHERE " +
+                                "Rchain = '" + rchain + "';"
+                    );
+                }
+
+                // Make inherited edges as required edges, while avoiding conflict edges.
+                statement.execute(
+                    "INSERT IGNORE INTO Path_Required_Edges " +
+                        "SELECT DISTINCT " +
+                            "Rchain, " +
+                            "child, " +
+                            "parent " +
+                        "FROM " +
+                            "InheritedEdges " +
+                        "WHERE " +
+                            "Rchain = '" + rchain + "' " +
+                        "AND (" +
+                            "Rchain, " +
+                            "parent, " +
+                            "child" +
+                        ") NOT IN (" +
+                            "SELECT " +
+                                "* " +
+                            "FROM " +
+                                "InheritedEdges" +
+                        ") AND " +
+                                "child " +
+                        "NOT IN (" +
+                            "SELECT " +
+                                "rnid " +
+                            "FROM " +
+                                this.dbInfo.getSetupDatabaseName() + ".RNodes" +
+                        ");"
+                );
+
+                // Make the absent edges of the sub-chains forbidden edges, giving higher priority to the required edges
+                // in case of conflict edges.
+                statement.execute(
+                    "INSERT IGNORE INTO Path_Forbidden_Edges " +
+                        "SELECT DISTINCT " +
+                            "lattice_rel.child AS Rchain, " +
+                            "Path_Complement_Edges.child AS child, " +
+                            "Path_Complement_Edges.parent AS parent " +
+                        "FROM " +
+                            "Path_Complement_Edges, " +
+                            this.dbInfo.getSetupDatabaseName() + ".lattice_rel " +
+                        "WHERE " +
+                            "lattice_rel.child = '" + rchain + "' " +
+                        "AND " +
+                            "lattice_rel.parent = Path_Complement_Edges.Rchain " +
+                        "AND " +
+                            "Path_Complement_Edges.parent <> '' " +
+                        "AND (" +
+                            "lattice_rel.child, " +
+                            "Path_Complement_Edges.child, " +
+                            "Path_Complement_Edges.parent" +
+                        ") NOT IN (" +
+                            "SELECT " +
+                                "Rchain, " +
+                                "child, " +
+                                "parent " +
+                            "FROM " +
+                                "Path_Required_Edges" +
+                        ") AND " +
+                            "Path_Complement_Edges.parent " +
+                        "NOT IN (" +
+                            "SELECT " +
+                                "rnid " +
+                            "FROM " +
+                                this.dbInfo.getSetupDatabaseName() + ".RNodes" +
+                        ");"
+                );
+            }
+        } catch (SQLException e) {
+            throw new DataBaseException("Failed to collect the edge information for the RChain.", e);
+        }
+    }
+
+
+    @Override
+    public synchronized void propagateEdgeInformation(String rchain, boolean linkAnalysisOn) throws DataBaseException {
+        try {
+            this.dbConnection.setCatalog(this.dbInfo.getBNDatabaseName());
+            try(Statement statement = this.dbConnection.createStatement()) {
+                // Propagate the learned edges to the RChains that contain the given RChain.
+                statement.execute(
+                    "INSERT IGNORE INTO InheritedEdges " +
+                        "SELECT DISTINCT " +
+                            "lattice_rel.child AS Rchain, " +
+                            "Path_BayesNets.child AS child, " +
+                            "Path_BayesNets.parent AS parent " +
+                        "FROM " +
+                            "Path_BayesNets, " +
+                            this.dbInfo.getSetupDatabaseName() + ".lattice_rel " +
+                        "WHERE " +
+                            "lattice_rel.parent = '" + rchain + "' " +
+                        "AND " +
+                            "Path_BayesNets.Rchain = lattice_rel.parent " +
+                        "AND " +
+                            "Path_BayesNets.parent <> '';"
+                );
+
+                if (!linkAnalysisOn) {
+                    statement.execute(
+                        "INSERT IGNORE INTO NewLearnedEdges " +
+                            "SELECT " +
+                                "Rchain, " +
+                                "child, " +
+                                "parent " +
+                            "FROM " +
+                                "Path_BayesNets " +
+                            "WHERE " +
+                                "parent <> '' " +
+                            "AND " +
+                                "Rchain = '" + rchain + "' " +
+                            "AND (" +
+                                "Rchain, " +
+                                "child, " +
+                                "parent" +
+                            ") NOT IN (" +
+                                "SELECT " +
+                                    "* " +
+                                "FROM " +
+                                    "Path_Required_Edges" +
+                            ");"
+                    );
+
+                    statement.execute(
+                        "INSERT IGNORE INTO InheritedEdges " +
+                            "SELECT DISTINCT " +
+                                "NewLearnedEdges.Rchain AS Rchain, " +
+                                "NewLearnedEdges.child AS child, " +
+                                "lattice_membership.member AS parent " +
+                            "FROM " +
+                                "NewLearnedEdges, " +
+                                this.dbInfo.getSetupDatabaseName() + ".lattice_membership " +
+                            "WHERE " +
+                                "NewLearnedEdges.Rchain = '" + rchain + "' " +
+                            "AND " +
+                                "NewLearnedEdges.Rchain = lattice_membership.name;"
+                    );
+
+                    statement.execute(
+                        "INSERT IGNORE INTO Path_BayesNets " +
+                            "SELECT " +
+                                "* " +
+                            "FROM " +
+                                "InheritedEdges " +
+                            "WHERE " +
+                                "Rchain = '" + rchain + "';"
+                    );
+                }
+
+                statement.execute(
+                    "INSERT IGNORE INTO Path_Complement_Edges " +
+                        "SELECT DISTINCT " +
+                            "BN_nodes1.Rchain AS Rchain, " +
+                            "BN_nodes1.node AS child, " +
+                            "BN_nodes2.node AS parent " +
+                        "FROM " +
+                            "Path_BN_nodes AS BN_nodes1, " +
+                            "Path_BN_nodes AS BN_nodes2 " +
+                        "WHERE " +
+                            "BN_nodes1.Rchain = '" + rchain + "' " +
+                        "AND " +
+                            "BN_nodes1.Rchain = BN_nodes2.Rchain " +
+                        "AND NOT EXISTS (" +
+                            "SELECT " +
+                                "* " +
+                            "FROM " +
+                                "Path_BayesNets " +
+                            "WHERE " +
+                                "Path_BayesNets.Rchain = BN_nodes1.Rchain " +
+                            "AND " +
+                                "Path_BayesNets.child = BN_nodes1.node " +
+                            "AND " +
+                                "Path_BayesNets.parent = BN_nodes2.node" +
+                        ");"
+                );
+            }
+        } catch (SQLException e) {
+            throw new DataBaseException("Failed to propagate the edge information of the RChain.", e);
+        }
+    }
+
+
     /**
      * Generate a {@code Properties} object containing the connection string properties.
      *
@@ -817,6 +1263,7 @@ public class MySQLFactorBaseDataBase implements FactorBaseDataBase {
         connectionProperties.put("password", password);
         connectionProperties.put("allowLoadLocalInfile", "true");
         connectionProperties.put("serverTimezone", "PST");
+        connectionProperties.put("rewriteBatchedStatements", "true");
 
         return connectionProperties;
     }
@@ -34,4 +34,20 @@ public class Edge {
     public String getChild() {
         return this.child;
     }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Edge)) {
+            return false;
+        }
+
+        Edge edge = (Edge) other;
+
+        return this.parent.equals(edge.parent) && this.child.equals(edge.child);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * this.parent.hashCode() + this.child.hashCode();
+    }
 }
@@ -2,7 +2,18 @@ package ca.sfu.cs.factorbase.jbn;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import ca.sfu.cs.factorbase.data.ContingencyTableGenerator;
 import ca.sfu.cs.factorbase.data.DataExtractor;
@@ -11,6 +22,18 @@ import ca.sfu.cs.factorbase.database.FactorBaseDataBase;
 import ca.sfu.cs.factorbase.exception.DataExtractionException;
 import ca.sfu.cs.factorbase.exception.ScoringException;
 import ca.sfu.cs.factorbase.graph.Edge;
+import ca.sfu.cs.factorbase.search.BDeuHyperparameters;
+import ca.sfu.cs.factorbase.search.BDeuScore;
+import ca.sfu.cs.factorbase.search.BDeuScoreOnDemand;
+import ca.sfu.cs.factorbase.search.CandidateParentSelector;
+import ca.sfu.cs.factorbase.search.DiscreteLocalScore;
+import ca.sfu.cs.factorbase.search.DynamicProgrammingSearch;
+import ca.sfu.cs.factorbase.search.FamilyCountsCache;
+import ca.sfu.cs.factorbase.search.HillClimbingSearch;
+import ca.sfu.cs.factorbase.search.LocalScoreCache;
+import ca.sfu.cs.factorbase.search.SearchBudget;
+import ca.sfu.cs.factorbase.search.SearchEngine;
+import ca.sfu.cs.factorbase.search.StructureSearch;
 
 import edu.cmu.tetrad.data.Knowledge;
 import edu.cmu.tetrad.graph.Graph;
@@ -21,6 +44,77 @@ import edu.cmu.tetrad.search.PatternToDag;
 
 
 public class BayesNet_Learning_main {
+    private static SearchEngine searchEngine = SearchEngine.GES;
+    private static int searchThreads = 1;
+    private static int tabuListSize = 0;
+    private static int maxNonImprovingMoves = 0;
+    private static int exactSearchMaxNodes = 0;
+    private static int exactSearchMaxParents = 0;
+    private static int candidateParents = 0;
+    private static int candidateReselections = 0;
+    private static int searchRestarts = 0;
+    private static int restartEdges = 0;
+    private static long restartSeed = 0;
+
+
+    /**
+     * Set the structure search algorithm used to learn the graphs.
+     *
+     * @param engine - the structure search algorithm to use.
+     * @param numberOfThreads - the number of threads used to score the candidate moves of the hill climbing search.
+     * @param tabuSize - the size of the tabu list of the hill climbing search, 0 to stop at the first local optimum.
+     * @param maxNonImproving - the number of moves that don't improve the score that the hill climbing search can make
+     *                          in a row before it stops.
+     */
+    public static void setSearchEngine(SearchEngine engine, int numberOfThreads, int tabuSize, int maxNonImproving) {
+        searchEngine = engine;
+        searchThreads = numberOfThreads;
+        tabuListSize = tabuSize;
+        maxNonImprovingMoves = maxNonImproving;
+    }
+
+
+    /**
+     * Set when the exact structure search is used instead of the configured structure search algorithm.
+     *
+     * @param maxNodes - the exact search is used for graphs with at most this many nodes, 0 to never use it.  Graphs
+     *                   whose exact search wouldn't fit in the maximum heap size use the configured search instead.
+     * @param maxParents - the maximum number of parents that a node can have in the exact search.
+     */
+    public static void setExactSearch(int maxNodes, int maxParents) {
+        exactSearchMaxNodes = Math.min(maxNodes, DynamicProgrammingSearch.getMaxNumberOfVariables(maxParents));
+        exactSearchMaxParents = maxParents;
+    }
+
+
+    /**
+     * Set whether the parents considered by the search for each node are restricted to a set of candidates selected
+     * from the pairwise statistics of the data.
+     *
+     * @param numberOfCandidates - the number of candidate parents for each node, 0 to consider all the parents.
+     * @param numberOfReselections - the number of times the candidates are re-selected using the graph learned with
+     *                               the previous candidates, stopping early if the score doesn't improve.
+     */
+    public static void setCandidateParents(int numberOfCandidates, int numberOfReselections) {
+        candidateParents = numberOfCandidates;
+        candidateReselections = numberOfReselections;
+    }
+
+
+    /**
+     * Set whether the structure search is restarted from perturbed starting graphs.  The restarts run at the same time
+     * as the search from the unperturbed starting graph, sharing the local scores they compute, and the graph with the
+     * best score is kept.
+     *
+     * @param restarts - the number of restarts to run alongside the search, 0 to only run the search.
+     * @param perturbedEdges - the number of random edges added to the starting graph of each restart.
+     * @param seed - the seed used to draw the random edges, so that the results can be reproduced.
+     */
+    public static void setSearchRestarts(int restarts, int perturbedEdges, long seed) {
+        searchRestarts = restarts;
+        restartEdges = perturbedEdges;
+        restartSeed = seed;
+    }
 
 
     public static List<Edge> tetradLearner(
@@ -46,15 +140,320 @@ public class BayesNet_Learning_main {
         List<Edge> forbiddenEdges,
         boolean isDiscrete
     ) throws DataExtractionException, IOException, ScoringException {
-        ContingencyTableGenerator dataset = new ContingencyTableGenerator(dataSource);
+        return tetradLearner(dataSource, requiredEdges, forbiddenEdges, null, null, null, isDiscrete);
+    }
 
-        GesCT gesSearch = new GesCT(
+
+    /**
+     * Learn the graph for the given data source, starting the search from the given initial edges instead of the
+     * empty graph.
+     *
+     * @param dataSource - {@code DataExtractor} for the CT table to learn the graph for.
+     * @param requiredEdges - required edges to help guide the graph search.
+     * @param forbiddenEdges - forbidden edges to help guide the graph search.
+     * @param initialEdges - edges to start the graph search from, null to start from the empty graph.
+     * @param scoreCache - cache of the local scores to reuse and add to during the search, null to not cache the local
+     *                     scores across searches.
+     * @param searchBudget - limits on how long the search can run for, null for no limits.
+     * @param isDiscrete - true if the data source only contains discrete information; otherwise false.
+     * @return the edges of the graph that is learned.
+     * @throws DataExtractionException if an error occurs when extracting the data from the data source.
+     * @throws IOException if there are issues reading and writing various files.
+     * @throws ScoringException if there are issues when scoring the graph candidates during the search.
+     */
+    public static List<Edge> tetradLearner(
+        DataExtractor dataSource,
+        List<Edge> requiredEdges,
+        List<Edge> forbiddenEdges,
+        List<Edge> initialEdges,
+        LocalScoreCache scoreCache,
+        SearchBudget searchBudget,
+        boolean isDiscrete
+    ) throws DataExtractionException, IOException, ScoringException {
+        return tetradLearner(
+            new ContingencyTableGenerator(dataSource),
+            requiredEdges,
+            forbiddenEdges,
+            initialEdges,
+            scoreCache,
+            searchBudget
+        );
+    }
+
+
+    /**
+     * Learn the graph for the given dataset, starting the search from the given initial edges instead of the empty
+     * graph.
+     *
+     * @param dataset - the dataset to learn the graph for.
+     * @param requiredEdges - required edges to help guide the graph search.
+     * @param forbiddenEdges - forbidden edges to help guide the graph search.
+     * @param initialEdges - edges to start the graph search from, null to start from the empty graph.
+     * @param scoreCache - cache of the local scores to reuse and add to during the search, null to not cache the local
+     *                     scores across searches.
+     * @param searchBudget - limits on how long the search can run for, null for no limits.
+     * @return the edges of the graph that is learned.
+     * @throws ScoringException if there are issues when scoring the graph candidates during the search.
+     */
+    public static List<Edge> tetradLearner(
+        ContingencyTableGenerator dataset,
+        List<Edge> requiredEdges,
+        List<Edge> forbiddenEdges,
+        List<Edge> initialEdges,
+        LocalScoreCache scoreCache,
+        SearchBudget searchBudget
+    ) throws ScoringException {
+        return learnGraph(
             dataset,
-            10.0000,
-            1.0000
+            new BDeuScore(
+                dataset,
+                BDeuHyperparameters.DEFAULT.getSamplePrior(),
+                BDeuHyperparameters.DEFAULT.getStructurePrior()
+            ),
+            requiredEdges,
+            forbiddenEdges,
+            initialEdges,
+            scoreCache,
+            searchBudget
         );
+    }
+
+
+    /**
+     * Learn a graph for each of the given settings of the hyperparameters in parallel.  The searches share the CT
+     * table and the summaries of the CT tables generated for the families of nodes, so that only the scores
+     * themselves are computed for each setting.
+     *
+     * @param dataset - the dataset to learn the graphs for.
+     * @param requiredEdges - required edges to help guide the graph search.
+     * @param forbiddenEdges - forbidden edges to help guide the graph search.
+     * @param initialEdges - edges to start the graph search for the first setting from, null to start from the empty
+     *                       graph.
+     * @param scoreCache - cache of the local scores to reuse and add to during the search for the first setting, null
+     *                     to not cache the local scores across searches.
+     * @param hyperparameterGrid - the settings of the hyperparameters to learn a graph for.
+     * @param searchBudgets - the budget for the search of each setting, which also records the score of the graph
+     *                        learned for it.
+     * @return the edges of the graph learned for each setting, in the same order as the given settings.
+     * @throws ScoringException if there are issues when scoring the graph candidates during the searches.
+     */
+    public static List<List<Edge>> tetradLearnerGrid(
+        ContingencyTableGenerator dataset,
+        List<Edge> requiredEdges,
+        List<Edge> forbiddenEdges,
+        List<Edge> initialEdges,
+        LocalScoreCache scoreCache,
+        List<BDeuHyperparameters> hyperparameterGrid,
+        List<SearchBudget> searchBudgets
+    ) throws ScoringException {
+        FamilyCountsCache familyCountsCache = new FamilyCountsCache();
+        ExecutorService executor = Executors.newFixedThreadPool(hyperparameterGrid.size());
+        List<Future<List<Edge>>> graphs = new ArrayList<Future<List<Edge>>>(hyperparameterGrid.size());
+
+        try {
+            // for loop to start the search for each setting of the hyperparameters.
+            for (int index = 0; index < hyperparameterGrid.size(); index++) {
+                BDeuHyperparameters hyperparameters = hyperparameterGrid.get(index);
+                DiscreteLocalScore score = new BDeuScore(
+                    dataset,
+                    hyperparameters.getSamplePrior(),
+                    hyperparameters.getStructurePrior(),
+                    familyCountsCache
+                );
+
+                // The cached local scores were computed with the hyperparameters of the first setting.
+                boolean isFirst = index == 0;
+                SearchBudget searchBudget = searchBudgets.get(index);
+                graphs.add(executor.submit(() -> learnGraph(
+                    dataset,
+                    score,
+                    requiredEdges,
+                    forbiddenEdges,
+                    isFirst ? initialEdges : null,
+                    isFirst ? scoreCache : null,
+                    searchBudget
+                )));
+            }
+
+            List<List<Edge>> graphEdges = new ArrayList<List<Edge>>(hyperparameterGrid.size());
+            for (Future<List<Edge>> graph : graphs) {
+                graphEdges.add(graph.get());
+            }
+
+            return graphEdges;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScoringException("Interrupted while learning the graphs for the hyperparameter grid.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ScoringException) {
+                throw (ScoringException) e.getCause();
+            }
+
+            throw new ScoringException("Failed to learn the graphs for the hyperparameter grid.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Estimate the confidence in each edge by learning a graph for each of the given number of bootstrap replicates
+     * of the dataset in parallel.  The replicates are drawn from the CT table that is already in memory by
+     * reweighting its rows, so the CT table doesn't need to be generated again for each replicate.
+     *
+     * @param dataset - the dataset to draw the bootstrap replicates from.
+     * @param requiredEdges - required edges to help guide the graph search.
+     * @param forbiddenEdges - forbidden edges to help guide the graph search.
+     * @param searchBudgets - the budget for the search of each replicate, one per replicate.
+     * @param numberOfThreads - the number of replicates to learn the graphs for at the same time.
+     * @param seed - the seed used to draw the replicates, so that the results can be reproduced.
+     * @return the fraction of the replicates whose learned graph contains each edge, for the edges that were learned
+     *         for at least one replicate.
+     * @throws ScoringException if there are issues when scoring the graph candidates during the searches.
+     */
+    public static Map<Edge, Double> tetradLearnerBootstrap(
+        ContingencyTableGenerator dataset,
+        List<Edge> requiredEdges,
+        List<Edge> forbiddenEdges,
+        List<SearchBudget> searchBudgets,
+        int numberOfThreads,
+        long seed
+    ) throws ScoringException {
+        int numberOfReplicates = searchBudgets.size();
+        SplittableRandom random = new SplittableRandom(seed);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, numberOfThreads));
+        List<Future<List<Edge>>> graphs = new ArrayList<Future<List<Edge>>>(numberOfReplicates);
+
+        try {
+            // for loop to start the search for each bootstrap replicate.
+            for (int replicate = 0; replicate < numberOfReplicates; replicate++) {
+                // Split the random number generator up front so that the replicates don't depend on the scheduling.
+                SplittableRandom replicateRandom = random.split();
+                SearchBudget searchBudget = searchBudgets.get(replicate);
+                graphs.add(executor.submit(() -> {
+                    ContingencyTableGenerator replicateDataset = dataset.resample(replicateRandom);
+
+                    return learnGraph(
+                        replicateDataset,
+                        new BDeuScore(
+                            replicateDataset,
+                            BDeuHyperparameters.DEFAULT.getSamplePrior(),
+                            BDeuHyperparameters.DEFAULT.getStructurePrior()
+                        ),
+                        requiredEdges,
+                        forbiddenEdges,
+                        null,
+                        null,
+                        searchBudget
+                    );
+                }));
+            }
+
+            Map<Edge, Integer> edgeCounts = new HashMap<Edge, Integer>();
+            for (Future<List<Edge>> graph : graphs) {
+                for (Edge edge : graph.get()) {
+                    if (!edge.getParent().isEmpty()) {
+                        edgeCounts.merge(edge, 1, Integer::sum);
+                    }
+                }
+            }
+
+            Map<Edge, Double> edgeFrequencies = new HashMap<Edge, Double>();
+            for (Map.Entry<Edge, Integer> edgeCount : edgeCounts.entrySet()) {
+                edgeFrequencies.put(edgeCount.getKey(), (double) edgeCount.getValue() / numberOfReplicates);
+            }
+
+            return edgeFrequencies;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScoringException("Interrupted while learning the graphs for the bootstrap replicates.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ScoringException) {
+                throw (ScoringException) e.getCause();
+            }
+
+            throw new ScoringException("Failed to learn the graphs for the bootstrap replicates.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Learn the graph for the given dataset using the given score, restricting the parents of each node to its
+     * candidate parents if they are configured.
+     *
+     * @param dataset - the dataset to learn the graph for.
+     * @param score - the score to compute the local scores of the families of the variables with.
+     * @param requiredEdges - required edges to help guide the graph search.
+     * @param forbiddenEdges - forbidden edges to help guide the graph search.
+     * @param initialEdges - edges to start the graph search from, null to start from the empty graph.
+     * @param scoreCache - cache of the local scores to reuse and add to during the search, null to not cache the local
+     *                     scores across searches.
+     * @param searchBudget - limits on how long the search can run for, null for no limits.
+     * @return the edges of the graph that is learned.
+     * @throws ScoringException if there are issues when scoring the graph candidates during the search.
+     */
+    private static List<Edge> learnGraph(
+        ContingencyTableGenerator dataset,
+        DiscreteLocalScore score,
+        List<Edge> requiredEdges,
+        List<Edge> forbiddenEdges,
+        List<Edge> initialEdges,
+        LocalScoreCache scoreCache,
+        SearchBudget searchBudget
+    ) throws ScoringException {
+        List<String> variableNames = dataset.getVariableNames();
+
+        if (candidateParents <= 0 || candidateParents >= variableNames.size() - 1 || !dataset.isDiscrete()) {
+            return learnGraphWithRestarts(
+                dataset,
+                score,
+                requiredEdges,
+                forbiddenEdges,
+                initialEdges,
+                scoreCache,
+                searchBudget
+            );
+        }
+
+        // The score of each search is needed to decide whether re-selecting the candidates improved the graph.
+        SearchBudget budget = searchBudget == null ? new SearchBudget(0, 0) : searchBudget;
+        CandidateParentSelector selector = new CandidateParentSelector(dataset, score);
+        Map<String, Set<String>> candidates = selector.selectCandidates(candidateParents);
+        List<Edge> startingEdges = initialEdges;
+        List<Edge> bestEdges = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+
+        // for loop to learn the graph with the candidate parents, re-selecting them from the learned graph until the
+        // score stops improving.
+        for (int reselection = 0; reselection <= candidateReselections; reselection++) {
+            List<Edge> edges = learnGraphWithRestarts(
+                dataset,
+                score,
+                requiredEdges,
+                getNonCandidateEdges(candidates, requiredEdges, forbiddenEdges),
+                startingEdges,
+                scoreCache,
+                budget
+            );
+
+            if (bestEdges != null && budget.getScore() <= bestScore) {
+                break;
+            }
+
+            bestEdges = edges;
+            bestScore = budget.getScore();
 
-        return learnGraph(gesSearch, requiredEdges, forbiddenEdges);
+            if (budget.isExhausted() || reselection == candidateReselections) {
+                break;
+            }
+
+            candidates = selector.reselectCandidates(getParents(edges), candidateParents);
+            startingEdges = edges;
+        }
+
+        return bestEdges;
     }
 
 
@@ -65,29 +464,305 @@ public class BayesNet_Learning_main {
         List<Edge> forbiddenEdges,
         boolean isDiscrete
     ) throws IOException, ScoringException {
-        GesCT gesSearch = new GesCT(
-            database,
-            functorNodesInfo,
-            10.0000,
-            1.0000
+        return tetradLearner(database, functorNodesInfo, requiredEdges, forbiddenEdges, null, isDiscrete);
+    }
+
+
+    /**
+     * Learn the graph for the given functor nodes, generating the CT tables as needed from the given database.
+     *
+     * @param database - {@code FactorBaseDataBase} to help generate contingency tables as needed.
+     * @param functorNodesInfo - the information for the functor nodes to learn the graph for.
+     * @param requiredEdges - required edges to help guide the graph search.
+     * @param forbiddenEdges - forbidden edges to help guide the graph search.
+     * @param searchBudget - limits on how long the search can run for, null for no limits.
+     * @param isDiscrete - true if the data only contains discrete information; otherwise false.
+     * @return the edges of the graph that is learned.
+     * @throws IOException if there are issues reading and writing various files.
+     * @throws ScoringException if there are issues when scoring the graph candidates during the search.
+     */
+    public static List<Edge> tetradLearner(
+        FactorBaseDataBase database,
+        FunctorNodesInfo functorNodesInfo,
+        List<Edge> requiredEdges,
+        List<Edge> forbiddenEdges,
+        SearchBudget searchBudget,
+        boolean isDiscrete
+    ) throws IOException, ScoringException {
+        StructureSearch search = createSearch(
+            functorNodesInfo.getFunctorNodes().stream().map(
+                functorNode -> functorNode.getFunctorNodeID()
+            ).collect(Collectors.toList()),
+            functorNodesInfo.isDiscrete(),
+            new BDeuScoreOnDemand(database, functorNodesInfo, 10.0000, 1.0000),
+            () -> new GesCT(
+                database,
+                functorNodesInfo,
+                10.0000,
+                1.0000
+            )
         );
 
-        return learnGraph(gesSearch, requiredEdges, forbiddenEdges);
+        return learnGraph(search, requiredEdges, forbiddenEdges, searchBudget);
     }
 
 
     /**
-     * Learn the graph for the given initialized GES object with the provided required and forbidden edges.
-     * @param gesSearch - GES object initialized with all the information needed to learn a Bayesian Network.
+     * Learn the graph for the given dataset using the given score, running the configured number of restarts from
+     * perturbed starting graphs at the same time and keeping the graph with the best score.
+     *
+     * @param dataset - the dataset to learn the graph for.
+     * @param score - the score to compute the local scores of the families of the variables with.
      * @param requiredEdges - required edges to help guide the graph search.
      * @param forbiddenEdges - forbidden edges to help guide the graph search.
+     * @param initialEdges - edges to start the graph search from, null to start from the empty graph.
+     * @param scoreCache - cache of the local scores to reuse and add to during the search, null to not cache the local
+     *                     scores across searches.
+     * @param searchBudget - limits on how long the search can run for, null for no limits.  The limits apply to each
+     *                       restart separately, and the budget records the best score found by the restarts.
+     * @return the edges of the graph with the best score.
+     * @throws ScoringException if there are issues when scoring the graph candidates during the search.
+     */
+    private static List<Edge> learnGraphWithRestarts(
+        ContingencyTableGenerator dataset,
+        DiscreteLocalScore score,
+        List<Edge> requiredEdges,
+        List<Edge> forbiddenEdges,
+        List<Edge> initialEdges,
+        LocalScoreCache scoreCache,
+        SearchBudget searchBudget
+    ) throws ScoringException {
+        List<String> variableNames = dataset.getVariableNames();
+
+        // The exact search always finds the graph with the best score, so there is nothing to gain from restarting it.
+        boolean isExact = dataset.isDiscrete() && variableNames.size() <= exactSearchMaxNodes;
+        if (searchRestarts <= 0 || isExact) {
+            StructureSearch search = createSearch(dataset, score, initialEdges, scoreCache);
+
+            return learnGraph(search, requiredEdges, forbiddenEdges, searchBudget);
+        }
+
+        LocalScoreCache sharedScoreCache = scoreCache == null ? new LocalScoreCache() : scoreCache;
+        SearchBudget budget = searchBudget == null ? new SearchBudget(0, 0) : searchBudget;
+        SplittableRandom random = new SplittableRandom(restartSeed);
+        ExecutorService executor = Executors.newFixedThreadPool(searchRestarts + 1);
+        List<SearchBudget> searchBudgets = new ArrayList<SearchBudget>(searchRestarts + 1);
+        List<Future<List<Edge>>> graphs = new ArrayList<Future<List<Edge>>>(searchRestarts + 1);
+
+        try {
+            // for loop to start the search from the starting graph and each of the restarts from a perturbed one.
+            for (int restart = 0; restart <= searchRestarts; restart++) {
+                List<Edge> startingEdges = new ArrayList<Edge>();
+                if (initialEdges != null) {
+                    startingEdges.addAll(initialEdges);
+                }
+
+                SearchBudget restartBudget = restart == 0 ? budget : budget.copyLimits();
+                if (restart > 0) {
+                    // The searches ignore the random edges that are forbidden or would create a cycle.
+                    for (int edge = 0; edge < restartEdges; edge++) {
+                        int parent = random.nextInt(variableNames.size());
+                        int child = random.nextInt(variableNames.size());
+                        if (parent != child) {
+                            startingEdges.add(new Edge(variableNames.get(parent), variableNames.get(child)));
+                        }
+                    }
+                }
+
+                StructureSearch search = createSearch(dataset, score, startingEdges, sharedScoreCache);
+                searchBudgets.add(restartBudget);
+                graphs.add(executor.submit(() -> learnGraph(search, requiredEdges, forbiddenEdges, restartBudget)));
+            }
+
+            List<Edge> bestEdges = null;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int restart = 0; restart <= searchRestarts; restart++) {
+                List<Edge> edges = graphs.get(restart).get();
+                double restartScore = searchBudgets.get(restart).getScore();
+                if (bestEdges == null || restartScore > bestScore) {
+                    bestEdges = edges;
+                    bestScore = restartScore;
+                }
+            }
+
+            budget.recordScore(bestScore);
+
+            return bestEdges;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScoringException("Interrupted while running the restarts of the structure search.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ScoringException) {
+                throw (ScoringException) e.getCause();
+            }
+
+            throw new ScoringException("Failed to run the restarts of the structure search.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Create the structure search for the given dataset using the configured settings.
+     *
+     * @param dataset - the dataset to learn the graph for.
+     * @param score - the score to compute the local scores of the families of the variables with.
+     * @param initialEdges - edges to start the graph search from, null to start from the empty graph.
+     * @param scoreCache - cache of the local scores to reuse and add to during the search, null to not cache the local
+     *                     scores across searches.
+     * @return the structure search for the given dataset.
+     */
+    private static StructureSearch createSearch(
+        ContingencyTableGenerator dataset,
+        DiscreteLocalScore score,
+        List<Edge> initialEdges,
+        LocalScoreCache scoreCache
+    ) {
+        StructureSearch search = createSearch(
+            dataset.getVariableNames(),
+            dataset.isDiscrete(),
+            score,
+            () -> new GesCT(
+                dataset,
+                score
+            )
+        );
+
+        // Load the edges to start the search from.
+        if (initialEdges != null) {
+            for (Edge edge : initialEdges) {
+                if (!edge.getParent().isEmpty()) {
+                    search.addInitialEdge(edge.getParent(), edge.getChild());
+                }
+            }
+        }
+
+        if (scoreCache != null) {
+            search.setLocalScoreCache(scoreCache);
+        }
+
+        return search;
+    }
+
+
+    /**
+     * Create the structure search for the given variables using the configured settings.  The exact search is used
+     * if there are few enough variables; otherwise the configured structure search algorithm is used.
+     *
+     * @param variableNames - the names of the variables to learn the graph for.
+     * @param isDiscrete - true if the variables are discrete; otherwise false.
+     * @param score - the score to compute the local scores of the families of the variables with.
+     * @param gesSearch - creates the GES search for the variables.
+     * @return the structure search for the given variables.
+     */
+    private static StructureSearch createSearch(
+        List<String> variableNames,
+        boolean isDiscrete,
+        DiscreteLocalScore score,
+        Supplier<GesCT> gesSearch
+    ) {
+        if (isDiscrete && variableNames.size() <= exactSearchMaxNodes) {
+            DynamicProgrammingSearch search = new DynamicProgrammingSearch(variableNames, score, exactSearchMaxParents);
+            search.setNumberOfThreads(searchThreads);
+
+            return search;
+        }
+
+        if (searchEngine != SearchEngine.HillClimbing) {
+            return gesSearch.get();
+        }
+
+        if (!isDiscrete) {
+            throw new UnsupportedOperationException("Not Implemented Yet!");
+        }
+
+        HillClimbingSearch search = new HillClimbingSearch(variableNames, score);
+        search.setNumberOfThreads(searchThreads);
+        search.setTabuListSize(tabuListSize);
+        search.setMaxNonImprovingMoves(maxNonImprovingMoves);
+
+        return search;
+    }
+
+
+    /**
+     * Retrieve the edges that the search shouldn't consider because their parent isn't a candidate parent of their
+     * child, along with the given forbidden edges.
+     *
+     * @param candidates - the candidate parents for each variable.
+     * @param requiredEdges - required edges, which are never forbidden.
+     * @param forbiddenEdges - forbidden edges to include in the result.
+     * @return the forbidden edges plus the edges from the non-candidate parents.
+     */
+    private static List<Edge> getNonCandidateEdges(
+        Map<String, Set<String>> candidates,
+        List<Edge> requiredEdges,
+        List<Edge> forbiddenEdges
+    ) {
+        List<Edge> nonCandidateEdges = new ArrayList<Edge>();
+        if (forbiddenEdges != null) {
+            nonCandidateEdges.addAll(forbiddenEdges);
+        }
+
+        Set<String> required = new HashSet<String>();
+        if (requiredEdges != null) {
+            for (Edge edge : requiredEdges) {
+                required.add(edge.getParent() + "," + edge.getChild());
+            }
+        }
+
+        // for loop to forbid the edges from the non-candidate parents of each variable.
+        for (String child : candidates.keySet()) {
+            Set<String> childCandidates = candidates.get(child);
+            for (String parent : candidates.keySet()) {
+                if (
+                    !parent.equals(child) &&
+                    !childCandidates.contains(parent) &&
+                    !required.contains(parent + "," + child)
+                ) {
+                    nonCandidateEdges.add(new Edge(parent, child));
+                }
+            }
+        }
+
+        return nonCandidateEdges;
+    }
+
+
+    /**
+     * Retrieve the parents of each variable from the given learned edges.
+     *
+     * @param edges - the edges of a learned graph.
+     * @return the parents of each variable in the graph.
+     */
+    private static Map<String, Set<String>> getParents(List<Edge> edges) {
+        Map<String, Set<String>> parents = new HashMap<String, Set<String>>();
+        for (Edge edge : edges) {
+            Set<String> childParents = parents.computeIfAbsent(edge.getChild(), child -> new HashSet<String>());
+            if (!edge.getParent().isEmpty()) {
+                childParents.add(edge.getParent());
+            }
+        }
+
+        return parents;
+    }
+
+
+    /**
+     * Learn the graph for the given initialized search object with the provided required and forbidden edges.
+     * @param search - search object initialized with all the information needed to learn a Bayesian Network.
+     * @param requiredEdges - required edges to help guide the graph search.
+     * @param forbiddenEdges - forbidden edges to help guide the graph search.
+     * @param searchBudget - limits on how long the search can run for, null for no limits.
      * @return the edges of the graph that is learned.
      * @throws ScoringException if there are issues when scoring the graph candidates during the search.
      */
     private static List<Edge> learnGraph(
-        GesCT gesSearch,
+        StructureSearch search,
         List<Edge> requiredEdges,
-        List<Edge> forbiddenEdges
+        List<Edge> forbiddenEdges,
+        SearchBudget searchBudget
      ) throws ScoringException {
         Knowledge knowledge = new Knowledge();
 
@@ -105,10 +780,14 @@ public class BayesNet_Learning_main {
             }
         }
 
-        gesSearch.setKnowledge(knowledge);
+        search.setKnowledge(knowledge);
+
+        if (searchBudget != null) {
+            search.setSearchBudget(searchBudget);
+        }
 
         /* learn a dag from data */
-        Graph graph = gesSearch.search();
+        Graph graph = search.search();
         Pattern pattern = new Pattern(graph);
 
         PatternToDag p2d = new PatternToDag(pattern);
@@ -0,0 +1,301 @@
+package ca.sfu.cs.factorbase.lattice;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.sfu.cs.factorbase.data.FunctorNodesInfo;
+import ca.sfu.cs.factorbase.database.FactorBaseDataBase;
+import ca.sfu.cs.factorbase.exception.DataBaseException;
+import ca.sfu.cs.factorbase.graph.Edge;
+
+/**
+ * Class to propagate the edge information between the RChains of a relationship lattice in memory.
+ * <p>
+ * The edge tables (Path_BayesNets, InheritedEdges, NewLearnedEdges, Path_Required_Edges, Path_Forbidden_Edges,
+ * Path_Complement_Edges and ContextEdges) are loaded once and then kept up to date with set operations as the
+ * Bayesian networks of the RChains are learned, following the same rules as the SQL statements in
+ * {@link FactorBaseDataBase#collectEdgeInformation(String, boolean)} and
+ * {@link FactorBaseDataBase#propagateEdgeInformation(String, boolean)}.  The tables in the database are only updated
+ * when {@link #writeEdgeInformation(FactorBaseDataBase)} is called.
+ * </p>
+ */
+public class LatticeEdgePropagator {
+    private static final String NO_PARENT = "";
+
+    private RelationshipLattice lattice;
+    private Set<String> rnodeIDs;
+    private Map<String, Set<String>> rchainMembers;
+    private Map<String, Set<String>> rchainNodes;
+    private Map<String, Set<Edge>> learnedEdges;
+    private Map<String, Set<Edge>> inheritedEdges;
+    private Map<String, Set<Edge>> newLearnedEdges;
+    private Map<String, Set<Edge>> requiredEdges;
+    private Map<String, Set<Edge>> forbiddenEdges;
+    private Map<String, Set<Edge>> complementEdges;
+    private Map<String, Set<Edge>> contextEdges = new HashMap<String, Set<Edge>>();
+
+
+    /**
+     * Load the edge information of the given relationship lattice from the database.
+     * <p>
+     * Note: This should be done once the modelmanager_populate.sql script has been run.
+     * </p>
+     *
+     * @param database - {@code FactorBaseDataBase} to load the edge information from.
+     * @param lattice - the relationship lattice to propagate the edge information over.
+     * @throws DataBaseException if an error occurs when loading the edge information.
+     */
+    public LatticeEdgePropagator(FactorBaseDataBase database, RelationshipLattice lattice) throws DataBaseException {
+        this.lattice = lattice;
+        this.rnodeIDs = new LinkedHashSet<String>();
+        for (FunctorNodesInfo rnodeInfo : lattice.getRChainsInfo(1)) {
+            this.rnodeIDs.add(rnodeInfo.getID());
+        }
+
+        this.rchainMembers = database.getRChainMembers();
+        this.rchainNodes = database.getRChainNodes();
+        this.learnedEdges = database.getAllEdges("Path_BayesNets");
+        this.inheritedEdges = database.getAllEdges("InheritedEdges");
+        this.newLearnedEdges = database.getAllEdges("NewLearnedEdges");
+        this.requiredEdges = database.getAllEdges("Path_Required_Edges");
+        this.forbiddenEdges = database.getAllEdges("Path_Forbidden_Edges");
+        this.complementEdges = database.getAllEdges("Path_Complement_Edges");
+    }
+
+
+    /**
+     * Retrieve the edges that are required for the given RChain.
+     *
+     * @param rchain - the RChain to get the required edges for.
+     * @return a List of the edges that are required for the given RChain.
+     */
+    public synchronized List<Edge> getRequiredEdges(String rchain) {
+        return new ArrayList<Edge>(getEdges(this.requiredEdges, rchain));
+    }
+
+
+    /**
+     * Retrieve the edges that are forbidden for the given RChain.
+     *
+     * @param rchain - the RChain to get the forbidden edges for.
+     * @return a List of the edges that are forbidden for the given RChain.
+     */
+    public synchronized List<Edge> getForbiddenEdges(String rchain) {
+        return new ArrayList<Edge>(getEdges(this.forbiddenEdges, rchain));
+    }
+
+
+    /**
+     * Retrieve the edges that the given RChain has inherited from its sub-chains.
+     *
+     * @param rchain - the RChain to get the inherited edges for.
+     * @return a List of the edges that are inherited for the given RChain.
+     */
+    public synchronized List<Edge> getInheritedEdges(String rchain) {
+        return new ArrayList<Edge>(getEdges(this.inheritedEdges, rchain));
+    }
+
+
+    /**
+     * Collect the edge information propagated from the sub-chains of the given RChain, i.e. its required and forbidden
+     * edges.
+     * <p>
+     * Note: This method should only be called once {@link #propagateEdgeInformation(String, boolean)} has been called
+     *       for every sub-chain of the given RChain.
+     * </p>
+     *
+     * @param rchain - the name of the RChain to collect the edge information for.
+     * @param linkAnalysisOn - True if the LinkCorrelations setting is enabled; otherwise false.
+     */
+    public synchronized void collectEdgeInformation(String rchain, boolean linkAnalysisOn) {
+        Set<Edge> inherited = getEdges(this.inheritedEdges, rchain);
+        if (!linkAnalysisOn) {
+            addEdges(this.learnedEdges, rchain, inherited);
+        }
+
+        // Make inherited edges as required edges, while avoiding conflict edges.
+        Set<Edge> required = this.requiredEdges.computeIfAbsent(rchain, key -> new LinkedHashSet<Edge>());
+        for (Edge edge : inherited) {
+            if (
+                !inherited.contains(new Edge(edge.getChild(), edge.getParent())) &&
+                !this.rnodeIDs.contains(edge.getChild())
+            ) {
+                required.add(edge);
+            }
+        }
+
+        // Make the absent edges of the sub-chains forbidden edges, giving higher priority to the required edges in
+        // case of conflict edges.
+        Set<Edge> forbidden = this.forbiddenEdges.computeIfAbsent(rchain, key -> new LinkedHashSet<Edge>());
+        for (String subChain : this.lattice.getSubChains(rchain)) {
+            for (Edge edge : getEdges(this.complementEdges, subChain)) {
+                if (
+                    !edge.getParent().equals(NO_PARENT) &&
+                    !required.contains(edge) &&
+                    !this.rnodeIDs.contains(edge.getParent())
+                ) {
+                    forbidden.add(edge);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Record the edges learned for the given RChain, leaving out the ones that are forbidden for it.
+     *
+     * @param rchain - the RChain that the edges were learned for.
+     * @param graphEdges - the edges learned for the given RChain.
+     */
+    public synchronized void insertLearnedEdges(String rchain, List<Edge> graphEdges) {
+        Set<Edge> learned = this.learnedEdges.computeIfAbsent(rchain, key -> new LinkedHashSet<Edge>());
+        learned.addAll(graphEdges);
+        learned.removeAll(getEdges(this.forbiddenEdges, rchain));
+    }
+
+
+    /**
+     * Propagate the edge information of the given RChain to the RChains that contain it in the relationship lattice.
+     * <p>
+     * Note: This method should be called once the edges learned for the given RChain have been inserted.
+     * </p>
+     *
+     * @param rchain - the name of the RChain to propagate the edge information from.
+     * @param linkAnalysisOn - True if the LinkCorrelations setting is enabled; otherwise false.
+     */
+    public synchronized void propagateEdgeInformation(String rchain, boolean linkAnalysisOn) {
+        Set<Edge> learned = this.learnedEdges.computeIfAbsent(rchain, key -> new LinkedHashSet<Edge>());
+        Set<Edge> learnedWithParents = new LinkedHashSet<Edge>();
+        for (Edge edge : learned) {
+            if (!edge.getParent().equals(NO_PARENT)) {
+                learnedWithParents.add(edge);
+            }
+        }
+
+        // Propagate the learned edges to the RChains that contain the given RChain.
+        for (String superChain : this.lattice.getSuperChains(rchain)) {
+            addEdges(this.inheritedEdges, superChain, learnedWithParents);
+        }
+
+        if (!linkAnalysisOn) {
+            Set<Edge> newLearned = this.newLearnedEdges.computeIfAbsent(rchain, key -> new LinkedHashSet<Edge>());
+            Set<Edge> required = getEdges(this.requiredEdges, rchain);
+            for (Edge edge : learnedWithParents) {
+                if (!required.contains(edge)) {
+                    newLearned.add(edge);
+                }
+            }
+
+            Set<Edge> inherited = this.inheritedEdges.computeIfAbsent(rchain, key -> new LinkedHashSet<Edge>());
+            inherited.addAll(this.getContextEdges(rchain));
+            learned.addAll(inherited);
+        }
+
+        Set<Edge> complement = this.complementEdges.computeIfAbsent(rchain, key -> new LinkedHashSet<Edge>());
+        Set<String> nodes = getValues(this.rchainNodes, rchain);
+        for (String child : nodes) {
+            for (String parent : nodes) {
+                Edge edge = new Edge(parent, child);
+                if (!learned.contains(edge)) {
+                    complement.add(edge);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Propagate the context edges, i.e. the edges from the RNodes of an RChain to the nodes with newly learned
+     * parents, up the relationship lattice and add them to the Bayesian networks of the RChains, along with the RNodes
+     * as nodes of the Bayesian network for the longest RChain.
+     * <p>
+     * Note: This method should be called once the Bayesian networks have been learned for all the RChains.
+     * </p>
+     */
+    public synchronized void propagateContextEdges() {
+        Map<String, Set<Edge>> rnodeEdges = new HashMap<String, Set<Edge>>();
+
+        // for loop to propagate the context edges one level of the lattice at a time.
+        for (int length = 1; length <= this.lattice.getHeight(); length++) {
+            for (FunctorNodesInfo rchainInfo : this.lattice.getRChainsInfo(length)) {
+                String rchain = rchainInfo.getID();
+                Set<Edge> rchainContextEdges = this.getContextEdges(rchain);
+                if (!rchainContextEdges.isEmpty()) {
+                    this.contextEdges.put(rchain, rchainContextEdges);
+                }
+
+                Set<Edge> edges = new LinkedHashSet<Edge>(rchainContextEdges);
+                for (String subChain : this.lattice.getSubChains(rchain)) {
+                    edges.addAll(getEdges(rnodeEdges, subChain));
+                }
+
+                rnodeEdges.put(rchain, edges);
+                addEdges(this.learnedEdges, rchain, edges);
+            }
+        }
+
+        String longestRChain = this.lattice.getLongestRChain();
+        for (String rnodeID : this.rnodeIDs) {
+            addEdges(this.learnedEdges, longestRChain, Collections.singleton(new Edge(NO_PARENT, rnodeID)));
+        }
+    }
+
+
+    /**
+     * Write all the edge information to the database in bulk, replacing the content of the edge tables.
+     *
+     * @param database - {@code FactorBaseDataBase} to write the edge information to.
+     * @throws DataBaseException if an error occurs when writing the edge information.
+     */
+    public synchronized void writeEdgeInformation(FactorBaseDataBase database) throws DataBaseException {
+        database.replaceEdges("Path_BayesNets", this.learnedEdges);
+        database.replaceEdges("InheritedEdges", this.inheritedEdges);
+        database.replaceEdges("NewLearnedEdges", this.newLearnedEdges);
+        database.replaceEdges("Path_Required_Edges", this.requiredEdges);
+        database.replaceEdges("Path_Forbidden_Edges", this.forbiddenEdges);
+        database.replaceEdges("Path_Complement_Edges", this.complementEdges);
+        database.replaceEdges("ContextEdges", this.contextEdges);
+    }
+
+
+    /**
+     * Generate the context edges of the given RChain, i.e. an edge from each of its RNodes to each node that has a
+     * newly learned parent in its Bayesian network.
+     *
+     * @param rchain - the RChain to generate the context edges for.
+     * @return the context edges of the given RChain.
+     */
+    private Set<Edge> getContextEdges(String rchain) {
+        Set<Edge> edges = new LinkedHashSet<Edge>();
+        Set<String> members = getValues(this.rchainMembers, rchain);
+        for (Edge edge : getEdges(this.newLearnedEdges, rchain)) {
+            for (String member : members) {
+                edges.add(new Edge(member, edge.getChild()));
+            }
+        }
+
+        return edges;
+    }
+
+
+    private static Set<Edge> getEdges(Map<String, Set<Edge>> edges, String rchain) {
+        return edges.getOrDefault(rchain, Collections.emptySet());
+    }
+
+
+    private static Set<String> getValues(Map<String, Set<String>> values, String rchain) {
+        return values.getOrDefault(rchain, Collections.emptySet());
+    }
+
+
+    private static void addEdges(Map<String, Set<Edge>> edges, String rchain, Set<Edge> newEdges) {
+        if (!newEdges.isEmpty()) {
+            edges.computeIfAbsent(rchain, key -> new LinkedHashSet<Edge>()).addAll(newEdges);
+        }
+    }
+}
@@ -74,6 +74,8 @@ public class LatticeGenerator {
                 );
             }
 
+            addRChainRelationships(dbConnection, lattice);
+
             return lattice;
         }
     }
@@ -129,11 +131,46 @@ public class LatticeGenerator {
                 );
             }
 
+            addRChainRelationships(dbConnection, lattice);
+
             return lattice;
         }
     }
 
 
+    /**
+     * Add the sub-chain to super-chain relationships stored in the lattice_rel table to the given lattice.
+     *
+     * @param dbConnection - connection to the database containing the lattice_rel table to read from.
+     * @param lattice - the relationship lattice to add the relationships to.
+     * @throws SQLException if an issue occurs when attempting to retrieve the information.
+     */
+    private static void addRChainRelationships(
+        Connection dbConnection,
+        RelationshipLattice lattice
+    ) throws SQLException {
+        try (
+            Statement statement = dbConnection.createStatement();
+            ResultSet results = statement.executeQuery(
+                "SELECT " +
+                    "parent, " +
+                    "child " +
+                "FROM " +
+                    "lattice_rel " +
+                "WHERE " +
+                    "parent <> 'EmptySet';"
+            )
+        ) {
+            while(results.next()) {
+                lattice.addRChainRelationship(
+                    results.getString("parent"),
+                    results.getString("child")
+                );
+            }
+        }
+    }
+
+
     /**
      * Retrieve all the functor node information for the given RChain.
      *
@@ -0,0 +1,188 @@
+package ca.sfu.cs.factorbase.lattice;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+import ca.sfu.cs.factorbase.data.FunctorNodesInfo;
+import ca.sfu.cs.factorbase.util.RuntimeLogger;
+
+/**
+ * Class to run a task for each RChain of a {@code RelationshipLattice} by following the dependencies between the
+ * RChains rather than the levels of the lattice.
+ * <p>
+ * The task for an RChain is started as soon as the tasks for all of its sub-chains have finished, so a slow RChain only
+ * holds up the RChains that contain it instead of every RChain at the next level of the lattice.
+ * </p>
+ */
+public class LatticeScheduler {
+    private static Logger logger = Logger.getLogger(LatticeScheduler.class.getName());
+    private RelationshipLattice lattice;
+    private int numberOfThreads;
+    private Map<String, Long> startTimes = new ConcurrentHashMap<String, Long>();
+    private Map<String, Long> finishTimes = new ConcurrentHashMap<String, Long>();
+
+
+    /**
+     * Create a scheduler for the RChains of the given relationship lattice.
+     *
+     * @param lattice - the relationship lattice containing the RChains to run the tasks for.
+     * @param numberOfThreads - the maximum number of tasks to run at the same time.
+     */
+    public LatticeScheduler(RelationshipLattice lattice, int numberOfThreads) {
+        this.lattice = lattice;
+        this.numberOfThreads = Math.max(1, numberOfThreads);
+    }
+
+
+    /**
+     * Run the given task for every RChain in the relationship lattice, starting the task for an RChain once the task
+     * has finished for all of its sub-chains.
+     *
+     * @param task - the task to run for each RChain.
+     * @throws ExecutionException if the task fails for one of the RChains, the cause is the exception thrown by the
+     *                            task.
+     * @throws InterruptedException if the thread is interrupted while waiting for the tasks to finish.
+     * @throws IllegalStateException if the task was never started for some of the RChains because the task didn't
+     *                               finish for all of their sub-chains, e.g. a sub-chain isn't in the lattice.
+     */
+    public void run(LatticePointTask task) throws ExecutionException, InterruptedException {
+        Map<String, FunctorNodesInfo> rchainInfos = new HashMap<String, FunctorNodesInfo>();
+        Map<String, Integer> remainingSubChains = new HashMap<String, Integer>();
+        List<String> readyRChains = new ArrayList<String>();
+
+        // for loop to find the number of sub-chains that need to finish before each RChain can be started.
+        for (int level = 1; level <= this.lattice.getHeight(); level++) {
+            List<FunctorNodesInfo> levelInfos = this.lattice.getRChainsInfo(level);
+            if (levelInfos == null) {
+                continue;
+            }
+
+            for (FunctorNodesInfo rchainInfo : levelInfos) {
+                String rchain = rchainInfo.getID();
+                int numberOfSubChains = this.lattice.getSubChains(rchain).size();
+                rchainInfos.put(rchain, rchainInfo);
+                remainingSubChains.put(rchain, numberOfSubChains);
+                if (numberOfSubChains == 0) {
+                    readyRChains.add(rchain);
+                }
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(this.numberOfThreads);
+        CompletionService<String> completionService = new ExecutorCompletionService<String>(executor);
+        int numberOfSubmittedTasks = 0;
+
+        try {
+            for (String rchain : readyRChains) {
+                this.submit(completionService, task, rchainInfos.get(rchain));
+                numberOfSubmittedTasks++;
+            }
+
+            // for loop to start the RChains whose sub-chains have all finished.
+            for (int numberOfFinishedTasks = 0; numberOfFinishedTasks < numberOfSubmittedTasks; numberOfFinishedTasks++) {
+                String finishedRChain = completionService.take().get();
+
+                for (String superChain : this.lattice.getSuperChains(finishedRChain)) {
+                    Integer remaining = remainingSubChains.computeIfPresent(
+                        superChain,
+                        (rchain, count) -> count - 1
+                    );
+
+                    if (remaining != null && remaining == 0) {
+                        this.submit(completionService, task, rchainInfos.get(superChain));
+                        numberOfSubmittedTasks++;
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // An RChain is never started if one of its sub-chains isn't in the lattice or never finishes.
+        if (numberOfSubmittedTasks != rchainInfos.size()) {
+            List<String> unstartedRChains = new ArrayList<String>();
+            for (Map.Entry<String, Integer> entry : remainingSubChains.entrySet()) {
+                if (entry.getValue() > 0) {
+                    unstartedRChains.add(entry.getKey());
+                }
+            }
+
+            Collections.sort(unstartedRChains);
+            throw new IllegalStateException(
+                "The sub-chains of the following RChains never all finished, so they were never started: " +
+                String.join(", ", unstartedRChains)
+            );
+        }
+    }
+
+
+    /**
+     * Submit the given task for the given RChain, recording when it starts and finishes.
+     *
+     * @param completionService - the service to submit the task to.
+     * @param task - the task to run.
+     * @param rchainInfo - the functor node information of the RChain to run the task for.
+     */
+    private void submit(
+        CompletionService<String> completionService,
+        LatticePointTask task,
+        FunctorNodesInfo rchainInfo
+    ) {
+        completionService.submit(() -> {
+            String rchain = rchainInfo.getID();
+            long start = System.currentTimeMillis();
+            this.startTimes.put(rchain, start);
+            task.execute(rchainInfo);
+            long end = System.currentTimeMillis();
+            this.finishTimes.put(rchain, end);
+            RuntimeLogger.logRunTimeDetails(logger, "Lattice Point " + rchain, start, end);
+
+            return rchain;
+        });
+    }
+
+
+    /**
+     * Retrieve the times (ms) that the task was started for each RChain.
+     *
+     * @return a Map containing key:value pairs of RChain:start-time.
+     */
+    public Map<String, Long> getStartTimes() {
+        return Collections.unmodifiableMap(this.startTimes);
+    }
+
+
+    /**
+     * Retrieve the times (ms) that the task finished for each RChain.
+     *
+     * @return a Map containing key:value pairs of RChain:finish-time.
+     */
+    public Map<String, Long> getFinishTimes() {
+        return Collections.unmodifiableMap(this.finishTimes);
+    }
+
+
+    /**
+     * Task to run for a single RChain in the relationship lattice.
+     */
+    @FunctionalInterface
+    public interface LatticePointTask {
+        /**
+         * Run the task for the given RChain.
+         *
+         * @param rchainInfo - the functor node information of the RChain to run the task for.
+         * @throws Exception if an error occurs when running the task.
+         */
+        void execute(FunctorNodesInfo rchainInfo) throws Exception;
+    }
+}
@@ -1,6 +1,7 @@
 package ca.sfu.cs.factorbase.lattice;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -12,6 +13,8 @@ import ca.sfu.cs.factorbase.data.FunctorNodesInfo;
  */
 public class RelationshipLattice {
     private Map<Integer, List<FunctorNodesInfo>> rchainInfosPerLevel = new HashMap<Integer, List<FunctorNodesInfo>>();
+    private Map<String, List<String>> subChains = new HashMap<String, List<String>>();
+    private Map<String, List<String>> superChains = new HashMap<String, List<String>>();
     private int latticeHeight = 0;
     private String longestRChain;
 
@@ -72,4 +75,49 @@ public class RelationshipLattice {
     public List<FunctorNodesInfo> getRChainsInfo(int length) {
         return this.rchainInfosPerLevel.get(length);
     }
-}
\ No newline at end of file
+
+
+    /**
+     * Record that the given sub-chain is one RNode shorter than the given super-chain and is contained in it, i.e. a
+     * parent-child relationship from the lattice_rel table.
+     *
+     * @param subChain - the name of the RChain with one less RNode.
+     * @param superChain - the name of the RChain that contains the sub-chain.
+     */
+    public void addRChainRelationship(String subChain, String superChain) {
+        this.subChains.computeIfAbsent(
+            superChain,
+            _superChain -> new ArrayList<String>()
+        ).add(subChain);
+
+        this.superChains.computeIfAbsent(
+            subChain,
+            _subChain -> new ArrayList<String>()
+        ).add(superChain);
+    }
+
+
+    /**
+     * Retrieve the names of the RChains that the given RChain directly depends on, i.e. its sub-chains that are one
+     * RNode shorter.
+     *
+     * @param rchain - the name of the RChain to retrieve the sub-chains for.
+     * @return the names of the sub-chains of the given RChain, empty if the RChain has a length of 1.
+     */
+    public List<String> getSubChains(String rchain) {
+        return this.subChains.getOrDefault(rchain, Collections.emptyList());
+    }
+
+
+    /**
+     * Retrieve the names of the RChains that directly depend on the given RChain, i.e. its super-chains that are one
+     * RNode longer.
+     *
+     * @param rchain - the name of the RChain to retrieve the super-chains for.
+     * @return the names of the super-chains of the given RChain, empty if the RChain is not contained in any longer
+     *         RChain.
+     */
+    public List<String> getSuperChains(String rchain) {
+        return this.superChains.getOrDefault(rchain, Collections.emptyList());
+    }
+}
@@ -44,14 +44,26 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import nu.xom.ParsingException;
 import ca.sfu.cs.common.Configuration.Config;
+import ca.sfu.cs.factorbase.data.ContingencyTableGenerator;
+import ca.sfu.cs.factorbase.data.DataExtractor;
+import ca.sfu.cs.factorbase.data.DataSet;
+import ca.sfu.cs.factorbase.data.DataSetPrefetcher;
 import ca.sfu.cs.factorbase.data.FunctorNodesInfo;
+import ca.sfu.cs.factorbase.data.MySQLDataExtractor;
 import ca.sfu.cs.factorbase.database.FactorBaseDataBase;
 import ca.sfu.cs.factorbase.database.MySQLFactorBaseDataBase;
 import ca.sfu.cs.factorbase.exception.DataBaseException;
@@ -61,7 +73,13 @@ import ca.sfu.cs.factorbase.exporter.bifexporter.BIF_Generator;
 import ca.sfu.cs.factorbase.exporter.bifexporter.bif.BIFExport;
 import ca.sfu.cs.factorbase.graph.Edge;
 import ca.sfu.cs.factorbase.jbn.BayesNet_Learning_main;
+import ca.sfu.cs.factorbase.lattice.LatticeEdgePropagator;
+import ca.sfu.cs.factorbase.lattice.LatticeScheduler;
 import ca.sfu.cs.factorbase.lattice.RelationshipLattice;
+import ca.sfu.cs.factorbase.search.BDeuHyperparameters;
+import ca.sfu.cs.factorbase.search.LocalScoreCache;
+import ca.sfu.cs.factorbase.search.SearchBudget;
+import ca.sfu.cs.factorbase.search.SearchEngine;
 import ca.sfu.cs.factorbase.util.MySQLScriptRunner;
 import ca.sfu.cs.factorbase.util.RuntimeLogger;
 
@@ -81,6 +99,23 @@ public class BayesBaseH {
     static boolean linkAnalysis;
     static boolean Flag_UseLocal_CT; //zqian June 18, 2014
     static boolean SkipParameterLearning;
+    static int learningThreads;
+    static int prefetchDepth;
+    static long prefetchMemoryBudget;
+    static CTTableQueue ctTableQueue;
+    static DataSetPrefetcher dataSetPrefetcher;
+    static boolean warmStart;
+    static Map<String, LocalScoreCache> scoreCaches = new ConcurrentHashMap<String, LocalScoreCache>();
+    static long searchTimeLimit;
+    static long searchScoreEvaluationLimit;
+    static long searchTimeBudget;
+    static Map<String, Long> searchTimeLimits = new HashMap<String, Long>();
+    static List<BDeuHyperparameters> hyperparameterGrid = Collections.emptyList();
+    static int bootstrapReplicates;
+    static int bootstrapThreads;
+    static long bootstrapSeed;
+    static boolean inMemoryEdgePropagation;
+    static LatticeEdgePropagator edgePropagator;
 
 
     /**
@@ -104,12 +139,41 @@ public class BayesBaseH {
      * @throws DataExtractionException if a non database error occurs when retrieving the DataExtractor.
      * @throws DataBaseException if a database error occurs when retrieving the DataExtractor.
      * @throws ScoringException if an error occurs when trying to compute the score for the graphs being generated.
+     * @throws InterruptedException if the thread is interrupted while waiting for the structure learning to finish.
      */
     public static void runBBH(
         FactorBaseDataBase database,
         RelationshipLattice globalLattice,
         CountingStrategy countingStrategy
-    ) throws SQLException, IOException, DataBaseException, DataExtractionException, ParsingException, ScoringException {
+    ) throws SQLException, IOException, DataBaseException, DataExtractionException, ParsingException, ScoringException, InterruptedException {
+        runBBH(database, globalLattice, countingStrategy, null);
+    }
+
+
+    /**
+     * Carry out the structure and parameter learning of the Bayesian network for the input database, learning the
+     * structure for each PVariable and RChain as soon as its CT table has been handed off by the given queue.
+     *
+     * @param database - {@code FactorBaseDataBase} to help extract the necessary information required to learn a
+     *                   Bayesian network for the input database.
+     * @param countingStrategy - the counting strategy to use during structure learning.
+     * @param queue - {@link CTTableQueue} that the CT tables are handed off with while they are being built, or null if
+     *                the CT tables have already been built.
+     * @throws IOException if there are issues reading and writing various files.
+     * @throws SQLException if there are issues executing the SQL queries.
+     * @throws ParsingException if there are issues reading the BIF file.
+     * @throws DataExtractionException if a non database error occurs when retrieving the DataExtractor.
+     * @throws DataBaseException if a database error occurs when retrieving the DataExtractor or building the CT tables.
+     * @throws ScoringException if an error occurs when trying to compute the score for the graphs being generated.
+     * @throws InterruptedException if the thread is interrupted while waiting for the structure learning to finish.
+     */
+    public static void runBBH(
+        FactorBaseDataBase database,
+        RelationshipLattice globalLattice,
+        CountingStrategy countingStrategy,
+        CTTableQueue queue
+    ) throws SQLException, IOException, DataBaseException, DataExtractionException, ParsingException, ScoringException, InterruptedException {
+        ctTableQueue = queue;
         initProgram(FirstRunning);
         connectDB();
 
@@ -130,6 +194,13 @@ public class BayesBaseH {
 
         RuntimeLogger.logRunTime(logger, "Structure Learning", start, System.currentTimeMillis());
 
+        // Make sure all the CT tables have been built before they are used for the parameter learning.  The CT tables
+        // that weren't taken by the structure learning shouldn't hold up the rest of the construction.
+        if (ctTableQueue != null) {
+            ctTableQueue.learningDone();
+            ctTableQueue.awaitClosed();
+        }
+
         // Change the CallLogs table to use the InnoDB storage engine so that we retain the data even if the server is
         // turned off.
         try (Statement st = con2.createStatement()) {
@@ -208,31 +279,64 @@ public class BayesBaseH {
         Connection conn,
         CountingStrategy countingStrategy,
         RelationshipLattice lattice
-    ) throws SQLException, IOException, DataBaseException, DataExtractionException, ParsingException, ScoringException {
-        // Handle pvars.
-        if (countingStrategy.isPrecount()) {
-            learnStructurePVars(database); // import @zqian
-        } else {
-            learnStructurePVarsOnDemand(database);
+    ) throws SQLException, IOException, DataBaseException, DataExtractionException, ParsingException, ScoringException, InterruptedException {
+        allocateSearchTimeBudget(database, lattice);
+
+        // Extract the CT tables for the upcoming lattice points in the background if specified to.
+        if (countingStrategy.isPrecount() && prefetchDepth > 0) {
+            Map<String, FunctorNodesInfo> learningOrder = getLearningOrder(database, lattice);
+            dataSetPrefetcher = new DataSetPrefetcher(
+                new ArrayList<String>(learningOrder.keySet()),
+                id -> prefetchCTDataExtractor(database, id),
+                id -> estimateCTDataSetSize(learningOrder.get(id)),
+                prefetchDepth,
+                prefetchMemoryBudget
+            );
+            dataSetPrefetcher.start();
         }
 
-        // Set up Bayesian Network structure information, which comes from the database schema and entity Bayesian
-        // Networks learned up to now, to propagate to the structure learning for RChains.
-        MySQLScriptRunner.runScript(
-            conn,
-            Config.SCRIPTS_DIRECTORY + "modelmanager_populate.sql",
-            databaseName
-        );
+        try {
+            // Handle pvars.
+            if (countingStrategy.isPrecount()) {
+                learnStructurePVars(database); // import @zqian
+            } else {
+                learnStructurePVarsOnDemand(database);
+            }
 
-        // Handle rnodes in a bottom-up way following the lattice.
-        if (countingStrategy.isPrecount()) {
-            learnStructureRChains(database, lattice);
-        } else {
-            learnStructureRChainsOnDemand(database, lattice);
+            // Set up Bayesian Network structure information, which comes from the database schema and entity Bayesian
+            // Networks learned up to now, to propagate to the structure learning for RChains.
+            MySQLScriptRunner.runScript(
+                conn,
+                Config.SCRIPTS_DIRECTORY + "modelmanager_populate.sql",
+                databaseName
+            );
+
+            // Propagate the edge information between the RChains in memory if specified to.
+            if (inMemoryEdgePropagation) {
+                edgePropagator = new LatticeEdgePropagator(database, lattice);
+            }
+
+            // Handle rnodes in a bottom-up way following the lattice.
+            if (countingStrategy.isPrecount()) {
+                learnStructureRChains(database, lattice);
+            } else {
+                learnStructureRChainsOnDemand(database, lattice);
+            }
+        } finally {
+            if (dataSetPrefetcher != null) {
+                dataSetPrefetcher.stop();
+                dataSetPrefetcher = null;
+            }
         }
 
         // Population lattice.
-        PropagateContextEdges(lattice.getHeight());
+        if (edgePropagator != null) {
+            edgePropagator.propagateContextEdges();
+            edgePropagator.writeEdgeInformation(database);
+            edgePropagator = null;
+        } else {
+            PropagateContextEdges(lattice.getHeight());
+        }
 
         /**
          * OS May 23. 2014 This looks like a much too complicated way to find the context edges. How about this:
@@ -289,6 +393,39 @@ public class BayesBaseH {
         String strLinkAnalysis = conf.getProperty("LinkCorrelations");
         linkAnalysis = strLinkAnalysis.equalsIgnoreCase("1");
         SkipParameterLearning = conf.getProperty("SkipParameterLearning").equalsIgnoreCase("1");
+        learningThreads = Integer.parseInt(conf.getProperty("LearningThreads", "1"));
+        prefetchDepth = Integer.parseInt(conf.getProperty("PrefetchDepth", "0"));
+        prefetchMemoryBudget = Long.parseLong(conf.getProperty("PrefetchMemoryMB", "512")) * 1024 * 1024;
+        warmStart = conf.getProperty("WarmStartSearch", "0").equals("1");
+        searchTimeLimit = Long.parseLong(conf.getProperty("SearchTimeLimit", "0")) * 1000;
+        searchScoreEvaluationLimit = Long.parseLong(conf.getProperty("SearchScoreEvaluationLimit", "0"));
+        searchTimeBudget = Long.parseLong(conf.getProperty("SearchTimeBudget", "0")) * 1000;
+        SearchEngine searchEngine = SearchEngine.determineEngine(conf.getProperty("SearchEngine", "0"));
+        logger.info("Search Engine: " + searchEngine);
+        BayesNet_Learning_main.setSearchEngine(
+            searchEngine,
+            Integer.parseInt(conf.getProperty("SearchThreads", "1")),
+            Integer.parseInt(conf.getProperty("TabuListSize", "0")),
+            Integer.parseInt(conf.getProperty("MaxNonImprovingMoves", "0"))
+        );
+        BayesNet_Learning_main.setExactSearch(
+            Integer.parseInt(conf.getProperty("ExactSearchMaxNodes", "0")),
+            Integer.parseInt(conf.getProperty("ExactSearchMaxParents", "3"))
+        );
+        BayesNet_Learning_main.setCandidateParents(
+            Integer.parseInt(conf.getProperty("CandidateParents", "0")),
+            Integer.parseInt(conf.getProperty("CandidateReselections", "0"))
+        );
+        BayesNet_Learning_main.setSearchRestarts(
+            Integer.parseInt(conf.getProperty("SearchRestarts", "0")),
+            Integer.parseInt(conf.getProperty("RestartEdges", "3")),
+            Long.parseLong(conf.getProperty("RestartSeed", "0"))
+        );
+        hyperparameterGrid = BDeuHyperparameters.parseGrid(conf.getProperty("HyperparameterGrid", ""));
+        bootstrapReplicates = Integer.parseInt(conf.getProperty("BootstrapReplicates", "0"));
+        bootstrapThreads = Integer.parseInt(conf.getProperty("BootstrapThreads", "1"));
+        bootstrapSeed = Long.parseLong(conf.getProperty("BootstrapSeed", "0"));
+        inMemoryEdgePropagation = conf.getProperty("InMemoryEdgePropagation", "0").equals("1");
 
         //zqian June 18, 2014
         String UseLocal_CT = conf.getProperty( "UseLocal_CT" );
@@ -331,10 +468,11 @@ public class BayesBaseH {
      * @throws DataExtractionException if a non database error occurs when retrieving the DataExtractor.
      * @throws ParsingException if there are issues reading the BIF file.
      * @throws ScoringException if an error occurs when trying to compute the score for the graphs being generated.
+     * @throws InterruptedException if the thread is interrupted while waiting for a CT table to be built.
      */
     private static void learnStructurePVars(
         FactorBaseDataBase database
-    ) throws DataBaseException, SQLException, DataExtractionException, IOException, ParsingException, ScoringException {
+    ) throws DataBaseException, SQLException, DataExtractionException, IOException, ParsingException, ScoringException, InterruptedException {
         // Retrieve all the PVariables.
         List<String> pvar_ids = database.getPVariablesFunctorNodeInfo().stream().map(
             functorNodeInfo -> functorNodeInfo.getID()
@@ -343,6 +481,7 @@ public class BayesBaseH {
         String NoTuples = "";
         for(String id : pvar_ids) {
             logger.fine("\nStarting Learning the BN Structure of pvar_ids: " + id + "\n");
+            DataExtractor dataExtractor = takeCTDataExtractor(database, id);
             Statement st = con3.createStatement();
             ResultSet rs = st.executeQuery("SELECT count(*) FROM `" + id + "_counts`;"); // Optimize this query, too slow, Nov 13, zqian.
             while(rs.next()) {
@@ -351,9 +490,15 @@ public class BayesBaseH {
             }
 
             if (Integer.parseInt(NoTuples) > 1) {
-                List<Edge> graphEdges = BayesNet_Learning_main.tetradLearner(
-                    database.getAndRemoveCTDataExtractor(id),
-                    !cont.equals("1")
+                List<Edge> graphEdges = learnGraph(
+                    database,
+                    id,
+                    dataExtractor,
+                    null,
+                    null,
+                    null,
+                    null,
+                    "Entity_BayesNets_Frequencies"
                 );
 //O.S. Oct 16, 2019. should allow background knowledge specified by user. Cf. with tetradLearner in handleRchains
                 
@@ -409,11 +554,16 @@ public class BayesBaseH {
             String id = pvarFunctorNodeInfo.getID();
             logger.fine("\nStarting Learning the BN Structure of pvar_ids: " + id + "\n");
 
+            SearchBudget searchBudget = createSearchBudget(id);
             List<Edge> graphEdges = BayesNet_Learning_main.tetradLearner(
                 database,
                 pvarFunctorNodeInfo,
+                null,
+                null,
+                searchBudget,
                 !cont.equals("1")
             );
+            logSearchProgress(id, searchBudget);
 
             database.insertLearnedEdges(id, graphEdges, "Entity_BayesNets", false);
 
@@ -422,62 +572,102 @@ public class BayesBaseH {
     }
 
 
+    /**
+     * Learn the Bayesian network structure for the chains of RNodes (RChains), starting the learning for an RChain as
+     * soon as the learning for all of its sub-chains is done.
+     *
+     * @param database - {@code FactorBaseDataBase} to help extract the necessary information required to learn a
+     *                   Bayesian network for chains of RNodes.
+     * @param lattice - global relationship lattice for the input database.
+     * @throws SQLException if there are issues executing the SQL queries.
+     * @throws IOException if there are issues generating the BIF file.
+     * @throws DataBaseException if a database error occurs when retrieving the DataExtractor.
+     * @throws DataExtractionException if a non database error occurs when retrieving the DataExtractor.
+     * @throws ParsingException if there are issues reading the BIF file.
+     * @throws ScoringException if an error occurs when trying to compute the score for the graphs being generated.
+     * @throws InterruptedException if the thread is interrupted while waiting for the learning to finish.
+     */
     private static void learnStructureRChains(
         FactorBaseDataBase database,
         RelationshipLattice lattice
-    ) throws SQLException, IOException, DataBaseException, DataExtractionException, ParsingException, ScoringException {
-        // for loop to build the Bayesian network by following the relationship lattice in a bottom-up manner.
-        for(int len = 1; len <= lattice.getHeight(); len++) {
-            List<String> rnode_ids = lattice.getRChainsInfo(len).stream().map(
-                functorNodeInfo -> functorNodeInfo.getID()
-            ).collect(Collectors.toList());
-
-            // Retrieve the required edge information.
-            List<Edge> requiredEdges = database.getRequiredEdges(rnode_ids);
-
-            // Retrieve the forbidden edge information.
-            List<Edge> forbiddenEdges = database.getForbiddenEdges(rnode_ids);
-
-            // for loop to build the Bayesian network for each RChain at the currently specified length.
-            String NoTuples = "";
-            for(String id : rnode_ids) {
-                logger.fine("\nStarting Learning the BN Structure of rnode_ids: " + id + "\n");
-                Statement mapping_st = con2.createStatement();
-                Statement st = con3.createStatement();
-                ResultSet rnidMappingResult = mapping_st.executeQuery(
-                    "SELECT short_rnid " +
-                    "FROM lattice_mapping " +
-                    "WHERE lattice_mapping.orig_rnid = '" + id + "';"
-                );
-                rnidMappingResult.absolute(1);
-                String short_rnid = rnidMappingResult.getString("short_rnid");
-                ResultSet rs = st.executeQuery(
-                    "SELECT COUNT(*) " +
-                    "FROM `" + short_rnid + "_CT`;"
-                ); // Oct 2nd, Why not check the csv file directly? faster for larger CT? Oct 23, Comment from: Unknown since lacking Git history.
-
-                while(rs.next()) {
-                    NoTuples = rs.getString(1);
-                    logger.fine("NoTuples : " + NoTuples);
-                }
+    ) throws SQLException, IOException, DataBaseException, DataExtractionException, ParsingException, ScoringException, InterruptedException {
+        LatticeScheduler scheduler = new LatticeScheduler(lattice, learningThreads);
 
-                if(Integer.parseInt(NoTuples) > 1) {
-                    List<Edge> graphEdges = BayesNet_Learning_main.tetradLearner(
-                        database.getAndRemoveCTDataExtractor(id),
-                        requiredEdges,
-                        forbiddenEdges,
-                        !cont.equals("1")
-                    );
+        try {
+            scheduler.run(rchainInfo -> learnStructureRChain(database, lattice, rchainInfo.getID()));
+        } catch (ExecutionException e) {
+            rethrowLearningException(e);
+        } finally {
+            scoreCaches.clear();
+        }
+    }
 
-                    logger.fine("The BN Structure Learning for rnode_id:" + id + "is done."); //@zqian Test
-                    database.insertLearnedEdges(id, graphEdges, "Path_BayesNets", true);
-                }
-            }
 
-            database.propagateEdgeInformation(len, linkAnalysis);
+    /**
+     * Learn the Bayesian network structure for a single RChain using its precomputed CT table.
+     *
+     * @param database - {@code FactorBaseDataBase} to help extract the necessary information required to learn a
+     *                   Bayesian network for the RChain.
+     * @param lattice - global relationship lattice for the input database.
+     * @param id - the name of the RChain to learn the Bayesian network structure for.
+     * @throws SQLException if there are issues executing the SQL queries.
+     * @throws IOException if there are issues generating the BIF file.
+     * @throws DataBaseException if a database error occurs when retrieving the DataExtractor.
+     * @throws DataExtractionException if a non database error occurs when retrieving the DataExtractor.
+     * @throws ParsingException if there are issues reading the BIF file.
+     * @throws ScoringException if an error occurs when trying to compute the score for the graphs being generated.
+     * @throws InterruptedException if the thread is interrupted while waiting for the CT table to be built.
+     */
+    private static void learnStructureRChain(
+        FactorBaseDataBase database,
+        RelationshipLattice lattice,
+        String id
+    ) throws SQLException, IOException, DataBaseException, DataExtractionException, ParsingException, ScoringException, InterruptedException {
+        logger.fine("\nStarting Learning the BN Structure of rnode_ids: " + id + "\n");
+
+        // Retrieve the edge information from the sub-chains, which have all been learned at this point.
+        collectEdgeInformation(database, id);
+        List<Edge> requiredEdges = getRequiredEdges(database, id);
+        List<Edge> forbiddenEdges = getForbiddenEdges(database, id);
+
+        // Start the search from the structure learned for the sub-chains if specified to.
+        List<Edge> initialEdges = null;
+        LocalScoreCache scoreCache = null;
+        if (warmStart) {
+            initialEdges = getInheritedEdges(database, id);
+            scoreCache = createScoreCache(database, lattice, id);
+        }
+
+        // Count the tuples of the CT table in memory, since the "_CT" table isn't written to the CT database when the
+        // Mobius Join is done in memory without MobiusJoinWriteBack.
+        DataSet ctDataSet = takeCTDataExtractor(database, id).extractData();
+        DataExtractor dataExtractor = () -> ctDataSet;
+        int NoTuples = ctDataSet.getMetaData().getNumberOfRows();
+        logger.fine("NoTuples : " + NoTuples);
+
+        if (NoTuples > 1) {
+            List<Edge> graphEdges = learnGraph(
+                database,
+                id,
+                dataExtractor,
+                requiredEdges,
+                forbiddenEdges,
+                initialEdges,
+                scoreCache,
+                "Path_BayesNets_Frequencies"
+            );
+
+            logger.fine("The BN Structure Learning for rnode_id:" + id + "is done."); //@zqian Test
+            insertLearnedEdges(database, id, graphEdges);
+        }
 
-            logger.fine(" Import is done for length = " + len + "."); // @zqian Test
+        propagateEdgeInformation(database, id);
+
+        if (scoreCache != null) {
+            scoreCaches.put(id, scoreCache);
         }
+
+        logger.fine(" Import is done for " + id + "."); // @zqian Test
     }
 
 
@@ -492,43 +682,601 @@ public class BayesBaseH {
      * @throws DataBaseException if a database error occurs when retrieving the information from the database.
      * @throws ParsingException if there are issues reading the BIF file.
      * @throws ScoringException if an error occurs when trying to compute the score for the graphs being generated.
+     * @throws InterruptedException if the thread is interrupted while waiting for the learning to finish.
      */
     private static void learnStructureRChainsOnDemand(
         FactorBaseDataBase database,
         RelationshipLattice lattice
-    ) throws SQLException, IOException, DataBaseException, ParsingException, ScoringException {
-        // for loop to build the Bayesian network by following the relationship lattice in a bottom-up manner.
-        for(int height = 1; height <= lattice.getHeight(); height++) {
-            List<FunctorNodesInfo> rchainFunctorNodeInfos = lattice.getRChainsInfo(height);
-            List<String> rchainIDs = rchainFunctorNodeInfos.stream().map(
-                functorNodeInfo -> functorNodeInfo.getID()
-            ).collect(Collectors.toList());
-
-            // Retrieve the required edge information.
-            List<Edge> requiredEdges = database.getRequiredEdges(rchainIDs);
-
-            // Retrieve the forbidden edge information.
-            List<Edge> forbiddenEdges = database.getForbiddenEdges(rchainIDs);
-
-            // for loop to build the Bayesian network for each RChain at the currently specified length.
-            for(FunctorNodesInfo rchainFunctorNodeInfo : rchainFunctorNodeInfos) {
+    ) throws SQLException, IOException, DataBaseException, ParsingException, ScoringException, InterruptedException {
+        LatticeScheduler scheduler = new LatticeScheduler(lattice, learningThreads);
+
+        try {
+            scheduler.run(rchainFunctorNodeInfo -> {
                 String rchainID = rchainFunctorNodeInfo.getID();
                 logger.fine("\nStart Learning the BN Structure of the RChain: " + rchainID + "\n");
+
+                // Retrieve the edge information from the sub-chains, which have all been learned at this point.
+                collectEdgeInformation(database, rchainID);
+                List<Edge> requiredEdges = getRequiredEdges(database, rchainID);
+                List<Edge> forbiddenEdges = getForbiddenEdges(database, rchainID);
+
+                SearchBudget searchBudget = createSearchBudget(rchainID);
                 List<Edge> graphEdges = BayesNet_Learning_main.tetradLearner(
                     database,
                     rchainFunctorNodeInfo,
                     requiredEdges,
                     forbiddenEdges,
+                    searchBudget,
                     !cont.equals("1")
                 );
+                logSearchProgress(rchainID, searchBudget);
 
                 logger.fine("The BN Structure Learning for RChain:" + rchainID + "is done.");
-                database.insertLearnedEdges(rchainID, graphEdges, "Path_BayesNets", true);
+                insertLearnedEdges(database, rchainID, graphEdges);
+                propagateEdgeInformation(database, rchainID);
+            });
+        } catch (ExecutionException e) {
+            rethrowLearningException(e);
+        }
+    }
+
+
+    /**
+     * Collect the edge information propagated from the sub-chains of the given RChain, either in memory or in the
+     * database depending on the InMemoryEdgePropagation setting.
+     *
+     * @param database - {@code FactorBaseDataBase} to collect the edge information in.
+     * @param rchain - the name of the RChain to collect the edge information for.
+     * @throws DataBaseException if an error occurs when collecting the information.
+     */
+    private static void collectEdgeInformation(FactorBaseDataBase database, String rchain) throws DataBaseException {
+        if (edgePropagator != null) {
+            edgePropagator.collectEdgeInformation(rchain, linkAnalysis);
+        } else {
+            database.collectEdgeInformation(rchain, linkAnalysis);
+        }
+    }
+
+
+    /**
+     * Retrieve the edges that are required for the given RChain.
+     *
+     * @param database - {@code FactorBaseDataBase} to retrieve the edges from.
+     * @param rchain - the RChain to get the required edges for.
+     * @return a List of the edges that are required for the given RChain.
+     * @throws DataBaseException if an error occurs when attempting to retrieve the information.
+     */
+    private static List<Edge> getRequiredEdges(FactorBaseDataBase database, String rchain) throws DataBaseException {
+        if (edgePropagator != null) {
+            return edgePropagator.getRequiredEdges(rchain);
+        }
+
+        return database.getRequiredEdges(Collections.singletonList(rchain));
+    }
+
+
+    /**
+     * Retrieve the edges that are forbidden for the given RChain.
+     *
+     * @param database - {@code FactorBaseDataBase} to retrieve the edges from.
+     * @param rchain - the RChain to get the forbidden edges for.
+     * @return a List of the edges that are forbidden for the given RChain.
+     * @throws DataBaseException if an error occurs when attempting to retrieve the information.
+     */
+    private static List<Edge> getForbiddenEdges(FactorBaseDataBase database, String rchain) throws DataBaseException {
+        if (edgePropagator != null) {
+            return edgePropagator.getForbiddenEdges(rchain);
+        }
+
+        return database.getForbiddenEdges(Collections.singletonList(rchain));
+    }
+
+
+    /**
+     * Retrieve the edges that the given RChain has inherited from its sub-chains.
+     *
+     * @param database - {@code FactorBaseDataBase} to retrieve the edges from.
+     * @param rchain - the RChain to get the inherited edges for.
+     * @return a List of the edges that are inherited for the given RChain.
+     * @throws DataBaseException if an error occurs when attempting to retrieve the information.
+     */
+    private static List<Edge> getInheritedEdges(FactorBaseDataBase database, String rchain) throws DataBaseException {
+        if (edgePropagator != null) {
+            return edgePropagator.getInheritedEdges(rchain);
+        }
+
+        return database.getInheritedEdges(Collections.singletonList(rchain));
+    }
+
+
+    /**
+     * Record the edges learned for the given RChain, leaving out the ones that are forbidden for it.
+     *
+     * @param database - {@code FactorBaseDataBase} to insert the edges into.
+     * @param rchain - the RChain that the edges were learned for.
+     * @param graphEdges - the edges learned for the given RChain.
+     * @throws DataBaseException if an error occurs when trying to insert/remove the information.
+     */
+    private static void insertLearnedEdges(
+        FactorBaseDataBase database,
+        String rchain,
+        List<Edge> graphEdges
+    ) throws DataBaseException {
+        if (edgePropagator != null) {
+            edgePropagator.insertLearnedEdges(rchain, graphEdges);
+        } else {
+            database.insertLearnedEdges(rchain, graphEdges, "Path_BayesNets", true);
+        }
+    }
+
+
+    /**
+     * Propagate the edge information of the given RChain to the RChains that contain it in the relationship lattice,
+     * either in memory or in the database depending on the InMemoryEdgePropagation setting.
+     *
+     * @param database - {@code FactorBaseDataBase} to propagate the edge information in.
+     * @param rchain - the name of the RChain to propagate the edge information from.
+     * @throws DataBaseException if an error occurs when propagating the information.
+     */
+    private static void propagateEdgeInformation(FactorBaseDataBase database, String rchain) throws DataBaseException {
+        if (edgePropagator != null) {
+            edgePropagator.propagateEdgeInformation(rchain, linkAnalysis);
+        } else {
+            database.propagateEdgeInformation(rchain, linkAnalysis);
+        }
+    }
+
+
+    /**
+     * Rethrow the exception that caused the learning for an RChain to fail.
+     *
+     * @param e - the exception thrown when retrieving the result of the learning for an RChain.
+     * @throws SQLException if there were issues executing the SQL queries.
+     * @throws IOException if there were issues generating the BIF file.
+     * @throws DataBaseException if a database error occurred when retrieving the information from the database.
+     * @throws DataExtractionException if a non database error occurred when retrieving the DataExtractor.
+     * @throws ParsingException if there were issues reading the BIF file.
+     * @throws ScoringException if an error occurred when trying to compute the score for the graphs being generated.
+     * @throws InterruptedException if the learning was interrupted while waiting for a CT table to be built.
+     */
+    private static void rethrowLearningException(
+        ExecutionException e
+    ) throws SQLException, IOException, DataBaseException, DataExtractionException, ParsingException, ScoringException, InterruptedException {
+        Throwable cause = e.getCause();
+        if (cause instanceof SQLException) {
+            throw (SQLException) cause;
+        } else if (cause instanceof IOException) {
+            throw (IOException) cause;
+        } else if (cause instanceof DataBaseException) {
+            throw (DataBaseException) cause;
+        } else if (cause instanceof DataExtractionException) {
+            throw (DataExtractionException) cause;
+        } else if (cause instanceof ParsingException) {
+            throw (ParsingException) cause;
+        } else if (cause instanceof ScoringException) {
+            throw (ScoringException) cause;
+        } else if (cause instanceof InterruptedException) {
+            throw (InterruptedException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+
+        throw new IllegalStateException("Unexpected error when learning the structure for an RChain.", cause);
+    }
+
+
+    /**
+     * Spread the total time budget for the structure search across the PVariables and RChains in proportion to their
+     * number of functor nodes, so that the structure learning has a predictable upper bound on how long it takes.
+     *
+     * @param database - {@code FactorBaseDataBase} to retrieve the PVariables from.
+     * @param lattice - global relationship lattice for the input database.
+     * @throws DataBaseException if a database error occurs when retrieving the PVariables.
+     */
+    private static void allocateSearchTimeBudget(
+        FactorBaseDataBase database,
+        RelationshipLattice lattice
+    ) throws DataBaseException {
+        searchTimeLimits.clear();
+        if (searchTimeBudget <= 0) {
+            return;
+        }
+
+        List<FunctorNodesInfo> latticePoints = new ArrayList<FunctorNodesInfo>(database.getPVariablesFunctorNodeInfo());
+        for (int level = 1; level <= lattice.getHeight(); level++) {
+            List<FunctorNodesInfo> rchainInfos = lattice.getRChainsInfo(level);
+            if (rchainInfos != null) {
+                latticePoints.addAll(rchainInfos);
+            }
+        }
+
+        long totalSize = 0;
+        for (FunctorNodesInfo latticePoint : latticePoints) {
+            totalSize += latticePoint.getFunctorNodes().size();
+        }
+
+        // for loop to give each lattice point its share of the total time budget, at least 1ms.
+        for (FunctorNodesInfo latticePoint : latticePoints) {
+            long size = latticePoint.getFunctorNodes().size();
+            long timeLimit = totalSize == 0 ? searchTimeBudget : searchTimeBudget * size / totalSize;
+            searchTimeLimits.put(latticePoint.getID(), Math.max(1, timeLimit));
+        }
+    }
+
+
+    /**
+     * Learn the graph for the given PVariable or RChain from its precomputed CT table.  If a hyperparameter grid is
+     * configured, a graph is also learned for each of its settings in parallel, and the graphs and their scores are
+     * stored in the hyperparameter tables.  If bootstrap replicates are configured, the frequency of each edge learned
+     * for the replicates is stored in the given table.
+     *
+     * @param database - {@code FactorBaseDataBase} to store the results for the hyperparameter grid in.
+     * @param id - the PVariable or RChain to learn the graph for.
+     * @param dataExtractor - {@code DataExtractor} for the CT table of the PVariable or RChain.
+     * @param requiredEdges - required edges to help guide the graph search.
+     * @param forbiddenEdges - forbidden edges to help guide the graph search.
+     * @param initialEdges - edges to start the graph search from, null to start from the empty graph.
+     * @param scoreCache - cache of the local scores to reuse and add to during the search, null to not cache the local
+     *                     scores across searches.
+     * @param frequencyTableName - the table to store the edge frequencies of the bootstrap replicates in.
+     * @return the edges of the graph learned using the default hyperparameters.
+     * @throws DataBaseException if a database error occurs when storing the results for the hyperparameter grid.
+     * @throws DataExtractionException if an error occurs when extracting the data from the CT table.
+     * @throws IOException if there are issues reading and writing various files.
+     * @throws ScoringException if an error occurs when trying to compute the score for the graphs being generated.
+     */
+    private static List<Edge> learnGraph(
+        FactorBaseDataBase database,
+        String id,
+        DataExtractor dataExtractor,
+        List<Edge> requiredEdges,
+        List<Edge> forbiddenEdges,
+        List<Edge> initialEdges,
+        LocalScoreCache scoreCache,
+        String frequencyTableName
+    ) throws DataBaseException, DataExtractionException, IOException, ScoringException {
+        ContingencyTableGenerator dataset = new ContingencyTableGenerator(dataExtractor);
+        List<Edge> graphEdges;
+        if (hyperparameterGrid.isEmpty()) {
+            SearchBudget searchBudget = createSearchBudget(id);
+            graphEdges = BayesNet_Learning_main.tetradLearner(
+                dataset,
+                requiredEdges,
+                forbiddenEdges,
+                initialEdges,
+                scoreCache,
+                searchBudget
+            );
+            logSearchProgress(id, searchBudget);
+        } else {
+            graphEdges = learnGraphGrid(database, id, dataset, requiredEdges, forbiddenEdges, initialEdges, scoreCache);
+        }
+
+        if (bootstrapReplicates > 0) {
+            List<SearchBudget> searchBudgets = new ArrayList<SearchBudget>(bootstrapReplicates);
+            for (int replicate = 0; replicate < bootstrapReplicates; replicate++) {
+                searchBudgets.add(createSearchBudget(id));
             }
 
-            database.propagateEdgeInformation(height, linkAnalysis);
+            Map<Edge, Double> edgeFrequencies = BayesNet_Learning_main.tetradLearnerBootstrap(
+                dataset,
+                requiredEdges,
+                forbiddenEdges,
+                searchBudgets,
+                bootstrapThreads,
+                bootstrapSeed
+            );
+            database.insertEdgeFrequencies(id, edgeFrequencies, frequencyTableName);
+        }
+
+        return graphEdges;
+    }
+
+
+    /**
+     * Learn a graph for the given PVariable or RChain for the default hyperparameters and each setting of the
+     * hyperparameter grid in parallel, storing the graphs and their scores in the hyperparameter tables.
+     *
+     * @param database - {@code FactorBaseDataBase} to store the results for the hyperparameter grid in.
+     * @param id - the PVariable or RChain to learn the graphs for.
+     * @param dataset - the CT table of the PVariable or RChain.
+     * @param requiredEdges - required edges to help guide the graph search.
+     * @param forbiddenEdges - forbidden edges to help guide the graph search.
+     * @param initialEdges - edges to start the graph search for the default hyperparameters from, null to start from
+     *                       the empty graph.
+     * @param scoreCache - cache of the local scores to reuse and add to during the search for the default
+     *                     hyperparameters, null to not cache the local scores across searches.
+     * @return the edges of the graph learned using the default hyperparameters.
+     * @throws DataBaseException if a database error occurs when storing the results for the hyperparameter grid.
+     * @throws ScoringException if an error occurs when trying to compute the score for the graphs being generated.
+     */
+    private static List<Edge> learnGraphGrid(
+        FactorBaseDataBase database,
+        String id,
+        ContingencyTableGenerator dataset,
+        List<Edge> requiredEdges,
+        List<Edge> forbiddenEdges,
+        List<Edge> initialEdges,
+        LocalScoreCache scoreCache
+    ) throws DataBaseException, ScoringException {
+        // The graph learned using the default hyperparameters is the one used by the rest of the pipeline.
+        List<BDeuHyperparameters> settings = new ArrayList<BDeuHyperparameters>();
+        settings.add(BDeuHyperparameters.DEFAULT);
+        settings.addAll(hyperparameterGrid);
+
+        List<SearchBudget> searchBudgets = new ArrayList<SearchBudget>(settings.size());
+        for (int index = 0; index < settings.size(); index++) {
+            searchBudgets.add(createSearchBudget(id));
+        }
+
+        List<List<Edge>> graphs = BayesNet_Learning_main.tetradLearnerGrid(
+            dataset,
+            requiredEdges,
+            forbiddenEdges,
+            initialEdges,
+            scoreCache,
+            settings,
+            searchBudgets
+        );
+
+        // for loop to store the graph learned for each setting of the hyperparameters along with its score.
+        for (int index = 0; index < settings.size(); index++) {
+            BDeuHyperparameters setting = settings.get(index);
+            SearchBudget searchBudget = searchBudgets.get(index);
+            logSearchProgress(id + " (" + setting + ")", searchBudget);
+            database.insertHyperparameterResults(
+                id,
+                setting.getSamplePrior(),
+                setting.getStructurePrior(),
+                graphs.get(index),
+                searchBudget.getScore()
+            );
+        }
+
+        return graphs.get(0);
+    }
+
+
+    /**
+     * Create the budget for the structure search of the given PVariable or RChain.
+     *
+     * @param id - the PVariable or RChain to create the search budget for.
+     * @return the search budget for the given PVariable or RChain.
+     */
+    private static SearchBudget createSearchBudget(String id) {
+        return new SearchBudget(
+            searchTimeLimits.getOrDefault(id, searchTimeLimit),
+            searchScoreEvaluationLimit
+        );
+    }
+
+
+    /**
+     * Log how much of the structure search was completed for the given PVariable or RChain.
+     *
+     * @param id - the PVariable or RChain that the structure search was done for.
+     * @param searchBudget - the budget that was used for the structure search.
+     */
+    private static void logSearchProgress(String id, SearchBudget searchBudget) {
+        if (searchBudget.isExhausted()) {
+            logger.warning("The structure search for " + id + " ran out of budget: " + searchBudget.getProgress() + ".");
+        } else {
+            logger.fine("The structure search for " + id + " finished: " + searchBudget.getProgress() + ".");
+        }
+    }
+
 
-            logger.fine(" Import is done for length = " + height + ".");
+    /**
+     * Create the local score cache for the given RChain, seeded with the local scores computed for its sub-chains
+     * whose CT tables have the same counts for the families of nodes they share.
+     * <p>
+     * Note: When the link analysis is on, the CT table of a sub-chain is a marginal of the CT table of the RChain as
+     *       long as the RChain doesn't introduce any new population variables.
+     * </p>
+     *
+     * @param database - {@code FactorBaseDataBase} to retrieve the population variables from.
+     * @param lattice - global relationship lattice for the input database.
+     * @param id - the RChain to create the local score cache for.
+     * @return the local score cache for the given RChain.
+     * @throws DataBaseException if a database error occurs when retrieving the population variables.
+     */
+    private static LocalScoreCache createScoreCache(
+        FactorBaseDataBase database,
+        RelationshipLattice lattice,
+        String id
+    ) throws DataBaseException {
+        LocalScoreCache scoreCache = new LocalScoreCache();
+        if (!linkAnalysis) {
+            return scoreCache;
+        }
+
+        Set<String> populationVariables = database.getPopulationVariables(id);
+        for (String subChain : lattice.getSubChains(id)) {
+            LocalScoreCache subChainScoreCache = scoreCaches.get(subChain);
+            if (subChainScoreCache != null && database.getPopulationVariables(subChain).equals(populationVariables)) {
+                scoreCache.addAll(subChainScoreCache);
+            }
+        }
+
+        logger.fine("Reusing " + scoreCache.size() + " local scores for " + id + ".");
+
+        return scoreCache;
+    }
+
+
+    /**
+     * Retrieve the CT table {@code DataExtractor} for the given PVariable or RChain, using the {@code DataSet} that
+     * has been extracted in the background if there is one.
+     *
+     * @param database - {@code FactorBaseDataBase} to retrieve the {@code DataExtractor} from.
+     * @param id - the PVariable or RChain to retrieve the {@code DataExtractor} for.
+     * @return the CT table {@code DataExtractor} for the given PVariable or RChain.
+     * @throws DataBaseException if the CT table construction failed.
+     * @throws DataExtractionException if an error occurs when retrieving the {@code DataExtractor}.
+     * @throws InterruptedException if the thread is interrupted while waiting for the CT table.
+     */
+    private static DataExtractor takeCTDataExtractor(
+        FactorBaseDataBase database,
+        String id
+    ) throws DataBaseException, DataExtractionException, InterruptedException {
+        if (dataSetPrefetcher != null) {
+            // Wait for the CT table as a learner so that the CT table construction isn't held back for it.
+            awaitCTTable(id);
+            return dataSetPrefetcher.take(id);
+        }
+
+        return loadCTDataExtractor(database, id);
+    }
+
+
+    /**
+     * Retrieve the CT table {@code DataExtractor} for the given PVariable or RChain once its CT table has been built.
+     *
+     * @param database - {@code FactorBaseDataBase} to retrieve the {@code DataExtractor} from.
+     * @param id - the PVariable or RChain to retrieve the {@code DataExtractor} for.
+     * @return the CT table {@code DataExtractor} for the given PVariable or RChain.
+     * @throws DataBaseException if the CT table construction failed.
+     * @throws DataExtractionException if an error occurs when retrieving the {@code DataExtractor}.
+     * @throws InterruptedException if the thread is interrupted while waiting for the CT table.
+     */
+    private static DataExtractor loadCTDataExtractor(
+        FactorBaseDataBase database,
+        String id
+    ) throws DataBaseException, DataExtractionException, InterruptedException {
+        awaitCTTable(id);
+
+        return database.getAndRemoveCTDataExtractor(id);
+    }
+
+
+    /**
+     * Retrieve the CT table {@code DataExtractor} for the given PVariable or RChain for the {@code DataSetPrefetcher},
+     * which extracts the {@code DataSet} using its own pooled connection so that it doesn't share the connection of
+     * the given {@code FactorBaseDataBase} with the structure learning.
+     * <p>
+     * Note: The CT table must have been built already, see {@link #estimateCTDataSetSize(FunctorNodesInfo)}.
+     * </p>
+     *
+     * @param database - {@code FactorBaseDataBase} to retrieve the {@code DataExtractor} from.
+     * @param id - the PVariable or RChain to retrieve the {@code DataExtractor} for.
+     * @return the CT table {@code DataExtractor} for the given PVariable or RChain.
+     * @throws DataBaseException if a database error occurs when retrieving the {@code DataExtractor}.
+     * @throws DataExtractionException if an error occurs when retrieving the {@code DataExtractor}.
+     */
+    private static DataExtractor prefetchCTDataExtractor(
+        FactorBaseDataBase database,
+        String id
+    ) throws DataBaseException, DataExtractionException {
+        DataExtractor dataExtractor = database.getAndRemoveCTDataExtractor(id);
+        if (!(dataExtractor instanceof MySQLDataExtractor)) {
+            return dataExtractor;
+        }
+
+        MySQLDataExtractor mysqlDataExtractor = (MySQLDataExtractor) dataExtractor;
+        return () -> {
+            Connection connection;
+            try {
+                connection = CountsManager.acquireConnection();
+            } catch (SQLException e) {
+                throw new DataExtractionException("Failed to open a connection to extract the CT table for " + id + ".", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataExtractionException("Interrupted while waiting for a connection to extract the CT table for " + id + ".", e);
+            }
+
+            try {
+                return mysqlDataExtractor.extractData(connection);
+            } finally {
+                CountsManager.releaseConnection(connection);
+            }
+        };
+    }
+
+
+    /**
+     * Estimate the memory used by the {@code DataSet} of the given PVariable or RChain, waiting for its CT table to be
+     * built if the CT tables are being built at the same time as the structure is being learned.
+     * <p>
+     * Note: Waiting here doesn't count as a learner waiting for the CT table, see {@link CTTableQueue#awaitBuilt(String)}.
+     * </p>
+     *
+     * @param functorNodesInfo - the functor node information of the PVariable or RChain.
+     * @return the estimated number of bytes used by the {@code DataSet} of the given PVariable or RChain.
+     * @throws DataBaseException if the CT table construction failed or its size couldn't be retrieved.
+     * @throws InterruptedException if the thread is interrupted while waiting for the CT table.
+     */
+    private static long estimateCTDataSetSize(
+        FunctorNodesInfo functorNodesInfo
+    ) throws DataBaseException, InterruptedException {
+        long numberOfRows;
+        if (ctTableQueue != null) {
+            numberOfRows = ctTableQueue.awaitBuilt(functorNodesInfo.getID());
+        } else {
+            String tableName = functorNodesInfo.isRChainID() ?
+                functorNodesInfo.getShortID() + "_CT" :
+                functorNodesInfo.getID() + "_counts";
+
+            try {
+                Connection connection = CountsManager.acquireConnection();
+                try {
+                    numberOfRows = CountsManager.estimateCTTableRows(connection, tableName);
+                } finally {
+                    CountsManager.releaseConnection(connection);
+                }
+            } catch (SQLException e) {
+                throw new DataBaseException("Failed to estimate the size of the CT table " + tableName + ".", e);
+            }
+        }
+
+        // The DataSet has a column for each functor node plus the MULT column.
+        return DataSetPrefetcher.estimateSize(numberOfRows, functorNodesInfo.getFunctorNodes().size() + 1);
+    }
+
+
+    /**
+     * Retrieve the order that the structure is expected to be learned in for the PVariables and RChains.
+     *
+     * @param database - {@code FactorBaseDataBase} to retrieve the PVariables from.
+     * @param lattice - global relationship lattice for the input database.
+     * @return Map containing key:value pairs of id:FunctorNodesInfo for the PVariables followed by the RChains of each
+     *         level of the lattice.
+     * @throws DataBaseException if a database error occurs when retrieving the PVariables.
+     */
+    private static Map<String, FunctorNodesInfo> getLearningOrder(
+        FactorBaseDataBase database,
+        RelationshipLattice lattice
+    ) throws DataBaseException {
+        Map<String, FunctorNodesInfo> functorNodesInfos = new LinkedHashMap<String, FunctorNodesInfo>();
+        for (FunctorNodesInfo functorNodesInfo : database.getPVariablesFunctorNodeInfo()) {
+            functorNodesInfos.put(functorNodesInfo.getID(), functorNodesInfo);
+        }
+
+        for (int level = 1; level <= lattice.getHeight(); level++) {
+            List<FunctorNodesInfo> rchainInfos = lattice.getRChainsInfo(level);
+            if (rchainInfos != null) {
+                for (FunctorNodesInfo rchainInfo : rchainInfos) {
+                    functorNodesInfos.put(rchainInfo.getID(), rchainInfo);
+                }
+            }
+        }
+
+        return functorNodesInfos;
+    }
+
+
+    /**
+     * Wait until the CT table for the given PVariable or RChain has been built if the CT tables are being built at the
+     * same time as the structure is being learned.
+     *
+     * @param id - the PVariable or RChain to wait for the CT table of.
+     * @throws DataBaseException if the CT table construction failed.
+     * @throws InterruptedException if the thread is interrupted while waiting for the CT table to be built.
+     */
+    private static void awaitCTTable(String id) throws DataBaseException, InterruptedException {
+        if (ctTableQueue != null) {
+            ctTableQueue.take(id);
         }
     }
 
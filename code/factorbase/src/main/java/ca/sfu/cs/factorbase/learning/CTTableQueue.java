@@ -0,0 +1,221 @@
+package ca.sfu.cs.factorbase.learning;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ca.sfu.cs.factorbase.exception.DataBaseException;
+
+/**
+ * Bounded hand-off between the thread building the CT tables and the threads learning the Bayesian network structure
+ * from them, which allows the CT tables to be built and learned from at the same time.
+ * <p>
+ * The thread building the CT tables blocks once too many CT tables, or CT tables with too many rows, have been built
+ * without being taken by a learner.  This keeps the CT table construction from running too far ahead of the structure
+ * learning, unless a learner is waiting for a CT table that hasn't been built yet, in which case the construction is
+ * always allowed to continue so that the two sides can't deadlock.  Once the structure learning has finished, the
+ * construction is never blocked again, since any CT tables still waiting will never be taken.
+ * </p>
+ */
+public class CTTableQueue {
+    private final int capacity;
+    private final long maxPendingRows;
+    private final Map<String, Long> pendingTables = new HashMap<String, Long>();
+    private final Map<String, Long> builtTables = new HashMap<String, Long>();
+    private long pendingRows = 0;
+    private int numberOfWaitingLearners = 0;
+    private boolean open = false;
+    private boolean learningDone = false;
+    private boolean closed = false;
+    private Throwable failure;
+
+
+    /**
+     * Create a queue for handing off CT tables from the thread building them to the structure learning.
+     *
+     * @param capacity - the maximum number of CT tables that can be built without being taken by a learner.
+     * @param maxPendingRows - the maximum total number of rows of the CT tables that have been built without being
+     *                         taken by a learner.
+     */
+    public CTTableQueue(int capacity, long maxPendingRows) {
+        this.capacity = Math.max(1, capacity);
+        this.maxPendingRows = maxPendingRows;
+    }
+
+
+    /**
+     * Indicate that the CT database has been created and that its metadata has been generated, so the structure
+     * learning can start.
+     */
+    public synchronized void open() {
+        this.open = true;
+        this.notifyAll();
+    }
+
+
+    /**
+     * Wait until the CT database has been created and its metadata has been generated.
+     *
+     * @throws DataBaseException if the CT table construction failed.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public synchronized void awaitOpen() throws DataBaseException, InterruptedException {
+        while (!this.open) {
+            this.checkFailure();
+            this.wait();
+        }
+    }
+
+
+    /**
+     * Indicate that the CT table for the given RChain or PVariable has been built, blocking if too many CT tables are
+     * waiting to be taken by a learner.
+     *
+     * @param id - the RChain or PVariable that the CT table was built for.
+     * @param numberOfRows - the (estimated) number of rows in the CT table.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public synchronized void put(String id, long numberOfRows) throws InterruptedException {
+        while (this.isFull(numberOfRows) && this.numberOfWaitingLearners == 0 && !this.learningDone) {
+            this.wait();
+        }
+
+        this.pendingTables.put(id, numberOfRows);
+        this.pendingRows += numberOfRows;
+        this.builtTables.put(id, numberOfRows);
+        this.notifyAll();
+    }
+
+
+    /**
+     * Check if adding a CT table with the given number of rows would go over the limits of the queue.
+     *
+     * @param numberOfRows - the number of rows of the CT table to be added.
+     * @return true if the CT table should wait to be added; otherwise false.
+     */
+    private boolean isFull(long numberOfRows) {
+        if (this.pendingTables.isEmpty()) {
+            return false;
+        }
+
+        return this.pendingTables.size() >= this.capacity || this.pendingRows + numberOfRows > this.maxPendingRows;
+    }
+
+
+    /**
+     * Wait until the CT table for the given RChain or PVariable has been built and take it from the queue.
+     *
+     * @param id - the RChain or PVariable to take the CT table for.
+     * @throws DataBaseException if the CT table construction failed.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public synchronized void take(String id) throws DataBaseException, InterruptedException {
+        this.numberOfWaitingLearners++;
+        this.notifyAll();
+
+        try {
+            this.waitUntilBuilt(id);
+        } finally {
+            this.numberOfWaitingLearners--;
+        }
+
+        Long numberOfRows = this.pendingTables.remove(id);
+        if (numberOfRows != null) {
+            this.pendingRows -= numberOfRows;
+            this.notifyAll();
+        }
+    }
+
+
+    /**
+     * Wait until the CT table for the given RChain or PVariable has been built without taking it from the queue.
+     * <p>
+     * Note: Unlike {@link #take(String)}, waiting here doesn't let the CT table construction go past the limits of the
+     *       queue, so it is meant for work done ahead of the learners, e.g. prefetching the CT tables.
+     * </p>
+     *
+     * @param id - the RChain or PVariable to wait for the CT table of.
+     * @return the (estimated) number of rows in the CT table.
+     * @throws DataBaseException if the CT table construction failed.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public synchronized long awaitBuilt(String id) throws DataBaseException, InterruptedException {
+        this.waitUntilBuilt(id);
+
+        return this.builtTables.get(id);
+    }
+
+
+    /**
+     * Wait until the CT table for the given RChain or PVariable has been built.
+     *
+     * @param id - the RChain or PVariable to wait for the CT table of.
+     * @throws DataBaseException if the CT table construction failed.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    private void waitUntilBuilt(String id) throws DataBaseException, InterruptedException {
+        while (!this.builtTables.containsKey(id)) {
+            this.checkFailure();
+            if (this.closed) {
+                throw new IllegalStateException("The CT table for " + id + " was never built.");
+            }
+
+            this.wait();
+        }
+    }
+
+
+    /**
+     * Indicate that the structure learning has finished, so the CT table construction should no longer wait for the
+     * CT tables to be taken.
+     */
+    public synchronized void learningDone() {
+        this.learningDone = true;
+        this.notifyAll();
+    }
+
+
+    /**
+     * Indicate that all the CT tables have been built.
+     */
+    public synchronized void close() {
+        this.closed = true;
+        this.notifyAll();
+    }
+
+
+    /**
+     * Indicate that the CT table construction failed.
+     *
+     * @param cause - the reason that the CT table construction failed.
+     */
+    public synchronized void fail(Throwable cause) {
+        this.failure = cause;
+        this.notifyAll();
+    }
+
+
+    /**
+     * Wait until all the CT tables have been built.
+     *
+     * @throws DataBaseException if the CT table construction failed.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public synchronized void awaitClosed() throws DataBaseException, InterruptedException {
+        while (!this.closed) {
+            this.checkFailure();
+            this.wait();
+        }
+    }
+
+
+    /**
+     * Throw an exception if the CT table construction failed.
+     *
+     * @throws DataBaseException if the CT table construction failed.
+     */
+    private void checkFailure() throws DataBaseException {
+        if (this.failure != null) {
+            throw new DataBaseException("Failed to build the CT tables.", this.failure);
+        }
+    }
+}
@@ -52,6 +52,18 @@ public enum CountingStrategy {
         public String getStorageEngine() {
             return "MEMORY";
         }
+    },
+    InMemory {
+        @Override
+        public boolean isPrecount() {
+            return true;
+        }
+
+
+        @Override
+        public boolean useInMemoryCounts() {
+            return true;
+        }
     };
 
     /**
@@ -105,6 +117,16 @@ public enum CountingStrategy {
     }
 
 
+    /**
+     * Determine if the "_counts" tables should be generated in memory from the base tables instead of in the database.
+     *
+     * @return true if the "_counts" tables should be generated in memory; otherwise false.
+     */
+    public boolean useInMemoryCounts() {
+        return false;
+    }
+
+
     /**
      * Retrieve the storage engine that should be used for the "_star", "_flat", "_false", "_counts", and
      * "_CT" tables.
@@ -119,6 +141,8 @@ public enum CountingStrategy {
     private static final String PRECOUNT = "0";
     private static final String ONDEMAND = "1";
     private static final String HYBRID = "2";
+    private static final String IN_MEMORY = "3";
+    private static final String AUTOMATIC = "4";
 
 
     /**
@@ -128,6 +152,11 @@ public enum CountingStrategy {
      * @return {@code CountingStrategy} that has been set in the configuration file.
      */
     public static CountingStrategy determineStrategy(String configurationValue) {
+        // Start with PreCount until the strategy has been planned, see CountsManager#planCountingStrategy.
+        if (isAutomatic(configurationValue)) {
+            return PreCount;
+        }
+
         CountingStrategy strategy;
         switch (configurationValue) {
         case PRECOUNT:
@@ -139,10 +168,25 @@ public enum CountingStrategy {
         case HYBRID:
             strategy = Hybrid;
             break;
+        case IN_MEMORY:
+            strategy = InMemory;
+            break;
         default:
             strategy = null;
         }
 
         return strategy;
     }
+
+
+    /**
+     * Determine if the counting strategy should be chosen based on the estimated cost of each strategy, see
+     * {@link CountingStrategyPlanner}.
+     *
+     * @param configurationValue - the counting strategy setting given in the configuration file.
+     * @return true if the counting strategy should be chosen automatically; otherwise false.
+     */
+    public static boolean isAutomatic(String configurationValue) {
+        return AUTOMATIC.equals(configurationValue);
+    }
 }
\ No newline at end of file
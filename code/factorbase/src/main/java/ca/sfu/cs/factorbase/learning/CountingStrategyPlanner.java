@@ -0,0 +1,299 @@
+package ca.sfu.cs.factorbase.learning;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import ca.sfu.cs.factorbase.data.FunctorNode;
+import ca.sfu.cs.factorbase.data.FunctorNodesInfo;
+import ca.sfu.cs.factorbase.lattice.RelationshipLattice;
+
+/**
+ * Class to estimate the cost of each {@link CountingStrategy} for the RChains of a relationship lattice from the
+ * statistics of the input tables, and choose the cheapest one.
+ * <p>
+ * For each RChain the following are estimated:
+ * <ul>
+ *   <li>The number of rows in the join of its relationship tables, assuming that each entity appears in the same
+ *       number of relationships, i.e. the product of the relationship table sizes divided by the size of each entity
+ *       table for every additional relationship that its population variable appears in.</li>
+ *   <li>The number of rows in its CT table, which can't be more than the product of the number of states of its
+ *       functor nodes nor the number of groundings of its population variables.</li>
+ *   <li>The number of rows in the CT table of a family of functor nodes, assuming at most
+ *       {@code MAX_FAMILY_SIZE} functor nodes per family.</li>
+ * </ul>
+ * The cost of each strategy is then the number of rows it processes:
+ * <ul>
+ *   <li>PreCount - the join once, plus the Mobius Join of the full CT table, which processes the CT table once per
+ *       relationship.</li>
+ *   <li>OnDemand - the join and the Mobius Join of the family CT table for each family scored.</li>
+ *   <li>Hybrid - the join once, plus the projection of the counts and the Mobius Join of the family CT table for each
+ *       family scored.</li>
+ * </ul>
+ * where the structure search is assumed to score about n^2 families for an RChain with n functor nodes.
+ * </p>
+ */
+public class CountingStrategyPlanner {
+    private static final int MAX_FAMILY_SIZE = 4;
+    private static Logger logger = Logger.getLogger(CountingStrategyPlanner.class.getName());
+    private Connection dbConnection;
+    private String databaseName;
+    private String setupDatabaseName;
+    private Map<String, Long> tableRows = new HashMap<String, Long>();
+    private Map<String, String[]> rnodes = new HashMap<String, String[]>();
+    private Map<String, String> pvariableTables = new HashMap<String, String>();
+
+
+    /**
+     * Create a planner that reads the statistics of the input tables using the given connection.
+     *
+     * @param dbConnection - connection to the database server.
+     * @param databaseName - the name of the database with the original data, e.g. unielwin.
+     * @param setupDatabaseName - the name of the "_setup" database, e.g. unielwin_setup.
+     */
+    public CountingStrategyPlanner(Connection dbConnection, String databaseName, String setupDatabaseName) {
+        this.dbConnection = dbConnection;
+        this.databaseName = databaseName;
+        this.setupDatabaseName = setupDatabaseName;
+    }
+
+
+    /**
+     * Estimate the cost of each counting strategy for the RChains in the given relationship lattice.
+     *
+     * @param lattice - the relationship lattice containing the RChains to estimate the costs for.
+     * @return Map containing key:value pairs of RChain:estimate, in the order of the lattice levels.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    public Map<String, Estimate> plan(RelationshipLattice lattice) throws SQLException {
+        this.loadStatistics();
+
+        Map<String, Estimate> estimates = new LinkedHashMap<String, Estimate>();
+        for (int len = 1; len <= lattice.getHeight(); len++) {
+            for (FunctorNodesInfo rchainInfo : lattice.getRChainsInfo(len)) {
+                Estimate estimate = this.estimate(rchainInfo);
+                estimates.put(rchainInfo.getID(), estimate);
+                logger.fine("Counting Estimate[" + rchainInfo.getID() + "]: " + estimate);
+            }
+        }
+
+        return estimates;
+    }
+
+
+    /**
+     * Choose the counting strategy with the lowest total cost for the given estimates.
+     *
+     * @param estimates - the estimates of the RChains to choose the counting strategy for.
+     * @return the counting strategy with the lowest total cost, or PreCount if there are no estimates.
+     */
+    public static CountingStrategy chooseStrategy(Collection<Estimate> estimates) {
+        CountingStrategy[] strategies = Estimate.STRATEGIES;
+        double[] totalCosts = new double[strategies.length];
+        for (Estimate estimate : estimates) {
+            for (int index = 0; index < strategies.length; index++) {
+                totalCosts[index] += estimate.costs[index];
+            }
+        }
+
+        int bestIndex = 0;
+        for (int index = 1; index < strategies.length; index++) {
+            if (totalCosts[index] < totalCosts[bestIndex]) {
+                bestIndex = index;
+            }
+        }
+
+        for (int index = 0; index < strategies.length; index++) {
+            logger.info("Estimated Cost[" + strategies[index] + "]: " + String.format("%.3g", totalCosts[index]) + " rows.");
+        }
+
+        return strategies[bestIndex];
+    }
+
+
+    /**
+     * Read the number of rows in each input table, and the tables of the RNodes and population variables.
+     *
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    private void loadStatistics() throws SQLException {
+        try (Statement statement = this.dbConnection.createStatement()) {
+            try (
+                ResultSet results = statement.executeQuery(
+                    "SELECT TABLE_NAME, TABLE_ROWS " +
+                    "FROM information_schema.TABLES " +
+                    "WHERE TABLE_SCHEMA = '" + this.databaseName + "';"
+                )
+            ) {
+                while (results.next()) {
+                    this.tableRows.put(results.getString("TABLE_NAME"), results.getLong("TABLE_ROWS"));
+                }
+            }
+
+            try (
+                ResultSet results = statement.executeQuery(
+                    "SELECT rnid, TABLE_NAME, pvid1, pvid2 " +
+                    "FROM " + this.setupDatabaseName + ".RNodes;"
+                )
+            ) {
+                while (results.next()) {
+                    this.rnodes.put(
+                        results.getString("rnid"),
+                        new String[] { results.getString("TABLE_NAME"), results.getString("pvid1"), results.getString("pvid2") }
+                    );
+                }
+            }
+
+            try (
+                ResultSet results = statement.executeQuery(
+                    "SELECT pvid, TABLE_NAME " +
+                    "FROM " + this.setupDatabaseName + ".PVariables;"
+                )
+            ) {
+                while (results.next()) {
+                    this.pvariableTables.put(results.getString("pvid"), results.getString("TABLE_NAME"));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Estimate the cost of each counting strategy for the given RChain.
+     *
+     * @param rchainInfo - the functor node information of the RChain.
+     * @return the estimated sizes and costs for the given RChain.
+     */
+    private Estimate estimate(FunctorNodesInfo rchainInfo) {
+        String[] rnids = rchainInfo.getID().replace("),", ") ").split(" ");
+
+        // Estimate the number of rows in the join of the relationship tables.
+        double joinRows = 1;
+        Map<String, Integer> pvariableDegrees = new HashMap<String, Integer>();
+        for (String rnid : rnids) {
+            String[] rnode = this.rnodes.get(rnid);
+            if (rnode == null) {
+                continue;
+            }
+
+            joinRows *= this.getTableRows(rnode[0]);
+            pvariableDegrees.merge(rnode[1], 1, Integer::sum);
+            pvariableDegrees.merge(rnode[2], 1, Integer::sum);
+        }
+
+        double populationSize = 1;
+        for (Map.Entry<String, Integer> pvariableDegree : pvariableDegrees.entrySet()) {
+            double entityRows = this.getTableRows(this.pvariableTables.get(pvariableDegree.getKey()));
+            joinRows /= Math.pow(entityRows, pvariableDegree.getValue() - 1);
+            populationSize *= entityRows;
+        }
+
+        // Estimate the number of rows in the CT tables.
+        double numberOfStates = 1;
+        int numberOfFunctorNodes = 0;
+        for (FunctorNode functorNode : rchainInfo.getFunctorNodes()) {
+            numberOfStates *= Math.max(1, functorNode.getFunctorNodeStates().size());
+            numberOfFunctorNodes++;
+        }
+
+        numberOfFunctorNodes = Math.max(1, numberOfFunctorNodes);
+        double averageStates = Math.pow(numberOfStates, 1.0 / numberOfFunctorNodes);
+        double ctRows = Math.min(numberOfStates, populationSize);
+        double countsRows = Math.min(joinRows, ctRows);
+        double familyRows = Math.min(ctRows, Math.pow(averageStates, Math.min(numberOfFunctorNodes, MAX_FAMILY_SIZE)));
+        double families = (double) numberOfFunctorNodes * numberOfFunctorNodes;
+        double mobiusPasses = rnids.length + 1;
+
+        return new Estimate(
+            joinRows,
+            ctRows,
+            familyRows,
+            new double[] {
+                joinRows + mobiusPasses * ctRows,
+                families * (joinRows + mobiusPasses * familyRows),
+                joinRows + families * (countsRows + mobiusPasses * familyRows)
+            }
+        );
+    }
+
+
+    /**
+     * Retrieve the (estimated) number of rows in the given input table.
+     *
+     * @param tableName - the name of the input table.
+     * @return the number of rows in the given table, at least 1.
+     */
+    private double getTableRows(String tableName) {
+        return Math.max(1, this.tableRows.getOrDefault(tableName, 1L));
+    }
+
+
+    /**
+     * Class to hold the estimated sizes and costs of the counting strategies for an RChain.
+     */
+    public static class Estimate {
+        private static final CountingStrategy[] STRATEGIES = {
+            CountingStrategy.PreCount,
+            CountingStrategy.OnDemand,
+            CountingStrategy.Hybrid
+        };
+        private double joinRows;
+        private double ctRows;
+        private double familyRows;
+        private double[] costs;
+
+
+        /**
+         * Create an estimate for an RChain.
+         *
+         * @param joinRows - the estimated number of rows in the join of the relationship tables.
+         * @param ctRows - the estimated number of rows in the CT table.
+         * @param familyRows - the estimated number of rows in the CT table of a family of functor nodes.
+         * @param costs - the estimated costs of the PreCount, OnDemand and Hybrid strategies.
+         */
+        Estimate(double joinRows, double ctRows, double familyRows, double[] costs) {
+            this.joinRows = joinRows;
+            this.ctRows = ctRows;
+            this.familyRows = familyRows;
+            this.costs = costs;
+        }
+
+
+        /**
+         * Retrieve the counting strategy with the lowest estimated cost.
+         *
+         * @return the counting strategy with the lowest estimated cost.
+         */
+        public CountingStrategy getBestStrategy() {
+            int bestIndex = 0;
+            for (int index = 1; index < this.costs.length; index++) {
+                if (this.costs[index] < this.costs[bestIndex]) {
+                    bestIndex = index;
+                }
+            }
+
+            return STRATEGIES[bestIndex];
+        }
+
+
+        @Override
+        public String toString() {
+            return String.format(
+                "join=%.3g rows, CT=%.3g rows, family CT=%.3g rows, PreCount=%.3g, OnDemand=%.3g, Hybrid=%.3g, best=%s",
+                this.joinRows,
+                this.ctRows,
+                this.familyRows,
+                this.costs[0],
+                this.costs[1],
+                this.costs[2],
+                this.getBestStrategy()
+            );
+        }
+    }
+}
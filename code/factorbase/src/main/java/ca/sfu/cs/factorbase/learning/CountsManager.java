@@ -27,6 +27,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -34,6 +35,13 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.logging.Logger;
 
 import ca.sfu.cs.common.Configuration.Config;
@@ -41,6 +49,7 @@ import ca.sfu.cs.factorbase.data.DataSet;
 import ca.sfu.cs.factorbase.data.DataSetMetaData;
 import ca.sfu.cs.factorbase.data.FunctorNodesInfo;
 import ca.sfu.cs.factorbase.data.MySQLDataExtractor;
+import ca.sfu.cs.factorbase.database.ConnectionPool;
 import ca.sfu.cs.factorbase.database.FactorBaseDataBaseInfo;
 import ca.sfu.cs.factorbase.database.MySQLFactorBaseDataBase;
 import ca.sfu.cs.factorbase.exception.DataExtractionException;
@@ -54,12 +63,14 @@ import ca.sfu.cs.factorbase.util.Sort_merge3;
 public class CountsManager {
 
     private static Connection dbConnection;
+    private static ThreadLocal<Connection> workerConnection = new ThreadLocal<Connection>();
+    private static ConnectionPool connectionPool;
     private static final String AND_SEPARATOR = " AND ";
     private static final String CSV_SEPARATOR = ", ";
     private static final String COUNTS_SUBQUERY_PLACEHOLDER = "@@C_SUBQUERY@@";
     private static final String FALSE_SUBQUERY_PLACEHOLDER = "@@F_SUBQUERY@@";
-    private static int tableID;
-    private static Map<String, String> ctTablesCache = new HashMap<String, String>();
+    private static AtomicInteger tableID = new AtomicInteger();
+    private static Map<String, String> ctTablesCache = new ConcurrentHashMap<String, String>();
     private static Set<String> relationTables;
     private static FactorBaseDataBaseInfo dbInfo;
     private static String databaseName_std;
@@ -69,6 +80,26 @@ public class CountsManager {
     private static boolean generatePDPInfo;
     private static String linkCorrelation;
     private static long dbTemporaryTableSize;
+    private static CTTableQueue ctTableQueue;
+    private static int ctBuildThreads;
+    private static long sortMergeThreshold;
+    private static boolean inMemoryMobiusJoin;
+    private static boolean mobiusJoinWriteBack;
+    private static Map<String, DataSet> inMemoryCTTables = new ConcurrentHashMap<String, DataSet>();
+    private static int inMemoryCountingThreads;
+    private static CountsPartitioner countsPartitioner;
+    private static IncrementalCountsUpdater incrementalCountsUpdater;
+    private static boolean joinOrderPlanning;
+    private static boolean joinOrderBenchmark;
+    private static JoinOrderPlanner joinOrderPlanner;
+    private static CountsSampler countsSampler;
+    private static boolean inMemoryProjection;
+    private static GlobalCountsCache globalCountsCache;
+    private static Map<String, CountingStrategyPlanner.Estimate> countingPlan =
+        new ConcurrentHashMap<String, CountingStrategyPlanner.Estimate>();
+    private static InMemoryCounter inMemoryCounter;
+    private static Map<String, MobiusJoin.CountsTable> inMemoryCountsTables =
+        new ConcurrentHashMap<String, MobiusJoin.CountsTable>();
     /*
      * cont is Continuous
      * ToDo: Refactor
@@ -89,19 +120,298 @@ public class CountsManager {
      */
     public static void buildCT(
         CountingStrategy countingStrategy
+    ) throws SQLException {
+        buildCT(countingStrategy, null);
+    }
+
+
+    /**
+     * Build the CT tables based on the FunctorSet, handing off each CT table to the structure learning as soon as it
+     * has been built.
+     *
+     * @param countingStrategy - {@link CountingStrategy} to indicate how counts related tables should be generated.
+     * @param queue - {@link CTTableQueue} to hand off the CT tables with, or null if the CT tables shouldn't be handed
+     *                off.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    public static void buildCT(
+        CountingStrategy countingStrategy,
+        CTTableQueue queue
     ) throws SQLException {
         RuntimeLogger.addLogEntry(dbConnection);
-        try (Statement statement = dbConnection.createStatement()) {
-            statement.execute("DROP SCHEMA IF EXISTS " + dbInfo.getCTDatabaseName() + ";");
-            statement.execute("CREATE SCHEMA " + dbInfo.getCTDatabaseName() + " /*M!100316 COLLATE utf8_general_ci*/;");
+        inMemoryCTTables.clear();
+        countsSampler.clearInclusionProbabilities();
+
+        // Read the watermarks of the input tables before counting, and the watermarks of the previous run to determine
+        // if the counts can be updated with only the rows added since then.
+        Map<String, String> watermarks = null;
+        Map<String, String> previousWatermarks = null;
+        if (isIncremental()) {
+            watermarks = incrementalCountsUpdater.readWatermarks(dbConnection);
+            if (countingStrategy.isPrecount() && !countingStrategy.useInMemoryCounts()) {
+                previousWatermarks = incrementalCountsUpdater.readPreviousWatermarks(dbConnection);
+            }
+        }
+
+        if (previousWatermarks == null) {
+            try (Statement statement = dbConnection.createStatement()) {
+                statement.execute("DROP SCHEMA IF EXISTS " + dbInfo.getCTDatabaseName() + ";");
+                statement.execute("CREATE SCHEMA " + dbInfo.getCTDatabaseName() + " /*M!100316 COLLATE utf8_general_ci*/;");
+            }
+        } else {
+            // If the update fails part way, the next run must rebuild the CT tables from scratch.
+            incrementalCountsUpdater.dropPreviousWatermarks(dbConnection);
+        }
+
+        // Sample the input tables once per run if approximate counts have been specified.
+        if (isSampling()) {
+            countsSampler.buildSampleDatabase(dbConnection);
         }
 
         // Propagate metadata based on the FunctorSet.
         dbConnection.setCatalog(dbInfo.getBNDatabaseName());
         RelationshipLattice relationshipLattice = propagateFunctorSetInfo(dbConnection);
 
-        // building CT tables for Rchain
-        CTGenerator(relationshipLattice, countingStrategy);
+        ctTableQueue = queue;
+
+        // The in memory counts are read from the original input tables, so count the sample with MySQL instead.
+        if (countingStrategy.useInMemoryCounts() && !isSampling()) {
+            inMemoryCounter = new InMemoryCounter(dbInfo.getBNDatabaseName(), inMemoryCountingThreads);
+        }
+
+        try {
+            if (ctTableQueue != null) {
+                ctTableQueue.open();
+            }
+
+            // building CT tables for Rchain
+            if (previousWatermarks == null) {
+                CTGenerator(relationshipLattice, countingStrategy);
+            } else {
+                logger.info("Updating the CT tables with the rows added since the previous run.");
+                updateCT(relationshipLattice, countingStrategy, previousWatermarks, watermarks);
+            }
+
+            if (watermarks != null) {
+                incrementalCountsUpdater.storeWatermarks(dbConnection, watermarks);
+            }
+        } finally {
+            ctTableQueue = null;
+            inMemoryCountsTables.clear();
+            if (inMemoryCounter != null) {
+                inMemoryCounter.close();
+                inMemoryCounter = null;
+            }
+        }
+    }
+
+
+    /**
+     * Estimate the cost of each counting strategy for the RChains in the given relationship lattice, see
+     * {@link CountingStrategyPlanner}, and choose the strategy with the lowest total cost.
+     * <p>
+     * Note: The estimates are logged next to the runtimes of the CT tables built afterwards so that they can be
+     *       compared.
+     * </p>
+     *
+     * @param globalLattice - the relationship lattice containing all the RChains.
+     * @return the counting strategy with the lowest estimated total cost.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    public static CountingStrategy planCountingStrategy(RelationshipLattice globalLattice) throws SQLException {
+        CountingStrategyPlanner planner = new CountingStrategyPlanner(
+            dbConnection,
+            databaseName_std,
+            dbInfo.getSetupDatabaseName()
+        );
+
+        countingPlan.clear();
+        countingPlan.putAll(planner.plan(globalLattice));
+
+        return CountingStrategyPlanner.chooseStrategy(countingPlan.values());
+    }
+
+
+    /**
+     * Determine if the counts should be kept up to date incrementally, see {@link #updateCT(RelationshipLattice,
+     * CountingStrategy, Map, Map)}.
+     *
+     * @return true if an IncrementalWatermarkColumn has been specified and the counts aren't approximated from a
+     *         sample; otherwise false.
+     */
+    public static boolean isIncremental() {
+        return incrementalCountsUpdater != null && !isSampling();
+    }
+
+
+    /**
+     * Determine if the counts should be approximated from a sample of the input tables, see
+     * {@link CountsSampler}.
+     *
+     * @return true if a SampleRate below 1 has been specified; otherwise false.
+     */
+    public static boolean isSampling() {
+        return countsSampler.isSampling();
+    }
+
+
+    /**
+     * Update the "_counts" and "_CT" tables of the previous run with the rows added to the input tables since then,
+     * instead of rebuilding them from scratch.
+     * <p>
+     * Note: The input tables are expected to only have rows appended to them, where each new row has a larger value in
+     *       the watermark column than the rows counted by the previous run.  The input tables without the watermark
+     *       column are expected to be unchanged.
+     * </p>
+     * <p>
+     * The counts of the new rows are computed for each affected "_counts" table and added to it, see
+     * {@link IncrementalCountsUpdater#updateCountsTable(Connection, String, String, String, Map, Map)}.  The "_CT"
+     * tables are then only rebuilt for the PVariables and RChains whose "_counts" table, or one of the tables their
+     * Mobius Join reads from, has changed.
+     * </p>
+     *
+     * @param relationshipLattice - the relationship lattice used to determine which contingency tables to update.
+     * @param countingStrategy - {@link CountingStrategy} to indicate how counts related tables should be generated.
+     * @param previousWatermarks - the watermarks of the input tables when the previous run counted them.
+     * @param watermarks - the current watermarks of the input tables.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    private static void updateCT(
+        RelationshipLattice relationshipLattice,
+        CountingStrategy countingStrategy,
+        Map<String, String> previousWatermarks,
+        Map<String, String> watermarks
+    ) throws SQLException {
+        long start = System.currentTimeMillis();
+        String storageEngine = countingStrategy.getStorageEngine();
+        String ctDatabaseName = dbInfo.getCTDatabaseName();
+
+        // The tables in the CT database that have changed.
+        Set<String> updatedTables = new HashSet<String>();
+
+        // Update the "_counts" tables for the PVariables.
+        getConnection().setCatalog(dbInfo.getBNDatabaseName());
+        Map<String, Boolean> pvids = new HashMap<String, Boolean>();
+        try (
+            Statement statement = getConnection().createStatement();
+            ResultSet results = statement.executeQuery("SELECT pvid, index_number FROM PVariables;")
+        ) {
+            while (results.next()) {
+                pvids.put(results.getString("pvid"), results.getInt("index_number") == 0);
+            }
+        }
+
+        for (Map.Entry<String, Boolean> pvid : pvids.entrySet()) {
+            String countsTableName = pvid.getKey() + "_counts";
+            if (
+                incrementalCountsUpdater.updateCountsTable(
+                    getConnection(),
+                    pvid.getKey(),
+                    countsTableName,
+                    storageEngine,
+                    previousWatermarks,
+                    watermarks
+                )
+            ) {
+                updatedTables.add(countsTableName);
+            }
+
+            if (pvid.getValue()) {
+                publishCTTable(pvid.getKey(), countsTableName);
+            }
+        }
+
+        // Update the "_counts" tables for the RChains.
+        int latticeHeight = relationshipLattice.getHeight();
+        boolean copyToCT = !linkCorrelation.equals("1");
+        for (int len = 1; len <= latticeHeight; len++) {
+            for (FunctorNodesInfo rchainInfo : relationshipLattice.getRChainsInfo(len)) {
+                String shortRchain = rchainInfo.getShortID();
+                String countsTableName = shortRchain + "_counts";
+                if (
+                    incrementalCountsUpdater.updateCountsTable(
+                        getConnection(),
+                        rchainInfo.getID(),
+                        countsTableName,
+                        storageEngine,
+                        previousWatermarks,
+                        watermarks
+                    )
+                ) {
+                    updatedTables.add(countsTableName);
+
+                    // The "_CT" table is a copy of the "_counts" table when link correlations are turned off.
+                    if (copyToCT) {
+                        getConnection().setCatalog(ctDatabaseName);
+                        try (Statement statement = getConnection().createStatement()) {
+                            statement.execute("DROP TABLE IF EXISTS `" + shortRchain + "_CT`;");
+                            statement.execute(
+                                "CREATE TABLE `" + shortRchain + "_CT` AS SELECT * FROM `" + countsTableName + "`;"
+                            );
+                        }
+                    }
+                }
+
+                if (copyToCT) {
+                    publishCTTable(rchainInfo.getID(), shortRchain + "_CT");
+                }
+            }
+        }
+
+        RuntimeLogger.updateLogEntry(getConnection(), "updateCounts", System.currentTimeMillis() - start);
+
+        if (copyToCT || latticeHeight == 0) {
+            return;
+        }
+
+        // Rebuild the "_CT" tables that depend on the updated tables, going up the relationship lattice so that the
+        // "_CT" tables of the sub-chains are up to date first.
+        start = System.currentTimeMillis();
+        Map<String, String> joinTableQueries = createJoinTableQueries();
+        incrementalCountsUpdater.dropTables(getConnection(), "%\\_flat");
+        incrementalCountsUpdater.dropTables(getConnection(), "%\\_false");
+        for (int len = 1; len <= latticeHeight; len++) {
+            AtomicInteger flatTableCounter = new AtomicInteger();
+            List<String> rebuiltTables = new ArrayList<String>();
+            for (FunctorNodesInfo rchainInfo : relationshipLattice.getRChainsInfo(len)) {
+                String rchain = rchainInfo.getID();
+                String shortRchain = rchainInfo.getShortID();
+                String ctTableName = shortRchain + "_CT";
+                boolean changed = incrementalCountsUpdater.dependsOnUpdatedTables(
+                    getConnection(),
+                    rchain,
+                    shortRchain,
+                    updatedTables
+                );
+                if (!changed) {
+                    publishCTTable(rchain, ctTableName);
+                    continue;
+                }
+
+                logger.fine("Rebuilding " + ctTableName + ".");
+                incrementalCountsUpdater.dropRChainCTTables(getConnection(), rchain, shortRchain);
+                if (len == 1) {
+                    buildRNodesCT(
+                        ctDatabaseName,
+                        ctTableName,
+                        countingStrategy,
+                        buildRNodeCTCreationQuery(rchain, shortRchain, joinTableQueries),
+                        rchain,
+                        shortRchain
+                    );
+                    publishCTTable(rchain, ctTableName);
+                } else {
+                    buildRChainCT(rchainInfo, len, joinTableQueries, storageEngine, flatTableCounter);
+                }
+
+                rebuiltTables.add(ctTableName);
+            }
+
+            // The "_CT" tables of the next level read the "_CT" tables of this level.
+            updatedTables.addAll(rebuiltTables);
+        }
+
+        RuntimeLogger.updateLogEntry(getConnection(), "updateCT", System.currentTimeMillis() - start);
     }
 
 
@@ -176,6 +486,13 @@ public class CountsManager {
             startingHeight = 2;
         }
 
+        long l = System.currentTimeMillis(); //@zqian : CT table generating time
+        // Handle the PVariables first, generating the pvars_counts tables, since their structure is learned first.
+        buildPVarsCounts(countingStrategy);
+        long end = System.currentTimeMillis();
+        RuntimeLogger.updateLogEntry(getConnection(), "buildPVarsCounts", end - l);
+        RuntimeLogger.logRunTimeDetails(logger, "buildPVarsCounts", l, end);
+
         // Build the counts tables for the RChains.
         buildRChainCounts(
             dbInfo.getCTDatabaseName(),
@@ -185,17 +502,10 @@ public class CountsManager {
             startingHeight
         );
 
-        long l = System.currentTimeMillis(); //@zqian : CT table generating time
-           // handling Pvars, generating pvars_counts       
-        buildPVarsCounts(countingStrategy);
-        long end = System.currentTimeMillis();
-        RuntimeLogger.updateLogEntry(dbConnection, "buildPVarsCounts", end - l);
-        RuntimeLogger.logRunTimeDetails(logger, "buildPVarsCounts", l, end);
-
         // preparing the _join part for _CT tables
         long start = System.currentTimeMillis();
         Map<String, String> joinTableQueries = createJoinTableQueries();
-        RuntimeLogger.updateLogEntry(dbConnection, "createJoinTableQueries", System.currentTimeMillis() - start);
+        RuntimeLogger.updateLogEntry(getConnection(), "createJoinTableQueries", System.currentTimeMillis() - start);
 
         if (linkCorrelation.equals("1") && relationshipLattice.getHeight() != 0) {
             start = System.currentTimeMillis();
@@ -221,34 +531,95 @@ public class CountsManager {
             // Build the CT tables for the first level of the relationship lattice.
             long ctAllStart = System.currentTimeMillis();
             String finalTableName = null;
-            for (FunctorNodesInfo rnodeInfo : rchainInfos) {
-                String rnode = rnodeInfo.getID();
-                String shortRNode = rnodeInfo.getShortID();
-                String ctTableName = shortRNode + "_CT";
-                String ctCreationQuery = buildRNodeCTCreationQuery(rnode, shortRNode, joinTableQueries);
-
-                buildCTMethod.apply(
-                    dbInfo.getCTDatabaseName(),
-                    ctTableName,
-                    countingStrategy,
-                    ctCreationQuery,
-                    rnode,
-                    shortRNode
-                );
+            final BuildRNodesCTMethod<
+                String,
+                String,
+                CountingStrategy,
+                String,
+                String,
+                String,
+                SQLException
+            > rnodeCTMethod = buildCTMethod;
+            buildConcurrently(
+                "buildRNodeCT",
+                rchainInfos,
+                FunctorNodesInfo::getID,
+                rnodeInfo -> {
+                    String rnode = rnodeInfo.getID();
+                    String shortRNode = rnodeInfo.getShortID();
+                    String ctTableName = shortRNode + "_CT";
+                    String ctCreationQuery = buildRNodeCTCreationQuery(rnode, shortRNode, joinTableQueries);
+
+                    rnodeCTMethod.apply(
+                        dbInfo.getCTDatabaseName(),
+                        ctTableName,
+                        countingStrategy,
+                        ctCreationQuery,
+                        rnode,
+                        shortRNode
+                    );
+
+                    publishCTTable(rnode, ctTableName);
+                }
+            );
 
-                finalTableName = ctTableName;
+            if (!rchainInfos.isEmpty()) {
+                finalTableName = rchainInfos.get(rchainInfos.size() - 1).getShortID() + "_CT";
             }
             RuntimeLogger.logRunTimeDetails(logger, "buildRChainsCT-length=1", ctAllStart, System.currentTimeMillis());
 
+            // Use the in-memory Mobius Join for the RChains if we have been specified to, or if the "_counts" tables
+            // have been generated in memory so that they can be used without reading them back from the database.
+            MobiusJoin mobiusJoin = null;
+            boolean writeCTTables = true;
+            if (inMemoryMobiusJoin || countingStrategy.useInMemoryCounts()) {
+                mobiusJoin = new MobiusJoin(dbInfo.getBNDatabaseName(), dbInfo.getCTDatabaseName(), joinTableQueries);
+
+                // The structure learning can only read the CT tables from memory for the PreCount CountingStrategy.
+                writeCTTables = mobiusJoinWriteBack || !countingStrategy.isPrecount();
+
+                // for loop to hand off the "_counts" tables generated in memory for the RChains of length 2 or more.
+                for (int len = 2; len <= latticeHeight; len++) {
+                    for (FunctorNodesInfo rchainInfo : relationshipLattice.getRChainsInfo(len)) {
+                        String countsTableName = rchainInfo.getShortID() + "_counts";
+                        MobiusJoin.CountsTable countsTable = inMemoryCountsTables.remove(countsTableName);
+                        if (countsTable != null) {
+                            mobiusJoin.cacheTable(countsTableName, countsTable);
+                        }
+                    }
+                }
+            }
+
+            inMemoryCountsTables.clear();
+
             //building the _CT tables. Going up the Rchain lattice
             for(int len = 2; len <= latticeHeight; len++) {
                 ctAllStart = System.currentTimeMillis();
+                List<FunctorNodesInfo> subChainInfos = rchainInfos;
                 rchainInfos = relationshipLattice.getRChainsInfo(len);
-                finalTableName = buildRChainsCT(rchainInfos, len, joinTableQueries, countingStrategy.getStorageEngine());
+                if (mobiusJoin != null) {
+                    finalTableName = buildRChainsCTInMemory(
+                        mobiusJoin,
+                        rchainInfos,
+                        countingStrategy.getStorageEngine(),
+                        writeCTTables,
+                        countingStrategy.isPrecount()
+                    );
+
+                    // The "_CT" tables of the sub-chains are no longer needed once the current level has been built.
+                    List<String> subChainCTTables = new ArrayList<String>();
+                    for (FunctorNodesInfo subChainInfo : subChainInfos) {
+                        subChainCTTables.add(subChainInfo.getShortID() + "_CT");
+                    }
+
+                    mobiusJoin.evictTables(subChainCTTables);
+                } else {
+                    finalTableName = buildRChainsCT(rchainInfos, len, joinTableQueries, countingStrategy.getStorageEngine());
+                }
                 RuntimeLogger.logRunTimeDetails(logger, "buildRChainsCT-length=" + len, ctAllStart, System.currentTimeMillis());
             }
 
-            if (generatePDPInfo) {
+            if (generatePDPInfo && (writeCTTables || latticeHeight == 1)) {
                 logPDPOutput(
                     dbInfo.getCTDatabaseName(),
                     finalTableName,
@@ -259,7 +630,7 @@ public class CountsManager {
                 );
             }
 
-            RuntimeLogger.updateLogEntry(dbConnection, "buildFlatStarCT", System.currentTimeMillis() - start);
+            RuntimeLogger.updateLogEntry(getConnection(), "buildFlatStarCT", System.currentTimeMillis() - start);
         }
 
         long l2 = System.currentTimeMillis();  //@zqian
@@ -328,10 +699,22 @@ public class CountsManager {
             countsTableSubQuery = "SELECT * FROM " + dbInfo.getCTDatabaseName() + "." + tableName;
         } else if (countingStrategy.isPrecount()) {
             countsTableSubQuery = "SELECT * FROM " + dbInfo.getCTDatabaseName() + "." + shortRNode + "_counts";
+        } else if (globalCountsCache != null && countingStrategy.useProjection()) {
+            // Project the counts from the global counts in memory instead of using the GROUP BY subquery.
+            MobiusJoin.CountsTable countsTable = projectGlobalCounts(rnode, shortRNode);
+            if (countsTable != null) {
+                countsTable.write(
+                    getConnection(),
+                    dbInfo.getCTDatabaseName(),
+                    shortRNode + "_counts",
+                    countingStrategy.getStorageEngine()
+                );
+                countsTableSubQuery = "SELECT * FROM " + dbInfo.getCTDatabaseName() + ".`" + shortRNode + "_counts`";
+            }
         }
 
         // Add runtime to a column used to add to the "Counts" portion and subtract from the "Moebius Join" portion.
-        RuntimeLogger.updateLogEntry(dbConnection, "buildRNodeCounts", System.currentTimeMillis() - start);
+        RuntimeLogger.updateLogEntry(getConnection(), "buildRNodeCounts", System.currentTimeMillis() - start);
 
         // Build the _star table subquery.
         String starTableSubQuery = buildRNodeStarQuery(rnode, shortRNode);
@@ -351,9 +734,9 @@ public class CountsManager {
             ctCreationQuery
         );
 
-        dbConnection.setCatalog(targetDatabaseName);
+        getConnection().setCatalog(targetDatabaseName);
         RuntimeLogger.logExecutedQuery(logger, createCTQuery);
-        try (Statement statement = dbConnection.createStatement()) {
+        try (Statement statement = getConnection().createStatement()) {
             statement.executeUpdate(createCTQuery);
         }
 
@@ -383,26 +766,21 @@ public class CountsManager {
         String shortRNode
     ) throws SQLException {
         String ctTablesCacheKey = ctTableName + ctCreationQuery;
-        String cacheTableName = ctTablesCache.get(ctTablesCacheKey);
-        boolean cacheUsed = cacheTableName != null;
-        if (cacheTableName == null) {
-            // Create the table in the CT cache database.
-            cacheTableName = ctTableName + "_" + tableID;
-            tableID++;
+        boolean[] cacheUsed = { true };
+        String cacheTableName = getOrBuildCacheTable(ctTablesCacheKey, ctTableName, newCacheTableName -> {
+            cacheUsed[0] = false;
             buildRNodesCT(
                 dbInfo.getCTCacheDatabaseName(),
-                cacheTableName,
+                newCacheTableName,
                 countingStrategy,
                 ctCreationQuery,
                 rnode,
                 shortRNode
             );
+        });
 
-            ctTablesCache.put(ctTablesCacheKey, cacheTableName);
-        }
-
-        dbConnection.setCatalog(dbInfo.getCTDatabaseName());
-        try (Statement createViewStatement = dbConnection.createStatement()) {
+        getConnection().setCatalog(dbInfo.getCTDatabaseName());
+        try (Statement createViewStatement = getConnection().createStatement()) {
             String viewQuery =
                 "CREATE VIEW " + ctTableName + " AS " +
                 "SELECT * " +
@@ -410,7 +788,44 @@ public class CountsManager {
             createViewStatement.executeUpdate(viewQuery);
         }
 
-        return cacheUsed;
+        return cacheUsed[0];
+    }
+
+
+    /**
+     * Retrieve the name of the table in the CT cache database for the given key, building the table if it isn't in
+     * the cache yet.
+     * <p>
+     * Note: Threads asking for the same key at the same time wait for the table to be built once instead of each
+     *       building their own copy.
+     * </p>
+     *
+     * @param cacheKey - the key identifying the contents of the table.
+     * @param tableName - the name to base the name of a new table in the CT cache database on.
+     * @param builder - builds a new table in the CT cache database with the given name.
+     * @return the name of the table in the CT cache database for the given key.
+     * @throws SQLException if there are issues building the table.
+     */
+    private static String getOrBuildCacheTable(
+        String cacheKey,
+        String tableName,
+        TableBuilder<String> builder
+    ) throws SQLException {
+        try {
+            return ctTablesCache.computeIfAbsent(cacheKey, key -> {
+                // Create the table in the CT cache database.
+                String cacheTableName = tableName + "_" + tableID.getAndIncrement();
+                try {
+                    builder.build(cacheTableName);
+                } catch (SQLException e) {
+                    throw new UncheckedSQLException(e);
+                }
+
+                return cacheTableName;
+            });
+        } catch (UncheckedSQLException e) {
+            throw e.getCause();
+        }
     }
 
 
@@ -432,6 +847,54 @@ public class CountsManager {
             "MEMORY",
             1
         );
+
+        // Project the "_counts" tables from the global counts in memory if we have been specified to.
+        globalCountsCache = null;
+        if (inMemoryProjection) {
+            globalCountsCache = new GlobalCountsCache(dbInfo.getGlobalCountsDatabaseName());
+        }
+    }
+
+
+    /**
+     * Project the "_counts" table for the given RChain from its global "_counts" table in memory, see
+     * {@link GlobalCountsCache}.
+     *
+     * @param rchain - the full form name of the RChain.
+     * @param shortRchain - the short form name of the RChain.
+     * @return the "_counts" table for the given RChain, or null if it can't be projected in memory because the data is
+     *         continuous, in which case the "_counts" table isn't grouped.
+     * @throws SQLException if an error occurs when executing the queries.
+     */
+    private static MobiusJoin.CountsTable projectGlobalCounts(String rchain, String shortRchain) throws SQLException {
+        if (cont.equals("1")) {
+            return null;
+        }
+
+        // Retrieve the columns to project onto, which are the aliases of the non-aggregate SELECT entries.
+        List<String> selectAliases;
+        getConnection().setCatalog(dbInfo.getBNDatabaseName());
+        try (
+            Statement statement = getConnection().createStatement();
+            ResultSet results = statement.executeQuery(
+                "SELECT Entries " +
+                "FROM MetaQueries " +
+                "WHERE Lattice_Point = '" + rchain + "' " +
+                "AND ClauseType = 'SELECT' " +
+                "AND EntryType <> 'aggregate' " +
+                "AND TableType = 'Counts';"
+            )
+        ) {
+            selectAliases = extractEntries(results, "Entries");
+        }
+
+        List<String> columns = new ArrayList<String>();
+        for (String selectAlias : selectAliases) {
+            String alias = selectAlias.substring(selectAlias.indexOf(" AS ") + " AS ".length()).trim();
+            columns.add(alias.replaceAll("^[`\"]|[`\"]$", ""));
+        }
+
+        return globalCountsCache.project(getConnection(), shortRchain + "_counts", columns);
     }
 
 
@@ -476,7 +939,7 @@ public class CountsManager {
             RuntimeLogger.logRunTimeDetails(logger, "buildRChainCounts-length=" + len, countsStart, System.currentTimeMillis());
         }
 
-        RuntimeLogger.updateLogEntry(dbConnection, "buildRChainCounts", System.currentTimeMillis() - start);
+        RuntimeLogger.updateLogEntry(getConnection(), "buildRChainCounts", System.currentTimeMillis() - start);
     }
 
 
@@ -496,6 +959,49 @@ public class CountsManager {
         cont = conf.getProperty("Continuous");
         String loggingLevel = conf.getProperty("LoggingLevel");
         generatePDPInfo = loggingLevel.equals("runtimeDetails") || loggingLevel.equals("debug");
+        ctBuildThreads = Integer.parseInt(conf.getProperty("CTBuildThreads", "1"));
+        sortMergeThreshold = Long.parseLong(conf.getProperty("SortMergeThreshold", "0"));
+        inMemoryMobiusJoin = conf.getProperty("InMemoryMobiusJoin", "0").equals("1");
+        mobiusJoinWriteBack = conf.getProperty("MobiusJoinWriteBack", "1").equals("1");
+        inMemoryCountingThreads = Integer.parseInt(
+            conf.getProperty("InMemoryCountingThreads", String.valueOf(Runtime.getRuntime().availableProcessors()))
+        );
+        long countsPartitionRows = Long.parseLong(conf.getProperty("CountsPartitionRows", "0"));
+        countsPartitioner = null;
+        if (countsPartitionRows > 0) {
+            countsPartitioner = new CountsPartitioner(
+                countsPartitionRows,
+                Integer.parseInt(conf.getProperty("CountsPartitionThreads", "4")),
+                dbInfo.getCountColumnName(),
+                dbTemporaryTableSize
+            );
+        }
+
+        String watermarkColumn = conf.getProperty("IncrementalWatermarkColumn", "").trim();
+        incrementalCountsUpdater = null;
+        if (!watermarkColumn.isEmpty()) {
+            incrementalCountsUpdater = new IncrementalCountsUpdater(
+                databaseName_std,
+                dbInfo.getBNDatabaseName(),
+                dbInfo.getCTDatabaseName(),
+                watermarkColumn,
+                dbInfo.getCountColumnName(),
+                cont.equals("1"),
+                dbTemporaryTableSize
+            );
+        }
+
+        joinOrderPlanning = conf.getProperty("JoinOrderPlanning", "0").equals("1");
+        joinOrderBenchmark = conf.getProperty("JoinOrderBenchmark", "0").equals("1");
+        joinOrderPlanner = new JoinOrderPlanner(Integer.parseInt(conf.getProperty("JoinOrderMaxSkew", "10")));
+        countsSampler = new CountsSampler(
+            databaseName_std,
+            dbInfo.getSetupDatabaseName(),
+            dbInfo.getCountColumnName(),
+            Double.parseDouble(conf.getProperty("SampleRate", "1")),
+            Long.parseLong(conf.getProperty("SampleSeed", "0"))
+        );
+        inMemoryProjection = conf.getProperty("InMemoryProjection", "0").equals("1");
     }
 
 
@@ -519,7 +1025,7 @@ public class CountsManager {
     ) {
         try {
             MySQLDataExtractor extractor = new MySQLDataExtractor(
-                dbConnection.prepareStatement(
+                getConnection().prepareStatement(
                     "SELECT * " +
                     "FROM " + database + ".`" + table + "` " +
                     "WHERE " + dbInfo.getCountColumnName() + " > 0;"
@@ -571,6 +1077,11 @@ public class CountsManager {
             dbPassword
         );
 
+        // The Java sort merge streams the star and flat tables at the same time using server side cursors.
+        if (sortMergeThreshold > 0) {
+            connectionProperties.put("useCursorFetch", "true");
+        }
+
         String CONN_STR = "jdbc:" + dbaddress + "/" + databaseName;
         try {
             java.lang.Class.forName("com.mysql.cj.jdbc.Driver");
@@ -614,206 +1125,303 @@ public class CountsManager {
         Map<String, String> joinTableQueries,
         String storageEngine
     ) throws SQLException {
-        int fc=0;
-        String finalTableName = null;
-        for (FunctorNodesInfo rchainInfo : rchainInfos)
-        {
-            // Get the short and full form rnids for further use.
-            String rchain = rchainInfo.getID();
-            String shortRchain = rchainInfo.getShortID();
-            // Oct 16 2013
-            // initialize the cur_CT_Table, at very beginning we will use _counts table to create the _flat table
-            String cur_CT_Table = shortRchain + "_counts";
-            // counts represents the ct tables where all relationships in Rchain are true
-
-            //  create new statement
-            dbConnection.setCatalog(dbInfo.getBNDatabaseName());
-            Statement st1 = dbConnection.createStatement();
-            ResultSet rs1 = st1.executeQuery(
-                "SELECT removed, short_rnid " +
-                "FROM lattice_rel " +
-                "JOIN lattice_mapping " +
-                "ON lattice_rel.removed = lattice_mapping.orig_rnid " +
-                "WHERE child = '" + rchain + "' " +
-                "ORDER BY removed ASC;"
-            ); // members of rchain
-
-            while(rs1.next())
-            {       
-                String removed = rs1.getString("removed");
-                String removedShort = rs1.getString("short_rnid");
-                String BaseName = shortRchain + "_" + removedShort;
-
-                dbConnection.setCatalog(dbInfo.getBNDatabaseName());
-                Statement st2 = dbConnection.createStatement();
-
-                //  create select query string  
-                ResultSet rs2 = st2.executeQuery(
-                    QueryGenerator.createMetaQueriesExtractionQuery(
-                        rchain,
-                        "Star",
-                        "SELECT",
-                        removed,
-                        false
-                    )
-                );
-                List<String> columns = extractEntries(rs2, "Entries");
-                String selectString = String.join(", ", columns);
-                rs2.close();
-                //  create mult query string
-                ResultSet rs3 = st2.executeQuery(
-                    QueryGenerator.createMetaQueriesExtractionQuery(
-                        rchain,
-                        "Star",
-                        "FROM",
-                        removed,
-                        false
-                    )
-                );
-                columns = extractEntries(rs3, "Entries");
-                String MultString = makeStarSepQuery(columns);
-                rs3.close();
-                //  create from query string
-                String fromString = String.join(", ", columns);
-                //  create where query string
-                ResultSet rs5 = st2.executeQuery(
-                    QueryGenerator.createMetaQueriesExtractionQuery(
-                        rchain,
-                        "Star",
-                        "WHERE",
-                        removed,
-                        false
-                    )
-                );
-                columns = extractEntries(rs5, "Entries");
-                String whereString = String.join(" AND ", columns);
-                rs5.close();
-                //  create the final query
-                String queryString ="";
-                if (!selectString.isEmpty() && !whereString.isEmpty()) {
-                    queryString = "Select " +  MultString+ " as `MULT` ,"+selectString + " from " + fromString  + " where " + whereString;
-                } else if (!selectString.isEmpty()) {
-                    queryString = "Select " +  MultString+ " as `MULT` ,"+selectString + " from " + fromString;
-                } else if (!whereString.isEmpty()) {
-                    queryString =
-                        "SELECT " + MultString + " AS `MULT` " +
-                        "FROM " + fromString  + " " +
-                        "WHERE " + whereString;
-                } else {
-                    queryString =
-                        "SELECT " + MultString + " AS `MULT` " +
-                        "FROM " + fromString;
-                }
+        // Shared by the RChains of the given length so that "_flat" tables built at the same time get different names.
+        AtomicInteger flatTableCounter = new AtomicInteger();
+        buildConcurrently(
+            "buildRChainCT",
+            rchainInfos,
+            FunctorNodesInfo::getID,
+            rchainInfo -> buildRChainCT(rchainInfo, len, joinTableQueries, storageEngine, flatTableCounter)
+        );
 
-                dbConnection.setCatalog(dbInfo.getCTDatabaseName());
-                Statement st3 = dbConnection.createStatement();
+        if (rchainInfos.isEmpty()) {
+            return null;
+        }
 
-                //make the rnid shorter 
-                String rnid_or=removedShort;
+        return rchainInfos.get(rchainInfos.size() - 1).getShortID() + "_CT";
+    }
 
-                //staring to create the _flat table
-                // Oct 16 2013
-                // cur_CT_Table should be the one generated in the previous iteration
-                // for the very first iteration, it's _counts table
 
-                String cur_flat_Table = removedShort + len + "_" + fc + "_flat";
-                String queryStringflat = "SELECT SUM(`" + cur_CT_Table + "`.MULT) AS 'MULT' ";
+    /**
+     * Building the _CT tables for the RChains of the same length using the in-memory Mobius Join, see
+     * {@link MobiusJoin}, instead of creating the intermediate tables in MySQL.
+     *
+     * @param mobiusJoin - {@link MobiusJoin} holding the "_CT" tables of the sub-chains of the given RChains.
+     * @param rchainInfos - FunctorNodesInfos for the RChains to build the "_CT" tables for.
+     * @param storageEngine - the storage engine to use for the "_CT" tables written to the CT database.
+     * @param writeCTTables - True if the "_CT" tables should be written to the CT database; otherwise false.
+     * @param keepDataSets - True if the "_CT" tables should be kept in memory for the structure learning, see
+     *                       {@link #getAndRemoveInMemoryCTTable(String)}; otherwise false.
+     * @return the name of the final CT table that gets created.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    private static String buildRChainsCTInMemory(
+        MobiusJoin mobiusJoin,
+        List<FunctorNodesInfo> rchainInfos,
+        String storageEngine,
+        boolean writeCTTables,
+        boolean keepDataSets
+    ) throws SQLException {
+        buildConcurrently(
+            "buildRChainCTInMemory",
+            rchainInfos,
+            FunctorNodesInfo::getID,
+            rchainInfo -> {
+                String rchain = rchainInfo.getID();
+                String ctTableName = rchainInfo.getShortID() + "_CT";
+                MobiusJoin.CountsTable ctTable = mobiusJoin.buildCT(getConnection(), rchain, rchainInfo.getShortID());
+                mobiusJoin.cacheTable(ctTableName, ctTable);
+
+                if (writeCTTables) {
+                    ctTable.write(getConnection(), dbInfo.getCTDatabaseName(), ctTableName, storageEngine);
+                }
 
-                if (!selectString.isEmpty()) {
-                    queryStringflat +=
-                        ", " + selectString + " " +
-                        "FROM `" + cur_CT_Table + "` " +
-                        "GROUP BY " + selectString + ";";
-                } else {
-                    queryStringflat +=
-                        "FROM `" + cur_CT_Table + "`;";
+                if (keepDataSets) {
+                    inMemoryCTTables.put(rchain, ctTable.toDataSet(dbInfo.getCountColumnName(), dbInfo.isDiscrete()));
                 }
+                handOffCTTable(rchain, ctTableName, ctTable.getNumberOfRows());
+            }
+        );
 
-                String createStringflat = QueryGenerator.createSimpleCreateTableQuery(
-                    cur_flat_Table,
-                    storageEngine,
-                    queryStringflat
-                );
-                RuntimeLogger.logExecutedQuery(logger, createStringflat);
-                st3.execute(createStringflat);      //create flat table
+        if (rchainInfos.isEmpty()) {
+            return null;
+        }
 
-                // Add covering index.
-                addCoveringIndex(
-                    dbConnection,
-                    dbInfo.getCTDatabaseName(),
-                    cur_flat_Table
-                );
+        return rchainInfos.get(rchainInfos.size() - 1).getShortID() + "_CT";
+    }
+
+
+    /**
+     * Build the "_CT" table for the given RChain, see {@link #buildRChainsCT(List, int, Map, String)} for the details.
+     *
+     * @param rchainInfo - FunctorNodesInfo for the RChain to build the "_CT" table for.
+     * @param len - length of the given RChain.
+     * @param joinTableQueries - {@code Map} to retrieve the associated query to create a derived JOIN table.
+     * @param storageEngine - the storage engine to use for the tables created when executing this method.
+     * @param flatTableCounter - counter used to give a unique name to each "_flat" table of the current lattice level.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    private static void buildRChainCT(
+        FunctorNodesInfo rchainInfo,
+        int len,
+        Map<String, String> joinTableQueries,
+        String storageEngine,
+        AtomicInteger flatTableCounter
+    ) throws SQLException {
+        // Get the short and full form rnids for further use.
+        String rchain = rchainInfo.getID();
+        String shortRchain = rchainInfo.getShortID();
+        // Oct 16 2013
+        // initialize the cur_CT_Table, at very beginning we will use _counts table to create the _flat table
+        String cur_CT_Table = shortRchain + "_counts";
+        // counts represents the ct tables where all relationships in Rchain are true
+
+        //  create new statement
+        getConnection().setCatalog(dbInfo.getBNDatabaseName());
+        Statement st1 = getConnection().createStatement();
+        ResultSet rs1 = st1.executeQuery(
+            "SELECT removed, short_rnid " +
+            "FROM lattice_rel " +
+            "JOIN lattice_mapping " +
+            "ON lattice_rel.removed = lattice_mapping.orig_rnid " +
+            "WHERE child = '" + rchain + "' " +
+            "ORDER BY removed ASC;"
+        ); // members of rchain
+
+        while(rs1.next())
+        {       
+            String removed = rs1.getString("removed");
+            String removedShort = rs1.getString("short_rnid");
+            String BaseName = shortRchain + "_" + removedShort;
+
+            getConnection().setCatalog(dbInfo.getBNDatabaseName());
+            Statement st2 = getConnection().createStatement();
+
+            //  create select query string  
+            ResultSet rs2 = st2.executeQuery(
+                QueryGenerator.createMetaQueriesExtractionQuery(
+                    rchain,
+                    "Star",
+                    "SELECT",
+                    removed,
+                    false
+                )
+            );
+            List<String> columns = extractEntries(rs2, "Entries");
+            String selectString = String.join(", ", columns);
+            rs2.close();
+            //  create mult query string
+            ResultSet rs3 = st2.executeQuery(
+                QueryGenerator.createMetaQueriesExtractionQuery(
+                    rchain,
+                    "Star",
+                    "FROM",
+                    removed,
+                    false
+                )
+            );
+            columns = extractEntries(rs3, "Entries");
+            String MultString = makeStarSepQuery(columns);
+            rs3.close();
+            //  create from query string
+            String fromString = String.join(", ", columns);
+            //  create where query string
+            ResultSet rs5 = st2.executeQuery(
+                QueryGenerator.createMetaQueriesExtractionQuery(
+                    rchain,
+                    "Star",
+                    "WHERE",
+                    removed,
+                    false
+                )
+            );
+            columns = extractEntries(rs5, "Entries");
+            String whereString = String.join(" AND ", columns);
+            rs5.close();
+            //  create the final query
+            String queryString ="";
+            if (!selectString.isEmpty() && !whereString.isEmpty()) {
+                queryString = "Select " +  MultString+ " as `MULT` ,"+selectString + " from " + fromString  + " where " + whereString;
+            } else if (!selectString.isEmpty()) {
+                queryString = "Select " +  MultString+ " as `MULT` ,"+selectString + " from " + fromString;
+            } else if (!whereString.isEmpty()) {
+                queryString =
+                    "SELECT " + MultString + " AS `MULT` " +
+                    "FROM " + fromString  + " " +
+                    "WHERE " + whereString;
+            } else {
+                queryString =
+                    "SELECT " + MultString + " AS `MULT` " +
+                    "FROM " + fromString;
+            }
+
+            getConnection().setCatalog(dbInfo.getCTDatabaseName());
+            Statement st3 = getConnection().createStatement();
+
+            //make the rnid shorter 
+            String rnid_or=removedShort;
+
+            //staring to create the _flat table
+            // Oct 16 2013
+            // cur_CT_Table should be the one generated in the previous iteration
+            // for the very first iteration, it's _counts table
+
+            int flatTableID = flatTableCounter.getAndIncrement();
+            String cur_flat_Table = removedShort + len + "_" + flatTableID + "_flat";
+            String queryStringflat = "SELECT SUM(`" + cur_CT_Table + "`.MULT) AS 'MULT' ";
+
+            if (!selectString.isEmpty()) {
+                queryStringflat +=
+                    ", " + selectString + " " +
+                    "FROM `" + cur_CT_Table + "` " +
+                    "GROUP BY " + selectString + ";";
+            } else {
+                queryStringflat +=
+                    "FROM `" + cur_CT_Table + "`;";
+            }
+
+            String createStringflat = QueryGenerator.createSimpleCreateTableQuery(
+                cur_flat_Table,
+                storageEngine,
+                queryStringflat
+            );
+            RuntimeLogger.logExecutedQuery(logger, createStringflat);
+            st3.execute(createStringflat);      //create flat table
+
+            // Add covering index.
+            addCoveringIndex(
+                getConnection(),
+                dbInfo.getCTDatabaseName(),
+                cur_flat_Table
+            );
 
-                /**********starting to create _flase table***using sort_merge*******************************/
+            /**********starting to create _flase table***using sort_merge*******************************/
 
-                // Computing the false table as the MULT difference between the matching rows of the star and flat tables.
-                // This is a big join!
-                String falseTableSubQuery = Sort_merge3.sort_merge(
-                    dbConnection,
+            // Computing the false table as the MULT difference between the matching rows of the star and flat tables.
+            // This is a big join!  For large star tables, merge the sorted star and flat tables in Java instead.
+            String falseTableSource;
+            if (
+                sortMergeThreshold > 0 &&
+                Sort_merge3.estimateRowCount(getConnection(), queryString) >= sortMergeThreshold
+            ) {
+                String cur_false_Table = removedShort + len + "_" + flatTableID + "_false";
+                long start = System.currentTimeMillis();
+                Sort_merge3.sort_merge_to_table(
+                    getConnection(),
                     dbInfo.getCTDatabaseName(),
                     queryString,
-                    cur_flat_Table
+                    cur_flat_Table,
+                    cur_false_Table,
+                    storageEngine
                 );
+                RuntimeLogger.logRunTimeDetails(logger, "sortMerge-" + cur_false_Table, start, System.currentTimeMillis());
+                falseTableSource = "`" + cur_false_Table + "`";
+            } else {
+                falseTableSource = "(" + Sort_merge3.sort_merge(
+                    getConnection(),
+                    dbInfo.getCTDatabaseName(),
+                    queryString,
+                    cur_flat_Table
+                ) + ")";
+            }
 
-                // staring to create the CT table
-                ResultSet rs_45 = st2.executeQuery(
-                    "SELECT column_name AS Entries " +
-                    "FROM information_schema.columns " +
-                    "WHERE table_schema = '" + dbInfo.getCTDatabaseName() + "' " +
-                    "AND table_name = '" + cur_CT_Table + "';"
-                );
-                columns = extractEntries(rs_45, "Entries");
-                String CTJoinString = makeEscapedCommaSepQuery(columns);
+            // staring to create the CT table
+            ResultSet rs_45 = st2.executeQuery(
+                "SELECT column_name AS Entries " +
+                "FROM information_schema.columns " +
+                "WHERE table_schema = '" + dbInfo.getCTDatabaseName() + "' " +
+                "AND table_name = '" + cur_CT_Table + "';"
+            );
+            columns = extractEntries(rs_45, "Entries");
+            String CTJoinString = makeEscapedCommaSepQuery(columns);
 
-                //join false table with join table to add in rnid (= F) and 2nid (= n/a). then can union with CT table
-                String QueryStringCT =
-                    "SELECT " + CTJoinString + " " +
-                    "FROM `" + cur_CT_Table + "` " +
-                    "WHERE MULT > 0 " +
+            //join false table with join table to add in rnid (= F) and 2nid (= n/a). then can union with CT table
+            String QueryStringCT =
+                "SELECT " + CTJoinString + " " +
+                "FROM `" + cur_CT_Table + "` " +
+                "WHERE MULT > 0 " +
 
-                    "UNION ALL " +
+                "UNION ALL " +
 
-                    "SELECT " + CTJoinString + " " +
-                    "FROM " +
-                        "(" + falseTableSubQuery + ") AS FALSE_TABLE, " +
-                        "(" + joinTableQueries.get(rnid_or) + ") AS JOIN_TABLE " +
-                    "WHERE MULT > 0;";
+                "SELECT " + CTJoinString + " " +
+                "FROM " +
+                    falseTableSource + " AS FALSE_TABLE, " +
+                    "(" + joinTableQueries.get(rnid_or) + ") AS JOIN_TABLE " +
+                "WHERE MULT > 0;";
 
-                String Next_CT_Table = "";
+            String Next_CT_Table = "";
 
-                if (rs1.next()) {
-                    Next_CT_Table = BaseName + "_CT";
-                } else {
-                    Next_CT_Table = shortRchain + "_CT";
-                }
+            if (rs1.next()) {
+                Next_CT_Table = BaseName + "_CT";
+            } else {
+                Next_CT_Table = shortRchain + "_CT";
+            }
 
-                // Oct 16 2013
-                // preparing the CT table for next iteration
-                cur_CT_Table = Next_CT_Table;
-                finalTableName = cur_CT_Table;
+            // Oct 16 2013
+            // preparing the CT table for next iteration
+            cur_CT_Table = Next_CT_Table;
 
-                // Create CT table.
-                st3.execute(
-                    QueryGenerator.createSimpleCreateTableQuery(
-                        Next_CT_Table,
-                        storageEngine,
-                        QueryStringCT
-                    )
-                );
+            // Create CT table.
+            st3.execute(
+                QueryGenerator.createSimpleCreateTableQuery(
+                    Next_CT_Table,
+                    storageEngine,
+                    QueryStringCT
+                )
+            );
 
-                rs1.previous();
+            if (Next_CT_Table.equals(shortRchain + "_CT")) {
+                publishCTTable(rchain, Next_CT_Table);
+            }
 
-                fc++;   
+            rs1.previous();
 
-                //  close statements
-                st2.close();            
-                st3.close();
-            }
-            st1.close();
-            rs1.close();
+            //  close statements
+            st2.close();            
+            st3.close();
         }
-
-        return finalTableName;
+        st1.close();
+        rs1.close();
     }
 
 
@@ -824,15 +1432,31 @@ public class CountsManager {
      * @throws SQLException if there are issues executing the SQL queries.
      */
     private static void buildPVarsCounts(CountingStrategy countingStrategy) throws SQLException {
-        dbConnection.setCatalog(dbInfo.getBNDatabaseName());
-        Statement st = dbConnection.createStatement();
+        getConnection().setCatalog(dbInfo.getBNDatabaseName());
+        Statement st = getConnection().createStatement();
         ResultSet rs = st.executeQuery(
             "SELECT " +
-                "pvid " +
+                "pvid, index_number " +
             "FROM " +
                 "PVariables;"
         );
 
+        // Retrieve all the population variables first so that their "_counts" tables can be built at the same time.
+        List<String> pvids = new ArrayList<String>();
+        Set<String> mainPVids = new HashSet<String>();
+        while (rs.next()) {
+            String pvid = rs.getString("pvid");
+            pvids.add(pvid);
+
+            // Only the main population variables are learned from.
+            if (rs.getInt("index_number") == 0) {
+                mainPVids.add(pvid);
+            }
+        }
+
+        rs.close();
+        st.close();
+
         GeneratePVarsCountsMethod<
             String,
             String,
@@ -847,38 +1471,74 @@ public class CountsManager {
             generateCountsMethod = CountsManager::generatePVarsCountsTableFromCache;
         }
 
-        while(rs.next()){
-            String pvid = rs.getString("pvid");
-            String countsTableName = pvid + "_counts";
-            String selectQuery = QueryGenerator.createMetaQueriesExtractionQuery(
-                pvid,
-                "Counts",
-                "SELECT",
-                null,
-                false
-            );
+        final GeneratePVarsCountsMethod<
+            String,
+            String,
+            List<String>,
+            String,
+            String,
+            SQLException
+        > pvarsCountsMethod = generateCountsMethod;
+        buildConcurrently(
+            "buildPVarCounts",
+            pvids,
+            pvid -> pvid,
+            pvid -> {
+                String countsTableName = pvid + "_counts";
+                String selectQuery = QueryGenerator.createMetaQueriesExtractionQuery(
+                    pvid,
+                    "Counts",
+                    "SELECT",
+                    null,
+                    false
+                );
 
-            // Extract column aliases.
-            List<String> columnAliases;
-            dbConnection.setCatalog(dbInfo.getBNDatabaseName());
-            try (
-                Statement selectStatement = dbConnection.createStatement();
-                ResultSet selectResultSet = selectStatement.executeQuery(selectQuery)
-            ) {
-                columnAliases = extractEntries(selectResultSet, "Entries");
-            }
+                // Generate the "_counts" table in memory if we have been specified to.
+                if (inMemoryCounter != null) {
+                    MobiusJoin.CountsTable countsTable = inMemoryCounter.count(getConnection(), pvid);
+                    if (countsTable != null) {
+                        countsTable.write(
+                            getConnection(),
+                            dbInfo.getCTDatabaseName(),
+                            countsTableName,
+                            countingStrategy.getStorageEngine()
+                        );
+
+                        if (mainPVids.contains(pvid)) {
+                            inMemoryCTTables.put(
+                                pvid,
+                                countsTable.toDataSet(dbInfo.getCountColumnName(), dbInfo.isDiscrete())
+                            );
+                            handOffCTTable(pvid, countsTableName, countsTable.getNumberOfRows());
+                        }
+
+                        return;
+                    }
+                }
 
-            generateCountsMethod.apply(
-                dbInfo.getCTDatabaseName(),
-                countsTableName,
-                columnAliases,
-                countingStrategy.getStorageEngine(),
-                pvid
-            );
-        }
+                // Extract column aliases.
+                List<String> columnAliases;
+                getConnection().setCatalog(dbInfo.getBNDatabaseName());
+                try (
+                    Statement selectStatement = getConnection().createStatement();
+                    ResultSet selectResultSet = selectStatement.executeQuery(selectQuery)
+                ) {
+                    columnAliases = extractEntries(selectResultSet, "Entries");
+                }
 
-        rs.close();
-        st.close();
+                pvarsCountsMethod.apply(
+                    dbInfo.getCTDatabaseName(),
+                    countsTableName,
+                    columnAliases,
+                    countingStrategy.getStorageEngine(),
+                    pvid
+                );
+
+                if (mainPVids.contains(pvid)) {
+                    publishCTTable(pvid, countsTableName);
+                }
+            }
+        );
     }
 
 
@@ -899,8 +1559,8 @@ public class CountsManager {
         String storageEngine,
         String pvid
     ) throws SQLException {
-        dbConnection.setCatalog(dbInfo.getBNDatabaseName());
-        Statement st = dbConnection.createStatement();
+        getConnection().setCatalog(dbInfo.getBNDatabaseName());
+        Statement st = getConnection().createStatement();
         String selectString = String.join(", ", columnAliases);
 
         // Create FROM query.
@@ -973,8 +1633,8 @@ public class CountsManager {
         );
 
         RuntimeLogger.logExecutedQuery(logger, createString);
-        dbConnection.setCatalog(targetDatabaseName);
-        try (Statement st2 = dbConnection.createStatement()) {
+        getConnection().setCatalog(targetDatabaseName);
+        try (Statement st2 = getConnection().createStatement()) {
             st2.execute(createString);
         }
     }
@@ -1007,24 +1667,18 @@ public class CountsManager {
 
         String ctTablesCacheKey = csvJoiner.toString();
 
-        String cacheTableName = ctTablesCache.get(ctTablesCacheKey);
-        if (cacheTableName == null) {
-            // Create the table in the CT cache database.
-            cacheTableName = countsTableName + "_" + tableID;
-            tableID++;
+        String cacheTableName = getOrBuildCacheTable(ctTablesCacheKey, countsTableName, newCacheTableName ->
             generatePVarsCountsTable(
                 dbInfo.getCTCacheDatabaseName(),
-                cacheTableName,
+                newCacheTableName,
                 columnAliases,
                 storageEngine,
                 pvid
-            );
-
-            ctTablesCache.put(ctTablesCacheKey, cacheTableName);
-        }
+            )
+        );
 
-        dbConnection.setCatalog(targetDatabaseName);
-        try (Statement createViewStatement = dbConnection.createStatement()) {
+        getConnection().setCatalog(targetDatabaseName);
+        try (Statement createViewStatement = getConnection().createStatement()) {
             String viewQuery =
                 "CREATE VIEW " + countsTableName + " AS " +
                 "SELECT * " +
@@ -1054,54 +1708,133 @@ public class CountsManager {
         boolean buildByProjection,
         String storageEngine
     ) throws SQLException {
-        for (FunctorNodesInfo rchainInfo : rchainInfos) {
-            // Get the short and full form rnids for further use.
-            String rchain = rchainInfo.getID();
-            String shortRchain = rchainInfo.getShortID();
-            String countsTableSubQuery;
+        buildConcurrently(
+            "generateCountsTable",
+            rchainInfos,
+            FunctorNodesInfo::getID,
+            rchainInfo -> {
+                // Get the short and full form rnids for further use.
+                String rchain = rchainInfo.getID();
+                String shortRchain = rchainInfo.getShortID();
+                String countsTableSubQuery;
+
+                // Generate the "_counts" table in memory if we have been specified to.
+                if (inMemoryCounter != null && !buildByProjection) {
+                    MobiusJoin.CountsTable countsTable = inMemoryCounter.count(getConnection(), rchain);
+                    if (countsTable != null) {
+                        generateCountsTableInMemory(dbTargetName, rchain, shortRchain, copyToCT, storageEngine, countsTable);
+                        return;
+                    }
+                }
 
-            if (generatePDPInfo && !buildByProjection) {
-                String[] subQueryComponents = generateCountsTableQueryDetails(
-                    dbTargetName,
-                    rchain,
-                    shortRchain,
-                    buildByProjection
-                );
+                // Project the "_counts" table from the global counts in memory if we have been specified to.
+                if (globalCountsCache != null && buildByProjection) {
+                    MobiusJoin.CountsTable countsTable = projectGlobalCounts(rchain, shortRchain);
+                    if (countsTable != null) {
+                        generateCountsTableInMemory(dbTargetName, rchain, shortRchain, copyToCT, storageEngine, countsTable);
+                        return;
+                    }
+                }
 
-                countsTableSubQuery = subQueryComponents[0];
+                // Compare the runtimes of the counting query with and without the planned join order if we have
+                // been specified to.
+                if (joinOrderBenchmark && !buildByProjection) {
+                    benchmarkJoinOrder(rchain, shortRchain);
+                }
 
-                generateCountsTableAndPDPInfo(
-                    dbTargetName,
-                    shortRchain,
-                    storageEngine,
-                    subQueryComponents
-                );
-            } else {
-                countsTableSubQuery = generateCountsTableQuery(
-                    dbTargetName,
-                    rchain,
-                    shortRchain,
-                    buildByProjection
-                );
+                if (generatePDPInfo && !buildByProjection) {
+                    String[] subQueryComponents = generateCountsTableQueryDetails(
+                        dbTargetName,
+                        rchain,
+                        shortRchain,
+                        buildByProjection
+                    );
 
-                generateCountsTable(
-                    dbTargetName,
-                    shortRchain,
-                    storageEngine,
-                    countsTableSubQuery
-                );
-            }
+                    countsTableSubQuery = subQueryComponents[0];
 
-            if (copyToCT) {
-                dbConnection.setCatalog(dbTargetName);
-                String createString_CT =
-                    "CREATE TABLE `" + shortRchain + "_CT`" + " AS " +
-                        countsTableSubQuery;
-                RuntimeLogger.logExecutedQuery(logger, createString_CT);
-                try (Statement statement = dbConnection.createStatement()) {
-                    statement.execute(createString_CT);
+                    generateCountsTableAndPDPInfo(
+                        dbTargetName,
+                        shortRchain,
+                        storageEngine,
+                        subQueryComponents
+                    );
+                } else {
+                    // Split the counting query into partitions if we have been specified to.
+                    String tableName = null;
+                    if (countsPartitioner != null && !buildByProjection) {
+                        tableName = generatePartitionedCountsTable(
+                            dbTargetName,
+                            rchain,
+                            shortRchain,
+                            storageEngine
+                        );
+                    }
+
+                    if (tableName == null) {
+                        countsTableSubQuery = generateCountsTableQuery(
+                            dbTargetName,
+                            rchain,
+                            shortRchain,
+                            buildByProjection
+                        );
+
+                        generateCountsTable(
+                            dbTargetName,
+                            shortRchain,
+                            storageEngine,
+                            countsTableSubQuery
+                        );
+                    } else {
+                        // Read from the materialized table to avoid executing the expensive joins twice.
+                        countsTableSubQuery = "SELECT * FROM " + dbTargetName + ".`" + tableName + "`";
+                    }
+                }
+
+                if (copyToCT) {
+                    getConnection().setCatalog(dbTargetName);
+                    String createString_CT =
+                        "CREATE TABLE `" + shortRchain + "_CT`" + " AS " +
+                            countsTableSubQuery;
+                    RuntimeLogger.logExecutedQuery(logger, createString_CT);
+                    try (Statement statement = getConnection().createStatement()) {
+                        statement.execute(createString_CT);
+                    }
+
+                    publishCTTable(rchain, shortRchain + "_CT");
                 }
             }
+        );
+    }
+
+
+    /**
+     * Write the "_counts" table generated in memory for the given RChain, and keep it in memory so that the "_CT"
+     * table of the RChain can be built without reading it back from the database.
+     *
+     * @param dbTargetName - name of the database to create the "_counts" table in.
+     * @param rchain - the full form name of the RChain.
+     * @param shortRchain - the short form name of the RChain.
+     * @param copyToCT - True if the "_counts" table should also be used as the "_CT" table; otherwise false.
+     * @param storageEngine - the storage engine to use for the tables created when executing this method.
+     * @param countsTable - the "_counts" table generated in memory for the given RChain.
+     * @throws SQLException if an error occurs when executing the queries.
+     */
+    private static void generateCountsTableInMemory(
+        String dbTargetName,
+        String rchain,
+        String shortRchain,
+        boolean copyToCT,
+        String storageEngine,
+        MobiusJoin.CountsTable countsTable
+    ) throws SQLException {
+        countsTable.write(getConnection(), dbTargetName, shortRchain + "_counts", storageEngine);
+
+        if (copyToCT) {
+            countsTable.write(getConnection(), dbTargetName, shortRchain + "_CT", storageEngine);
+            inMemoryCTTables.put(rchain, countsTable.toDataSet(dbInfo.getCountColumnName(), dbInfo.isDiscrete()));
+            handOffCTTable(rchain, shortRchain + "_CT", countsTable.getNumberOfRows());
+        } else {
+            inMemoryCountsTables.put(shortRchain + "_counts", countsTable);
         }
     }
 
@@ -1128,8 +1861,8 @@ public class CountsManager {
         String countsTableName = shortRchain + "_counts";
 
         // Create new statements.
-        dbConnection.setCatalog(dbInfo.getBNDatabaseName());
-        Statement st2 = dbConnection.createStatement();
+        getConnection().setCatalog(dbInfo.getBNDatabaseName());
+        Statement st2 = getConnection().createStatement();
 
         // Create SELECT query string.
         String selectString = createCountsTableSelectString(
@@ -1139,12 +1872,13 @@ public class CountsManager {
         );
 
         // Create FROM query string.
-        String fromString = createCountsTableFromString(
+        JoinOrderPlanner.JoinOrder joinOrder = createCountsTableJoinOrder(
             st2,
             rchain,
             buildByProjection,
             countsTableName
         );
+        String fromString = joinOrder.getFromString();
 
         // Create WHERE query string.
         String whereString = createCountsTableWhereString(
@@ -1159,7 +1893,8 @@ public class CountsManager {
             rchain,
             selectString,
             fromString,
-            whereString
+            whereString,
+            joinOrder.isStraightJoin()
         );
 
         // Close statements.
@@ -1193,8 +1928,8 @@ public class CountsManager {
         String countsTableName = shortRchain + "_counts";
 
         // Create new statements.
-        dbConnection.setCatalog(dbInfo.getBNDatabaseName());
-        Statement statement = dbConnection.createStatement();
+        getConnection().setCatalog(dbInfo.getBNDatabaseName());
+        Statement statement = getConnection().createStatement();
 
         // Create SELECT query string.
         String selectString = createCountsTableSelectString(
@@ -1204,12 +1939,13 @@ public class CountsManager {
         );
 
         // Create FROM query string.
-        String fromString = createCountsTableFromString(
+        JoinOrderPlanner.JoinOrder joinOrder = createCountsTableJoinOrder(
             statement,
             rchain,
             buildByProjection,
             countsTableName
         );
+        String fromString = joinOrder.getFromString();
 
         // Create WHERE query string.
         String whereString = createCountsTableWhereString(
@@ -1224,7 +1960,8 @@ public class CountsManager {
             rchain,
             selectString,
             fromString,
-            whereString
+            whereString,
+            joinOrder.isStraightJoin()
         );
 
         // Close statements.
@@ -1284,8 +2021,8 @@ public class CountsManager {
 
 
     /**
-     * Create the {@code String} for the FROM clause of the query for creating the "_counts" table for the given
-     * RChain.
+     * Create the tables for the FROM clause of the query for creating the "_counts" table for the given RChain, in
+     * the order to join them.
      *
      * @param statement - {@code Statement} object created by a {@code Connection} to the "_BN" database.
      * @param rchain - the full form name of the RChain.
@@ -1293,16 +2030,20 @@ public class CountsManager {
                                   the global counts table; otherwise false.
      * @param countsTableName - name of the counts table expected to be found in the "_global_counts" database if we
      *                          are projecting the count information from the "_global_counts" database.
-     * @return the table(s) to get the count information from.
+     * @return the table(s) to get the count information from, and whether their order should be forced with
+     *         STRAIGHT_JOIN.
      * @throws SQLException if an error occurs when executing the queries.
      */
-    private static String createCountsTableFromString(
+    private static JoinOrderPlanner.JoinOrder createCountsTableJoinOrder(
         Statement statement,
         String rchain,
         boolean buildByProjection,
         String countsTableName
     ) throws SQLException {
-        String fromString = dbInfo.getGlobalCountsDatabaseName() + ".`" + countsTableName + "`";
+        JoinOrderPlanner.JoinOrder joinOrder = new JoinOrderPlanner.JoinOrder(
+            Collections.singletonList(dbInfo.getGlobalCountsDatabaseName() + ".`" + countsTableName + "`"),
+            false
+        );
 
         // If we aren't projecting from the global counts table, we need to retrieve the tables that need to be joined
         // in order to generate the counts table.
@@ -1317,11 +2058,27 @@ public class CountsManager {
                 )
             );
 
-            List<String> fromAliases = extractEntries(rs3, "Entries");
-            fromString = String.join(CSV_SEPARATOR, fromAliases);
+            List<String> fromAliases = countsSampler.sampleFromAliases(extractEntries(rs3, "Entries"));
+
+            // Order the tables to join based on their statistics if we have been specified to.
+            if (joinOrderPlanning && fromAliases.size() > 1) {
+                ResultSet rs4 = statement.executeQuery(
+                    QueryGenerator.createMetaQueriesExtractionQuery(
+                        rchain,
+                        "Counts",
+                        "WHERE",
+                        null,
+                        false
+                    )
+                );
+
+                joinOrder = joinOrderPlanner.plan(getConnection(), rchain, fromAliases, extractEntries(rs4, "Entries"));
+            } else {
+                joinOrder = new JoinOrderPlanner.JoinOrder(fromAliases, false);
+            }
         }
 
-        return fromString;
+        return joinOrder;
     }
 
 
@@ -1372,8 +2129,11 @@ public class CountsManager {
      * @param rchain - the full form name of the RChain.
      * @param selectString - the {@code String} returned by the
      *                       {@link CountsManager#createCountsTableSelectString(Statement, String, boolean)} method.
-     * @param fromString - the {@code String} returned by the {@link CountsManager#createCountsTableFromString(Statement, String, boolean, String)} method.
+     * @param fromString - the FROM clause of the {@link JoinOrderPlanner.JoinOrder} returned by the
+     *                     {@link CountsManager#createCountsTableJoinOrder(Statement, String, boolean, String)} method.
      * @param whereString - the {@code String} returned by the {@link CountsManager#createCountsTableWhereString(Statement, String, boolean)} method.
+     * @param straightJoin - True if MySQL should join the tables in the order given by the FROM clause; otherwise
+     *                       false.
      * @return the query for creating the "_counts" table for the given RChain.
      * @throws SQLException if an error occurs when executing the queries.
      */
@@ -1382,10 +2142,19 @@ public class CountsManager {
         String rchain,
         String selectString,
         String fromString,
-        String whereString
+        String whereString,
+        boolean straightJoin
     ) throws SQLException {
+        // Scale up the counts of the sampled groundings to approximate the counts of all the groundings.
+        double inclusionProbability = countsSampler.computeInclusionProbability(fromString);
+        if (inclusionProbability < 1) {
+            selectString = selectString.replace("COUNT(*)", "ROUND(COUNT(*) / " + inclusionProbability + ")");
+        }
+
+        // Force MySQL to join the tables in the planned order if the plan is based on reliable statistics.
+        String selectKeyword = straightJoin ? "SELECT STRAIGHT_JOIN " : "SELECT ";
         String queryString =
-            "SELECT " + selectString + " " +
+            selectKeyword + selectString + " " +
             "FROM " + fromString;
 
         if (whereString != null) {
@@ -1415,10 +2184,118 @@ public class CountsManager {
             }
         }
 
+        if (inclusionProbability < 1) {
+            countsSampler.recordInclusionProbability(queryString, inclusionProbability);
+        }
+
         return queryString;
     }
 
 
+    /**
+     * Time the query for creating the "_counts" table for the given RChain with the tables joined in the order given
+     * by the MetaQueries and in the order given by {@link JoinOrderPlanner#plan(Connection, String, List, List)}, and
+     * log the runtimes.
+     * <p>
+     * Note: The planned query is executed first so that any caching of the tables favours the unplanned query.
+     * </p>
+     *
+     * @param rchain - the full form name of the RChain.
+     * @param shortRchain - the short form name of the RChain.
+     * @throws SQLException if an error occurs when executing the queries.
+     */
+    private static void benchmarkJoinOrder(String rchain, String shortRchain) throws SQLException {
+        String plannedQuery;
+        String unplannedQuery;
+        getConnection().setCatalog(dbInfo.getBNDatabaseName());
+        try (Statement statement = getConnection().createStatement()) {
+            String selectString = createCountsTableSelectString(statement, rchain, false);
+            List<String> fromAliases;
+            try (
+                ResultSet results = statement.executeQuery(
+                    QueryGenerator.createMetaQueriesExtractionQuery(
+                        rchain,
+                        "Counts",
+                        "FROM",
+                        null,
+                        false
+                    )
+                )
+            ) {
+                fromAliases = countsSampler.sampleFromAliases(extractEntries(results, "Entries"));
+            }
+
+            List<String> whereConditions;
+            try (
+                ResultSet results = statement.executeQuery(
+                    QueryGenerator.createMetaQueriesExtractionQuery(
+                        rchain,
+                        "Counts",
+                        "WHERE",
+                        null,
+                        false
+                    )
+                )
+            ) {
+                whereConditions = extractEntries(results, "Entries");
+            }
+
+            String whereString = whereConditions.isEmpty() ? null : String.join(AND_SEPARATOR, whereConditions);
+            JoinOrderPlanner.JoinOrder joinOrder = joinOrderPlanner.plan(
+                getConnection(),
+                rchain,
+                fromAliases,
+                whereConditions
+            );
+            plannedQuery = createCountsTableFinalQuery(
+                statement,
+                rchain,
+                selectString,
+                joinOrder.getFromString(),
+                whereString,
+                joinOrder.isStraightJoin()
+            );
+            unplannedQuery = createCountsTableFinalQuery(
+                statement,
+                rchain,
+                selectString,
+                String.join(CSV_SEPARATOR, fromAliases),
+                whereString,
+                false
+            );
+        }
+
+        long plannedTime = timeQuery(plannedQuery);
+        long unplannedTime = timeQuery(unplannedQuery);
+        logger.info(
+            "Join Order Benchmark[" + shortRchain + "]: " +
+            "unplanned=" + unplannedTime + "ms, " +
+            "planned=" + plannedTime + "ms" +
+            (plannedQuery.startsWith("SELECT STRAIGHT_JOIN ") ? " (STRAIGHT_JOIN)." : ".")
+        );
+    }
+
+
+    /**
+     * Execute the given query and retrieve all of its results.
+     *
+     * @param query - the query to execute.
+     * @return the number of milliseconds it took to execute the query.
+     * @throws SQLException if an error occurs when executing the query.
+     */
+    private static long timeQuery(String query) throws SQLException {
+        long start = System.currentTimeMillis();
+        try (
+            Statement statement = getConnection().createStatement();
+            ResultSet results = statement.executeQuery("SELECT COUNT(*) FROM (" + query + ") AS BENCHMARK;")
+        ) {
+            results.next();
+        }
+
+        return System.currentTimeMillis() - start;
+    }
+
+
     /**
      * Generate the "_counts" table for the given RChain.
      *
@@ -1436,8 +2313,8 @@ public class CountsManager {
         String countsTableSubQuery
     ) throws SQLException {
         String tableName = shortRchain + "_counts";
-        dbConnection.setCatalog(dbTargetName);
-        try (Statement statement = dbConnection.createStatement()) {
+        getConnection().setCatalog(dbTargetName);
+        try (Statement statement = getConnection().createStatement()) {
             String createString = QueryGenerator.createSimpleCreateTableQuery(
                 tableName,
                 storageEngine,
@@ -1449,6 +2326,105 @@ public class CountsManager {
             statement.executeUpdate(createString);
         }
 
+        // Report the accuracy of the counts if they were approximated from a sample.
+        Double inclusionProbability = countsSampler.removeInclusionProbability(countsTableSubQuery);
+        if (inclusionProbability != null) {
+            countsSampler.logSampledCounts(getConnection(), dbTargetName, tableName, inclusionProbability);
+        }
+
+        return tableName;
+    }
+
+
+    /**
+     * Generate the "_counts" table for the given RChain by splitting the rows of its largest table into ranges of its
+     * primary key, see {@link CountsPartitioner}.
+     *
+     * @param dbTargetName - name of the database to create the "_counts" table in.
+     * @param rchain - the full form name of the RChain.
+     * @param shortRchain - the short form name of the RChain.
+     * @param storageEngine - the storage engine to use for the tables created when executing this method.
+     * @return the name of the "_counts" table generated, or null if the table is too small to be split or none of the
+     *         tables to join has a primary key, in which case the "_counts" table hasn't been generated.
+     * @throws SQLException if an error occurs when executing the queries.
+     */
+    private static String generatePartitionedCountsTable(
+        String dbTargetName,
+        String rchain,
+        String shortRchain,
+        String storageEngine
+    ) throws SQLException {
+        List<String> fromAliases;
+        getConnection().setCatalog(dbInfo.getBNDatabaseName());
+        try (
+            Statement statement = getConnection().createStatement();
+            ResultSet results = statement.executeQuery(
+                QueryGenerator.createMetaQueriesExtractionQuery(
+                    rchain,
+                    "Counts",
+                    "FROM",
+                    null,
+                    false
+                )
+            )
+        ) {
+            fromAliases = countsSampler.sampleFromAliases(extractEntries(results, "Entries"));
+        }
+
+        CountsPartitioner.Partitions partitions = countsPartitioner.partition(getConnection(), fromAliases);
+        if (partitions == null) {
+            return null;
+        }
+
+        // Create the query that counts the rows of each range.
+        List<String> partitionQueries = new ArrayList<String>();
+        getConnection().setCatalog(dbInfo.getBNDatabaseName());
+        try (Statement statement = getConnection().createStatement()) {
+            String selectString = createCountsTableSelectString(statement, rchain, false);
+            String whereString = createCountsTableWhereString(statement, rchain, false);
+            JoinOrderPlanner.JoinOrder joinOrder = createCountsTableJoinOrder(
+                statement,
+                rchain,
+                false,
+                shortRchain + "_counts"
+            );
+            for (int partition = 0; partition < partitions.size(); partition++) {
+                String rangeCondition = partitions.getRangeCondition(partition);
+                partitionQueries.add(
+                    createCountsTableFinalQuery(
+                        statement,
+                        rchain,
+                        selectString,
+                        joinOrder.getFromString(),
+                        whereString == null || whereString.isEmpty() ? rangeCondition : whereString + AND_SEPARATOR + rangeCondition,
+                        joinOrder.isStraightJoin()
+                    )
+                );
+            }
+        }
+
+        // The ranges are counted from the same sample, so they all have the same inclusion probability.
+        Double inclusionProbability = countsSampler.removeInclusionProbability(partitionQueries.get(0));
+        for (String partitionQuery : partitionQueries) {
+            countsSampler.removeInclusionProbability(partitionQuery);
+        }
+
+        String tableName = shortRchain + "_counts";
+        countsPartitioner.count(
+            () -> connectDB(dbTargetName),
+            getConnection(),
+            dbTargetName,
+            tableName,
+            storageEngine,
+            partitions,
+            partitionQueries
+        );
+
+        // Report the accuracy of the counts if they were approximated from a sample.
+        if (inclusionProbability != null) {
+            countsSampler.logSampledCounts(getConnection(), dbTargetName, tableName, inclusionProbability);
+        }
+
         return tableName;
     }
 
@@ -1509,9 +2485,11 @@ public class CountsManager {
         String fromTables,
         String whereConditions
     ) throws SQLException {
-        if (relationTables == null) {
-            // Retrieve the names of all the relationship tables.
-            relationTables = retrieveRelationTables();
+        synchronized (CountsManager.class) {
+            if (relationTables == null) {
+                // Retrieve the names of all the relationship tables.
+                relationTables = retrieveRelationTables();
+            }
         }
 
         // Map the aliases to their true database table name.
@@ -1532,13 +2510,13 @@ public class CountsManager {
                 String databaseTable = tableAliases.get(tableAlias);
                 if (relationTables.contains(tableAlias)) {
                     // If the table reference is a relationship table, then compute the degree information.
-                    int[] degreeInfo = computeDegree(databaseTable, tableColRef[1]);
+                    int[] degreeInfo = JoinOrderPlanner.computeDegree(getConnection(), databaseTable, tableColRef[1]);
                     avgD = Math.max(avgD, degreeInfo[0]);
                     maxD = Math.max(maxD,  degreeInfo[1]);
                     rtables.add(tableAlias);
                 } else {
                     // If the table reference is an entity table, then get the total number of rows in the table.
-                    maxR = Math.max(maxR, countRows(databaseTable));
+                    maxR = Math.max(maxR, JoinOrderPlanner.countRows(getConnection(), databaseTable));
                 }
             }
         }
@@ -1548,58 +2526,71 @@ public class CountsManager {
 
 
     /**
-     * Determine the average and max degree of the entries in the given table for the specified column.
+     * Hand off the given CT table to the structure learning if the CT tables are being built at the same time as the
+     * structure is being learned.
      *
-     * @param table - name of the table to get the degree information from.
-     * @param column - the column in the given table to get the degree information for.
-     * @return {@code int[]} containing the average degree (int[0]) and the max degree (int[1]).
-     * @throws SQLException if an error occurs when executing the queries.
+     * @param id - the RChain or PVariable that the CT table was built for.
+     * @param tableName - the name of the CT table in the CT database.
+     * @throws SQLException if an error occurs when executing the queries or if interrupted while handing off the CT
+     *                      table.
      */
-    private static int[] computeDegree(String table, String column) throws SQLException {
-        String degreeQuery =
-            "SELECT " +
-                "AVG(TOTAL) AS AVG, " +
-                "MAX(TOTAL) AS MAX " +
-            "FROM (" +
-                "SELECT " +
-                    column + ", " +
-                    "COUNT(*) AS TOTAL " +
-                "FROM " +
-                    table + " " +
-                "GROUP BY " +
-                    column +
-            ") AS TABULATED;";
+    private static void publishCTTable(String id, String tableName) throws SQLException {
+        if (ctTableQueue == null) {
+            return;
+        }
 
-        try (
-            Statement statement = dbConnection.createStatement();
-            ResultSet results = statement.executeQuery(degreeQuery)
-        ) {
-            results.next();
-            int[] stats = new int[2];
-            stats[0] = results.getInt("AVG");
-            stats[1] = results.getInt("MAX");
+        // Use the estimated row count since an exact count would require scanning the CT table.
+        long numberOfRows = estimateCTTableRows(getConnection(), tableName);
 
-            return stats;
-        }
+        handOffCTTable(id, tableName, numberOfRows);
     }
 
 
     /**
-     * Get the row count for the given database table.
+     * Retrieve the estimated number of rows in the given CT table from the table statistics.
      *
-     * @param databaseTable - name of the database table to get the row count for.
-     * @return the number of rows in the given database table.
-     * @throws SQLException if an error occurs when executing the queries.
+     * @param dbConnection - connection to use to read the table statistics.
+     * @param tableName - the name of the CT table.
+     * @return the estimated number of rows in the given CT table, or 0 if the table doesn't exist.
+     * @throws SQLException if there are issues executing the SQL query.
      */
-    private static int countRows(String databaseTable) throws SQLException {
+    public static long estimateCTTableRows(Connection dbConnection, String tableName) throws SQLException {
         try (
             Statement statement = dbConnection.createStatement();
             ResultSet results = statement.executeQuery(
-                "SELECT COUNT(*) AS TOTAL FROM " + databaseTable
+                "SELECT TABLE_ROWS " +
+                "FROM information_schema.TABLES " +
+                "WHERE TABLE_SCHEMA = '" + dbInfo.getCTDatabaseName() + "' " +
+                "AND TABLE_NAME = '" + tableName + "';"
             )
         ) {
-            results.next();
-            return results.getInt("TOTAL");
+            if (results.next()) {
+                return results.getLong("TABLE_ROWS");
+            }
+        }
+
+        return 0;
+    }
+
+
+    /**
+     * Hand off the given CT table to the structure learning if the CT tables are being handed off as they are built.
+     *
+     * @param id - the ID of the PVariable or RChain that the CT table is for.
+     * @param tableName - the name of the CT table.
+     * @param numberOfRows - the (estimated) number of rows in the CT table.
+     * @throws SQLException if the thread is interrupted while waiting for space in the queue.
+     */
+    private static void handOffCTTable(String id, String tableName, long numberOfRows) throws SQLException {
+        if (ctTableQueue == null) {
+            return;
+        }
+
+        try {
+            ctTableQueue.put(id, numberOfRows);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while handing off the CT table " + tableName + ".", e);
         }
     }
 
@@ -1612,9 +2603,9 @@ public class CountsManager {
      */
     private static Set<String> retrieveRelationTables() throws SQLException {
         Set<String> relationTableAliases = new HashSet<String>();
-        dbConnection.setCatalog(dbInfo.getSetupDatabaseName());
+        getConnection().setCatalog(dbInfo.getSetupDatabaseName());
         try (
-            Statement statement = dbConnection.createStatement();
+            Statement statement = getConnection().createStatement();
             ResultSet results = statement.executeQuery(
                 "SELECT " +
                     "rnid " +
@@ -1661,8 +2652,8 @@ public class CountsManager {
         String rnode,
         String shortRNode
     ) throws SQLException {
-        dbConnection.setCatalog(dbInfo.getBNDatabaseName());
-        Statement statement = dbConnection.createStatement();
+        getConnection().setCatalog(dbInfo.getBNDatabaseName());
+        Statement statement = getConnection().createStatement();
 
         // Create SELECT query string.
         String selectQuery = QueryGenerator.createMetaQueriesExtractionQuery(
@@ -1723,8 +2714,8 @@ public class CountsManager {
         String storageEngine,
         String countsTableSubQuery
     ) throws SQLException {
-        dbConnection.setCatalog(dbInfo.getBNDatabaseName());
-        Statement statement = dbConnection.createStatement();
+        getConnection().setCatalog(dbInfo.getBNDatabaseName());
+        Statement statement = getConnection().createStatement();
 
         // Create SELECT query string.
         String selectQuery = QueryGenerator.createMetaQueriesExtractionQuery(
@@ -1787,14 +2778,14 @@ public class CountsManager {
             queryString
         );
         RuntimeLogger.logExecutedQuery(logger, createString);
-        dbConnection.setCatalog(dbInfo.getCTDatabaseName());
-        try (Statement createStatement = dbConnection.createStatement()) {
+        getConnection().setCatalog(dbInfo.getCTDatabaseName());
+        try (Statement createStatement = getConnection().createStatement()) {
             createStatement.executeUpdate(createString);
         }
 
         // Add covering index.
         addCoveringIndex(
-            dbConnection,
+            getConnection(),
             dbInfo.getCTDatabaseName(),
             flatTableName
         );
@@ -1812,7 +2803,7 @@ public class CountsManager {
     private static String buildRNodeFalseQuery(String starTableSubQuery, String shortRNode) throws SQLException {
         // Computing the false table as the MULT difference between the matching rows of the star and flat tables.
         return Sort_merge3.sort_merge(
-            dbConnection,
+            getConnection(),
             dbInfo.getCTDatabaseName(),
             starTableSubQuery,
             shortRNode + "_flat"
@@ -1847,9 +2838,9 @@ public class CountsManager {
 
         // Extract and escape the column names since they look like function calls to MySQL.
         List<String> columns;
-        dbConnection.setCatalog(dbInfo.getBNDatabaseName());
+        getConnection().setCatalog(dbInfo.getBNDatabaseName());
         try (
-            Statement statement = dbConnection.createStatement();
+            Statement statement = getConnection().createStatement();
             ResultSet result = statement.executeQuery(columnQuery)
         ) {
             columns = extractEntries(result, "Entries");
@@ -1892,8 +2883,8 @@ public class CountsManager {
     private static Map<String, String> createJoinTableQueries() throws SQLException {
         Map<String, String> joinTableQueries = new HashMap<String, String>();
 
-        dbConnection.setCatalog(dbInfo.getBNDatabaseName());
-        Statement st = dbConnection.createStatement();
+        getConnection().setCatalog(dbInfo.getBNDatabaseName());
+        Statement st = getConnection().createStatement();
         ResultSet rs = st.executeQuery("select orig_rnid, short_rnid from LatticeRNodes ;");
 
         while(rs.next()){
@@ -1901,7 +2892,7 @@ public class CountsManager {
             String short_rnid = rs.getString("short_rnid");
             String orig_rnid = rs.getString("orig_rnid");
 
-            Statement st2 = dbConnection.createStatement();
+            Statement st2 = getConnection().createStatement();
 
             //  create ColumnString
             ResultSet rs2 = st2.executeQuery(
@@ -2128,6 +3119,37 @@ public class CountsManager {
     }
 
 
+    /**
+     * Interface for building the tables of a single PVariable or RChain, which allows the tables of the PVariables or
+     * RChains in the same lattice level to be built at the same time.
+     *
+     * @param <T> the type of the information used to identify the PVariable or RChain.
+     */
+    @FunctionalInterface
+    private interface TableBuilder<T> {
+        public void build(T item) throws SQLException;
+    }
+
+
+    /**
+     * Unchecked wrapper to pass a {@code SQLException} through methods that don't allow checked exceptions.
+     */
+    private static class UncheckedSQLException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+
+        UncheckedSQLException(SQLException cause) {
+            super(cause);
+        }
+
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+
+
     /**
      * Connect to all the relevant databases.
      *
@@ -2135,6 +3157,36 @@ public class CountsManager {
      */
     public static void connectDB() throws SQLException {
         dbConnection = connectDB(dbInfo.getBNDatabaseName());
+
+        // The extra connections used to build the tables at the same time, plus one to read the CT tables while they
+        // are being built, are opened as they are needed.
+        connectionPool = new ConnectionPool(() -> connectDB(dbInfo.getBNDatabaseName()), Math.max(1, ctBuildThreads) + 1);
+    }
+
+
+    /**
+     * Retrieve a connection that isn't used by any other thread, e.g. to read the CT tables while they are being
+     * built.
+     * <p>
+     * Note: The connection must be given back with {@link #releaseConnection(Connection)} once it is no longer needed.
+     * </p>
+     *
+     * @return a pooled connection to the database.
+     * @throws SQLException if an error occurs when opening a new connection.
+     * @throws InterruptedException if the thread is interrupted while waiting for a connection.
+     */
+    public static Connection acquireConnection() throws SQLException, InterruptedException {
+        return connectionPool.acquire();
+    }
+
+
+    /**
+     * Give back a connection retrieved with {@link #acquireConnection()}.
+     *
+     * @param connection - the connection to give back.
+     */
+    public static void releaseConnection(Connection connection) {
+        connectionPool.release(connection);
     }
 
 
@@ -2145,5 +3197,130 @@ public class CountsManager {
      */
     public static void disconnectDB() throws SQLException {
         dbConnection.close();
+
+        if (connectionPool != null) {
+            connectionPool.close();
+            connectionPool = null;
+        }
+    }
+
+
+    /**
+     * Retrieve the CT table that was built in memory for the given RChain, see the "InMemoryMobiusJoin" setting.
+     * <p>
+     * Note: The CT table can only be retrieved once.
+     * </p>
+     *
+     * @param id - the RChain to retrieve the CT table for.
+     * @return the CT table for the given RChain, or null if it wasn't built in memory.
+     */
+    public static DataSet getAndRemoveInMemoryCTTable(String id) {
+        return inMemoryCTTables.remove(id);
+    }
+
+
+    /**
+     * Retrieve the connection that the current thread should use to execute its queries.
+     *
+     * @return the pooled connection assigned to the current thread if it is building tables at the same time as other
+     *         threads; otherwise the main connection to the database.
+     */
+    private static Connection getConnection() {
+        Connection connection = workerConnection.get();
+        if (connection == null) {
+            return dbConnection;
+        }
+
+        return connection;
+    }
+
+
+    /**
+     * Build the tables for each of the given items, using up to "CTBuildThreads" threads with their own pooled
+     * connection so that tables of the same lattice level can be built at the same time.
+     * <p>
+     * Note: The given items are processed in order on the calling thread when "CTBuildThreads" is 1.
+     * </p>
+     *
+     * @param <T> the type of the information used to identify the PVariable or RChain.
+     * @param stage - the name of the stage to log the runtime of each table under.
+     * @param items - the items to build the tables for.
+     * @param idExtractor - retrieves the ID of an item for the runtime logs.
+     * @param builder - builds the tables for a single item.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    private static <T> void buildConcurrently(
+        String stage,
+        List<T> items,
+        Function<T, String> idExtractor,
+        TableBuilder<T> builder
+    ) throws SQLException {
+        if (ctBuildThreads <= 1 || connectionPool == null || items.size() <= 1) {
+            for (T item : items) {
+                long start = System.currentTimeMillis();
+                builder.build(item);
+                logRunTimeDetails(stage, idExtractor.apply(item), start, System.currentTimeMillis());
+            }
+
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(ctBuildThreads, items.size()));
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (T item : items) {
+                futures.add(executor.submit(() -> {
+                    Connection connection = connectionPool.acquire();
+                    workerConnection.set(connection);
+                    try {
+                        long start = System.currentTimeMillis();
+                        builder.build(item);
+                        logRunTimeDetails(stage, idExtractor.apply(item), start, System.currentTimeMillis());
+                    } finally {
+                        workerConnection.remove();
+                        connectionPool.release(connection);
+                    }
+
+                    return null;
+                }));
+            }
+
+            // Wait for all the tables to be built, stopping at the first failure.
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            throw new SQLException("Failed to build the tables for " + stage + ".", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while building the tables for " + stage + ".", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Log the runtime of building the table(s) for the given PVariable or RChain, followed by the estimates of the
+     * counting strategy planner if the counting strategy was planned.
+     *
+     * @param stage - the name of the stage that the table(s) were built in.
+     * @param id - the ID of the PVariable or RChain that the table(s) were built for.
+     * @param start - the time the table(s) started being built.
+     * @param end - the time the table(s) finished being built.
+     */
+    private static void logRunTimeDetails(String stage, String id, long start, long end) {
+        RuntimeLogger.logRunTimeDetails(logger, stage + "-" + id, start, end);
+        CountingStrategyPlanner.Estimate estimate = countingPlan.get(id);
+        if (estimate != null) {
+            logger.fine("  Estimate[" + stage + "-" + id + "]: " + estimate);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,370 @@
+package ca.sfu.cs.factorbase.learning;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import ca.sfu.cs.factorbase.database.ConnectionPool.ConnectionFactory;
+import ca.sfu.cs.factorbase.util.QueryGenerator;
+import ca.sfu.cs.factorbase.util.RuntimeLogger;
+
+/**
+ * Class to generate a "_counts" table by splitting the rows of its largest table into ranges of its primary key,
+ * counting each range concurrently on its own database connection, and adding up the counts of the ranges.
+ * <p>
+ * Note: The number of ranges is the (estimated) number of rows in the largest table divided by the
+ *       CountsPartitionRows setting, and CountsPartitionThreads ranges are counted at the same time.
+ * </p>
+ */
+public class CountsPartitioner {
+    private static final String CSV_SEPARATOR = ", ";
+    private static Logger logger = Logger.getLogger(CountsPartitioner.class.getName());
+    private long partitionRows;
+    private int numberOfThreads;
+    private String countColumnName;
+    private long temporaryTableSize;
+
+
+    /**
+     * Create a partitioner that splits the counting queries into ranges of the given number of rows.
+     *
+     * @param partitionRows - the number of rows of the largest table to count in each range.
+     * @param numberOfThreads - the number of ranges to count at the same time.
+     * @param countColumnName - the name of the column containing the counts in the "_counts" tables.
+     * @param temporaryTableSize - the size in bytes of the in-memory temporary tables used by MySQL.
+     */
+    public CountsPartitioner(long partitionRows, int numberOfThreads, String countColumnName, long temporaryTableSize) {
+        this.partitionRows = partitionRows;
+        this.numberOfThreads = Math.max(1, numberOfThreads);
+        this.countColumnName = countColumnName;
+        this.temporaryTableSize = temporaryTableSize;
+    }
+
+
+    /**
+     * Split the rows of the largest of the given tables that has a primary key into ranges of its primary key.
+     *
+     * @param dbConnection - connection to use to read the primary keys of the tables.
+     * @param fromAliases - the tables to join, in the "database.table AS alias" format of the MetaQueries.
+     * @return the ranges to count, or null if the tables are too small to be split or none of them has a primary key.
+     * @throws SQLException if an error occurs when executing the queries.
+     */
+    public Partitions partition(Connection dbConnection, List<String> fromAliases) throws SQLException {
+        // Find the largest table with a primary key to split into ranges.
+        String partitionTable = null;
+        String partitionColumn = null;
+        String partitionAlias = null;
+        long partitionTableRows = 0;
+        for (String fromAlias : fromAliases) {
+            String[] tableAndAlias = fromAlias.split("(?i)\\s+AS\\s+");
+            String[] databaseAndTable = tableAndAlias[0].replace("`", "").split("\\.");
+            if (tableAndAlias.length != 2 || databaseAndTable.length != 2) {
+                continue;
+            }
+
+            try (
+                Statement statement = dbConnection.createStatement();
+                ResultSet results = statement.executeQuery(
+                    "SELECT TABLE_ROWS, COLUMN_NAME " +
+                    "FROM information_schema.TABLES " +
+                    "JOIN information_schema.KEY_COLUMN_USAGE " +
+                    "USING (TABLE_SCHEMA, TABLE_NAME) " +
+                    "WHERE TABLE_SCHEMA = '" + databaseAndTable[0] + "' " +
+                    "AND TABLE_NAME = '" + databaseAndTable[1] + "' " +
+                    "AND CONSTRAINT_NAME = 'PRIMARY' " +
+                    "AND ORDINAL_POSITION = 1;"
+                )
+            ) {
+                if (results.next() && results.getLong("TABLE_ROWS") > partitionTableRows) {
+                    partitionTableRows = results.getLong("TABLE_ROWS");
+                    partitionTable = databaseAndTable[0] + ".`" + databaseAndTable[1] + "`";
+                    partitionColumn = "`" + results.getString("COLUMN_NAME") + "`";
+                    partitionAlias = tableAndAlias[1].trim();
+                }
+            }
+        }
+
+        long numberOfPartitions = (partitionTableRows + this.partitionRows - 1) / this.partitionRows;
+        if (partitionTable == null || numberOfPartitions < 2) {
+            return null;
+        }
+
+        // Retrieve the first primary key value of each range, skipping the values shared with the previous range.
+        List<Object> boundaries = new ArrayList<Object>();
+        try (
+            PreparedStatement statement = dbConnection.prepareStatement(
+                "SELECT " + partitionColumn + " " +
+                "FROM " + partitionTable + " " +
+                "ORDER BY " + partitionColumn + " " +
+                "LIMIT 1 OFFSET ?;"
+            )
+        ) {
+            // for loop to find the boundary between each pair of consecutive ranges.
+            for (long partition = 1; partition < numberOfPartitions; partition++) {
+                statement.setLong(1, partitionTableRows * partition / numberOfPartitions);
+                try (ResultSet results = statement.executeQuery()) {
+                    if (!results.next()) {
+                        break;
+                    }
+
+                    Object boundary = results.getObject(1);
+                    if (boundaries.isEmpty() || !Objects.equals(boundaries.get(boundaries.size() - 1), boundary)) {
+                        boundaries.add(boundary);
+                    }
+                }
+            }
+        }
+
+        if (boundaries.isEmpty()) {
+            return null;
+        }
+
+        return new Partitions(partitionAlias + "." + partitionColumn, boundaries);
+    }
+
+
+    /**
+     * Count the rows of each range concurrently and create the given "_counts" table by adding up the counts of the
+     * ranges.
+     *
+     * @param connectionFactory - opens the connection to the given database that each range is counted on.
+     * @param dbConnection - connection to use to create the "_counts" table.
+     * @param databaseName - name of the database to create the "_counts" table in.
+     * @param tableName - name of the "_counts" table to create.
+     * @param storageEngine - the storage engine to use for the tables created when executing this method.
+     * @param partitions - the ranges returned by {@link #partition(Connection, List)}.
+     * @param partitionQueries - the counting query of each range, with the condition of
+     *                           {@link Partitions#getRangeCondition(int)} added to the WHERE clause.
+     * @throws SQLException if an error occurs when executing the queries.
+     */
+    public void count(
+        ConnectionFactory connectionFactory,
+        Connection dbConnection,
+        String databaseName,
+        String tableName,
+        String storageEngine,
+        Partitions partitions,
+        List<String> partitionQueries
+    ) throws SQLException {
+        List<String> partitionTableNames = new ArrayList<String>();
+        int numberOfThreads = Math.min(this.numberOfThreads, partitionQueries.size());
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int partition = 0; partition < partitionQueries.size(); partition++) {
+                String partitionTableName = tableName + "_part" + partition;
+                String createString = QueryGenerator.createSimpleCreateTableQuery(
+                    partitionTableName,
+                    storageEngine,
+                    partitionQueries.get(partition)
+                );
+                Object lowerBoundary = partitions.getLowerBoundary(partition);
+                Object upperBoundary = partitions.getUpperBoundary(partition);
+                partitionTableNames.add(partitionTableName);
+                futures.add(executor.submit(() -> {
+                    try (
+                        Connection connection = connectionFactory.connect();
+                        PreparedStatement statement = connection.prepareStatement(createString)
+                    ) {
+                        int parameterIndex = 1;
+                        if (lowerBoundary != null) {
+                            statement.setObject(parameterIndex, lowerBoundary);
+                            parameterIndex++;
+                        }
+
+                        if (upperBoundary != null) {
+                            statement.setObject(parameterIndex, upperBoundary);
+                        }
+
+                        this.setTemporaryTableSize(connection);
+                        RuntimeLogger.logExecutedQuery(logger, createString);
+                        statement.executeUpdate();
+                    }
+
+                    return null;
+                }));
+            }
+
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+
+            // Add up the counts of the ranges.
+            List<String> sourceQueries = new ArrayList<String>();
+            for (String partitionTableName : partitionTableNames) {
+                sourceQueries.add("SELECT * FROM `" + partitionTableName + "`");
+            }
+
+            String createString = QueryGenerator.createSimpleCreateTableQuery(
+                tableName,
+                storageEngine,
+                createMergedCountsQuery(dbConnection, databaseName, this.countColumnName, sourceQueries)
+            );
+            dbConnection.setCatalog(databaseName);
+            this.setTemporaryTableSize(dbConnection);
+            try (Statement statement = dbConnection.createStatement()) {
+                statement.executeUpdate(createString);
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+
+            throw new SQLException("Failed to generate the partitioned counts for " + tableName + ".", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while generating the partitioned counts for " + tableName + ".", e);
+        } finally {
+            executor.shutdownNow();
+            dbConnection.setCatalog(databaseName);
+            try (Statement statement = dbConnection.createStatement()) {
+                for (String partitionTableName : partitionTableNames) {
+                    statement.execute("DROP TABLE IF EXISTS `" + partitionTableName + "`;");
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Set the size of the in-memory temporary tables used by MySQL for the given connection.
+     *
+     * @param dbConnection - the connection to set the temporary table size for.
+     * @throws SQLException if an error occurs when executing the queries.
+     */
+    private void setTemporaryTableSize(Connection dbConnection) throws SQLException {
+        try (Statement statement = dbConnection.createStatement()) {
+            statement.executeUpdate("SET tmp_table_size = " + this.temporaryTableSize + ";");
+            statement.executeUpdate("SET max_heap_table_size = " + this.temporaryTableSize + ";");
+        }
+    }
+
+
+    /**
+     * Create the query that adds up the counts of the rows returned by the given queries, e.g. the partial counts of
+     * the ranges of a "_counts" table.
+     * <p>
+     * Note: All the queries must return the same columns in the same order, which is kept by the returned query.
+     * </p>
+     *
+     * @param dbConnection - connection to use to read the columns returned by the given queries.
+     * @param databaseName - the name of the database to run the given queries in.
+     * @param countColumnName - the name of the column containing the counts to add up.
+     * @param sourceQueries - the queries returning the counts to add up.
+     * @return the query that adds up the counts of the rows returned by the given queries.
+     * @throws SQLException if an error occurs when executing the queries.
+     */
+    public static String createMergedCountsQuery(
+        Connection dbConnection,
+        String databaseName,
+        String countColumnName,
+        List<String> sourceQueries
+    ) throws SQLException {
+        List<String> selectColumns = new ArrayList<String>();
+        List<String> groupByColumns = new ArrayList<String>();
+        dbConnection.setCatalog(databaseName);
+        try (
+            Statement statement = dbConnection.createStatement();
+            ResultSet results = statement.executeQuery(
+                "SELECT * FROM (" + sourceQueries.get(0) + ") AS SOURCE LIMIT 0;"
+            )
+        ) {
+            ResultSetMetaData metadata = results.getMetaData();
+            for (int columnIndex = 1; columnIndex <= metadata.getColumnCount(); columnIndex++) {
+                String columnName = "`" + metadata.getColumnLabel(columnIndex) + "`";
+                if (metadata.getColumnLabel(columnIndex).equals(countColumnName)) {
+                    selectColumns.add("SUM(" + columnName + ") AS " + columnName);
+                } else {
+                    selectColumns.add(columnName);
+                    groupByColumns.add(columnName);
+                }
+            }
+        }
+
+        String mergeQuery =
+            "SELECT " + String.join(CSV_SEPARATOR, selectColumns) + " " +
+            "FROM (" + String.join(" UNION ALL ", sourceQueries) + ") AS SOURCES";
+        if (!groupByColumns.isEmpty()) {
+            mergeQuery += " GROUP BY " + String.join(CSV_SEPARATOR, groupByColumns);
+        }
+
+        return mergeQuery;
+    }
+
+
+    /**
+     * The ranges of the primary key of the table that a "_counts" table is split on.
+     */
+    public static class Partitions {
+        private String rangeColumn;
+        private List<Object> boundaries;
+
+
+        /**
+         * Create the ranges separated by the given boundaries.
+         *
+         * @param rangeColumn - the "alias.column" reference to the primary key that the ranges are of.
+         * @param boundaries - the first primary key value of each range after the first one, in increasing order.
+         */
+        Partitions(String rangeColumn, List<Object> boundaries) {
+            this.rangeColumn = rangeColumn;
+            this.boundaries = boundaries;
+        }
+
+
+        /**
+         * @return the number of ranges.
+         */
+        public int size() {
+            return this.boundaries.size() + 1;
+        }
+
+
+        /**
+         * Create the condition that keeps the rows of the given range, with a "?" placeholder for each of its
+         * boundaries.
+         *
+         * @param partition - the index of the range.
+         * @return the condition to add to the WHERE clause of the counting query of the given range.
+         */
+        public String getRangeCondition(int partition) {
+            if (partition == 0) {
+                return this.rangeColumn + " < ?";
+            } else if (partition == this.boundaries.size()) {
+                return this.rangeColumn + " >= ?";
+            }
+
+            return this.rangeColumn + " >= ? AND " + this.rangeColumn + " < ?";
+        }
+
+
+        /**
+         * @param partition - the index of the range.
+         * @return the first primary key value of the given range, or null for the first range.
+         */
+        Object getLowerBoundary(int partition) {
+            return partition == 0 ? null : this.boundaries.get(partition - 1);
+        }
+
+
+        /**
+         * @param partition - the index of the range.
+         * @return the first primary key value after the given range, or null for the last range.
+         */
+        Object getUpperBoundary(int partition) {
+            return partition == this.boundaries.size() ? null : this.boundaries.get(partition);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package ca.sfu.cs.factorbase.learning;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import ca.sfu.cs.factorbase.util.RuntimeLogger;
+
+/**
+ * Class to approximate the "_counts" tables from a sample of the input database for exploratory runs on large
+ * databases.
+ * <p>
+ * Each row of an entity table is kept with probability SampleRate, based on a hash of its ID and the SampleSeed so
+ * that the sample is reproducible, and each row of a relationship table is kept if all the entities it refers to have
+ * been kept.  A grounding of k population variables is therefore kept with probability SampleRate^k, and its counts
+ * are scaled up by the inverse of this probability.
+ * </p>
+ */
+public class CountsSampler {
+    private static final String SAMPLE_DATABASE_SUFFIX = "_sample";
+    private static final String AND_SEPARATOR = " AND ";
+    private static final String CSV_SEPARATOR = ", ";
+    private static final double CONFIDENCE_Z = 1.96;
+    private static Logger logger = Logger.getLogger(CountsSampler.class.getName());
+    private String inputDatabaseName;
+    private String setupDatabaseName;
+    private String countColumnName;
+    private double sampleRate;
+    private long sampleSeed;
+    private boolean sampleDatabaseBuilt;
+    private Set<String> sampledEntityTables = new HashSet<String>();
+    private Map<String, Double> inclusionProbabilities = new ConcurrentHashMap<String, Double>();
+
+
+    /**
+     * Create a sampler for the given input database.
+     *
+     * @param inputDatabaseName - the name of the input database to sample.
+     * @param setupDatabaseName - the name of the "_setup" database containing the PVariables and RNodes information.
+     * @param countColumnName - the name of the column containing the counts in the "_counts" tables.
+     * @param sampleRate - the probability that each entity is kept in the sample, where 1 turns off sampling.
+     * @param sampleSeed - the seed of the hash that decides which entities are kept in the sample.
+     */
+    public CountsSampler(
+        String inputDatabaseName,
+        String setupDatabaseName,
+        String countColumnName,
+        double sampleRate,
+        long sampleSeed
+    ) {
+        this.inputDatabaseName = inputDatabaseName;
+        this.setupDatabaseName = setupDatabaseName;
+        this.countColumnName = countColumnName;
+        this.sampleRate = sampleRate;
+        this.sampleSeed = sampleSeed;
+    }
+
+
+    /**
+     * Determine if the counts should be approximated from a sample of the input tables.
+     *
+     * @return true if a SampleRate below 1 has been specified; otherwise false.
+     */
+    public boolean isSampling() {
+        return this.sampleRate < 1;
+    }
+
+
+    /**
+     * Create the "_sample" database containing a sample of the groundings of each population variable and the
+     * relationships between them, which the "_counts" tables are then generated from instead of the input database.
+     * <p>
+     * Note: The "_sample" database is only created the first time this method is called.
+     * </p>
+     *
+     * @param dbConnection - connection to use to create the "_sample" database.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    public synchronized void buildSampleDatabase(Connection dbConnection) throws SQLException {
+        if (this.sampleDatabaseBuilt) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        String sampleDatabaseName = this.inputDatabaseName + SAMPLE_DATABASE_SUFFIX;
+        long hashThreshold = (long) (this.sampleRate * 4294967296.0);
+        try (Statement statement = dbConnection.createStatement()) {
+            Map<String, String> entityIDColumns = new LinkedHashMap<String, String>();
+            try (
+                ResultSet results = statement.executeQuery(
+                    "SELECT DISTINCT TABLE_NAME, ID_COLUMN_NAME " +
+                    "FROM " + this.setupDatabaseName + ".PVariables;"
+                )
+            ) {
+                while (results.next()) {
+                    entityIDColumns.put(results.getString("TABLE_NAME"), results.getString("ID_COLUMN_NAME"));
+                }
+            }
+
+            // Conditions that keep the relationships between the sampled entities, for each relationship table.
+            Map<String, List<String>> relationshipConditions = new LinkedHashMap<String, List<String>>();
+            try (
+                ResultSet results = statement.executeQuery(
+                    "SELECT DISTINCT " +
+                        "RNodes.TABLE_NAME AS RELATIONSHIP_TABLE, " +
+                        "RNodes_pvars.COLUMN_NAME, " +
+                        "RNodes_pvars.TABLE_NAME, " +
+                        "RNodes_pvars.REFERENCED_COLUMN_NAME " +
+                    "FROM " +
+                        this.setupDatabaseName + ".RNodes, " +
+                        this.setupDatabaseName + ".RNodes_pvars " +
+                    "WHERE RNodes.rnid = RNodes_pvars.rnid;"
+                )
+            ) {
+                while (results.next()) {
+                    relationshipConditions.computeIfAbsent(
+                        results.getString("RELATIONSHIP_TABLE"),
+                        table -> new ArrayList<String>()
+                    ).add(
+                        "R.`" + results.getString("COLUMN_NAME") + "` IN (" +
+                            "SELECT `" + results.getString("REFERENCED_COLUMN_NAME") + "` " +
+                            "FROM " + sampleDatabaseName + ".`" + results.getString("TABLE_NAME") + "`" +
+                        ")"
+                    );
+                }
+            }
+
+            statement.execute("DROP SCHEMA IF EXISTS " + sampleDatabaseName + ";");
+            statement.execute("CREATE SCHEMA " + sampleDatabaseName + " /*M!100316 COLLATE utf8_general_ci*/;");
+
+            // for loop to sample the rows of each entity table.
+            for (Map.Entry<String, String> entityIDColumn : entityIDColumns.entrySet()) {
+                String table = "`" + entityIDColumn.getKey() + "`";
+                statement.execute("CREATE TABLE " + sampleDatabaseName + "." + table + " LIKE " + this.inputDatabaseName + "." + table + ";");
+                statement.execute(
+                    "INSERT INTO " + sampleDatabaseName + "." + table + " " +
+                    "SELECT * " +
+                    "FROM " + this.inputDatabaseName + "." + table + " " +
+                    "WHERE CRC32(CONCAT(" + this.sampleSeed + ", ':', `" + entityIDColumn.getValue() + "`)) < " + hashThreshold + ";"
+                );
+            }
+
+            // for loop to keep the rows of each relationship table that only refer to sampled entities.
+            for (Map.Entry<String, List<String>> conditions : relationshipConditions.entrySet()) {
+                String table = "`" + conditions.getKey() + "`";
+                statement.execute("CREATE TABLE " + sampleDatabaseName + "." + table + " LIKE " + this.inputDatabaseName + "." + table + ";");
+                statement.execute(
+                    "INSERT INTO " + sampleDatabaseName + "." + table + " " +
+                    "SELECT R.* " +
+                    "FROM " + this.inputDatabaseName + "." + table + " AS R " +
+                    "WHERE " + String.join(AND_SEPARATOR, conditions.getValue()) + ";"
+                );
+            }
+
+            this.sampledEntityTables.clear();
+            this.sampledEntityTables.addAll(entityIDColumns.keySet());
+        }
+
+        this.sampleDatabaseBuilt = true;
+        logger.info("Approximating the counts from a " + this.sampleRate + " sample of the groundings in " + sampleDatabaseName + ".");
+        RuntimeLogger.logRunTime(logger, "Sampling Input Tables", start, System.currentTimeMillis());
+    }
+
+
+    /**
+     * Point the given FROM clause entries at the "_sample" database instead of the input database if the counts are
+     * being approximated from a sample.
+     *
+     * @param fromAliases - the tables to join, in the "database.table AS alias" format of the MetaQueries.
+     * @return the tables to join from the "_sample" database, or the given tables if the counts aren't being
+     *         approximated.
+     */
+    public List<String> sampleFromAliases(List<String> fromAliases) {
+        if (!this.isSampling()) {
+            return fromAliases;
+        }
+
+        List<String> sampledAliases = new ArrayList<String>();
+        String inputPrefix = "^" + Pattern.quote(this.inputDatabaseName + ".");
+        for (String fromAlias : fromAliases) {
+            sampledAliases.add(fromAlias.replaceFirst(inputPrefix, this.inputDatabaseName + SAMPLE_DATABASE_SUFFIX + "."));
+        }
+
+        return sampledAliases;
+    }
+
+
+    /**
+     * Compute the probability that a grounding counted with the given FROM clause was kept in the "_sample" database,
+     * i.e. SampleRate to the power of the number of sampled entity tables joined.
+     *
+     * @param fromString - the tables joined by the counting query, separated by commas.
+     * @return the probability that a grounding was kept in the sample, which is 1 if the counts aren't being
+     *         approximated or are projected from the global counts.
+     */
+    public double computeInclusionProbability(String fromString) {
+        double inclusionProbability = 1;
+        if (!this.isSampling()) {
+            return inclusionProbability;
+        }
+
+        String samplePrefix = this.inputDatabaseName + SAMPLE_DATABASE_SUFFIX + ".";
+        for (String fromAlias : fromString.split(CSV_SEPARATOR)) {
+            String table = fromAlias.split(" AS ")[0].trim();
+            if (table.startsWith(samplePrefix) && this.sampledEntityTables.contains(table.substring(samplePrefix.length()).replace("`", ""))) {
+                inclusionProbability *= this.sampleRate;
+            }
+        }
+
+        return inclusionProbability;
+    }
+
+
+    /**
+     * Remember the inclusion probability of the groundings counted by the given query so that the accuracy of the
+     * counts can be reported once the query has been executed, see
+     * {@link #logSampledCounts(Connection, String, String, double)}.
+     *
+     * @param query - the counting query.
+     * @param inclusionProbability - the probability that a grounding counted by the query was kept in the sample.
+     */
+    public void recordInclusionProbability(String query, double inclusionProbability) {
+        this.inclusionProbabilities.put(query, inclusionProbability);
+    }
+
+
+    /**
+     * Retrieve and forget the inclusion probability remembered for the given query.
+     *
+     * @param query - the counting query.
+     * @return the inclusion probability of the groundings counted by the given query, or null if the query doesn't
+     *         count a sample.
+     */
+    public Double removeInclusionProbability(String query) {
+        return this.inclusionProbabilities.remove(query);
+    }
+
+
+    /**
+     * Forget the inclusion probabilities of the queries that were never executed.
+     */
+    public void clearInclusionProbabilities() {
+        this.inclusionProbabilities.clear();
+    }
+
+
+    /**
+     * Log the approximate total count of the given "_counts" table with its 95% confidence interval, and the relative
+     * width of the confidence interval of the average count.
+     * <p>
+     * Note: The confidence intervals treat the groundings as sampled independently, so they are narrower than the
+     *       true ones when the groundings share sampled entities.
+     * </p>
+     *
+     * @param dbConnection - connection to use to read the "_counts" table.
+     * @param databaseName - the name of the database containing the "_counts" table.
+     * @param tableName - the name of the "_counts" table.
+     * @param inclusionProbability - the probability that a grounding counted by the table was kept in the sample.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    public void logSampledCounts(
+        Connection dbConnection,
+        String databaseName,
+        String tableName,
+        double inclusionProbability
+    ) throws SQLException {
+        try (
+            Statement statement = dbConnection.createStatement();
+            ResultSet results = statement.executeQuery(
+                "SELECT SUM(`" + this.countColumnName + "`) AS TOTAL, COUNT(*) AS CELLS " +
+                "FROM " + databaseName + ".`" + tableName + "`;"
+            )
+        ) {
+            results.next();
+            double total = results.getDouble("TOTAL");
+            long cells = results.getLong("CELLS");
+            double variance = (1 - inclusionProbability) / inclusionProbability;
+            double totalHalfWidth = CONFIDENCE_Z * Math.sqrt(total * variance);
+            double averageCount = cells == 0 ? 0 : total / cells;
+            double averageRelativeHalfWidth = averageCount == 0 ? 0 : CONFIDENCE_Z * Math.sqrt(variance / averageCount);
+            logger.info(
+                "Sampled Counts[" + tableName + "]: total=" + String.format("%.0f", total) +
+                " +/- " + String.format("%.0f", totalHalfWidth) + " (95% CI), " +
+                "average count=" + String.format("%.1f", averageCount) +
+                " +/- " + String.format("%.1f%%", 100 * averageRelativeHalfWidth) + "."
+            );
+        }
+    }
+}
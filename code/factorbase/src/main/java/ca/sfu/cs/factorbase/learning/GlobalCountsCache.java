@@ -0,0 +1,283 @@
+package ca.sfu.cs.factorbase.learning;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * Class to keep the "_counts" tables of the "_global_counts" database in memory so that the "_counts" table of any
+ * family of functor nodes can be projected from them without running a GROUP BY query in MySQL.
+ * <p>
+ * Each global "_counts" table is read once, the first time it is projected, and stored by column, where the values of
+ * each column are encoded as integers using a dictionary for the column.  Projecting a table onto some of its columns
+ * then only needs to add up the MULT of the rows with the same codes for those columns.
+ * </p>
+ */
+public class GlobalCountsCache {
+    private static final String MULT_COLUMN = "MULT";
+    private static Logger logger = Logger.getLogger(GlobalCountsCache.class.getName());
+    private String globalCountsDatabaseName;
+    private long maxPackedKeys;
+    private Map<String, ColumnarCounts> tables = new HashMap<String, ColumnarCounts>();
+
+
+    /**
+     * Create an empty cache for the "_counts" tables of the given database.
+     *
+     * @param globalCountsDatabaseName - the name of the "_global_counts" database.
+     */
+    public GlobalCountsCache(String globalCountsDatabaseName) {
+        this(globalCountsDatabaseName, Long.MAX_VALUE);
+    }
+
+
+    /**
+     * Create an empty cache for the "_counts" tables of the given database, which only combines the codes of the
+     * projected columns into a single {@code long} key when their number of combinations is at most the given value.
+     *
+     * @param globalCountsDatabaseName - the name of the "_global_counts" database.
+     * @param maxPackedKeys - the largest number of combinations of codes that are combined into a {@code long} key.
+     */
+    GlobalCountsCache(String globalCountsDatabaseName, long maxPackedKeys) {
+        this.globalCountsDatabaseName = globalCountsDatabaseName;
+        this.maxPackedKeys = maxPackedKeys;
+    }
+
+
+    /**
+     * Project the given global "_counts" table onto the given columns, i.e. SUM(MULT) GROUP BY the given columns.
+     *
+     * @param dbConnection - connection to use to read the global "_counts" table if it isn't in memory yet.
+     * @param countsTableName - the name of the global "_counts" table to project.
+     * @param columns - the columns to project the global "_counts" table onto.
+     * @return a table with a MULT column followed by the given columns.
+     * @throws SQLException if there are issues reading the global "_counts" table or it doesn't have one of the given
+     *                      columns.
+     */
+    public MobiusJoin.CountsTable project(
+        Connection dbConnection,
+        String countsTableName,
+        List<String> columns
+    ) throws SQLException {
+        return this.getTable(dbConnection, countsTableName).project(columns, this.maxPackedKeys);
+    }
+
+
+    /**
+     * Retrieve the given global "_counts" table, reading it into memory the first time it is requested.
+     *
+     * @param dbConnection - connection to use to read the global "_counts" table if it isn't in memory yet.
+     * @param countsTableName - the name of the global "_counts" table.
+     * @return the global "_counts" table stored by column.
+     * @throws SQLException if there are issues reading the global "_counts" table.
+     */
+    private synchronized ColumnarCounts getTable(Connection dbConnection, String countsTableName) throws SQLException {
+        ColumnarCounts table = this.tables.get(countsTableName);
+        if (table == null) {
+            long start = System.currentTimeMillis();
+            table = ColumnarCounts.load(
+                dbConnection,
+                countsTableName,
+                "SELECT * FROM `" + this.globalCountsDatabaseName + "`.`" + countsTableName + "`;"
+            );
+            this.tables.put(countsTableName, table);
+            logger.fine(
+                "Loaded " + countsTableName + " (" + table.numberOfRows + " rows) in " +
+                (System.currentTimeMillis() - start) + "ms."
+            );
+        }
+
+        return table;
+    }
+
+
+    /**
+     * Class to hold a "_counts" table by column, with the values of each column encoded as integers.
+     */
+    private static class ColumnarCounts {
+        private String tableName;
+        private Map<String, Integer> columnIndices = new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
+        private String[][] dictionaries;
+        private int[][] codes;
+        private long[] mults;
+        private int numberOfRows;
+
+
+        /**
+         * Read the results of the given query into memory.
+         *
+         * @param dbConnection - connection to use to execute the query.
+         * @param tableName - the name of the table being read, used in error messages.
+         * @param query - the query to read the results of.
+         * @return the results of the given query stored by column.
+         * @throws SQLException if there are issues executing the query or it doesn't have a MULT column.
+         */
+        static ColumnarCounts load(Connection dbConnection, String tableName, String query) throws SQLException {
+            try (
+                Statement statement = dbConnection.createStatement();
+                ResultSet results = statement.executeQuery(query)
+            ) {
+                ResultSetMetaData metadata = results.getMetaData();
+                ColumnarCounts table = new ColumnarCounts();
+                table.tableName = tableName;
+                List<Integer> resultIndices = new ArrayList<Integer>();
+                int multIndex = -1;
+                for (int columnIndex = 1; columnIndex <= metadata.getColumnCount(); columnIndex++) {
+                    String column = metadata.getColumnLabel(columnIndex);
+                    if (column.equalsIgnoreCase(MULT_COLUMN)) {
+                        multIndex = columnIndex;
+                    } else {
+                        table.columnIndices.put(column, resultIndices.size());
+                        resultIndices.add(columnIndex);
+                    }
+                }
+
+                if (multIndex == -1) {
+                    throw new SQLException("The global counts table " + tableName + " doesn't have a MULT column.");
+                }
+
+                int numberOfColumns = resultIndices.size();
+                List<Map<String, Integer>> encodings = new ArrayList<Map<String, Integer>>();
+                List<List<String>> values = new ArrayList<List<String>>();
+                table.codes = new int[numberOfColumns][16];
+                table.mults = new long[16];
+                for (int index = 0; index < numberOfColumns; index++) {
+                    encodings.add(new HashMap<String, Integer>());
+                    values.add(new ArrayList<String>());
+                }
+
+                while (results.next()) {
+                    if (table.numberOfRows == table.mults.length) {
+                        table.mults = Arrays.copyOf(table.mults, table.numberOfRows * 2);
+                        for (int index = 0; index < numberOfColumns; index++) {
+                            table.codes[index] = Arrays.copyOf(table.codes[index], table.numberOfRows * 2);
+                        }
+                    }
+
+                    // for loop to encode the values of the row.
+                    for (int index = 0; index < numberOfColumns; index++) {
+                        String value = results.getString(resultIndices.get(index));
+                        Integer code = encodings.get(index).get(value);
+                        if (code == null) {
+                            code = values.get(index).size();
+                            encodings.get(index).put(value, code);
+                            values.get(index).add(value);
+                        }
+
+                        table.codes[index][table.numberOfRows] = code;
+                    }
+
+                    table.mults[table.numberOfRows] = results.getLong(multIndex);
+                    table.numberOfRows++;
+                }
+
+                table.dictionaries = new String[numberOfColumns][];
+                for (int index = 0; index < numberOfColumns; index++) {
+                    table.dictionaries[index] = values.get(index).toArray(new String[0]);
+                }
+
+                return table;
+            }
+        }
+
+
+        /**
+         * Sum the MULT of the table over the given columns, i.e. SUM(MULT) GROUP BY the given columns.
+         * <p>
+         * Note: The codes of the given columns are combined into a single {@code long} key when the product of the
+         *       number of values of the columns is at most {@code maxPackedKeys}, and into a {@code List} otherwise.
+         * </p>
+         *
+         * @param columns - the columns to project the table onto.
+         * @param maxPackedKeys - the largest number of combinations of codes that are combined into a {@code long} key.
+         * @return a table with a MULT column followed by the given columns.
+         * @throws SQLException if the table doesn't have one of the given columns.
+         */
+        MobiusJoin.CountsTable project(List<String> columns, long maxPackedKeys) throws SQLException {
+            int[] columnIndices = new int[columns.size()];
+            for (int index = 0; index < columnIndices.length; index++) {
+                Integer columnIndex = this.columnIndices.get(columns.get(index));
+                if (columnIndex == null) {
+                    throw new SQLException("Unknown column " + columns.get(index) + " for the global counts table " + this.tableName + ".");
+                }
+
+                columnIndices[index] = columnIndex;
+            }
+
+            // Determine the multiplier of each column's code in the combined key.
+            long[] strides = new long[columnIndices.length];
+            long stride = 1;
+            boolean packed = true;
+            for (int index = columnIndices.length - 1; index >= 0 && packed; index--) {
+                strides[index] = stride;
+                try {
+                    stride = Math.multiplyExact(stride, Math.max(1, this.dictionaries[columnIndices[index]].length));
+                    packed = stride <= maxPackedKeys;
+                } catch (ArithmeticException e) {
+                    packed = false;
+                }
+            }
+
+            Map<Object, Integer> groupIndices = new HashMap<Object, Integer>();
+            List<int[]> groups = new ArrayList<int[]>();
+            long[] sums = new long[16];
+            for (int rowIndex = 0; rowIndex < this.numberOfRows; rowIndex++) {
+                Object key;
+                if (packed) {
+                    long packedKey = 0;
+                    for (int index = 0; index < columnIndices.length; index++) {
+                        packedKey += this.codes[columnIndices[index]][rowIndex] * strides[index];
+                    }
+
+                    key = packedKey;
+                } else {
+                    List<Integer> listKey = new ArrayList<Integer>(columnIndices.length);
+                    for (int columnIndex : columnIndices) {
+                        listKey.add(this.codes[columnIndex][rowIndex]);
+                    }
+
+                    key = listKey;
+                }
+
+                Integer groupIndex = groupIndices.get(key);
+                if (groupIndex == null) {
+                    groupIndex = groups.size();
+                    groupIndices.put(key, groupIndex);
+                    int[] groupCodes = new int[columnIndices.length];
+                    for (int index = 0; index < columnIndices.length; index++) {
+                        groupCodes[index] = this.codes[columnIndices[index]][rowIndex];
+                    }
+
+                    groups.add(groupCodes);
+                    if (groupIndex == sums.length) {
+                        sums = Arrays.copyOf(sums, sums.length * 2);
+                    }
+                }
+
+                sums[groupIndex] += this.mults[rowIndex];
+            }
+
+            MobiusJoin.CountsTable projection = new MobiusJoin.CountsTable(new ArrayList<String>(columns), 0);
+            for (int groupIndex = 0; groupIndex < groups.size(); groupIndex++) {
+                int[] groupCodes = groups.get(groupIndex);
+                String[] row = new String[groupCodes.length];
+                for (int index = 0; index < groupCodes.length; index++) {
+                    row[index] = this.dictionaries[columnIndices[index]][groupCodes[index]];
+                }
+
+                projection.addRow(row, sums[groupIndex]);
+            }
+
+            return projection;
+        }
+    }
+}
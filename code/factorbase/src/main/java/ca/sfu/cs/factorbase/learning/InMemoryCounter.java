@@ -0,0 +1,738 @@
+package ca.sfu.cs.factorbase.learning;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ca.sfu.cs.factorbase.util.QueryGenerator;
+
+/**
+ * Class to generate the "_counts" tables of the PVariables and RChains in memory instead of running their GROUP BY
+ * queries in MySQL.
+ * <p>
+ * The base tables referenced by the "Counts" MetaQueries are each read once into memory, where every value is
+ * encoded as an integer using a dictionary shared by all the tables so that columns can be joined on their codes.  The
+ * "Counts" MetaQueries of a PVariable or RChain are then evaluated as a pipeline of hash joins, starting from the
+ * table with the most join conditions, with the rows of the first table split between multiple threads that each
+ * aggregate their own counts before they are combined.
+ * </p>
+ * <p>
+ * Note: Values are compared exactly, which is the same as MySQL as long as the matching values are stored identically
+ *       in the joined columns.
+ * </p>
+ */
+public class InMemoryCounter {
+    private static final Pattern TABLE_REFERENCE = Pattern.compile("^(\\S+)\\s+AS\\s+`?([^`]+)`?$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SELECT_ALIAS = Pattern.compile("^(.+?)\\s+AS\\s+[`\"]([^`\"]+)[`\"]$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern COLUMN_REFERENCE = Pattern.compile("^`?([^`.]+)`?\\.`?([^`.]+)`?$");
+    private static final Pattern CONDITION = Pattern.compile("^(.+?)\\s*=\\s*(.+)$");
+    private static final String COUNT_AGGREGATE = "COUNT(*)";
+    private static final int NULL_CODE = -1;
+    private static final int MISSING_CODE = -2;
+    private static final int MIN_ROWS_PER_TASK = 10000;
+    private static Logger logger = Logger.getLogger(InMemoryCounter.class.getName());
+    private String bnDatabaseName;
+    private int numberOfThreads;
+    private ExecutorService executor;
+    private Map<String, ColumnarTable> tables = new HashMap<String, ColumnarTable>();
+    private Map<String, Integer> dictionary = new HashMap<String, Integer>();
+    private List<String> values = new ArrayList<String>();
+
+
+    /**
+     * Create a counter that evaluates the "Counts" MetaQueries of the given database in memory.
+     *
+     * @param bnDatabaseName - the name of the database containing the MetaQueries information.
+     * @param numberOfThreads - the number of threads to use to generate each "_counts" table.
+     */
+    public InMemoryCounter(String bnDatabaseName, int numberOfThreads) {
+        this.bnDatabaseName = bnDatabaseName;
+        this.numberOfThreads = Math.max(1, numberOfThreads);
+        this.executor = Executors.newFixedThreadPool(this.numberOfThreads);
+    }
+
+
+    /**
+     * Generate the "_counts" table for the given PVariable or RChain.
+     *
+     * @param dbConnection - connection to use to read the MetaQueries information and the base tables.
+     * @param latticePoint - the PVariable or RChain to generate the "_counts" table for.
+     * @return the "_counts" table for the given PVariable or RChain, or null if its "Counts" MetaQueries can't be
+     *         evaluated in memory, in which case the "_counts" table should be generated in MySQL.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    public MobiusJoin.CountsTable count(Connection dbConnection, String latticePoint) throws SQLException {
+        CountsQuery query = this.parseQuery(dbConnection, latticePoint);
+        if (query == null) {
+            logger.fine("Unable to generate the counts for " + latticePoint + " in memory.");
+            return null;
+        }
+
+        return query.execute();
+    }
+
+
+    /**
+     * Stop the threads used to generate the "_counts" tables and release the base tables.
+     */
+    public void close() {
+        this.executor.shutdownNow();
+        synchronized (this) {
+            this.tables.clear();
+        }
+    }
+
+
+    /**
+     * Parse the "Counts" MetaQueries of the given PVariable or RChain.
+     *
+     * @param dbConnection - connection to use to read the MetaQueries information and the base tables.
+     * @param latticePoint - the PVariable or RChain to parse the "Counts" MetaQueries for.
+     * @return the parsed query, or null if the MetaQueries contain an entry that isn't supported.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    private CountsQuery parseQuery(Connection dbConnection, String latticePoint) throws SQLException {
+        CountsQuery query = new CountsQuery();
+
+        // Parse the FROM clause.
+        for (String entry : this.getEntries(dbConnection, latticePoint, "FROM")) {
+            Matcher matcher = TABLE_REFERENCE.matcher(entry);
+            if (!matcher.matches()) {
+                return null;
+            }
+
+            query.aliases.add(matcher.group(2));
+            query.tables.add(this.getTable(dbConnection, matcher.group(1)));
+        }
+
+        // Parse the SELECT clause.
+        Map<String, int[]> selectAliases = new HashMap<String, int[]>();
+        for (String entry : this.getEntries(dbConnection, latticePoint, "SELECT")) {
+            Matcher matcher = SELECT_ALIAS.matcher(entry);
+            if (!matcher.matches()) {
+                return null;
+            }
+
+            String expression = matcher.group(1).trim();
+            String alias = matcher.group(2);
+            if (expression.equalsIgnoreCase(COUNT_AGGREGATE)) {
+                query.multPosition = query.columns.size();
+                continue;
+            }
+
+            int[] source;
+            if (expression.length() >= 2 && expression.startsWith("\"") && expression.endsWith("\"")) {
+                source = new int[] { -1, this.encode(expression.substring(1, expression.length() - 1)) };
+            } else {
+                source = query.resolveColumn(expression);
+                if (source == null) {
+                    return null;
+                }
+            }
+
+            query.columns.add(alias);
+            query.sources.add(source);
+            selectAliases.put(alias, source);
+        }
+
+        // The counts can only be generated if there is a COUNT(*) aggregate and GROUP BY clause for all the columns.
+        Set<String> groupByColumns = new HashSet<String>();
+        for (String entry : this.getEntries(dbConnection, latticePoint, "GROUPBY")) {
+            groupByColumns.add(unescape(entry));
+        }
+
+        if (query.multPosition == -1 || !groupByColumns.equals(new HashSet<String>(query.columns))) {
+            return null;
+        }
+
+        // Parse the WHERE clause into join conditions and filters.
+        for (String entry : this.getEntries(dbConnection, latticePoint, "WHERE")) {
+            Matcher matcher = CONDITION.matcher(entry);
+            if (!matcher.matches()) {
+                return null;
+            }
+
+            int[] left = query.resolveOperand(matcher.group(1).trim(), selectAliases);
+            int[] right = query.resolveOperand(matcher.group(2).trim(), selectAliases);
+            if (left == null || right == null) {
+                String literal = left == null ? matcher.group(1).trim() : matcher.group(2).trim();
+                int[] column = left == null ? right : left;
+                if (column == null || column[0] == -1) {
+                    return null;
+                }
+
+                query.filters.add(new int[] { column[0], column[1], this.lookup(unquote(literal)) });
+            } else if (left[0] == -1 || right[0] == -1) {
+                return null;
+            } else {
+                query.joins.add(new int[] { left[0], left[1], right[0], right[1] });
+            }
+        }
+
+        return query;
+    }
+
+
+    /**
+     * Retrieve the "Counts" MetaQueries entries for the given PVariable or RChain.
+     *
+     * @param dbConnection - connection to use to read the MetaQueries information.
+     * @param latticePoint - the PVariable or RChain to retrieve the entries for.
+     * @param clauseType - the clause to retrieve the entries for, e.g. SELECT.
+     * @return the entries for the given clause.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    private List<String> getEntries(Connection dbConnection, String latticePoint, String clauseType) throws SQLException {
+        dbConnection.setCatalog(this.bnDatabaseName);
+        List<String> entries = new ArrayList<String>();
+        try (
+            Statement statement = dbConnection.createStatement();
+            ResultSet results = statement.executeQuery(
+                QueryGenerator.createMetaQueriesExtractionQuery(
+                    latticePoint,
+                    "Counts",
+                    clauseType,
+                    null,
+                    false
+                )
+            )
+        ) {
+            while (results.next()) {
+                entries.add(results.getString("Entries"));
+            }
+        }
+
+        return entries;
+    }
+
+
+    /**
+     * Retrieve the given base table, reading it into memory the first time it is needed.
+     *
+     * @param dbConnection - connection to use to read the table.
+     * @param tableName - the fully qualified name of the table, e.g. unielwin.prof.
+     * @return the columnar representation of the table.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    private synchronized ColumnarTable getTable(Connection dbConnection, String tableName) throws SQLException {
+        ColumnarTable table = this.tables.get(tableName);
+        if (table != null) {
+            return table;
+        }
+
+        try (
+            Statement statement = dbConnection.createStatement();
+            ResultSet results = statement.executeQuery("SELECT * FROM " + tableName + ";")
+        ) {
+            ResultSetMetaData metadata = results.getMetaData();
+            int numberOfColumns = metadata.getColumnCount();
+            table = new ColumnarTable(numberOfColumns);
+            for (int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+                table.columnIndices.put(metadata.getColumnLabel(columnIndex + 1), columnIndex);
+            }
+
+            // while loop to encode the values of each row.
+            while (results.next()) {
+                int[] row = new int[numberOfColumns];
+                for (int columnIndex = 0; columnIndex < numberOfColumns; columnIndex++) {
+                    String value = results.getString(columnIndex + 1);
+                    row[columnIndex] = value == null ? NULL_CODE : this.encode(value);
+                }
+
+                table.addRow(row);
+            }
+        }
+
+        this.tables.put(tableName, table);
+        return table;
+    }
+
+
+    /**
+     * Retrieve the code for the given value, adding it to the dictionary if necessary.
+     *
+     * @param value - the value to encode.
+     * @return the code for the given value.
+     */
+    private synchronized int encode(String value) {
+        Integer code = this.dictionary.get(value);
+        if (code == null) {
+            code = this.values.size();
+            this.values.add(value);
+            this.dictionary.put(value, code);
+        }
+
+        return code;
+    }
+
+
+    /**
+     * Retrieve the code for the given value without adding it to the dictionary.
+     *
+     * @param value - the value to look up.
+     * @return the code for the given value, or {@code MISSING_CODE} if the value doesn't appear in any table, which
+     *         doesn't match any value including NULL, the same as comparing NULL to a literal in MySQL.
+     */
+    private synchronized int lookup(String value) {
+        Integer code = this.dictionary.get(value);
+        return code == null ? MISSING_CODE : code;
+    }
+
+
+    /**
+     * Retrieve the value for the given code.
+     *
+     * @param code - the code to decode.
+     * @return the value for the given code.
+     */
+    private synchronized String decode(int code) {
+        return code == NULL_CODE ? null : this.values.get(code);
+    }
+
+
+    /**
+     * Remove the backticks around the given name, if there are any.
+     *
+     * @param name - the name to remove the backticks from.
+     * @return the given name without backticks around it.
+     */
+    private static String unescape(String name) {
+        if (name.length() >= 2 && name.startsWith("`") && name.endsWith("`")) {
+            return name.substring(1, name.length() - 1);
+        }
+
+        return name;
+    }
+
+
+    /**
+     * Remove the quotes around the given literal, if there are any.
+     *
+     * @param literal - the literal to remove the quotes from.
+     * @return the given literal without quotes around it.
+     */
+    private static String unquote(String literal) {
+        if (
+            literal.length() >= 2 &&
+            (literal.startsWith("\"") && literal.endsWith("\"") || literal.startsWith("'") && literal.endsWith("'"))
+        ) {
+            return literal.substring(1, literal.length() - 1);
+        }
+
+        return literal;
+    }
+
+
+    /**
+     * Class to hold a base table in memory, where each value is stored as its dictionary code.
+     */
+    private static class ColumnarTable {
+        private Map<String, Integer> columnIndices = new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
+        private int[][] columns;
+        private int numberOfRows;
+
+
+        /**
+         * Create an empty table with the given number of columns.
+         *
+         * @param numberOfColumns - the number of columns in the table.
+         */
+        ColumnarTable(int numberOfColumns) {
+            this.columns = new int[numberOfColumns][16];
+        }
+
+
+        /**
+         * Add a row to the table.
+         *
+         * @param row - the codes of the values in the row.
+         */
+        void addRow(int[] row) {
+            for (int columnIndex = 0; columnIndex < row.length; columnIndex++) {
+                if (this.numberOfRows == this.columns[columnIndex].length) {
+                    this.columns[columnIndex] = Arrays.copyOf(this.columns[columnIndex], this.numberOfRows * 2);
+                }
+
+                this.columns[columnIndex][this.numberOfRows] = row[columnIndex];
+            }
+
+            this.numberOfRows++;
+        }
+    }
+
+
+    /**
+     * Class to hold a group of column codes so that it can be used as a key of a {@code Map}.
+     */
+    private static class GroupKey {
+        private int[] codes;
+        private int hashCode;
+
+
+        GroupKey(int[] codes) {
+            this.codes = codes;
+            this.hashCode = Arrays.hashCode(codes);
+        }
+
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof GroupKey && Arrays.equals(this.codes, ((GroupKey) other).codes);
+        }
+
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+
+
+    /**
+     * Class to hold a parsed "Counts" query and evaluate it.
+     */
+    private class CountsQuery {
+        private List<String> aliases = new ArrayList<String>();
+        private List<ColumnarTable> tables = new ArrayList<ColumnarTable>();
+        private List<String> columns = new ArrayList<String>();
+        private List<int[]> sources = new ArrayList<int[]>();
+        private List<int[]> joins = new ArrayList<int[]>();
+        private List<int[]> filters = new ArrayList<int[]>();
+        private int multPosition = -1;
+        private int[] order;
+        private int[][] candidateRows;
+        private List<List<int[]>> probes;
+        private List<Map<Integer, int[]>> indices;
+
+
+        /**
+         * Resolve a column reference of the form alias.column.
+         *
+         * @param expression - the column reference to resolve.
+         * @return {table index, column index} for the column, or null if the column can't be found.
+         */
+        int[] resolveColumn(String expression) {
+            Matcher matcher = COLUMN_REFERENCE.matcher(expression);
+            if (!matcher.matches()) {
+                return null;
+            }
+
+            int tableIndex = this.aliases.indexOf(matcher.group(1));
+            if (tableIndex == -1) {
+                return null;
+            }
+
+            Integer columnIndex = this.tables.get(tableIndex).columnIndices.get(matcher.group(2));
+            if (columnIndex == null) {
+                return null;
+            }
+
+            return new int[] { tableIndex, columnIndex };
+        }
+
+
+        /**
+         * Resolve an operand of a WHERE condition, which is either a column reference or a SELECT alias.
+         *
+         * @param operand - the operand to resolve.
+         * @param selectAliases - the source of each SELECT alias.
+         * @return the source of the operand, or null if the operand is a literal.
+         */
+        int[] resolveOperand(String operand, Map<String, int[]> selectAliases) {
+            int[] source = this.resolveColumn(operand);
+            if (source == null && operand.startsWith("`")) {
+                source = selectAliases.get(unescape(operand));
+            }
+
+            return source;
+        }
+
+
+        /**
+         * Evaluate the query.
+         *
+         * @return the "_counts" table generated by the query.
+         * @throws SQLException if the evaluation fails or is interrupted.
+         */
+        MobiusJoin.CountsTable execute() throws SQLException {
+            this.plan();
+
+            // Split the rows of the first table between the threads.
+            int[] driverRows = this.candidateRows[this.order[0]];
+            int numberOfTasks = Math.max(1, Math.min(numberOfThreads, driverRows.length / MIN_ROWS_PER_TASK));
+            List<Future<Map<GroupKey, long[]>>> futures = new ArrayList<Future<Map<GroupKey, long[]>>>();
+            for (int taskIndex = 0; taskIndex < numberOfTasks; taskIndex++) {
+                int from = (int) ((long) driverRows.length * taskIndex / numberOfTasks);
+                int to = (int) ((long) driverRows.length * (taskIndex + 1) / numberOfTasks);
+                futures.add(executor.submit(() -> this.aggregate(driverRows, from, to)));
+            }
+
+            Map<GroupKey, long[]> counts = new HashMap<GroupKey, long[]>();
+            try {
+                for (Future<Map<GroupKey, long[]>> future : futures) {
+                    for (Map.Entry<GroupKey, long[]> entry : future.get().entrySet()) {
+                        long[] count = counts.putIfAbsent(entry.getKey(), entry.getValue());
+                        if (count != null) {
+                            count[0] += entry.getValue()[0];
+                        }
+                    }
+                }
+            } catch (ExecutionException e) {
+                throw new SQLException("Failed to generate the counts in memory.", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while generating the counts in memory.", e);
+            } finally {
+                for (Future<Map<GroupKey, long[]>> future : futures) {
+                    future.cancel(true);
+                }
+            }
+
+            MobiusJoin.CountsTable countsTable = new MobiusJoin.CountsTable(this.columns, this.multPosition);
+            for (Map.Entry<GroupKey, long[]> entry : counts.entrySet()) {
+                int[] codes = entry.getKey().codes;
+                String[] row = new String[codes.length];
+                for (int columnIndex = 0; columnIndex < codes.length; columnIndex++) {
+                    row[columnIndex] = decode(codes[columnIndex]);
+                }
+
+                countsTable.addRow(row, entry.getValue()[0]);
+            }
+
+            return countsTable;
+        }
+
+
+        /**
+         * Determine the order to join the tables in, and build the hash indices used to probe each table.
+         */
+        private void plan() {
+            int numberOfTables = this.tables.size();
+
+            // Apply the filters to the rows of each table.
+            this.candidateRows = new int[numberOfTables][];
+            for (int tableIndex = 0; tableIndex < numberOfTables; tableIndex++) {
+                ColumnarTable table = this.tables.get(tableIndex);
+                int[] rows = new int[table.numberOfRows];
+                int numberOfRows = 0;
+                for (int rowIndex = 0; rowIndex < table.numberOfRows; rowIndex++) {
+                    boolean matches = true;
+                    for (int[] filter : this.filters) {
+                        if (filter[0] == tableIndex && table.columns[filter[1]][rowIndex] != filter[2]) {
+                            matches = false;
+                            break;
+                        }
+                    }
+
+                    if (matches) {
+                        rows[numberOfRows] = rowIndex;
+                        numberOfRows++;
+                    }
+                }
+
+                this.candidateRows[tableIndex] = Arrays.copyOf(rows, numberOfRows);
+            }
+
+            // Start with the table that has the most join conditions, then add the table with the most join conditions
+            // to the tables that have already been added.
+            this.order = new int[numberOfTables];
+            boolean[] added = new boolean[numberOfTables];
+            for (int position = 0; position < numberOfTables; position++) {
+                int bestTable = -1;
+                int bestConditions = -1;
+                for (int tableIndex = 0; tableIndex < numberOfTables; tableIndex++) {
+                    if (added[tableIndex]) {
+                        continue;
+                    }
+
+                    int conditions = 0;
+                    for (int[] join : this.joins) {
+                        boolean leftMatches = join[0] == tableIndex && (position == 0 || added[join[2]]);
+                        boolean rightMatches = join[2] == tableIndex && (position == 0 || added[join[0]]);
+                        if (leftMatches || rightMatches) {
+                            conditions++;
+                        }
+                    }
+
+                    if (conditions > bestConditions) {
+                        bestTable = tableIndex;
+                        bestConditions = conditions;
+                    }
+                }
+
+                this.order[position] = bestTable;
+                added[bestTable] = true;
+            }
+
+            // Build a hash index on the first join condition of each table with the tables added before it, the other
+            // join conditions are checked when probing.
+            this.probes = new ArrayList<List<int[]>>();
+            this.indices = new ArrayList<Map<Integer, int[]>>();
+            Arrays.fill(added, false);
+            for (int position = 0; position < numberOfTables; position++) {
+                int tableIndex = this.order[position];
+                List<int[]> probe = new ArrayList<int[]>();
+                for (int[] join : this.joins) {
+                    if (join[0] == tableIndex && added[join[2]]) {
+                        probe.add(new int[] { join[1], join[2], join[3] });
+                    } else if (join[2] == tableIndex && added[join[0]]) {
+                        probe.add(new int[] { join[3], join[0], join[1] });
+                    } else if (join[0] == tableIndex && join[2] == tableIndex) {
+                        probe.add(new int[] { join[1], tableIndex, join[3] });
+                    }
+                }
+
+                Map<Integer, int[]> index = null;
+                if (!probe.isEmpty() && probe.get(0)[1] != tableIndex) {
+                    index = this.buildIndex(tableIndex, probe.get(0)[0]);
+                }
+
+                this.probes.add(probe);
+                this.indices.add(index);
+                added[tableIndex] = true;
+            }
+        }
+
+
+        /**
+         * Build a hash index from the codes of the given column to the candidate rows with that code.
+         *
+         * @param tableIndex - the table to build the index for.
+         * @param columnIndex - the column to build the index on.
+         * @return Map containing key:value pairs of code:rows.
+         */
+        private Map<Integer, int[]> buildIndex(int tableIndex, int columnIndex) {
+            int[] column = this.tables.get(tableIndex).columns[columnIndex];
+            Map<Integer, int[]> index = new HashMap<Integer, int[]>();
+            for (int row : this.candidateRows[tableIndex]) {
+                int code = column[row];
+                if (code == NULL_CODE) {
+                    continue;
+                }
+
+                int[] rows = index.get(code);
+                if (rows == null) {
+                    rows = new int[] { 0, 0, 0, 0 };
+                    index.put(code, rows);
+                }
+
+                // The first element holds the number of rows in the array.
+                if (rows[0] + 1 == rows.length) {
+                    rows = Arrays.copyOf(rows, rows.length * 2);
+                    index.put(code, rows);
+                }
+
+                rows[0]++;
+                rows[rows[0]] = row;
+            }
+
+            return index;
+        }
+
+
+        /**
+         * Aggregate the counts for the given range of rows of the first table.
+         *
+         * @param driverRows - the candidate rows of the first table.
+         * @param from - the first position in {@code driverRows} to aggregate (inclusive).
+         * @param to - the last position in {@code driverRows} to aggregate (exclusive).
+         * @return Map containing key:value pairs of column-codes:count.
+         */
+        private Map<GroupKey, long[]> aggregate(int[] driverRows, int from, int to) {
+            Map<GroupKey, long[]> counts = new HashMap<GroupKey, long[]>();
+            int[] rows = new int[this.tables.size()];
+            for (int position = from; position < to && !Thread.currentThread().isInterrupted(); position++) {
+                rows[this.order[0]] = driverRows[position];
+                if (this.matches(0, rows)) {
+                    this.join(1, rows, counts);
+                }
+            }
+
+            return counts;
+        }
+
+
+        /**
+         * Join the table at the given position of the join order with the rows chosen for the tables before it.
+         *
+         * @param position - the position of the table in the join order.
+         * @param rows - the row chosen for each table, updated in place.
+         * @param counts - the counts to add the joined rows to.
+         */
+        private void join(int position, int[] rows, Map<GroupKey, long[]> counts) {
+            if (position == this.order.length) {
+                int[] codes = new int[this.sources.size()];
+                for (int columnIndex = 0; columnIndex < codes.length; columnIndex++) {
+                    int[] source = this.sources.get(columnIndex);
+                    codes[columnIndex] = source[0] == -1 ? source[1] : this.tables.get(source[0]).columns[source[1]][rows[source[0]]];
+                }
+
+                counts.computeIfAbsent(new GroupKey(codes), key -> new long[1])[0]++;
+                return;
+            }
+
+            int tableIndex = this.order[position];
+            Map<Integer, int[]> index = this.indices.get(position);
+            if (index != null) {
+                int[] probe = this.probes.get(position).get(0);
+                int code = this.tables.get(probe[1]).columns[probe[2]][rows[probe[1]]];
+                int[] matchingRows = code == NULL_CODE ? null : index.get(code);
+                if (matchingRows == null) {
+                    return;
+                }
+
+                for (int matchIndex = 1; matchIndex <= matchingRows[0]; matchIndex++) {
+                    rows[tableIndex] = matchingRows[matchIndex];
+                    if (this.matches(position, rows)) {
+                        this.join(position + 1, rows, counts);
+                    }
+                }
+            } else {
+                // Cartesian product with the tables before it.
+                for (int row : this.candidateRows[tableIndex]) {
+                    rows[tableIndex] = row;
+                    if (this.matches(position, rows)) {
+                        this.join(position + 1, rows, counts);
+                    }
+                }
+            }
+        }
+
+
+        /**
+         * Check the join conditions of the table at the given position of the join order.
+         *
+         * @param position - the position of the table in the join order.
+         * @param rows - the row chosen for each table.
+         * @return true if the row chosen for the table satisfies all its join conditions; otherwise false.
+         */
+        private boolean matches(int position, int[] rows) {
+            int tableIndex = this.order[position];
+            for (int[] probe : this.probes.get(position)) {
+                int code = this.tables.get(tableIndex).columns[probe[0]][rows[tableIndex]];
+                if (code == NULL_CODE || code != this.tables.get(probe[1]).columns[probe[2]][rows[probe[1]]]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,508 @@
+package ca.sfu.cs.factorbase.learning;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import ca.sfu.cs.factorbase.util.QueryGenerator;
+import ca.sfu.cs.factorbase.util.RuntimeLogger;
+
+/**
+ * Class to keep the "_counts" tables of a previous run up to date with the rows added to the input tables since then,
+ * instead of rebuilding them from scratch.
+ * <p>
+ * Each run stores the watermark of each input table, i.e. the largest value of the watermark column, in the CT
+ * database.  The input tables are expected to only have rows appended to them, where each new row has a larger value
+ * in the watermark column than the rows counted by the previous run.  The input tables without the watermark column
+ * are expected to be unchanged.
+ * </p>
+ */
+public class IncrementalCountsUpdater {
+    private static final String WATERMARKS_TABLE = "Watermarks";
+    private static final String AND_SEPARATOR = " AND ";
+    private static final String CSV_SEPARATOR = ", ";
+    private static Logger logger = Logger.getLogger(IncrementalCountsUpdater.class.getName());
+    private String inputDatabaseName;
+    private String bnDatabaseName;
+    private String ctDatabaseName;
+    private String watermarkColumn;
+    private String countColumnName;
+    private boolean continuous;
+    private long temporaryTableSize;
+
+
+    /**
+     * Create an updater for the "_counts" tables of the given databases.
+     *
+     * @param inputDatabaseName - the name of the input database.
+     * @param bnDatabaseName - the name of the database containing the MetaQueries information.
+     * @param ctDatabaseName - the name of the database containing the "_counts" and "_CT" tables.
+     * @param watermarkColumn - the name of the column that increases with each row added to an input table.
+     * @param countColumnName - the name of the column containing the counts in the "_counts" tables.
+     * @param continuous - True if the input database contains continuous data; otherwise false.
+     * @param temporaryTableSize - the size in bytes of the in-memory temporary tables used by MySQL.
+     */
+    public IncrementalCountsUpdater(
+        String inputDatabaseName,
+        String bnDatabaseName,
+        String ctDatabaseName,
+        String watermarkColumn,
+        String countColumnName,
+        boolean continuous,
+        long temporaryTableSize
+    ) {
+        this.inputDatabaseName = inputDatabaseName;
+        this.bnDatabaseName = bnDatabaseName;
+        this.ctDatabaseName = ctDatabaseName;
+        this.watermarkColumn = watermarkColumn;
+        this.countColumnName = countColumnName;
+        this.continuous = continuous;
+        this.temporaryTableSize = temporaryTableSize;
+    }
+
+
+    /**
+     * Retrieve the current watermark, i.e. the largest value of the watermark column, of each input table that has
+     * the watermark column.
+     *
+     * @param dbConnection - connection to use to read the input tables.
+     * @return Map containing key:value pairs of tableName:watermark, where the watermark is null for empty tables.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    public Map<String, String> readWatermarks(Connection dbConnection) throws SQLException {
+        List<String> tableNames;
+        try (
+            Statement statement = dbConnection.createStatement();
+            ResultSet results = statement.executeQuery(
+                "SELECT TABLE_NAME " +
+                "FROM information_schema.columns " +
+                "WHERE TABLE_SCHEMA = '" + this.inputDatabaseName + "' " +
+                "AND COLUMN_NAME = '" + this.watermarkColumn + "';"
+            )
+        ) {
+            tableNames = extractEntries(results, "TABLE_NAME");
+        }
+
+        Map<String, String> watermarks = new HashMap<String, String>();
+        try (Statement statement = dbConnection.createStatement()) {
+            for (String tableName : tableNames) {
+                try (
+                    ResultSet results = statement.executeQuery(
+                        "SELECT MAX(`" + this.watermarkColumn + "`) " +
+                        "FROM " + this.inputDatabaseName + ".`" + tableName + "`;"
+                    )
+                ) {
+                    results.next();
+                    watermarks.put(tableName, results.getString(1));
+                }
+            }
+        }
+
+        return watermarks;
+    }
+
+
+    /**
+     * Retrieve the watermarks stored by the previous run, see {@link #storeWatermarks(Connection, Map)}.
+     *
+     * @param dbConnection - connection to use to read the CT database.
+     * @return Map containing key:value pairs of tableName:watermark, or null if the CT database doesn't contain
+     *         the watermarks of a previous run.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    public Map<String, String> readPreviousWatermarks(Connection dbConnection) throws SQLException {
+        try (
+            Statement statement = dbConnection.createStatement();
+            ResultSet results = statement.executeQuery(
+                "SELECT TABLE_NAME " +
+                "FROM information_schema.TABLES " +
+                "WHERE TABLE_SCHEMA = '" + this.ctDatabaseName + "' " +
+                "AND TABLE_NAME = '" + WATERMARKS_TABLE + "';"
+            )
+        ) {
+            if (!results.next()) {
+                return null;
+            }
+        }
+
+        Map<String, String> watermarks = new HashMap<String, String>();
+        try (
+            Statement statement = dbConnection.createStatement();
+            ResultSet results = statement.executeQuery(
+                "SELECT table_name, watermark " +
+                "FROM " + this.ctDatabaseName + "." + WATERMARKS_TABLE + ";"
+            )
+        ) {
+            while (results.next()) {
+                watermarks.put(results.getString("table_name"), results.getString("watermark"));
+            }
+        }
+
+        return watermarks;
+    }
+
+
+    /**
+     * Drop the watermarks stored by the previous run so that the next run rebuilds the CT tables from scratch if the
+     * update fails part way.
+     *
+     * @param dbConnection - connection to use to drop the watermarks.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    public void dropPreviousWatermarks(Connection dbConnection) throws SQLException {
+        try (Statement statement = dbConnection.createStatement()) {
+            statement.execute("DROP TABLE " + this.ctDatabaseName + "." + WATERMARKS_TABLE + ";");
+        }
+    }
+
+
+    /**
+     * Store the given watermarks in the CT database so that the next run only needs to count the rows added after
+     * them.
+     *
+     * @param dbConnection - connection to use to write to the CT database.
+     * @param watermarks - Map containing key:value pairs of tableName:watermark.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    public void storeWatermarks(Connection dbConnection, Map<String, String> watermarks) throws SQLException {
+        String watermarksTable = this.ctDatabaseName + "." + WATERMARKS_TABLE;
+        try (Statement statement = dbConnection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + watermarksTable + ";");
+            statement.execute(
+                "CREATE TABLE " + watermarksTable + " (" +
+                    "table_name VARCHAR(64) NOT NULL PRIMARY KEY, " +
+                    "watermark VARCHAR(255)" +
+                ");"
+            );
+        }
+
+        try (
+            PreparedStatement statement = dbConnection.prepareStatement(
+                "INSERT INTO " + watermarksTable + " VALUES (?, ?);"
+            )
+        ) {
+            for (Map.Entry<String, String> watermark : watermarks.entrySet()) {
+                statement.setString(1, watermark.getKey());
+                statement.setString(2, watermark.getValue());
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+        }
+    }
+
+
+    /**
+     * Add the counts of the rows added to the input tables since the previous run to the given "_counts" table.
+     * <p>
+     * Since the input tables only have rows appended to them, the counts of the joins of tables T1, ..., Tk change by
+     * the sum over each changed table Ti of the counts of the join of T1, ..., Ti-1 (all rows), the new rows of Ti, and
+     * Ti+1, ..., Tk (rows of the previous run).
+     * </p>
+     *
+     * @param dbConnection - connection to use to read the MetaQueries information and update the "_counts" table.
+     * @param latticePoint - the PVariable or RChain that the "_counts" table is for.
+     * @param countsTableName - the name of the "_counts" table to update.
+     * @param storageEngine - the storage engine to use for the updated "_counts" table.
+     * @param previousWatermarks - the watermarks of the input tables when the previous run counted them.
+     * @param watermarks - the current watermarks of the input tables.
+     * @return true if the "_counts" table has been updated; false if none of its input tables has changed.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    public boolean updateCountsTable(
+        Connection dbConnection,
+        String latticePoint,
+        String countsTableName,
+        String storageEngine,
+        Map<String, String> previousWatermarks,
+        Map<String, String> watermarks
+    ) throws SQLException {
+        Map<String, List<String>> clauses = new HashMap<String, List<String>>();
+        dbConnection.setCatalog(this.bnDatabaseName);
+        try (Statement statement = dbConnection.createStatement()) {
+            for (String clause : new String[] { "SELECT", "FROM", "WHERE", "GROUPBY" }) {
+                try (
+                    ResultSet results = statement.executeQuery(
+                        QueryGenerator.createMetaQueriesExtractionQuery(
+                            latticePoint,
+                            "Counts",
+                            clause,
+                            null,
+                            false
+                        )
+                    )
+                ) {
+                    clauses.put(clause, extractEntries(results, "Entries"));
+                }
+            }
+        }
+
+        // Determine the input table and alias of each FROM entry, e.g. unielwin.prof AS prof0.
+        List<String> fromEntries = clauses.get("FROM");
+        String[] tableNames = new String[fromEntries.size()];
+        String[] aliases = new String[fromEntries.size()];
+        boolean changed = false;
+        for (int index = 0; index < fromEntries.size(); index++) {
+            String[] tableAndAlias = fromEntries.get(index).split("(?i)\\s+AS\\s+");
+            String[] databaseAndTable = tableAndAlias[0].replace("`", "").split("\\.");
+            if (
+                tableAndAlias.length == 2 &&
+                databaseAndTable.length == 2 &&
+                databaseAndTable[0].equals(this.inputDatabaseName) &&
+                watermarks.containsKey(databaseAndTable[1])
+            ) {
+                tableNames[index] = databaseAndTable[1];
+                aliases[index] = tableAndAlias[1].trim() + ".`" + this.watermarkColumn + "`";
+                changed |= isChanged(tableNames[index], previousWatermarks, watermarks);
+            }
+        }
+
+        if (!changed) {
+            return false;
+        }
+
+        String groupByString = this.continuous ? "" : String.join(CSV_SEPARATOR, clauses.get("GROUPBY"));
+        List<String> sourceQueries = new ArrayList<String>();
+        sourceQueries.add("SELECT * FROM `" + countsTableName + "`");
+
+        // for loop to create the query for the counts of the new rows of each changed table.
+        for (int index = 0; index < tableNames.length; index++) {
+            if (tableNames[index] == null || !isChanged(tableNames[index], previousWatermarks, watermarks)) {
+                continue;
+            }
+
+            List<String> conditions = new ArrayList<String>(clauses.get("WHERE"));
+            boolean empty = false;
+            for (int otherIndex = 0; otherIndex < tableNames.length && !empty; otherIndex++) {
+                if (tableNames[otherIndex] == null) {
+                    continue;
+                }
+
+                String previousWatermark = previousWatermarks.getOrDefault(
+                    tableNames[otherIndex],
+                    watermarks.get(tableNames[otherIndex])
+                );
+                String currentWatermark = watermarks.get(tableNames[otherIndex]);
+                if (otherIndex == index && previousWatermark != null) {
+                    conditions.add(aliases[otherIndex] + " > " + quoteLiteral(previousWatermark));
+                }
+
+                // The rows of the previous run for the tables after the changed table, all the rows otherwise.
+                String upperWatermark = otherIndex > index ? previousWatermark : currentWatermark;
+                if (upperWatermark == null) {
+                    empty = true;
+                } else {
+                    conditions.add(aliases[otherIndex] + " <= " + quoteLiteral(upperWatermark));
+                }
+            }
+
+            if (empty) {
+                continue;
+            }
+
+            String deltaQuery =
+                "SELECT " + String.join(CSV_SEPARATOR, clauses.get("SELECT")) + " " +
+                "FROM " + String.join(CSV_SEPARATOR, fromEntries) + " " +
+                "WHERE " + String.join(AND_SEPARATOR, conditions);
+            if (!groupByString.isEmpty()) {
+                deltaQuery += " GROUP BY " + groupByString;
+            }
+
+            sourceQueries.add(deltaQuery);
+        }
+
+        // Replace the "_counts" table with the sum of its counts and the counts of the new rows.
+        String mergedTableName = countsTableName + "_merged";
+        String mergedCountsQuery = CountsPartitioner.createMergedCountsQuery(
+            dbConnection,
+            this.ctDatabaseName,
+            this.countColumnName,
+            sourceQueries
+        );
+        String createString = QueryGenerator.createSimpleCreateTableQuery(
+            mergedTableName,
+            storageEngine,
+            mergedCountsQuery
+        );
+
+        dbConnection.setCatalog(this.ctDatabaseName);
+        RuntimeLogger.logExecutedQuery(logger, createString);
+        try (Statement statement = dbConnection.createStatement()) {
+            statement.executeUpdate("SET tmp_table_size = " + this.temporaryTableSize + ";");
+            statement.executeUpdate("SET max_heap_table_size = " + this.temporaryTableSize + ";");
+            statement.execute("DROP TABLE IF EXISTS `" + mergedTableName + "`;");
+            statement.execute(createString);
+            statement.execute("DROP TABLE `" + countsTableName + "`;");
+            statement.execute("RENAME TABLE `" + mergedTableName + "` TO `" + countsTableName + "`;");
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Determine if the "_CT" table of the given PVariable or RChain needs to be rebuilt because its "_counts" table, or
+     * one of the tables its Mobius Join reads from, has changed.
+     *
+     * @param dbConnection - connection to use to read the MetaQueries information.
+     * @param rchain - the full form name of the RChain.
+     * @param shortRchain - the short form name of the RChain.
+     * @param updatedTables - the names of the tables in the CT database that have changed.
+     * @return true if the "_CT" table needs to be rebuilt; otherwise false.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    public boolean dependsOnUpdatedTables(
+        Connection dbConnection,
+        String rchain,
+        String shortRchain,
+        Set<String> updatedTables
+    ) throws SQLException {
+        if (updatedTables.contains(shortRchain + "_counts")) {
+            return true;
+        }
+
+        dbConnection.setCatalog(this.bnDatabaseName);
+        try (
+            Statement statement = dbConnection.createStatement();
+            ResultSet results = statement.executeQuery(
+                QueryGenerator.createMetaQueriesExtractionQuery(
+                    rchain,
+                    "Star",
+                    "FROM",
+                    null,
+                    true
+                )
+            )
+        ) {
+            for (String entry : extractEntries(results, "Entries")) {
+                if (updatedTables.contains(entry.replace("`", "").trim())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Drop the "_CT" table of the given RChain and the intermediate "_CT" tables created while building it.
+     *
+     * @param dbConnection - connection to use to drop the tables.
+     * @param rchain - the full form name of the RChain.
+     * @param shortRchain - the short form name of the RChain.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    public void dropRChainCTTables(Connection dbConnection, String rchain, String shortRchain) throws SQLException {
+        List<String> tableNames = new ArrayList<String>();
+        tableNames.add(shortRchain + "_CT");
+        dbConnection.setCatalog(this.bnDatabaseName);
+        try (
+            Statement statement = dbConnection.createStatement();
+            ResultSet results = statement.executeQuery(
+                "SELECT short_rnid " +
+                "FROM lattice_rel " +
+                "JOIN lattice_mapping " +
+                "ON lattice_rel.removed = lattice_mapping.orig_rnid " +
+                "WHERE child = '" + rchain + "';"
+            )
+        ) {
+            while (results.next()) {
+                tableNames.add(shortRchain + "_" + results.getString("short_rnid") + "_CT");
+            }
+        }
+
+        dbConnection.setCatalog(this.ctDatabaseName);
+        try (Statement statement = dbConnection.createStatement()) {
+            for (String tableName : tableNames) {
+                statement.execute("DROP TABLE IF EXISTS `" + tableName + "`;");
+            }
+        }
+    }
+
+
+    /**
+     * Drop the tables in the CT database whose names match the given pattern.
+     *
+     * @param dbConnection - connection to use to drop the tables.
+     * @param pattern - the LIKE pattern that the names of the tables to drop match.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    public void dropTables(Connection dbConnection, String pattern) throws SQLException {
+        List<String> tableNames;
+        try (
+            Statement statement = dbConnection.createStatement();
+            ResultSet results = statement.executeQuery(
+                "SELECT TABLE_NAME " +
+                "FROM information_schema.TABLES " +
+                "WHERE TABLE_SCHEMA = '" + this.ctDatabaseName + "' " +
+                "AND TABLE_NAME LIKE '" + pattern + "';"
+            )
+        ) {
+            tableNames = extractEntries(results, "TABLE_NAME");
+        }
+
+        try (Statement statement = dbConnection.createStatement()) {
+            for (String tableName : tableNames) {
+                statement.execute("DROP TABLE " + this.ctDatabaseName + ".`" + tableName + "`;");
+            }
+        }
+    }
+
+
+    /**
+     * Determine if rows have been added to the given input table since the previous run.
+     *
+     * @param tableName - the name of the input table.
+     * @param previousWatermarks - the watermarks of the input tables when the previous run counted them.
+     * @param watermarks - the current watermarks of the input tables.
+     * @return true if rows have been added to the given table; otherwise false.
+     */
+    private static boolean isChanged(
+        String tableName,
+        Map<String, String> previousWatermarks,
+        Map<String, String> watermarks
+    ) {
+        return
+            previousWatermarks.containsKey(tableName) &&
+            watermarks.get(tableName) != null &&
+            !watermarks.get(tableName).equals(previousWatermarks.get(tableName));
+    }
+
+
+    /**
+     * Quote the given value so that it can be used as a literal in an SQL query.
+     *
+     * @param value - the value to quote.
+     * @return the given value as an SQL string literal.
+     */
+    private static String quoteLiteral(String value) {
+        return "'" + value.replace("\\", "\\\\").replace("'", "''") + "'";
+    }
+
+
+    /**
+     * Extract the values of the given column from the given results.
+     *
+     * @param results - the results to extract the values from.
+     * @param column - the name of the column to extract the values of.
+     * @return the values of the given column, in the order of the results.
+     * @throws SQLException if there are issues reading the results.
+     */
+    private static List<String> extractEntries(ResultSet results, String column) throws SQLException {
+        List<String> entries = new ArrayList<String>();
+        while (results.next()) {
+            entries.add(results.getString(column));
+        }
+
+        return entries;
+    }
+}
@@ -0,0 +1,308 @@
+package ca.sfu.cs.factorbase.learning;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Class to order the tables joined by the counting queries so that the estimated number of rows of each intermediate
+ * join result is as small as possible.
+ * <p>
+ * The estimates are based on the number of rows of each table and the average number of rows per value of each join
+ * column, which are only computed the first time a table or column is used.
+ * </p>
+ */
+public class JoinOrderPlanner {
+    private static final String CSV_SEPARATOR = ", ";
+    private static Logger logger = Logger.getLogger(JoinOrderPlanner.class.getName());
+    private int maxSkew;
+    private Map<String, Integer> tableCardinalities = new ConcurrentHashMap<String, Integer>();
+    private Map<String, int[]> columnDegrees = new ConcurrentHashMap<String, int[]>();
+
+
+    /**
+     * Create a planner that only forces the planned join orders whose estimates are reliable.
+     *
+     * @param maxSkew - the largest ratio between the max and the average degree of a join column for which the
+     *                  estimates are considered reliable.
+     */
+    public JoinOrderPlanner(int maxSkew) {
+        this.maxSkew = maxSkew;
+    }
+
+
+    /**
+     * Order the tables to join for the "_counts" table of the given RChain.
+     * <p>
+     * Starting from the table with the fewest rows, the table added next is the one that gives the fewest estimated
+     * rows when joined with the tables already added, where joining a table on a column multiplies the number of
+     * rows by the average degree of the column, i.e. the average number of rows per value, see
+     * {@link JoinOrderPlanner#computeDegree(Connection, String, String)}.  Tables that can't be joined on a column are
+     * added last.
+     * </p>
+     * <p>
+     * Note: If the max degree of each column used is at most maxSkew times its average degree, the estimates are
+     *       considered reliable and the returned order should be forced with STRAIGHT_JOIN.
+     * </p>
+     *
+     * @param dbConnection - connection to use to compute the statistics of the tables.
+     * @param rchain - the full form name of the RChain.
+     * @param fromAliases - the tables to join, in the "database.table AS alias" format of the MetaQueries.
+     * @param whereConditions - the conditions of the WHERE clause, including the "alias.column = alias.column" join
+     *                          conditions.
+     * @return the tables to join in the planned order and whether the estimates are reliable, or the given tables
+     *         without STRAIGHT_JOIN if they aren't in the expected format.
+     * @throws SQLException if an error occurs when executing the queries.
+     */
+    public JoinOrder plan(
+        Connection dbConnection,
+        String rchain,
+        List<String> fromAliases,
+        List<String> whereConditions
+    ) throws SQLException {
+        // Use the order of the MetaQueries to break ties between tables with the same estimates.
+        Map<String, String> aliasTables = new LinkedHashMap<String, String>();
+        Map<String, String> aliasEntries = new HashMap<String, String>();
+        for (String fromAlias : fromAliases) {
+            String[] aliasComponents = fromAlias.split(" AS ");
+            if (aliasComponents.length != 2) {
+                return new JoinOrder(fromAliases, false);
+            }
+
+            aliasTables.put(aliasComponents[1].trim(), aliasComponents[0].trim());
+            aliasEntries.put(aliasComponents[1].trim(), fromAlias);
+        }
+
+        // Extract the join conditions in the form {alias, column, alias, column}.
+        List<String[]> joinConditions = new ArrayList<String[]>();
+        for (String condition : whereConditions) {
+            String[] sides = condition.split(" = ");
+            if (sides.length != 2) {
+                continue;
+            }
+
+            int leftDot = sides[0].lastIndexOf('.');
+            int rightDot = sides[1].lastIndexOf('.');
+            if (leftDot < 1 || rightDot < 1) {
+                continue;
+            }
+
+            String[] joinCondition = {
+                sides[0].substring(0, leftDot).trim(),
+                sides[0].substring(leftDot + 1).trim(),
+                sides[1].substring(0, rightDot).trim(),
+                sides[1].substring(rightDot + 1).trim()
+            };
+            if (aliasTables.containsKey(joinCondition[0]) && aliasTables.containsKey(joinCondition[2])) {
+                joinConditions.add(joinCondition);
+            }
+        }
+
+        List<String> joinOrder = new ArrayList<String>();
+        Set<String> joinedAliases = new HashSet<String>();
+        double joinRows = 0;
+        double estimatedCost = 0;
+        boolean confident = true;
+        while (joinOrder.size() < fromAliases.size()) {
+            String bestAlias = null;
+            double bestRows = Double.MAX_VALUE;
+            boolean bestConfident = true;
+
+            // for loop to estimate the number of rows when joining each of the remaining tables.
+            for (String alias : aliasTables.keySet()) {
+                if (joinedAliases.contains(alias)) {
+                    continue;
+                }
+
+                String table = aliasTables.get(alias);
+                double rows = this.getTableCardinality(dbConnection, table);
+                boolean rowsConfident = true;
+                if (!joinedAliases.isEmpty()) {
+                    double fanout = rows;
+                    for (String[] joinCondition : joinConditions) {
+                        String column = null;
+                        if (joinCondition[0].equals(alias) && joinedAliases.contains(joinCondition[2])) {
+                            column = joinCondition[1];
+                        } else if (joinCondition[2].equals(alias) && joinedAliases.contains(joinCondition[0])) {
+                            column = joinCondition[3];
+                        }
+
+                        if (column != null) {
+                            int[] degree = this.getColumnDegree(dbConnection, table, column);
+                            fanout = Math.min(fanout, Math.max(1, degree[0]));
+                            rowsConfident &= degree[1] <= (long) this.maxSkew * Math.max(1, degree[0]);
+                        }
+                    }
+
+                    rows = joinRows * fanout;
+                }
+
+                if (rows < bestRows) {
+                    bestAlias = alias;
+                    bestRows = rows;
+                    bestConfident = rowsConfident;
+                }
+            }
+
+            joinOrder.add(aliasEntries.get(bestAlias));
+            joinedAliases.add(bestAlias);
+            joinRows = bestRows;
+            estimatedCost += bestRows;
+            confident &= bestConfident;
+        }
+
+        logger.fine(
+            "Join Order[" + rchain + "]: " + String.join(CSV_SEPARATOR, joinOrder) +
+            " (estimated rows=" + String.format("%.3g", estimatedCost) + ", STRAIGHT_JOIN=" + confident + ")."
+        );
+
+        return new JoinOrder(joinOrder, confident);
+    }
+
+
+    /**
+     * Get the number of rows in the given database table, only counting them the first time the table is given.
+     *
+     * @param dbConnection - connection to use to count the rows.
+     * @param databaseTable - name of the database table to get the row count for.
+     * @return the number of rows in the given database table.
+     * @throws SQLException if an error occurs when executing the queries.
+     */
+    private int getTableCardinality(Connection dbConnection, String databaseTable) throws SQLException {
+        Integer cardinality = this.tableCardinalities.get(databaseTable);
+        if (cardinality == null) {
+            cardinality = countRows(dbConnection, databaseTable);
+            this.tableCardinalities.put(databaseTable, cardinality);
+        }
+
+        return cardinality;
+    }
+
+
+    /**
+     * Get the average and max degree of the given column, only computing them the first time the column is given.
+     *
+     * @param dbConnection - connection to use to compute the degree information.
+     * @param table - name of the table to get the degree information from.
+     * @param column - the column in the given table to get the degree information for.
+     * @return {@code int[]} containing the average degree (int[0]) and the max degree (int[1]).
+     * @throws SQLException if an error occurs when executing the queries.
+     */
+    private int[] getColumnDegree(Connection dbConnection, String table, String column) throws SQLException {
+        String key = table + "." + column;
+        int[] degree = this.columnDegrees.get(key);
+        if (degree == null) {
+            degree = computeDegree(dbConnection, table, column);
+            this.columnDegrees.put(key, degree);
+        }
+
+        return degree;
+    }
+
+
+    /**
+     * Determine the average and max degree of the entries in the given table for the specified column.
+     *
+     * @param dbConnection - connection to use to compute the degree information.
+     * @param table - name of the table to get the degree information from.
+     * @param column - the column in the given table to get the degree information for.
+     * @return {@code int[]} containing the average degree (int[0]) and the max degree (int[1]).
+     * @throws SQLException if an error occurs when executing the queries.
+     */
+    static int[] computeDegree(Connection dbConnection, String table, String column) throws SQLException {
+        String degreeQuery =
+            "SELECT " +
+                "AVG(TOTAL) AS AVG, " +
+                "MAX(TOTAL) AS MAX " +
+            "FROM (" +
+                "SELECT " +
+                    column + ", " +
+                    "COUNT(*) AS TOTAL " +
+                "FROM " +
+                    table + " " +
+                "GROUP BY " +
+                    column +
+            ") AS TABULATED;";
+
+        try (
+            Statement statement = dbConnection.createStatement();
+            ResultSet results = statement.executeQuery(degreeQuery)
+        ) {
+            results.next();
+            int[] stats = new int[2];
+            stats[0] = results.getInt("AVG");
+            stats[1] = results.getInt("MAX");
+
+            return stats;
+        }
+    }
+
+
+    /**
+     * Get the row count for the given database table.
+     *
+     * @param dbConnection - connection to use to count the rows.
+     * @param databaseTable - name of the database table to get the row count for.
+     * @return the number of rows in the given database table.
+     * @throws SQLException if an error occurs when executing the queries.
+     */
+    static int countRows(Connection dbConnection, String databaseTable) throws SQLException {
+        try (
+            Statement statement = dbConnection.createStatement();
+            ResultSet results = statement.executeQuery(
+                "SELECT COUNT(*) AS TOTAL FROM " + databaseTable
+            )
+        ) {
+            results.next();
+            return results.getInt("TOTAL");
+        }
+    }
+
+
+    /**
+     * The tables to join for a "_counts" table, in the order to join them.
+     */
+    public static class JoinOrder {
+        private List<String> tables;
+        private boolean straightJoin;
+
+
+        /**
+         * Create a join order for the given tables.
+         *
+         * @param tables - the tables to join, in the order to join them.
+         * @param straightJoin - True if the order should be forced with STRAIGHT_JOIN; otherwise false.
+         */
+        public JoinOrder(List<String> tables, boolean straightJoin) {
+            this.tables = tables;
+            this.straightJoin = straightJoin;
+        }
+
+
+        /**
+         * @return the FROM clause that joins the tables in order.
+         */
+        public String getFromString() {
+            return String.join(CSV_SEPARATOR, this.tables);
+        }
+
+
+        /**
+         * @return true if the order of the tables is based on reliable estimates and should be forced with
+         *         STRAIGHT_JOIN; otherwise false.
+         */
+        public boolean isStraightJoin() {
+            return this.straightJoin;
+        }
+    }
+}
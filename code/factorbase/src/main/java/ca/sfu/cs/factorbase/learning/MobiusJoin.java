@@ -0,0 +1,773 @@
+package ca.sfu.cs.factorbase.learning;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ca.sfu.cs.factorbase.data.DataSet;
+import ca.sfu.cs.factorbase.data.DataSetMetaData;
+import ca.sfu.cs.factorbase.util.Mapper;
+import ca.sfu.cs.factorbase.util.QueryGenerator;
+
+/**
+ * Class to build the "_CT" tables of the RChains in memory using the Mobius Join.
+ * <p>
+ * Starting from the "_counts" table of an RChain, the "relationship false" rows are added for each of its RNodes in
+ * the same way as {@link CountsManager} does in MySQL, i.e. the "_flat" table is the sum of the current CT table over
+ * the columns of the star table, the star table is the product of the tables given by the "Star" MetaQueries, and the
+ * "_false" table is the difference between the star and flat tables crossed with the JOIN table of the RNode.  None
+ * of these intermediate tables are created in MySQL.
+ * </p>
+ */
+public class MobiusJoin {
+    private static final String MULT_COLUMN = "MULT";
+    private static final Pattern STAR_CONDITION = Pattern.compile("^`(.+)` = \"(.*)\"$");
+    private static final int BATCH_SIZE = 10000;
+    private String bnDatabaseName;
+    private String ctDatabaseName;
+    private Map<String, String> joinTableQueries;
+    private Map<String, CountsTable> tables = new ConcurrentHashMap<String, CountsTable>();
+
+
+    /**
+     * Create an in-memory Mobius Join for the CT tables of the given databases.
+     *
+     * @param bnDatabaseName - the name of the database containing the lattice and MetaQueries information.
+     * @param ctDatabaseName - the name of the database containing the "_counts" and "_CT" tables.
+     * @param joinTableQueries - {@code Map} to retrieve the associated query to create a derived JOIN table.
+     */
+    public MobiusJoin(String bnDatabaseName, String ctDatabaseName, Map<String, String> joinTableQueries) {
+        this.bnDatabaseName = bnDatabaseName;
+        this.ctDatabaseName = ctDatabaseName;
+        this.joinTableQueries = joinTableQueries;
+    }
+
+
+    /**
+     * Build the "_CT" table for the given RChain.
+     * <p>
+     * Note: The "_counts" table of the given RChain and the "_CT" tables of its sub-chains are read from the tables
+     *       given to {@link #cacheTable(String, CountsTable)}, or from the CT database if they haven't been given.  The
+     *       "_counts" table is removed from memory since it is only needed once.
+     * </p>
+     *
+     * @param dbConnection - connection to use to read the "_counts" tables and the MetaQueries information.
+     * @param rchain - the full form name of the RChain.
+     * @param shortRchain - the short form name of the RChain.
+     * @return the "_CT" table for the given RChain.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    public CountsTable buildCT(Connection dbConnection, String rchain, String shortRchain) throws SQLException {
+        CountsTable currentCT = this.tables.remove(shortRchain + "_counts");
+        if (currentCT == null) {
+            currentCT = CountsTable.load(
+                dbConnection,
+                "SELECT * FROM `" + this.ctDatabaseName + "`.`" + shortRchain + "_counts`;"
+            );
+        }
+
+        // Retrieve the members of the RChain in the same order as they are processed in MySQL.
+        List<String[]> removedRNodes = new ArrayList<String[]>();
+        try (
+            Statement statement = dbConnection.createStatement();
+            ResultSet results = statement.executeQuery(
+                "SELECT removed, short_rnid " +
+                "FROM `" + this.bnDatabaseName + "`.lattice_rel " +
+                "JOIN `" + this.bnDatabaseName + "`.lattice_mapping " +
+                "ON lattice_rel.removed = lattice_mapping.orig_rnid " +
+                "WHERE child = '" + rchain + "' " +
+                "ORDER BY removed ASC;"
+            )
+        ) {
+            while (results.next()) {
+                removedRNodes.add(new String[] { results.getString("removed"), results.getString("short_rnid") });
+            }
+        }
+
+        for (String[] removedRNode : removedRNodes) {
+            currentCT = this.addFalseRows(dbConnection, rchain, removedRNode[0], removedRNode[1], currentCT);
+        }
+
+        return currentCT;
+    }
+
+
+    /**
+     * Make the given table available to the CT tables built afterwards, e.g. the "_CT" table of a sub-chain.
+     *
+     * @param tableName - the name of the table in the CT database.
+     * @param table - the content of the table.
+     */
+    public void cacheTable(String tableName, CountsTable table) {
+        this.tables.put(tableName, table);
+    }
+
+
+    /**
+     * Remove the given tables from memory once they are no longer needed to build the remaining CT tables.
+     *
+     * @param tableNames - the names of the tables to remove.
+     */
+    public void evictTables(Collection<String> tableNames) {
+        this.tables.keySet().removeAll(tableNames);
+    }
+
+
+    /**
+     * Add the rows where the given RNode is false to the given CT table.
+     *
+     * @param dbConnection - connection to use to read the MetaQueries information.
+     * @param rchain - the full form name of the RChain that the CT table is being built for.
+     * @param removed - the RNode to add the false rows for.
+     * @param removedShort - the short form name of the RNode to add the false rows for.
+     * @param currentCT - the CT table where the given RNode is true.
+     * @return the CT table including the rows where the given RNode is false.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    private CountsTable addFalseRows(
+        Connection dbConnection,
+        String rchain,
+        String removed,
+        String removedShort,
+        CountsTable currentCT
+    ) throws SQLException {
+        List<String> selectColumns = new ArrayList<String>();
+        for (String entry : this.getStarEntries(dbConnection, rchain, "SELECT", removed)) {
+            selectColumns.add(unescape(entry));
+        }
+
+        // Compute the "_flat" table.
+        Map<List<String>, Long> flatTable = currentCT.sum(selectColumns);
+
+        // Compute the star table, filtering each of its tables with the conditions that apply to it.
+        Map<String, String> conditions = new HashMap<String, String>();
+        for (String entry : this.getStarEntries(dbConnection, rchain, "WHERE", removed)) {
+            Matcher matcher = STAR_CONDITION.matcher(entry);
+            if (!matcher.matches()) {
+                throw new SQLException("Unsupported condition for the star table of " + rchain + ": " + entry);
+            }
+
+            conditions.put(matcher.group(1), matcher.group(2));
+        }
+
+        List<CountsTable> starTables = new ArrayList<CountsTable>();
+        for (String entry : this.getStarEntries(dbConnection, rchain, "FROM", removed)) {
+            starTables.add(this.getTable(dbConnection, unescape(entry)).filter(conditions));
+        }
+
+        // Locate the table and column that each column of the star table comes from.
+        int[] sourceTables = new int[selectColumns.size()];
+        int[] sourceColumns = new int[selectColumns.size()];
+        for (int columnIndex = 0; columnIndex < selectColumns.size(); columnIndex++) {
+            String column = selectColumns.get(columnIndex);
+            sourceTables[columnIndex] = -1;
+            for (int tableIndex = 0; tableIndex < starTables.size() && sourceTables[columnIndex] == -1; tableIndex++) {
+                int sourceColumn = starTables.get(tableIndex).getColumnIndex(column);
+                if (sourceColumn != -1) {
+                    sourceTables[columnIndex] = tableIndex;
+                    sourceColumns[columnIndex] = sourceColumn;
+                }
+            }
+
+            if (sourceTables[columnIndex] == -1) {
+                throw new SQLException("Unknown column " + column + " for the star table of " + rchain + ".");
+            }
+        }
+
+        // Locate where each column of the CT table comes from in the "_false" table and the JOIN table.
+        CountsTable joinTable = this.getJoinTable(dbConnection, removedShort);
+        List<String> ctColumns = currentCT.getColumns();
+        int[] falseColumns = new int[ctColumns.size()];
+        int[] joinColumns = new int[ctColumns.size()];
+        for (int columnIndex = 0; columnIndex < ctColumns.size(); columnIndex++) {
+            String column = ctColumns.get(columnIndex);
+            falseColumns[columnIndex] = selectColumns.indexOf(column);
+            joinColumns[columnIndex] = joinTable.getColumnIndex(column);
+            if (falseColumns[columnIndex] == -1 && joinColumns[columnIndex] == -1) {
+                throw new SQLException("Unknown column " + column + " for the CT table of " + rchain + ".");
+            }
+        }
+
+        String[] joinRow = joinTable.getRows().get(0);
+        CountsTable nextCT = new CountsTable(ctColumns, currentCT.getMultPosition());
+        currentCT.forEachPositiveRow(nextCT::addRow);
+
+        // The star table is empty if any of its tables is empty.  Also, without any columns, the "_flat" table of an
+        // empty CT table has a single NULL row in MySQL, which makes every row of the "_false" table NULL.
+        for (CountsTable starTable : starTables) {
+            if (starTable.getNumberOfRows() == 0 || (selectColumns.isEmpty() && flatTable.isEmpty())) {
+                return nextCT;
+            }
+        }
+
+        // do-while loop to go through each row of the Cartesian product of the star tables.
+        int[] rowIndices = new int[starTables.size()];
+        String[] starRow = new String[selectColumns.size()];
+        do {
+            long mult = 1;
+            for (int tableIndex = 0; tableIndex < starTables.size(); tableIndex++) {
+                mult *= starTables.get(tableIndex).getMult(rowIndices[tableIndex]);
+            }
+
+            boolean hasNull = false;
+            for (int columnIndex = 0; columnIndex < starRow.length; columnIndex++) {
+                starRow[columnIndex] = starTables.get(sourceTables[columnIndex]).getRows().get(
+                    rowIndices[sourceTables[columnIndex]]
+                )[sourceColumns[columnIndex]];
+                hasNull |= starRow[columnIndex] == null;
+            }
+
+            // Rows with a NULL column never match a row of the "_flat" table, the same as the JOIN in MySQL.
+            if (!hasNull) {
+                Long flatMult = flatTable.get(Arrays.asList(starRow));
+                if (flatMult != null) {
+                    mult -= flatMult;
+                }
+            }
+
+            if (mult > 0) {
+                String[] ctRow = new String[ctColumns.size()];
+                for (int columnIndex = 0; columnIndex < ctRow.length; columnIndex++) {
+                    if (falseColumns[columnIndex] != -1) {
+                        ctRow[columnIndex] = starRow[falseColumns[columnIndex]];
+                    } else {
+                        ctRow[columnIndex] = joinRow[joinColumns[columnIndex]];
+                    }
+                }
+
+                nextCT.addRow(ctRow, mult);
+            }
+        } while (nextCombination(rowIndices, starTables));
+
+        return nextCT;
+    }
+
+
+    /**
+     * Move the given row indices to the next row of the Cartesian product of the given tables.
+     *
+     * @param rowIndices - the current row index for each table, updated in place.
+     * @param tables - the tables of the Cartesian product.
+     * @return true if the row indices were moved to the next row; false if there are no more rows.
+     */
+    private static boolean nextCombination(int[] rowIndices, List<CountsTable> tables) {
+        for (int tableIndex = rowIndices.length - 1; tableIndex >= 0; tableIndex--) {
+            rowIndices[tableIndex]++;
+            if (rowIndices[tableIndex] < tables.get(tableIndex).getNumberOfRows()) {
+                return true;
+            }
+
+            rowIndices[tableIndex] = 0;
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Retrieve the "Star" MetaQueries entries for the given RChain and RNode.
+     *
+     * @param dbConnection - connection to use to read the MetaQueries information.
+     * @param rchain - the RChain to retrieve the entries for.
+     * @param clauseType - the clause to retrieve the entries for, e.g. SELECT.
+     * @param removed - the RNode being removed from the RChain.
+     * @return the entries for the given clause.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    private List<String> getStarEntries(
+        Connection dbConnection,
+        String rchain,
+        String clauseType,
+        String removed
+    ) throws SQLException {
+        dbConnection.setCatalog(this.bnDatabaseName);
+        List<String> entries = new ArrayList<String>();
+        try (
+            Statement statement = dbConnection.createStatement();
+            ResultSet results = statement.executeQuery(
+                QueryGenerator.createMetaQueriesExtractionQuery(
+                    rchain,
+                    "Star",
+                    clauseType,
+                    removed,
+                    false
+                )
+            )
+        ) {
+            while (results.next()) {
+                entries.add(results.getString("Entries"));
+            }
+        }
+
+        return entries;
+    }
+
+
+    /**
+     * Retrieve the given table from memory, reading it from the CT database if it isn't in memory yet.  The tables read
+     * from the CT database are kept in memory until they are given to {@link #evictTables(Collection)}.
+     *
+     * @param dbConnection - connection to use to read the table.
+     * @param tableName - the name of the table in the CT database.
+     * @return the content of the given table.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    private CountsTable getTable(Connection dbConnection, String tableName) throws SQLException {
+        CountsTable table = this.tables.get(tableName);
+        if (table == null) {
+            table = CountsTable.load(dbConnection, "SELECT * FROM `" + this.ctDatabaseName + "`.`" + tableName + "`;");
+            this.tables.putIfAbsent(tableName, table);
+        }
+
+        return table;
+    }
+
+
+    /**
+     * Retrieve the JOIN table for the given RNode.
+     *
+     * @param dbConnection - connection to use to generate the JOIN table.
+     * @param shortRNode - the short form name of the RNode.
+     * @return the single row JOIN table for the given RNode.
+     * @throws SQLException if there are issues executing the SQL queries.
+     */
+    private CountsTable getJoinTable(Connection dbConnection, String shortRNode) throws SQLException {
+        String tableName = shortRNode + "_join";
+        CountsTable table = this.tables.get(tableName);
+        if (table == null) {
+            table = CountsTable.load(dbConnection, this.joinTableQueries.get(shortRNode));
+            this.tables.putIfAbsent(tableName, table);
+        }
+
+        return table;
+    }
+
+
+    /**
+     * Remove the backticks around the given table or column name, if there are any.
+     *
+     * @param name - the table or column name to remove the backticks from.
+     * @return the given name without backticks around it.
+     */
+    private static String unescape(String name) {
+        if (name.length() >= 2 && name.startsWith("`") && name.endsWith("`")) {
+            return name.substring(1, name.length() - 1);
+        }
+
+        return name;
+    }
+
+
+    /**
+     * Class to hold the rows of a counts or CT table in memory, where the MULT column is kept separately from the
+     * other columns.
+     */
+    public static class CountsTable {
+        private List<String> columns;
+        private int multPosition;
+        private List<String[]> rows = new ArrayList<String[]>();
+        private long[] mults = new long[16];
+
+
+        /**
+         * Create an empty table with the given columns.
+         *
+         * @param columns - the columns of the table, excluding the MULT column.
+         * @param multPosition - the position of the MULT column among all the columns of the table, or -1 if the table
+         *                       doesn't have a MULT column.
+         */
+        CountsTable(List<String> columns, int multPosition) {
+            this.columns = columns;
+            this.multPosition = multPosition;
+        }
+
+
+        /**
+         * Read the results of the given query into memory.
+         *
+         * @param dbConnection - connection to use to execute the query.
+         * @param query - the query to read the results of.
+         * @return the results of the given query, where each row has a MULT of 1 if there is no MULT column.
+         * @throws SQLException if there are issues executing the SQL query.
+         */
+        static CountsTable load(Connection dbConnection, String query) throws SQLException {
+            try (
+                Statement statement = dbConnection.createStatement();
+                ResultSet results = statement.executeQuery(query)
+            ) {
+                ResultSetMetaData metadata = results.getMetaData();
+                List<String> columns = new ArrayList<String>();
+                List<Integer> columnIndices = new ArrayList<Integer>();
+                int multPosition = -1;
+                for (int columnIndex = 1; columnIndex <= metadata.getColumnCount(); columnIndex++) {
+                    String column = metadata.getColumnLabel(columnIndex);
+                    if (column.equalsIgnoreCase(MULT_COLUMN)) {
+                        multPosition = columnIndex - 1;
+                    } else {
+                        columns.add(column);
+                        columnIndices.add(columnIndex);
+                    }
+                }
+
+                CountsTable table = new CountsTable(columns, multPosition);
+                while (results.next()) {
+                    String[] row = new String[columns.size()];
+                    for (int index = 0; index < row.length; index++) {
+                        row[index] = results.getString(columnIndices.get(index));
+                    }
+
+                    table.addRow(row, multPosition == -1 ? 1 : results.getLong(multPosition + 1));
+                }
+
+                return table;
+            }
+        }
+
+
+        /**
+         * Add a row to the table.
+         *
+         * @param row - the values of the columns of the table, excluding the MULT column.
+         * @param mult - the value of the MULT column.
+         */
+        void addRow(String[] row, long mult) {
+            if (this.rows.size() == this.mults.length) {
+                this.mults = Arrays.copyOf(this.mults, this.mults.length * 2);
+            }
+
+            this.mults[this.rows.size()] = mult;
+            this.rows.add(row);
+        }
+
+
+        /**
+         * Retrieve the columns of the table, excluding the MULT column.
+         *
+         * @return the columns of the table, excluding the MULT column.
+         */
+        List<String> getColumns() {
+            return this.columns;
+        }
+
+
+        /**
+         * Retrieve the position of the MULT column among all the columns of the table.
+         *
+         * @return the position of the MULT column, or -1 if the table doesn't have a MULT column.
+         */
+        int getMultPosition() {
+            return this.multPosition;
+        }
+
+
+        /**
+         * Retrieve the index of the given column in the rows of the table.
+         *
+         * @param column - the column to retrieve the index for.
+         * @return the index of the given column, or -1 if the table doesn't have the column.
+         */
+        int getColumnIndex(String column) {
+            return this.columns.indexOf(column);
+        }
+
+
+        /**
+         * Retrieve the rows of the table, excluding the MULT column.
+         *
+         * @return the rows of the table.
+         */
+        List<String[]> getRows() {
+            return this.rows;
+        }
+
+
+        /**
+         * Retrieve the value of the MULT column for the given row.
+         *
+         * @param rowIndex - the index of the row.
+         * @return the value of the MULT column for the given row.
+         */
+        long getMult(int rowIndex) {
+            return this.mults[rowIndex];
+        }
+
+
+        /**
+         * Retrieve the number of rows in the table.
+         *
+         * @return the number of rows in the table.
+         */
+        public int getNumberOfRows() {
+            return this.rows.size();
+        }
+
+
+        /**
+         * Retrieve the rows of the table that match all the given conditions that apply to the columns of the table.
+         *
+         * @param conditions - Map containing key:value pairs of column:value.
+         * @return a table with only the rows that match the conditions.
+         */
+        CountsTable filter(Map<String, String> conditions) {
+            List<Integer> columnIndices = new ArrayList<Integer>();
+            List<String> values = new ArrayList<String>();
+            for (Map.Entry<String, String> condition : conditions.entrySet()) {
+                int columnIndex = this.getColumnIndex(condition.getKey());
+                if (columnIndex != -1) {
+                    columnIndices.add(columnIndex);
+                    values.add(condition.getValue());
+                }
+            }
+
+            if (columnIndices.isEmpty()) {
+                return this;
+            }
+
+            CountsTable filteredTable = new CountsTable(this.columns, this.multPosition);
+            for (int rowIndex = 0; rowIndex < this.rows.size(); rowIndex++) {
+                String[] row = this.rows.get(rowIndex);
+                boolean matches = true;
+                for (int index = 0; index < columnIndices.size() && matches; index++) {
+                    matches = values.get(index).equals(row[columnIndices.get(index)]);
+                }
+
+                if (matches) {
+                    filteredTable.addRow(row, this.mults[rowIndex]);
+                }
+            }
+
+            return filteredTable;
+        }
+
+
+        /**
+         * Sum the MULT column of the table over the given columns, i.e. GROUP BY the given columns.
+         *
+         * @param groupByColumns - the columns to group the rows by.
+         * @return Map containing key:value pairs of column-values:summed-MULT.
+         * @throws SQLException if the table doesn't have one of the given columns.
+         */
+        Map<List<String>, Long> sum(List<String> groupByColumns) throws SQLException {
+            int[] columnIndices = new int[groupByColumns.size()];
+            for (int index = 0; index < columnIndices.length; index++) {
+                columnIndices[index] = this.getColumnIndex(groupByColumns.get(index));
+                if (columnIndices[index] == -1) {
+                    throw new SQLException("Unknown column " + groupByColumns.get(index) + " for the flat table.");
+                }
+            }
+
+            Map<List<String>, Long> sums = new HashMap<List<String>, Long>();
+            for (int rowIndex = 0; rowIndex < this.rows.size(); rowIndex++) {
+                String[] row = this.rows.get(rowIndex);
+                String[] key = new String[columnIndices.length];
+                for (int index = 0; index < columnIndices.length; index++) {
+                    key[index] = row[columnIndices[index]];
+                }
+
+                sums.merge(Arrays.asList(key), this.mults[rowIndex], Long::sum);
+            }
+
+            return sums;
+        }
+
+
+        /**
+         * Apply the given action to each row of the table with a positive MULT.
+         *
+         * @param action - the action to apply to the values and MULT of each row.
+         */
+        void forEachPositiveRow(RowConsumer action) {
+            for (int rowIndex = 0; rowIndex < this.rows.size(); rowIndex++) {
+                if (this.mults[rowIndex] > 0) {
+                    action.accept(this.rows.get(rowIndex), this.mults[rowIndex]);
+                }
+            }
+        }
+
+
+        /**
+         * Retrieve the header of the table, with the MULT column in its original position.
+         *
+         * @return the header of the table.
+         */
+        private String[] getHeader() {
+            List<String> header = new ArrayList<String>(this.columns);
+            header.add(Math.max(0, this.multPosition), MULT_COLUMN);
+            return header.toArray(new String[header.size()]);
+        }
+
+
+        /**
+         * Convert the rows of the table with a positive MULT into a {@code DataSet}, encoding the states the same way
+         * as {@code MySQLDataExtractor}.
+         *
+         * @param countsColumn - the name of the column indicating the counts for each random variable assignment.
+         * @param isDiscrete - true if the dataset only contains discrete information; otherwise false.
+         * @return the {@code DataSet} for the table.
+         */
+        public DataSet toDataSet(String countsColumn, boolean isDiscrete) {
+            String[] header = this.getHeader();
+            int countsColumnIndex = Math.max(0, this.multPosition);
+            header[countsColumnIndex] = countsColumn;
+            List<Set<String>> variableStates = new ArrayList<Set<String>>();
+            List<Map<String, Integer>> stateEncodings = new ArrayList<Map<String, Integer>>();
+            for (int columnIndex = 0; columnIndex < header.length; columnIndex++) {
+                variableStates.add(columnIndex == countsColumnIndex ? null : new HashSet<String>());
+                stateEncodings.add(new HashMap<String, Integer>());
+            }
+
+            List<double[]> convertedRows = new ArrayList<double[]>();
+            this.forEachPositiveRow((row, mult) -> {
+                double[] convertedRow = new double[header.length];
+                int valueIndex = 0;
+
+                // for loop to encode the column data for each row.
+                for (int columnIndex = 0; columnIndex < header.length; columnIndex++) {
+                    if (columnIndex == countsColumnIndex) {
+                        convertedRow[columnIndex] = mult;
+                    } else {
+                        String state = row[valueIndex];
+                        valueIndex++;
+                        variableStates.get(columnIndex).add(state);
+                        Map<String, Integer> stateEncoding = stateEncodings.get(columnIndex);
+                        Integer stateIndex = stateEncoding.get(state);
+                        if (stateIndex == null) {
+                            stateIndex = stateEncoding.size();
+                            stateEncoding.put(state, stateIndex);
+                        }
+
+                        convertedRow[columnIndex] = stateIndex;
+                    }
+                }
+
+                convertedRows.add(convertedRow);
+            });
+
+            DataSetMetaData metadata = new DataSetMetaData(
+                Mapper.mapHeadersToColumnIndices(header),
+                variableStates,
+                convertedRows.size(),
+                header,
+                countsColumnIndex
+            );
+
+            return new DataSet(convertedRows.toArray(new double[convertedRows.size()][]), metadata, isDiscrete);
+        }
+
+
+        /**
+         * Write the rows of the table with a positive MULT into a new table of the given database.
+         *
+         * @param dbConnection - connection to use to create the table.
+         * @param databaseName - the name of the database to create the table in.
+         * @param tableName - the name of the table to create.
+         * @param storageEngine - the storage engine to use for the table.
+         * @throws SQLException if there are issues executing the SQL queries.
+         */
+        public void write(
+            Connection dbConnection,
+            String databaseName,
+            String tableName,
+            String storageEngine
+        ) throws SQLException {
+            int[] maxLengths = new int[this.columns.size()];
+            Arrays.fill(maxLengths, 1);
+            this.forEachPositiveRow((row, mult) -> {
+                for (int columnIndex = 0; columnIndex < row.length; columnIndex++) {
+                    if (row[columnIndex] != null) {
+                        maxLengths[columnIndex] = Math.max(maxLengths[columnIndex], row[columnIndex].length());
+                    }
+                }
+            });
+
+            String[] header = this.getHeader();
+            int multIndex = Math.max(0, this.multPosition);
+            StringJoiner columnDefinitions = new StringJoiner(", ");
+            StringJoiner escapedColumns = new StringJoiner(", ");
+            StringJoiner placeholders = new StringJoiner(", ");
+            int valueIndex = 0;
+            for (int columnIndex = 0; columnIndex < header.length; columnIndex++) {
+                if (columnIndex == multIndex) {
+                    columnDefinitions.add("`" + header[columnIndex] + "` BIGINT");
+                } else {
+                    columnDefinitions.add("`" + header[columnIndex] + "` VARCHAR(" + maxLengths[valueIndex] + ")");
+                    valueIndex++;
+                }
+
+                escapedColumns.add("`" + header[columnIndex] + "`");
+                placeholders.add("?");
+            }
+
+            String escapedTableName = databaseName + ".`" + tableName + "`";
+            try (Statement statement = dbConnection.createStatement()) {
+                statement.execute(
+                    "CREATE TABLE " + escapedTableName + " (" + columnDefinitions.toString() + ") " +
+                    "ENGINE = " + storageEngine + ";"
+                );
+            }
+
+            try (
+                PreparedStatement insertStatement = dbConnection.prepareStatement(
+                    "INSERT INTO " + escapedTableName + " (" + escapedColumns.toString() + ") " +
+                    "VALUES (" + placeholders.toString() + ");"
+                )
+            ) {
+                int batchSize = 0;
+                for (int rowIndex = 0; rowIndex < this.rows.size(); rowIndex++) {
+                    if (this.mults[rowIndex] <= 0) {
+                        continue;
+                    }
+
+                    String[] row = this.rows.get(rowIndex);
+                    int parameterIndex = 1;
+                    valueIndex = 0;
+                    for (int columnIndex = 0; columnIndex < header.length; columnIndex++) {
+                        if (columnIndex == multIndex) {
+                            insertStatement.setLong(parameterIndex, this.mults[rowIndex]);
+                        } else {
+                            insertStatement.setString(parameterIndex, row[valueIndex]);
+                            valueIndex++;
+                        }
+
+                        parameterIndex++;
+                    }
+
+                    insertStatement.addBatch();
+                    batchSize++;
+                    if (batchSize == BATCH_SIZE) {
+                        insertStatement.executeBatch();
+                        batchSize = 0;
+                    }
+                }
+
+                if (batchSize != 0) {
+                    insertStatement.executeBatch();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Interface to process the values and MULT of a row of a {@code CountsTable}.
+     */
+    @FunctionalInterface
+    interface RowConsumer {
+        void accept(String[] row, long mult);
+    }
+}
@@ -0,0 +1,84 @@
+package ca.sfu.cs.factorbase.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class to store a setting of the hyperparameters of the BDeu score.
+ */
+public class BDeuHyperparameters {
+    /**
+     * The hyperparameters used to learn the graphs when no others are given.
+     */
+    public static final BDeuHyperparameters DEFAULT = new BDeuHyperparameters(10.0000, 1.0000);
+
+    private double samplePrior;
+    private double structurePrior;
+
+
+    /**
+     * Create a setting of the hyperparameters of the BDeu score.
+     *
+     * @param samplePrior - the equivalent sample size (N').
+     * @param structurePrior - the prior probability for the network structure.
+     */
+    public BDeuHyperparameters(double samplePrior, double structurePrior) {
+        this.samplePrior = samplePrior;
+        this.structurePrior = structurePrior;
+    }
+
+
+    /**
+     * Retrieve the equivalent sample size.
+     *
+     * @return the equivalent sample size (N').
+     */
+    public double getSamplePrior() {
+        return this.samplePrior;
+    }
+
+
+    /**
+     * Retrieve the prior probability for the network structure.
+     *
+     * @return the prior probability for the network structure.
+     */
+    public double getStructurePrior() {
+        return this.structurePrior;
+    }
+
+
+    /**
+     * Parse the settings of the hyperparameters given in the configuration file.
+     *
+     * @param configurationValue - comma separated list of samplePrior:structurePrior pairs, e.g. "1:1, 100:0.5".
+     * @return the settings of the hyperparameters, which is empty if the given value is empty.
+     * @throws IllegalArgumentException if the given value isn't a valid list of settings.
+     */
+    public static List<BDeuHyperparameters> parseGrid(String configurationValue) {
+        List<BDeuHyperparameters> grid = new ArrayList<BDeuHyperparameters>();
+        if (configurationValue.trim().isEmpty()) {
+            return grid;
+        }
+
+        // for loop to parse each samplePrior:structurePrior pair.
+        for (String setting : configurationValue.split(",")) {
+            String[] values = setting.split(":");
+            if (values.length != 2) {
+                throw new IllegalArgumentException(
+                    "Invalid hyperparameter setting \"" + setting.trim() + "\", expected samplePrior:structurePrior."
+                );
+            }
+
+            grid.add(new BDeuHyperparameters(Double.parseDouble(values[0].trim()), Double.parseDouble(values[1].trim())));
+        }
+
+        return grid;
+    }
+
+
+    @Override
+    public String toString() {
+        return "samplePrior = " + this.samplePrior + ", structurePrior = " + this.structurePrior;
+    }
+}
@@ -1,8 +1,12 @@
 package ca.sfu.cs.factorbase.search;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import ca.sfu.cs.factorbase.data.ContingencyTable;
 import ca.sfu.cs.factorbase.data.ContingencyTableGenerator;
@@ -18,6 +22,8 @@ public class BDeuScore implements DiscreteLocalScore {
     private ContingencyTableGenerator contingencyTableGenerator;
     private double samplePrior;
     private double structurePrior;
+    private FamilyCountsCache familyCountsCache;
+    private Map<String, Map<Set<String>, Double>> upperBounds = new ConcurrentHashMap<String, Map<Set<String>, Double>>();
 
 
     /**
@@ -28,14 +34,96 @@ public class BDeuScore implements DiscreteLocalScore {
      * @param structurePrior - the prior probability for the network structure.
      */
     public BDeuScore (ContingencyTableGenerator ctGenerator, double samplePrior, double structurePrior) {
+        this(ctGenerator, samplePrior, structurePrior, null);
+    }
+
+
+    /**
+     * Create a new BDeuScore object for the given dataset and using the given hyperparameters, which shares the
+     * summaries of the CT tables it generates with the other scores using the given cache.
+     * @param ctGenerator - {@code ContingencyTableGenerator} object to create the CT tables necessary for computing
+     *                      the BDeuScore of a given child and its parents.
+     * @param samplePrior - the equivalent sample size (N').
+     * @param structurePrior - the prior probability for the network structure.
+     * @param familyCountsCache - cache of the summaries of the CT tables generated from the given dataset, null to not
+     *                            cache them.
+     */
+    public BDeuScore (
+        ContingencyTableGenerator ctGenerator,
+        double samplePrior,
+        double structurePrior,
+        FamilyCountsCache familyCountsCache
+    ) {
         this.contingencyTableGenerator = ctGenerator;
         this.samplePrior = samplePrior;
         this.structurePrior = structurePrior;
+        this.familyCountsCache = familyCountsCache;
     }
 
 
     @Override
     public double localScore(String child, Set<String> parents) {
+        FamilyCounts familyCounts = this.familyCountsCache == null ? null : this.familyCountsCache.get(child, parents);
+        if (familyCounts == null) {
+            familyCounts = this.countFamily(child, parents);
+            if (this.familyCountsCache != null) {
+                this.familyCountsCache.put(child, parents, familyCounts);
+            }
+        }
+
+        // Number of child states.
+        int r = familyCounts.getNumberOfChildStates();
+
+        // Number of parent states.
+        int q = familyCounts.getNumberOfParentStates();
+
+        long[] parentStateCounts = familyCounts.getParentStateCounts();
+        int[] nonZeroChildStates = familyCounts.getNonZeroChildStates();
+        long[] cellCounts = familyCounts.getCellCounts();
+
+        // Calculate score.
+        BigDecimal score = new BigDecimal((r - 1) * q * Math.log(this.structurePrior));
+        double upperBound = 0;
+
+        for (long counts : cellCounts) {
+            score = score.add(new BigDecimal(ProbUtils.lngamma(this.samplePrior / (r * q) + counts)));
+        }
+
+        // The cells and parent states that weren't observed all contribute the same amount to the score.
+        score = score.add(
+            new BigDecimal(ProbUtils.lngamma(this.samplePrior / (r * q))).multiply(
+                BigDecimal.valueOf((long) r * q - cellCounts.length)
+            )
+        );
+        score = score.subtract(
+            new BigDecimal(ProbUtils.lngamma(this.samplePrior / q)).multiply(
+                BigDecimal.valueOf(q - parentStateCounts.length)
+            )
+        );
+
+        for (int parentState = 0; parentState < parentStateCounts.length; parentState++) {
+            double countsSum = parentStateCounts[parentState];
+            score = score.subtract(new BigDecimal(ProbUtils.lngamma(this.samplePrior / q + countsSum)));
+            upperBound += upperBoundTerm(countsSum, nonZeroChildStates[parentState], r);
+        }
+
+        score = score.add(new BigDecimal(q * ProbUtils.lngamma(this.samplePrior / q)));
+        score = score.subtract(new BigDecimal((r * q) * ProbUtils.lngamma(this.samplePrior / (r * q))));
+
+        storeUpperBound(this.upperBounds, child, parents, upperBound, this.structurePrior);
+
+        return score.doubleValue();
+    }
+
+
+    /**
+     * Generate the CT table for the given family of nodes and summarize it.
+     *
+     * @param child - name of child node.
+     * @param parents - name of parent nodes.
+     * @return the summary of the CT table for the given family of nodes.
+     */
+    private FamilyCounts countFamily(String child, Set<String> parents) {
         int childColumnIndex = this.contingencyTableGenerator.getColumnIndex(child);
         int[] parentColumnIndices = this.contingencyTableGenerator.getColumnIndices(parents);
 
@@ -50,25 +138,107 @@ public class BDeuScore implements DiscreteLocalScore {
 
         ContingencyTable ct = this.contingencyTableGenerator.generateCT(childColumnIndex, parentColumnIndices, r * q);
 
-        // Calculate score.
-        BigDecimal score = new BigDecimal((r - 1) * q * Math.log(this.structurePrior));
+        long[] parentStateCounts = new long[q];
+        int[] nonZeroChildStates = new int[q];
+        long[] cellCounts = new long[r * q];
+        int numberOfParentStates = 0;
+        int numberOfCells = 0;
 
         for (List<RandomVariableAssignment> parentAssignments : this.contingencyTableGenerator.getStates(parentColumnIndices)) {
-            double countsSum = 0;
-            long counts;
+            long countsSum = 0;
+            int nonZeroCounts = 0;
             for (int childStateIndex = 0; childStateIndex < r; childStateIndex++) {
                 RandomVariableAssignment childAssignment = new RandomVariableAssignment(childColumnIndex, childStateIndex);
-                counts = ct.getCounts(childAssignment, parentAssignments);
-                countsSum += counts;
-                score = score.add(new BigDecimal(ProbUtils.lngamma(this.samplePrior / (r * q) + counts)));
+                long counts = ct.getCounts(childAssignment, parentAssignments);
+                if (counts > 0) {
+                    countsSum += counts;
+                    nonZeroCounts++;
+                    cellCounts[numberOfCells++] = counts;
+                }
             }
 
-            score = score.subtract(new BigDecimal(ProbUtils.lngamma(this.samplePrior / q + countsSum)));
+            if (countsSum > 0) {
+                parentStateCounts[numberOfParentStates] = countsSum;
+                nonZeroChildStates[numberOfParentStates] = nonZeroCounts;
+                numberOfParentStates++;
+            }
         }
 
-        score = score.add(new BigDecimal(q * ProbUtils.lngamma(this.samplePrior / q)));
-        score = score.subtract(new BigDecimal((r * q) * ProbUtils.lngamma(this.samplePrior / (r * q))));
+        return new FamilyCounts(
+            r,
+            q,
+            Arrays.copyOf(parentStateCounts, numberOfParentStates),
+            Arrays.copyOf(nonZeroChildStates, numberOfParentStates),
+            Arrays.copyOf(cellCounts, numberOfCells)
+        );
+    }
 
-        return score.doubleValue();
+
+    @Override
+    public double localScoreUpperBound(String child, Set<String> parents) {
+        Map<Set<String>, Double> childUpperBounds = this.upperBounds.get(child);
+        Double upperBound = childUpperBounds == null ? null : childUpperBounds.get(parents);
+        if (upperBound == null) {
+            this.localScore(child, parents);
+            upperBound = this.upperBounds.get(child).get(parents);
+        }
+
+        return upperBound;
+    }
+
+
+    /**
+     * Compute the upper bound on what the observations of a parent state can contribute to the BDeu score of any
+     * superset of the parents (de Campos and Ji, 2011).  The first observation of the parent state has a probability
+     * of at most 1/r, and an observation of a second child state either falls in a different parent state of the
+     * superset, which starts with another 1/r, or has a probability of at most a / (r * a + 1) < 1/r for a prior cell
+     * count of a, so the observations contribute at most -2 * ln(r) once two child states are observed.
+     *
+     * @param countsSum - the number of observations of the parent state.
+     * @param nonZeroChildStates - the number of child states observed with the parent state.
+     * @param r - the number of child states.
+     * @return the upper bound on what the observations of the parent state can contribute to the score.
+     */
+    static double upperBoundTerm(double countsSum, int nonZeroChildStates, int r) {
+        if (countsSum == 0) {
+            return 0;
+        }
+
+        if (nonZeroChildStates < 2) {
+            return -Math.log(r);
+        }
+
+        return -2 * Math.log(r);
+    }
+
+
+    /**
+     * Store the upper bound computed for the given family of nodes.
+     * <p>
+     * Note: The structure prior adds (r - 1) * q * log(structurePrior) to the score, which can only lower the score
+     *       when the structure prior is at most 1, but can't be bounded for the supersets of the parents when it is
+     *       greater than 1, so the supersets are never pruned then.
+     * </p>
+     *
+     * @param upperBounds - the upper bounds to store the upper bound in.
+     * @param child - name of child node.
+     * @param parents - name of parent nodes.
+     * @param upperBound - the upper bound computed for the given family of nodes, ignoring the structure prior.
+     * @param structurePrior - the prior probability for the network structure.
+     */
+    static void storeUpperBound(
+        Map<String, Map<Set<String>, Double>> upperBounds,
+        String child,
+        Set<String> parents,
+        double upperBound,
+        double structurePrior
+    ) {
+        upperBounds.computeIfAbsent(
+            child,
+            key -> new ConcurrentHashMap<Set<String>, Double>()
+        ).put(
+            new HashSet<String>(parents),
+            structurePrior > 1 ? Double.POSITIVE_INFINITY : upperBound
+        );
     }
 }
\ No newline at end of file
@@ -3,7 +3,9 @@ package ca.sfu.cs.factorbase.search;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import ca.sfu.cs.factorbase.data.ContingencyTable;
 import ca.sfu.cs.factorbase.data.DataSetMetaData;
@@ -23,6 +25,7 @@ public class BDeuScoreOnDemand implements DiscreteLocalScore {
     private FunctorNodesInfo functorInfos;
     private double samplePrior;
     private double structurePrior;
+    private Map<String, Map<Set<String>, Double>> upperBounds = new ConcurrentHashMap<String, Map<Set<String>, Double>>();
 
 
     /**
@@ -63,23 +66,32 @@ public class BDeuScoreOnDemand implements DiscreteLocalScore {
 
             // Calculate score.
             BigDecimal score = new BigDecimal((r - 1) * q * Math.log(this.structurePrior));
+            double upperBound = 0;
 
             for (List<RandomVariableAssignment> parentAssignments : meta.getStates(ct.getParentColumnIndices())) {
                 double countsSum = 0;
                 long counts;
+                int nonZeroChildStates = 0;
                 for (int childStateIndex = 0; childStateIndex < r; childStateIndex++) {
                     RandomVariableAssignment childAssignment = new RandomVariableAssignment(ct.getChildColumnIndex(), childStateIndex);
                     counts = ct.getCounts(childAssignment, parentAssignments);
                     countsSum += counts;
+                    if (counts > 0) {
+                        nonZeroChildStates++;
+                    }
+
                     score = score.add(new BigDecimal(ProbUtils.lngamma(this.samplePrior / (r * q) + counts)));
                 }
 
                 score = score.subtract(new BigDecimal(ProbUtils.lngamma(this.samplePrior / q + countsSum)));
+                upperBound += BDeuScore.upperBoundTerm(countsSum, nonZeroChildStates, r);
             }
 
             score = score.add(new BigDecimal(q * ProbUtils.lngamma(this.samplePrior / q)));
             score = score.subtract(new BigDecimal((r * q) * ProbUtils.lngamma(this.samplePrior / (r * q))));
 
+            BDeuScore.storeUpperBound(this.upperBounds, child, parents, upperBound, this.structurePrior);
+
             return score.doubleValue();
         } catch (DataBaseException e) {
             throw new ScoringException(
@@ -89,4 +101,17 @@ public class BDeuScoreOnDemand implements DiscreteLocalScore {
             );
         }
     }
+
+
+    @Override
+    public double localScoreUpperBound(String child, Set<String> parents) throws ScoringException {
+        Map<Set<String>, Double> childUpperBounds = this.upperBounds.get(child);
+        Double upperBound = childUpperBounds == null ? null : childUpperBounds.get(parents);
+        if (upperBound == null) {
+            this.localScore(child, parents);
+            upperBound = this.upperBounds.get(child).get(parents);
+        }
+
+        return upperBound;
+    }
 }
\ No newline at end of file
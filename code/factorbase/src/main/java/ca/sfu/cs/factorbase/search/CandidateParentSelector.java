@@ -0,0 +1,197 @@
+package ca.sfu.cs.factorbase.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.sfu.cs.factorbase.data.ContingencyTableGenerator;
+import ca.sfu.cs.factorbase.exception.ScoringException;
+
+/**
+ * Class to restrict the parents that the structure search considers for each node to a small set of candidates, so
+ * that the search doesn't need to score every possible parent of every node.
+ * <p>
+ * The initial candidates are the variables with the highest mutual information with each node, which is computed for
+ * all the pairs of variables in a single pass over the data.  The candidates can then be re-selected using the graph
+ * learned with them, keeping the parents of each node and adding the variables that would improve the score of the
+ * node the most if they were added to its parents.
+ * </p>
+ */
+public class CandidateParentSelector {
+    private List<String> variableNames;
+    private double[][] mutualInformation;
+    private DiscreteLocalScore discreteScore;
+
+
+    /**
+     * Create a CandidateParentSelector for the given dataset.
+     *
+     * @param ctGenerator - {@code ContingencyTableGenerator} object to compute the pairwise statistics of the
+     *                      variables with.
+     * @param discreteScore - the score used to re-select the candidates of each node.
+     */
+    public CandidateParentSelector(ContingencyTableGenerator ctGenerator, DiscreteLocalScore discreteScore) {
+        this.variableNames = ctGenerator.getVariableNames();
+        this.discreteScore = discreteScore;
+        this.mutualInformation = computeMutualInformation(ctGenerator, this.variableNames);
+    }
+
+
+    /**
+     * Select the given number of variables with the highest mutual information with each variable as its candidate
+     * parents.
+     *
+     * @param numberOfCandidates - the number of candidate parents to select for each variable.
+     * @return the candidate parents for each variable.
+     */
+    public Map<String, Set<String>> selectCandidates(int numberOfCandidates) {
+        Map<String, Set<String>> candidates = new HashMap<String, Set<String>>();
+
+        // for loop to select the candidate parents for each variable.
+        for (int child = 0; child < this.variableNames.size(); child++) {
+            double[] childMutualInformation = this.mutualInformation[child];
+            List<Integer> others = this.getOtherVariables(child);
+            others.sort(
+                Comparator.comparingDouble((Integer other) -> childMutualInformation[other]).reversed()
+            );
+
+            Set<String> childCandidates = new HashSet<String>();
+            for (int other : others.subList(0, Math.min(numberOfCandidates, others.size()))) {
+                childCandidates.add(this.variableNames.get(other));
+            }
+
+            candidates.put(this.variableNames.get(child), childCandidates);
+        }
+
+        return candidates;
+    }
+
+
+    /**
+     * Re-select the candidate parents of each variable using the parents it was given by the last search.  The
+     * candidates are the current parents plus the given number of other variables that improve the score the most
+     * when they are added to the current parents.
+     *
+     * @param parents - the parents of each variable in the graph learned by the last search.
+     * @param numberOfCandidates - the number of candidate parents to add to the current parents of each variable.
+     * @return the candidate parents for each variable.
+     * @throws ScoringException if an error occurs when trying to compute the score for the candidate parents.
+     */
+    public Map<String, Set<String>> reselectCandidates(
+        Map<String, Set<String>> parents,
+        int numberOfCandidates
+    ) throws ScoringException {
+        Map<String, Set<String>> candidates = new HashMap<String, Set<String>>();
+
+        // for loop to re-select the candidate parents for each variable.
+        for (int child = 0; child < this.variableNames.size(); child++) {
+            String childName = this.variableNames.get(child);
+            Set<String> currentParents = parents.getOrDefault(childName, new HashSet<String>());
+            double currentScore = this.discreteScore.localScore(childName, currentParents);
+
+            Map<String, Double> scoreImprovements = new HashMap<String, Double>();
+            for (int other : this.getOtherVariables(child)) {
+                String otherName = this.variableNames.get(other);
+                if (!currentParents.contains(otherName)) {
+                    Set<String> expandedParents = new HashSet<String>(currentParents);
+                    expandedParents.add(otherName);
+                    scoreImprovements.put(
+                        otherName,
+                        this.discreteScore.localScore(childName, expandedParents) - currentScore
+                    );
+                }
+            }
+
+            List<String> others = new ArrayList<String>(scoreImprovements.keySet());
+            others.sort(Comparator.comparingDouble((String other) -> scoreImprovements.get(other)).reversed());
+
+            Set<String> childCandidates = new LinkedHashSet<String>(currentParents);
+            childCandidates.addAll(others.subList(0, Math.min(numberOfCandidates, others.size())));
+            candidates.put(childName, childCandidates);
+        }
+
+        return candidates;
+    }
+
+
+    /**
+     * Retrieve the indices of all the variables other than the given one.
+     *
+     * @param variable - the index of the variable to exclude.
+     * @return the indices of all the variables other than the given one, in column order.
+     */
+    private List<Integer> getOtherVariables(int variable) {
+        List<Integer> others = new ArrayList<Integer>(this.variableNames.size() - 1);
+        for (int other = 0; other < this.variableNames.size(); other++) {
+            if (other != variable) {
+                others.add(other);
+            }
+        }
+
+        return others;
+    }
+
+
+    /**
+     * Compute the mutual information between every pair of the given variables.
+     *
+     * @param ctGenerator - {@code ContingencyTableGenerator} object to compute the pairwise counts with.
+     * @param variableNames - the names of the variables to compute the mutual information for.
+     * @return the mutual information between the variables at positions i and j of the given names at index [i][j].
+     */
+    private static double[][] computeMutualInformation(
+        ContingencyTableGenerator ctGenerator,
+        List<String> variableNames
+    ) {
+        int numberOfVariables = variableNames.size();
+        int[] columnIndices = new int[numberOfVariables];
+        int[] numberOfStates = new int[numberOfVariables];
+        for (int index = 0; index < numberOfVariables; index++) {
+            columnIndices[index] = ctGenerator.getColumnIndex(variableNames.get(index));
+            numberOfStates[index] = ctGenerator.getNumberOfStates(columnIndices[index]);
+        }
+
+        long[][][] pairwiseCounts = ctGenerator.generatePairwiseCounts(columnIndices);
+        double[][] mutualInformation = new double[numberOfVariables][numberOfVariables];
+
+        // for loop to compute the mutual information for each pair of variables from their CT table.
+        for (int first = 0; first < numberOfVariables; first++) {
+            for (int second = first + 1; second < numberOfVariables; second++) {
+                long[] counts = pairwiseCounts[first][second];
+                long[] firstCounts = new long[numberOfStates[first]];
+                long[] secondCounts = new long[numberOfStates[second]];
+                long total = 0;
+                for (int firstState = 0; firstState < numberOfStates[first]; firstState++) {
+                    for (int secondState = 0; secondState < numberOfStates[second]; secondState++) {
+                        long count = counts[firstState * numberOfStates[second] + secondState];
+                        firstCounts[firstState] += count;
+                        secondCounts[secondState] += count;
+                        total += count;
+                    }
+                }
+
+                double information = 0;
+                for (int firstState = 0; firstState < numberOfStates[first]; firstState++) {
+                    for (int secondState = 0; secondState < numberOfStates[second]; secondState++) {
+                        long count = counts[firstState * numberOfStates[second] + secondState];
+                        if (count > 0) {
+                            information +=
+                                (double) count / total *
+                                Math.log((double) count * total / firstCounts[firstState] / secondCounts[secondState]);
+                        }
+                    }
+                }
+
+                mutualInformation[first][second] = information;
+                mutualInformation[second][first] = information;
+            }
+        }
+
+        return mutualInformation;
+    }
+}
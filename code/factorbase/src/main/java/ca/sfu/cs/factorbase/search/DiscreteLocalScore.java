@@ -14,4 +14,16 @@ public interface DiscreteLocalScore {
      * @throws ScoringException if an error occurs when trying to compute the score.
      */
     double localScore(String child, Set<String> parents) throws ScoringException;
+
+
+    /**
+     * Compute an upper bound on the score of the given child with the given parents or any superset of them, so that
+     * the supersets can be skipped if the bound is no better than the best score already found for the child.
+     *
+     * @param child - name of child node.
+     * @param parents - name of parent nodes.
+     * @return an upper bound on the score of the given child with any superset of the given parents.
+     * @throws ScoringException if an error occurs when trying to compute the upper bound.
+     */
+    double localScoreUpperBound(String child, Set<String> parents) throws ScoringException;
 }
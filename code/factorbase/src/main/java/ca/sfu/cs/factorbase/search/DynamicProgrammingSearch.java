@@ -0,0 +1,770 @@
+package ca.sfu.cs.factorbase.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ca.sfu.cs.factorbase.exception.ScoringException;
+
+import edu.cmu.tetrad.data.Knowledge;
+import edu.cmu.tetrad.data.KnowledgeEdge;
+import edu.cmu.tetrad.graph.EdgeListGraph;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphNode;
+import edu.cmu.tetrad.graph.Node;
+
+/**
+ * Exact structure search that finds the DAG with the best score using dynamic programming over the subsets of the
+ * variables, as described in Silander and Myllymaki (2006) "A simple approach for finding the globally optimal
+ * Bayesian network structure".
+ * <p>
+ * The search takes time and memory exponential in the number of variables, so it should only be used for small
+ * lattice points.  Sets of variables are stored as bitsets, and the number of parents that a variable can have is
+ * bounded to limit the number of local scores that need to be computed.
+ * </p>
+ */
+public class DynamicProgrammingSearch implements StructureSearch {
+
+    /**
+     * The maximum number of variables that the search can handle, since the sets of variables are stored as bits of
+     * an int.  The memory available usually limits the search to fewer variables, see
+     * {@link #getMaxNumberOfVariables(int)}.
+     */
+    public static final int MAX_NUMBER_OF_VARIABLES = 30;
+
+    /**
+     * The estimated number of bytes used by each candidate parent set, i.e. its entries in the pruning arrays and the
+     * array holding the candidate.
+     */
+    private static final long BYTES_PER_CANDIDATE = 48;
+
+    /**
+     * Names of the variables in the data set, in order.
+     */
+    private List<String> variables;
+
+    /**
+     * The score for discrete searches.
+     */
+    private DiscreteLocalScore discreteScore;
+
+    /**
+     * Specification of forbidden and required edges.
+     */
+    private Knowledge knowledge = new Knowledge();
+
+    /**
+     * Limits on how long the search can run for, which also tracks how much of the search was completed.
+     */
+    private SearchBudget searchBudget = new SearchBudget(0, 0);
+
+    /**
+     * Cache of the local scores computed during the search.
+     */
+    private LocalScoreCache localScoreCache = new LocalScoreCache();
+
+    /**
+     * The number of threads used to compute the local scores and the best parent sets.
+     */
+    private int numberOfThreads = 1;
+
+    /**
+     * The maximum number of parents that a variable can have, not counting the required parents.
+     */
+    private int maxParents;
+
+
+    /**
+     * Create a DynamicProgrammingSearch for the given variables.
+     *
+     * @param variableNames - the names of the variables to learn the DAG for.
+     * @param discreteScore - the score to compute the local scores of the families of the variables with.
+     * @param maxParents - the maximum number of parents that a variable can have.
+     * @throws IllegalArgumentException if there are more than {@link #MAX_NUMBER_OF_VARIABLES} variables, or the search
+     *                                  is estimated to need more memory than the JVM can use.
+     */
+    public DynamicProgrammingSearch(List<String> variableNames, DiscreteLocalScore discreteScore, int maxParents) {
+        if (variableNames.size() > MAX_NUMBER_OF_VARIABLES) {
+            throw new IllegalArgumentException(
+                "The exact search can't handle more than " + MAX_NUMBER_OF_VARIABLES + " variables."
+            );
+        }
+
+        long requiredMemory = estimateMemory(variableNames.size(), maxParents);
+        if (requiredMemory > Runtime.getRuntime().maxMemory()) {
+            throw new IllegalArgumentException(
+                "The exact search for " + variableNames.size() + " variables needs about " +
+                (requiredMemory >> 20) + "MB, but only " + (Runtime.getRuntime().maxMemory() >> 20) + "MB is available."
+            );
+        }
+
+        this.variables = new ArrayList<String>(variableNames);
+        this.discreteScore = discreteScore;
+        this.maxParents = Math.max(0, maxParents);
+    }
+
+
+    /**
+     * Estimate the number of bytes that the search needs for the given number of variables.
+     * <p>
+     * Note: The best score and parent set of each variable for every subset of the other variables, and the best sink
+     *       of every subset of the variables, are needed to find the best DAG, while the pruning only needs an entry
+     *       for each candidate parent set.
+     * </p>
+     *
+     * @param numberOfVariables - the number of variables to learn the DAG for.
+     * @param maxParents - the maximum number of parents that a variable can have.
+     * @return the estimated number of bytes used by the arrays of the search.
+     */
+    public static long estimateMemory(int numberOfVariables, int maxParents) {
+        if (numberOfVariables == 0) {
+            return 0;
+        }
+
+        long numberOfSets = 1L << numberOfVariables;
+        long numberOfParentSets = numberOfSets / 2;
+        long numberOfCandidates = new SubsetIndex(numberOfVariables - 1, Math.max(0, maxParents)).size();
+
+        return numberOfVariables * numberOfParentSets * (Double.BYTES + Integer.BYTES) +
+            numberOfSets * (Double.BYTES + Byte.BYTES) +
+            numberOfVariables * numberOfCandidates * BYTES_PER_CANDIDATE;
+    }
+
+
+    /**
+     * Retrieve the maximum number of variables that the search can handle with the memory available to the JVM.
+     *
+     * @param maxParents - the maximum number of parents that a variable can have.
+     * @return the largest number of variables, up to {@link #MAX_NUMBER_OF_VARIABLES}, whose search is estimated to
+     *         fit in the maximum heap size.
+     */
+    public static int getMaxNumberOfVariables(int maxParents) {
+        long maxMemory = Runtime.getRuntime().maxMemory();
+        int numberOfVariables = 0;
+        while (numberOfVariables < MAX_NUMBER_OF_VARIABLES && estimateMemory(numberOfVariables + 1, maxParents) <= maxMemory) {
+            numberOfVariables++;
+        }
+
+        return numberOfVariables;
+    }
+
+
+    /**
+     * Sets the number of threads used to compute the local scores and the best parent sets.
+     *
+     * @param numberOfThreads - the number of threads used to compute the local scores and the best parent sets.
+     */
+    public void setNumberOfThreads(int numberOfThreads) {
+        this.numberOfThreads = Math.max(1, numberOfThreads);
+    }
+
+
+    @Override
+    public void setKnowledge(Knowledge knowledge) {
+        if (knowledge == null) {
+            throw new NullPointerException("Knowledge must not be null.");
+        }
+
+        this.knowledge = knowledge;
+    }
+
+
+    @Override
+    public void setSearchBudget(SearchBudget searchBudget) {
+        if (searchBudget == null) {
+            throw new NullPointerException("Search budget must not be null.");
+        }
+
+        this.searchBudget = searchBudget;
+    }
+
+
+    @Override
+    public void setLocalScoreCache(LocalScoreCache localScoreCache) {
+        if (localScoreCache == null) {
+            throw new NullPointerException("Local score cache must not be null.");
+        }
+
+        this.localScoreCache = localScoreCache;
+    }
+
+
+    /**
+     * The exact search always finds the best DAG, so there is no need for edges to start the search from.
+     */
+    @Override
+    public void addInitialEdge(String from, String to) {
+    }
+
+
+    /**
+     * Exact search: Compute the local scores of the candidate parent sets of each variable, find the best parent set
+     * of each variable among the subsets of every set of variables, and then find the best ordering of the variables
+     * by finding the best sink of every set of variables.  If the search budget runs out while computing the local
+     * scores, the parent sets that haven't been scored yet are ignored, and the best DAG for the scored parent sets is
+     * returned.
+     *
+     * @return the resulting DAG.
+     * @throws ScoringException if an error occurs when trying to compute the score for the graphs being generated.
+     */
+    @Override
+    public Graph search() throws ScoringException {
+        this.searchBudget.start();
+        int numberOfVariables = this.variables.size();
+        int[] requiredParents = new int[numberOfVariables];
+        int[] allowedParents = new int[numberOfVariables];
+        loadKnowledge(requiredParents, allowedParents);
+
+        double[][] bestScores = new double[numberOfVariables][];
+        int[][] bestParentSets = new int[numberOfVariables][];
+        ExecutorService executor = null;
+        if (this.numberOfThreads > 1) {
+            executor = Executors.newFixedThreadPool(this.numberOfThreads);
+        }
+
+        try {
+            boolean completed = computeLocalScores(requiredParents, allowedParents, bestScores, executor);
+            computeBestParentSets(bestScores, bestParentSets, executor);
+
+            if (completed) {
+                this.searchBudget.recordForwardSearchCompleted();
+                this.searchBudget.recordBackwardSearchCompleted();
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        // Find the best sink of every set of variables, in order of the sets so that the subsets come first.
+        int numberOfSets = 1 << numberOfVariables;
+        double[] orderScores = new double[numberOfSets];
+        byte[] bestSinks = new byte[numberOfSets];
+        for (int set = 1; set < numberOfSets; set++) {
+            orderScores[set] = Double.NEGATIVE_INFINITY;
+            for (int sink = 0; sink < numberOfVariables; sink++) {
+                int sinkBit = 1 << sink;
+                if ((set & sinkBit) == 0) {
+                    continue;
+                }
+
+                int rest = set ^ sinkBit;
+                double score = orderScores[rest] + bestScores[sink][compress(rest, sink)];
+                if (score > orderScores[set]) {
+                    orderScores[set] = score;
+                    bestSinks[set] = (byte) sink;
+                }
+            }
+        }
+
+        int set = numberOfSets - 1;
+        this.searchBudget.recordScore(orderScores[set]);
+
+        // Build the DAG by removing the best sink, with its best parents among the remaining variables, one at a time.
+        boolean[][] dag = new boolean[numberOfVariables][numberOfVariables];
+        while (set != 0) {
+            int sink = bestSinks[set];
+            set ^= 1 << sink;
+            int parents = decompress(bestParentSets[sink][compress(set, sink)], sink);
+            for (int parent = 0; parent < numberOfVariables; parent++) {
+                if ((parents & (1 << parent)) != 0) {
+                    dag[parent][sink] = true;
+                    this.searchBudget.recordInsertion();
+                }
+            }
+        }
+
+        this.searchBudget.stop();
+
+        return toGraph(dag);
+    }
+
+
+    /**
+     * Load the required and allowed parents of each variable from the background knowledge.  Required edges that
+     * would create a cycle with the required edges loaded before them are ignored.
+     *
+     * @param requiredParents - array to set the bitset of the required parents of each variable in.
+     * @param allowedParents - array to set the bitset of the parents that aren't forbidden for each variable in.
+     */
+    private void loadKnowledge(int[] requiredParents, int[] allowedParents) {
+        int numberOfVariables = this.variables.size();
+        Map<String, Integer> indices = new HashMap<String, Integer>();
+        for (int index = 0; index < numberOfVariables; index++) {
+            indices.put(this.variables.get(index), index);
+        }
+
+        for (int child = 0; child < numberOfVariables; child++) {
+            for (int parent = 0; parent < numberOfVariables; parent++) {
+                if (
+                    parent != child &&
+                    !this.knowledge.edgeForbidden(this.variables.get(parent), this.variables.get(child))
+                ) {
+                    allowedParents[child] |= 1 << parent;
+                }
+            }
+        }
+
+        for (Iterator<KnowledgeEdge> it = this.knowledge.requiredEdgesIterator(); it.hasNext();) {
+            KnowledgeEdge edge = it.next();
+            Integer parent = indices.get(edge.getFrom());
+            Integer child = indices.get(edge.getTo());
+            if (parent == null || child == null || parent.equals(child) || isAncestor(child, parent, requiredParents)) {
+                continue;
+            }
+
+            requiredParents[child] |= 1 << parent;
+            allowedParents[child] |= 1 << parent;
+        }
+    }
+
+
+    /**
+     * Check if one variable is an ancestor of another using the given parents.
+     */
+    private static boolean isAncestor(int ancestor, int node, int[] parents) {
+        int visited = 0;
+        int frontier = 1 << node;
+        while (frontier != 0) {
+            int current = Integer.numberOfTrailingZeros(frontier);
+            frontier &= frontier - 1;
+            if (current == ancestor) {
+                return true;
+            }
+
+            int unvisitedParents = parents[current] & ~visited;
+            visited |= unvisitedParents;
+            frontier |= unvisitedParents;
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Compute the local scores of the candidate parent sets of each variable, in order of increasing size so that the
+     * smaller parent sets are scored first if the search budget runs out.  A candidate parent set contains all the
+     * required parents of the variable, no forbidden parents, and no more than the maximum number of other parents.
+     * <p>
+     * The supersets of a parent set are skipped if the upper bound on their scores is no better than the best score
+     * of the parent set and its subsets, since they can never be the best parent set of the variable.
+     * </p>
+     *
+     * @param requiredParents - the bitset of the required parents of each variable.
+     * @param allowedParents - the bitset of the parents that aren't forbidden for each variable.
+     * @param localScores - array to store the local scores of each variable in, indexed by the compressed bitset of
+     *                      the parents, negative infinity for the parent sets that aren't candidates.
+     * @param executor - the executor to compute the scores with, null to compute them on the current thread.
+     * @return true if all the candidate parent sets were scored; otherwise false.
+     * @throws ScoringException if an error occurs when trying to compute the scores.
+     */
+    private boolean computeLocalScores(
+        int[] requiredParents,
+        int[] allowedParents,
+        double[][] localScores,
+        ExecutorService executor
+    ) throws ScoringException {
+        int numberOfVariables = this.variables.size();
+        int numberOfParentSets = numberOfVariables == 0 ? 0 : 1 << (numberOfVariables - 1);
+        int[] required = new int[numberOfVariables];
+        SubsetIndex[] candidateIndices = new SubsetIndex[numberOfVariables];
+        double[][] bestSubsetScores = new double[numberOfVariables][];
+        boolean[][] dominated = new boolean[numberOfVariables][];
+        List<List<int[]>> candidatesBySize = new ArrayList<List<int[]>>();
+        for (int size = 0; size <= this.maxParents; size++) {
+            candidatesBySize.add(new ArrayList<int[]>());
+        }
+
+        // for loop to find the candidate parent sets of each variable.
+        for (int child = 0; child < numberOfVariables; child++) {
+            localScores[child] = new double[numberOfParentSets];
+            Arrays.fill(localScores[child], Double.NEGATIVE_INFINITY);
+            required[child] = compress(requiredParents[child], child);
+
+            // The pruning only needs an entry for the parent sets that can be candidates.
+            candidateIndices[child] = new SubsetIndex(
+                numberOfVariables - 1,
+                Math.min(this.maxParents, numberOfVariables) + Integer.bitCount(required[child])
+            );
+            bestSubsetScores[child] = new double[candidateIndices[child].size()];
+            dominated[child] = new boolean[candidateIndices[child].size()];
+            int allowed = compress(allowedParents[child], child);
+            for (int parents = 0; parents < numberOfParentSets; parents++) {
+                int size = Integer.bitCount(parents & ~required[child]);
+                if (
+                    (parents & required[child]) == required[child] &&
+                    (parents & ~allowed) == 0 &&
+                    size <= this.maxParents
+                ) {
+                    candidatesBySize.get(size).add(new int[] {child, parents});
+                }
+            }
+        }
+
+        // for loop to score the candidate parent sets, smallest first.
+        for (int size = 0; size < candidatesBySize.size(); size++) {
+            // The required parent sets are always scored so that there is a DAG to return.
+            boolean stopOnBudget = size > 0;
+            if (stopOnBudget && this.searchBudget.isExhausted()) {
+                return false;
+            }
+
+            List<int[]> candidates = new ArrayList<int[]>();
+            for (int[] candidate : candidatesBySize.get(size)) {
+                int child = candidate[0];
+                if (hasDominatedSubset(candidate[1], required[child], dominated[child], candidateIndices[child])) {
+                    dominated[child][candidateIndices[child].indexOf(candidate[1])] = true;
+                    this.searchBudget.recordPrunedCandidate();
+                } else {
+                    candidates.add(candidate);
+                }
+            }
+
+            List<int[]> unscoredCandidates = new ArrayList<int[]>();
+            for (int[] candidate : candidates) {
+                Double score = this.localScoreCache.get(
+                    this.variables.get(candidate[0]),
+                    toNames(decompress(candidate[1], candidate[0]))
+                );
+
+                if (score != null) {
+                    localScores[candidate[0]][candidate[1]] = score;
+                } else {
+                    unscoredCandidates.add(candidate);
+                }
+            }
+
+            if (!scoreCandidates(unscoredCandidates, localScores, stopOnBudget, executor)) {
+                return false;
+            }
+
+            // The supersets of the largest parent sets aren't candidates, so there is nothing to prune.
+            if (size < this.maxParents) {
+                for (int[] candidate : candidates) {
+                    int child = candidate[0];
+                    int parents = candidate[1];
+                    SubsetIndex candidateIndex = candidateIndices[child];
+                    double bestScore = localScores[child][parents];
+                    int remaining = parents & ~required[child];
+                    while (remaining != 0) {
+                        int bit = remaining & -remaining;
+                        remaining ^= bit;
+                        bestScore = Math.max(bestScore, bestSubsetScores[child][candidateIndex.indexOf(parents ^ bit)]);
+                    }
+
+                    bestSubsetScores[child][candidateIndex.indexOf(parents)] = bestScore;
+                    dominated[child][candidateIndex.indexOf(parents)] = this.localScoreCache.getUpperBound(
+                        this.discreteScore,
+                        this.variables.get(child),
+                        toNames(decompress(parents, child))
+                    ) <= bestScore;
+                }
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Check if the given parent set is a superset of a parent set whose supersets can't improve the score.
+     *
+     * @param parents - the compressed bitset of the parent set.
+     * @param required - the compressed bitset of the required parents, which are in every candidate parent set.
+     * @param dominated - indicates which parent sets have supersets that can't improve the score.
+     * @param candidateIndex - the index of the parent sets in the dominated array.
+     * @return true if the parent set can be skipped; otherwise false.
+     */
+    private static boolean hasDominatedSubset(int parents, int required, boolean[] dominated, SubsetIndex candidateIndex) {
+        int remaining = parents & ~required;
+        while (remaining != 0) {
+            int bit = remaining & -remaining;
+            remaining ^= bit;
+            if (dominated[candidateIndex.indexOf(parents ^ bit)]) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Compute the local scores of the given candidate parent sets, in parallel if an executor is given.
+     *
+     * @return true if all the given candidate parent sets were scored; otherwise false.
+     */
+    private boolean scoreCandidates(
+        List<int[]> candidates,
+        double[][] localScores,
+        boolean stopOnBudget,
+        ExecutorService executor
+    ) throws ScoringException {
+        if (executor == null) {
+            for (int[] candidate : candidates) {
+                if (stopOnBudget && this.searchBudget.isExhausted()) {
+                    return false;
+                }
+
+                storeScore(candidate, scoreCandidate(candidate), localScores);
+            }
+
+            return true;
+        }
+
+        List<Future<Double>> scores = new ArrayList<Future<Double>>(candidates.size());
+        for (int[] candidate : candidates) {
+            scores.add(executor.submit(() -> scoreCandidate(candidate)));
+        }
+
+        try {
+            for (int index = 0; index < candidates.size(); index++) {
+                if (stopOnBudget && this.searchBudget.isExhausted()) {
+                    return false;
+                }
+
+                storeScore(candidates.get(index), scores.get(index).get(), localScores);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScoringException("Interrupted while scoring the candidate parent sets.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ScoringException) {
+                throw (ScoringException) e.getCause();
+            }
+
+            throw new ScoringException("Failed to score the candidate parent sets.", e.getCause());
+        } finally {
+            for (Future<Double> score : scores) {
+                score.cancel(true);
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Compute the local score of the given candidate parent set.
+     */
+    private double scoreCandidate(int[] candidate) throws ScoringException {
+        return this.discreteScore.localScore(
+            this.variables.get(candidate[0]),
+            toNames(decompress(candidate[1], candidate[0]))
+        );
+    }
+
+
+    /**
+     * Store the local score of the given candidate parent set, caching it along with its upper bound, which the score
+     * has already computed.
+     */
+    private void storeScore(int[] candidate, double score, double[][] localScores) throws ScoringException {
+        String child = this.variables.get(candidate[0]);
+        Set<String> parents = toNames(decompress(candidate[1], candidate[0]));
+        localScores[candidate[0]][candidate[1]] = score;
+        this.localScoreCache.put(child, parents, score, this.discreteScore.localScoreUpperBound(child, parents));
+        this.searchBudget.recordScoreEvaluation();
+    }
+
+
+    /**
+     * Replace the local scores of each variable with the score of its best parent set among the subsets of each set of
+     * variables, computing the variables in parallel if an executor is given.
+     *
+     * @param scores - the local scores of each variable, which are replaced with the best scores.
+     * @param bestParentSets - array to store the compressed bitset of the best parent set of each variable in.
+     * @param executor - the executor to do the computation with, null to do it on the current thread.
+     * @throws ScoringException if the computation is interrupted.
+     */
+    private void computeBestParentSets(
+        double[][] scores,
+        int[][] bestParentSets,
+        ExecutorService executor
+    ) throws ScoringException {
+        for (int child = 0; child < scores.length; child++) {
+            bestParentSets[child] = new int[scores[child].length];
+        }
+
+        if (executor == null) {
+            for (int child = 0; child < scores.length; child++) {
+                maximizeOverSubsets(scores[child], bestParentSets[child]);
+            }
+
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(scores.length);
+        for (int child = 0; child < scores.length; child++) {
+            double[] childScores = scores[child];
+            int[] childBestParentSets = bestParentSets[child];
+            tasks.add(() -> {
+                maximizeOverSubsets(childScores, childBestParentSets);
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> task : executor.invokeAll(tasks)) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScoringException("Interrupted while finding the best parent sets.", e);
+        } catch (ExecutionException e) {
+            throw new ScoringException("Failed to find the best parent sets.", e.getCause());
+        }
+    }
+
+
+    /**
+     * Replace the local scores of a variable with the score of its best parent set among the subsets of each set of
+     * variables.  The sets are processed in increasing order so that the subsets of a set are processed before it.
+     */
+    private static void maximizeOverSubsets(double[] scores, int[] bestParentSets) {
+        for (int set = 0; set < scores.length; set++) {
+            bestParentSets[set] = set;
+            int remaining = set;
+            while (remaining != 0) {
+                int bit = remaining & -remaining;
+                remaining ^= bit;
+                int subset = set ^ bit;
+                if (scores[subset] > scores[set]) {
+                    scores[set] = scores[subset];
+                    bestParentSets[set] = bestParentSets[subset];
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Remove the bit of the given variable from the given bitset, shifting the higher bits down by one.
+     */
+    private static int compress(int set, int variable) {
+        int lowerBits = set & ((1 << variable) - 1);
+
+        return lowerBits | ((set >>> (variable + 1)) << variable);
+    }
+
+
+    /**
+     * Add an unset bit for the given variable to the given compressed bitset, shifting the higher bits up by one.
+     */
+    private static int decompress(int set, int variable) {
+        int lowerBits = set & ((1 << variable) - 1);
+
+        return lowerBits | ((set >>> variable) << (variable + 1));
+    }
+
+
+    /**
+     * Retrieve the names of the variables in the given bitset.
+     */
+    private Set<String> toNames(int set) {
+        Set<String> names = new HashSet<String>();
+        while (set != 0) {
+            names.add(this.variables.get(Integer.numberOfTrailingZeros(set)));
+            set &= set - 1;
+        }
+
+        return names;
+    }
+
+
+    /**
+     * Convert the given DAG into a Tetrad graph.
+     */
+    private Graph toGraph(boolean[][] dag) {
+        List<Node> nodes = new ArrayList<Node>(this.variables.size());
+        for (String variable : this.variables) {
+            nodes.add(new GraphNode(variable));
+        }
+
+        Graph graph = new EdgeListGraph(nodes);
+        for (int parent = 0; parent < dag.length; parent++) {
+            for (int child = 0; child < dag.length; child++) {
+                if (dag[parent][child]) {
+                    graph.addDirectedEdge(nodes.get(parent), nodes.get(child));
+                }
+            }
+        }
+
+        return graph;
+    }
+
+
+    /**
+     * Index of the subsets with at most a given number of elements, ordered by size and then colexicographically, so
+     * that arrays over the candidate parent sets don't need an entry for every subset of the variables.
+     */
+    private static class SubsetIndex {
+        private static final int[][] BINOMIALS = computeBinomials(MAX_NUMBER_OF_VARIABLES);
+        private int[] offsets;
+
+
+        /**
+         * Create an index of the subsets of the given number of elements with at most the given size.
+         *
+         * @param numberOfElements - the number of elements to choose the subsets from.
+         * @param maxSize - the maximum number of elements in an indexed subset.
+         */
+        SubsetIndex(int numberOfElements, int maxSize) {
+            int numberOfSizes = Math.min(maxSize, numberOfElements) + 1;
+            this.offsets = new int[numberOfSizes + 1];
+            for (int size = 0; size < numberOfSizes; size++) {
+                this.offsets[size + 1] = this.offsets[size] + BINOMIALS[numberOfElements][size];
+            }
+        }
+
+
+        /**
+         * Retrieve the number of indexed subsets.
+         */
+        int size() {
+            return this.offsets[this.offsets.length - 1];
+        }
+
+
+        /**
+         * Retrieve the index of the given subset, which must not have more than the maximum number of elements.
+         */
+        int indexOf(int set) {
+            int index = this.offsets[Integer.bitCount(set)];
+            int rank = 1;
+            while (set != 0) {
+                index += BINOMIALS[Integer.numberOfTrailingZeros(set)][rank];
+                set &= set - 1;
+                rank++;
+            }
+
+            return index;
+        }
+
+
+        /**
+         * Compute the binomial coefficients C(n, k) for n up to the given number, with C(n, k) = 0 for k &gt; n.
+         */
+        private static int[][] computeBinomials(int maxN) {
+            int[][] binomials = new int[maxN + 1][maxN + 2];
+            for (int n = 0; n <= maxN; n++) {
+                binomials[n][0] = 1;
+                for (int k = 1; k <= n; k++) {
+                    binomials[n][k] = binomials[n - 1][k - 1] + binomials[n - 1][k];
+                }
+            }
+
+            return binomials;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ca.sfu.cs.factorbase.search;
+
+/**
+ * Summary of the CT table of a family of nodes, which contains everything needed to compute the BDeu score of the
+ * family for any setting of the hyperparameters without generating the CT table again.
+ * <p>
+ * Note: Only the parent states and cells of the CT table that were observed are stored since the others contribute
+ *       the same amount to the score regardless of the data.
+ * </p>
+ */
+public class FamilyCounts {
+    private int numberOfChildStates;
+    private int numberOfParentStates;
+    private long[] parentStateCounts;
+    private int[] nonZeroChildStates;
+    private long[] cellCounts;
+
+
+    /**
+     * Create a summary of the CT table of a family of nodes.
+     *
+     * @param numberOfChildStates - the number of states of the child (r).
+     * @param numberOfParentStates - the number of states of the parents (q).
+     * @param parentStateCounts - the number of observations of each parent state that was observed.
+     * @param nonZeroChildStates - the number of child states observed with each parent state that was observed.
+     * @param cellCounts - the counts of each cell of the CT table that was observed.
+     */
+    public FamilyCounts(
+        int numberOfChildStates,
+        int numberOfParentStates,
+        long[] parentStateCounts,
+        int[] nonZeroChildStates,
+        long[] cellCounts
+    ) {
+        this.numberOfChildStates = numberOfChildStates;
+        this.numberOfParentStates = numberOfParentStates;
+        this.parentStateCounts = parentStateCounts;
+        this.nonZeroChildStates = nonZeroChildStates;
+        this.cellCounts = cellCounts;
+    }
+
+
+    /**
+     * Retrieve the number of states of the child.
+     *
+     * @return the number of states of the child (r).
+     */
+    public int getNumberOfChildStates() {
+        return this.numberOfChildStates;
+    }
+
+
+    /**
+     * Retrieve the number of states of the parents.
+     *
+     * @return the number of states of the parents (q).
+     */
+    public int getNumberOfParentStates() {
+        return this.numberOfParentStates;
+    }
+
+
+    /**
+     * Retrieve the number of observations of each parent state that was observed.
+     *
+     * @return the number of observations of each parent state that was observed.
+     */
+    public long[] getParentStateCounts() {
+        return this.parentStateCounts;
+    }
+
+
+    /**
+     * Retrieve the number of child states observed with each parent state that was observed, in the same order as
+     * {@link #getParentStateCounts()}.
+     *
+     * @return the number of child states observed with each parent state that was observed.
+     */
+    public int[] getNonZeroChildStates() {
+        return this.nonZeroChildStates;
+    }
+
+
+    /**
+     * Retrieve the counts of each cell of the CT table that was observed.
+     *
+     * @return the counts of each cell of the CT table that was observed.
+     */
+    public long[] getCellCounts() {
+        return this.cellCounts;
+    }
+}
@@ -0,0 +1,48 @@
+package ca.sfu.cs.factorbase.search;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class to store the summaries of the CT tables generated for the families of nodes, so that the scores using
+ * different settings of the hyperparameters for the same data can share them instead of each generating the CT
+ * tables again.  The cache can be used by several scores at the same time.
+ */
+public class FamilyCountsCache {
+    private Map<String, Map<Set<String>, FamilyCounts>> familyCounts =
+        new ConcurrentHashMap<String, Map<Set<String>, FamilyCounts>>();
+
+
+    /**
+     * Retrieve the cached summary of the CT table for the given family of nodes.
+     *
+     * @param child - name of child node.
+     * @param parents - name of parent nodes.
+     * @return the cached summary of the CT table for the given family of nodes, or null if it hasn't been cached.
+     */
+    public FamilyCounts get(String child, Set<String> parents) {
+        Map<Set<String>, FamilyCounts> childCounts = this.familyCounts.get(child);
+        if (childCounts == null) {
+            return null;
+        }
+
+        return childCounts.get(parents);
+    }
+
+
+    /**
+     * Cache the summary of the CT table for the given family of nodes.
+     *
+     * @param child - name of child node.
+     * @param parents - name of parent nodes.
+     * @param counts - the summary of the CT table for the given family of nodes.
+     */
+    public void put(String child, Set<String> parents, FamilyCounts counts) {
+        this.familyCounts.computeIfAbsent(
+            child,
+            key -> new ConcurrentHashMap<Set<String>, FamilyCounts>()
+        ).put(new HashSet<String>(parents), counts);
+    }
+}
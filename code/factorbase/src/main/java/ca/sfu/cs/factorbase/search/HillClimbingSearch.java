@@ -0,0 +1,752 @@
+package ca.sfu.cs.factorbase.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ca.sfu.cs.factorbase.exception.ScoringException;
+
+import edu.cmu.tetrad.data.Knowledge;
+import edu.cmu.tetrad.data.KnowledgeEdge;
+import edu.cmu.tetrad.graph.EdgeListGraph;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphNode;
+import edu.cmu.tetrad.graph.Node;
+
+/**
+ * Hill climbing search over the space of DAGs, using edge additions, deletions and reversals, with a tabu list to
+ * escape local optima.
+ * <p>
+ * A move only changes the parents of one node (two for a reversal), so the change in score for a move is computed by
+ * rescoring only the families that change.  The families needed to evaluate the candidate moves of each step are scored
+ * in parallel, and the scores are cached so that the moves that aren't affected by a step are not rescored.
+ * </p>
+ */
+public class HillClimbingSearch implements StructureSearch {
+
+    /**
+     * The relative amount that a score must improve by to be considered better, so that rounding errors don't make
+     * the same graph look better than itself.
+     */
+    private static final double MIN_IMPROVEMENT = 1e-9;
+
+    /**
+     * The types of moves that can be made to the current DAG.
+     */
+    private enum MoveType {
+        ADD,
+        DELETE,
+        REVERSE
+    }
+
+    /**
+     * Names of the variables in the data set, in order.
+     */
+    private List<String> variables;
+
+    /**
+     * The score for discrete searches.
+     */
+    private DiscreteLocalScore discreteScore;
+
+    /**
+     * Specification of forbidden and required edges.
+     */
+    private Knowledge knowledge = new Knowledge();
+
+    /**
+     * Limits on how long the search can run for, which also tracks how much of the search was completed.
+     */
+    private SearchBudget searchBudget = new SearchBudget(0, 0);
+
+    /**
+     * Cache of the local scores computed during the search.
+     */
+    private LocalScoreCache localScoreCache = new LocalScoreCache();
+
+    /**
+     * Edges to add to the graph before starting the search, e.g. the edges learned for a smaller lattice point.
+     */
+    private List<KnowledgeEdge> initialEdges = new ArrayList<KnowledgeEdge>();
+
+    /**
+     * The number of threads used to score the candidate moves.
+     */
+    private int numberOfThreads = 1;
+
+    /**
+     * The number of recently changed pairs of nodes that can't be changed again, unless doing so leads to a better
+     * graph than the best one found so far.
+     */
+    private int tabuListSize = 0;
+
+    /**
+     * The number of moves that don't improve the score that can be made in a row before the search stops.
+     */
+    private int maxNonImprovingMoves = 0;
+
+    /**
+     * The current DAG, where dag[x][y] is true iff there is an edge x -> y.
+     */
+    private boolean[][] dag;
+
+    /**
+     * The scores of the families of each node in the current DAG.
+     */
+    private double[] familyScores;
+
+
+    /**
+     * Create a HillClimbingSearch for the given variables.
+     *
+     * @param variableNames - the names of the variables to learn the DAG for.
+     * @param discreteScore - the score to compute the local scores of the families of the variables with.
+     */
+    public HillClimbingSearch(List<String> variableNames, DiscreteLocalScore discreteScore) {
+        this.variables = new ArrayList<String>(variableNames);
+        this.discreteScore = discreteScore;
+    }
+
+
+    /**
+     * Sets the number of threads used to score the candidate moves.
+     *
+     * @param numberOfThreads - the number of threads used to score the candidate moves.
+     */
+    public void setNumberOfThreads(int numberOfThreads) {
+        this.numberOfThreads = Math.max(1, numberOfThreads);
+    }
+
+
+    /**
+     * Sets the size of the tabu list.  When set to 0, the search stops at the first local optimum.
+     *
+     * @param tabuListSize - the number of recently changed pairs of nodes that can't be changed again.
+     */
+    public void setTabuListSize(int tabuListSize) {
+        this.tabuListSize = Math.max(0, tabuListSize);
+    }
+
+
+    /**
+     * Sets the number of moves that don't improve the score that can be made in a row before the search stops.  Only
+     * used when the tabu list is on.
+     *
+     * @param maxNonImprovingMoves - the number of moves that don't improve the score that can be made in a row.
+     */
+    public void setMaxNonImprovingMoves(int maxNonImprovingMoves) {
+        this.maxNonImprovingMoves = Math.max(0, maxNonImprovingMoves);
+    }
+
+
+    @Override
+    public void setKnowledge(Knowledge knowledge) {
+        if (knowledge == null) {
+            throw new NullPointerException("Knowledge must not be null.");
+        }
+
+        this.knowledge = knowledge;
+    }
+
+
+    @Override
+    public void setSearchBudget(SearchBudget searchBudget) {
+        if (searchBudget == null) {
+            throw new NullPointerException("Search budget must not be null.");
+        }
+
+        this.searchBudget = searchBudget;
+    }
+
+
+    @Override
+    public void setLocalScoreCache(LocalScoreCache localScoreCache) {
+        if (localScoreCache == null) {
+            throw new NullPointerException("Local score cache must not be null.");
+        }
+
+        this.localScoreCache = localScoreCache;
+    }
+
+
+    @Override
+    public void addInitialEdge(String from, String to) {
+        this.initialEdges.add(new KnowledgeEdge(from, to));
+    }
+
+
+    /**
+     * Hill climbing search: Start from the required and initial edges, and make the best move until no move improves
+     * the score, or until too many moves in a row haven't improved the score when the tabu list is on.  If the search
+     * budget runs out, the search stops and the best DAG found so far is returned.
+     *
+     * @return the resulting DAG.
+     * @throws ScoringException if an error occurs when trying to compute the score for the graphs being generated.
+     */
+    @Override
+    public Graph search() throws ScoringException {
+        this.searchBudget.start();
+        int numberOfVariables = this.variables.size();
+        boolean[][] required = new boolean[numberOfVariables][numberOfVariables];
+        boolean[][] forbidden = new boolean[numberOfVariables][numberOfVariables];
+        loadKnowledge(required, forbidden);
+
+        this.dag = new boolean[numberOfVariables][numberOfVariables];
+        addRequiredEdges(required);
+        addInitialEdges(forbidden);
+
+        boolean[][] bestDag;
+        ExecutorService executor = null;
+        if (this.numberOfThreads > 1) {
+            executor = Executors.newFixedThreadPool(this.numberOfThreads);
+        }
+
+        try {
+            List<Family> families = new ArrayList<Family>(numberOfVariables);
+            for (int node = 0; node < numberOfVariables; node++) {
+                families.add(new Family(node, getParents(node)));
+            }
+
+            scoreFamilies(families, executor);
+
+            this.familyScores = new double[numberOfVariables];
+            for (Family family : families) {
+                this.familyScores[family.child] = getCachedScore(family);
+            }
+
+            double score = getScore();
+
+            bestDag = copy(this.dag);
+            double bestScore = score;
+            Deque<Integer> tabuList = new ArrayDeque<Integer>();
+            int nonImprovingMoves = 0;
+            boolean completed = false;
+
+            while (!this.searchBudget.isExhausted()) {
+                List<Move> moves = generateMoves(required, forbidden);
+
+                Set<Family> candidateFamilies = new LinkedHashSet<Family>();
+                for (Move move : moves) {
+                    candidateFamilies.addAll(move.families);
+                }
+
+                scoreFamilies(candidateFamilies, executor);
+
+                Move bestMove = null;
+                for (Move move : moves) {
+                    move.delta = 0;
+                    for (Family family : move.families) {
+                        move.delta += getCachedScore(family) - this.familyScores[family.child];
+                    }
+
+                    // Tabu moves are only allowed if they lead to a better graph than the best one found so far.
+                    if (
+                        tabuList.contains(move.getPairKey(numberOfVariables)) &&
+                        !isImprovement(score + move.delta, bestScore)
+                    ) {
+                        continue;
+                    }
+
+                    if (bestMove == null || move.delta > bestMove.delta) {
+                        bestMove = move;
+                    }
+                }
+
+                if (bestMove == null) {
+                    completed = true;
+                    break;
+                }
+
+                if (bestMove.delta <= 0) {
+                    if (this.tabuListSize == 0 || nonImprovingMoves >= this.maxNonImprovingMoves) {
+                        completed = true;
+                        break;
+                    }
+
+                    nonImprovingMoves++;
+                }
+
+                applyMove(bestMove);
+                score = getScore();
+
+                if (this.tabuListSize > 0) {
+                    tabuList.addLast(bestMove.getPairKey(numberOfVariables));
+                    if (tabuList.size() > this.tabuListSize) {
+                        tabuList.removeFirst();
+                    }
+                }
+
+                if (isImprovement(score, bestScore)) {
+                    bestScore = score;
+                    bestDag = copy(this.dag);
+                    nonImprovingMoves = 0;
+                }
+            }
+
+            if (completed) {
+                this.searchBudget.recordForwardSearchCompleted();
+                this.searchBudget.recordBackwardSearchCompleted();
+            }
+
+            this.searchBudget.recordScore(bestScore);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        this.searchBudget.stop();
+
+        return toGraph(bestDag);
+    }
+
+
+    /**
+     * Load the required and forbidden edges from the background knowledge.
+     *
+     * @param required - matrix to set required[x][y] to true for each required edge x -> y.
+     * @param forbidden - matrix to set forbidden[x][y] to true for each forbidden edge x -> y.
+     */
+    private void loadKnowledge(boolean[][] required, boolean[][] forbidden) {
+        Map<String, Integer> indices = new HashMap<String, Integer>();
+        for (int index = 0; index < this.variables.size(); index++) {
+            indices.put(this.variables.get(index), index);
+        }
+
+        for (Iterator<KnowledgeEdge> it = this.knowledge.requiredEdgesIterator(); it.hasNext();) {
+            KnowledgeEdge edge = it.next();
+            Integer from = indices.get(edge.getFrom());
+            Integer to = indices.get(edge.getTo());
+            if (from != null && to != null) {
+                required[from][to] = true;
+            }
+        }
+
+        for (int x = 0; x < this.variables.size(); x++) {
+            for (int y = 0; y < this.variables.size(); y++) {
+                forbidden[x][y] = x != y && this.knowledge.edgeForbidden(this.variables.get(x), this.variables.get(y));
+            }
+        }
+    }
+
+
+    /**
+     * Add the required edges to the DAG, skipping the ones that would create a cycle.
+     */
+    private void addRequiredEdges(boolean[][] required) {
+        for (int x = 0; x < required.length; x++) {
+            for (int y = 0; y < required.length; y++) {
+                if (required[x][y] && !this.dag[x][y] && !isReachable(y, x)) {
+                    this.dag[x][y] = true;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Add the initial edges to the DAG, skipping the ones that are forbidden or that would create a cycle.
+     */
+    private void addInitialEdges(boolean[][] forbidden) {
+        for (KnowledgeEdge initialEdge : this.initialEdges) {
+            int x = this.variables.indexOf(initialEdge.getFrom());
+            int y = this.variables.indexOf(initialEdge.getTo());
+
+            if (x < 0 || y < 0 || x == y || this.dag[x][y] || this.dag[y][x] || forbidden[x][y]) {
+                continue;
+            }
+
+            if (!isReachable(y, x)) {
+                this.dag[x][y] = true;
+            }
+        }
+    }
+
+
+    /**
+     * Generate the legal moves for the current DAG.  Required edges are never deleted or reversed, forbidden edges are
+     * never added, and no move creates a cycle.
+     * <p>
+     * When the tabu list is off, only moves that improve the score can be made, so the moves that add a parent to a
+     * node whose score can't be improved by adding parents are skipped.  A reversal that adds a parent to such a node
+     * can't do better than deleting the edge instead.
+     * </p>
+     *
+     * @throws ScoringException if an error occurs when trying to compute the upper bounds on the scores.
+     */
+    private List<Move> generateMoves(boolean[][] required, boolean[][] forbidden) throws ScoringException {
+        int numberOfVariables = this.variables.size();
+        boolean[][] reachable = computeReachability();
+        List<Set<String>> parents = new ArrayList<Set<String>>(numberOfVariables);
+        boolean[] saturated = new boolean[numberOfVariables];
+        for (int node = 0; node < numberOfVariables; node++) {
+            parents.add(getParents(node));
+            if (this.tabuListSize == 0) {
+                double upperBound = this.localScoreCache.getUpperBound(
+                    this.discreteScore,
+                    this.variables.get(node),
+                    parents.get(node)
+                );
+                saturated[node] = upperBound <= this.familyScores[node];
+            }
+        }
+
+        List<Move> moves = new ArrayList<Move>();
+        for (int x = 0; x < numberOfVariables; x++) {
+            for (int y = 0; y < numberOfVariables; y++) {
+                if (x == y) {
+                    continue;
+                }
+
+                String nameX = this.variables.get(x);
+                String nameY = this.variables.get(y);
+
+                if (this.dag[x][y]) {
+                    if (required[x][y]) {
+                        continue;
+                    }
+
+                    Set<String> parentsOfYWithoutX = new HashSet<String>(parents.get(y));
+                    parentsOfYWithoutX.remove(nameX);
+                    Family deletedFamily = new Family(y, parentsOfYWithoutX);
+                    moves.add(new Move(MoveType.DELETE, x, y, deletedFamily));
+
+                    if (!forbidden[y][x] && !hasIndirectPath(x, y, reachable)) {
+                        if (saturated[x]) {
+                            this.searchBudget.recordPrunedCandidate();
+                            continue;
+                        }
+
+                        Set<String> parentsOfXWithY = new HashSet<String>(parents.get(x));
+                        parentsOfXWithY.add(nameY);
+                        moves.add(new Move(MoveType.REVERSE, x, y, deletedFamily, new Family(x, parentsOfXWithY)));
+                    }
+                } else if (!this.dag[y][x] && !forbidden[x][y] && !reachable[y][x]) {
+                    if (saturated[y]) {
+                        this.searchBudget.recordPrunedCandidate();
+                        continue;
+                    }
+
+                    Set<String> parentsOfYWithX = new HashSet<String>(parents.get(y));
+                    parentsOfYWithX.add(nameX);
+                    moves.add(new Move(MoveType.ADD, x, y, new Family(y, parentsOfYWithX)));
+                }
+            }
+        }
+
+        return moves;
+    }
+
+
+    /**
+     * Apply the given move to the current DAG and update the scores of the families that it changes.
+     */
+    private void applyMove(Move move) {
+        switch (move.type) {
+        case ADD:
+            this.dag[move.from][move.to] = true;
+            this.searchBudget.recordInsertion();
+            break;
+        case DELETE:
+            this.dag[move.from][move.to] = false;
+            this.searchBudget.recordDeletion();
+            break;
+        case REVERSE:
+            this.dag[move.from][move.to] = false;
+            this.dag[move.to][move.from] = true;
+            this.searchBudget.recordDeletion();
+            this.searchBudget.recordInsertion();
+            break;
+        }
+
+        for (Family family : move.families) {
+            this.familyScores[family.child] = getCachedScore(family);
+        }
+    }
+
+
+    /**
+     * Compute the scores of the given families that haven't been cached yet, in parallel if an executor is given.
+     *
+     * @param families - the families to compute the scores for.
+     * @param executor - the executor to compute the scores with, null to compute them on the current thread.
+     * @throws ScoringException if an error occurs when trying to compute the scores.
+     */
+    private void scoreFamilies(Collection<Family> families, ExecutorService executor) throws ScoringException {
+        List<Family> unscoredFamilies = new ArrayList<Family>();
+        for (Family family : families) {
+            if (this.localScoreCache.get(this.variables.get(family.child), family.parents) == null) {
+                unscoredFamilies.add(family);
+            }
+        }
+
+        if (executor == null || unscoredFamilies.size() < 2) {
+            for (Family family : unscoredFamilies) {
+                String child = this.variables.get(family.child);
+                double score = this.discreteScore.localScore(child, family.parents);
+                this.localScoreCache.put(
+                    child,
+                    family.parents,
+                    score,
+                    this.discreteScore.localScoreUpperBound(child, family.parents)
+                );
+                this.searchBudget.recordScoreEvaluation();
+            }
+
+            return;
+        }
+
+        List<Future<Double>> scores = new ArrayList<Future<Double>>(unscoredFamilies.size());
+        for (Family family : unscoredFamilies) {
+            String child = this.variables.get(family.child);
+            scores.add(executor.submit(() -> this.discreteScore.localScore(child, family.parents)));
+        }
+
+        try {
+            for (int index = 0; index < unscoredFamilies.size(); index++) {
+                Family family = unscoredFamilies.get(index);
+                String child = this.variables.get(family.child);
+                this.localScoreCache.put(
+                    child,
+                    family.parents,
+                    scores.get(index).get(),
+                    this.discreteScore.localScoreUpperBound(child, family.parents)
+                );
+                this.searchBudget.recordScoreEvaluation();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScoringException("Interrupted while scoring the candidate moves.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ScoringException) {
+                throw (ScoringException) e.getCause();
+            }
+
+            throw new ScoringException("Failed to score the candidate moves.", e.getCause());
+        } finally {
+            for (Future<Double> score : scores) {
+                score.cancel(true);
+            }
+        }
+    }
+
+
+    /**
+     * Retrieve the score of the current DAG.
+     */
+    private double getScore() {
+        double score = 0;
+        for (double familyScore : this.familyScores) {
+            score += familyScore;
+        }
+
+        return score;
+    }
+
+
+    /**
+     * Check if the given score is better than the best score by more than a rounding error.
+     */
+    private static boolean isImprovement(double score, double bestScore) {
+        return score - bestScore > MIN_IMPROVEMENT * Math.max(1, Math.abs(bestScore));
+    }
+
+
+    /**
+     * Retrieve the cached score of the given family.
+     */
+    private double getCachedScore(Family family) {
+        return this.localScoreCache.get(this.variables.get(family.child), family.parents);
+    }
+
+
+    /**
+     * Retrieve the names of the parents of the given node in the current DAG.
+     */
+    private Set<String> getParents(int node) {
+        Set<String> parents = new HashSet<String>();
+        for (int parent = 0; parent < this.dag.length; parent++) {
+            if (this.dag[parent][node]) {
+                parents.add(this.variables.get(parent));
+            }
+        }
+
+        return parents;
+    }
+
+
+    /**
+     * Check if there is a directed path from one node to another in the current DAG.
+     */
+    private boolean isReachable(int from, int to) {
+        boolean[] visited = new boolean[this.dag.length];
+        Deque<Integer> stack = new ArrayDeque<Integer>();
+        stack.push(from);
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            if (node == to) {
+                return true;
+            }
+
+            for (int child = 0; child < this.dag.length; child++) {
+                if (this.dag[node][child] && !visited[child]) {
+                    visited[child] = true;
+                    stack.push(child);
+                }
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Compute which nodes can be reached from each node in the current DAG.
+     *
+     * @return matrix where reachable[x][y] is true iff there is a directed path of at least one edge from x to y.
+     */
+    private boolean[][] computeReachability() {
+        int numberOfVariables = this.dag.length;
+        boolean[][] reachable = new boolean[numberOfVariables][numberOfVariables];
+        for (int from = 0; from < numberOfVariables; from++) {
+            Deque<Integer> stack = new ArrayDeque<Integer>();
+            stack.push(from);
+            while (!stack.isEmpty()) {
+                int node = stack.pop();
+                for (int child = 0; child < numberOfVariables; child++) {
+                    if (this.dag[node][child] && !reachable[from][child]) {
+                        reachable[from][child] = true;
+                        stack.push(child);
+                    }
+                }
+            }
+        }
+
+        return reachable;
+    }
+
+
+    /**
+     * Check if there is a directed path from x to y, other than the edge x -> y, which would create a cycle if the edge
+     * x -> y was reversed.
+     */
+    private boolean hasIndirectPath(int x, int y, boolean[][] reachable) {
+        for (int child = 0; child < this.dag.length; child++) {
+            if (child != y && this.dag[x][child] && reachable[child][y]) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Copy the given DAG.
+     */
+    private static boolean[][] copy(boolean[][] matrix) {
+        boolean[][] copy = new boolean[matrix.length][];
+        for (int row = 0; row < matrix.length; row++) {
+            copy[row] = matrix[row].clone();
+        }
+
+        return copy;
+    }
+
+
+    /**
+     * Convert the given DAG into a Tetrad graph.
+     */
+    private Graph toGraph(boolean[][] dag) {
+        List<Node> nodes = new ArrayList<Node>(this.variables.size());
+        for (String variable : this.variables) {
+            nodes.add(new GraphNode(variable));
+        }
+
+        Graph graph = new EdgeListGraph(nodes);
+        for (int x = 0; x < dag.length; x++) {
+            for (int y = 0; y < dag.length; y++) {
+                if (dag[x][y]) {
+                    graph.addDirectedEdge(nodes.get(x), nodes.get(y));
+                }
+            }
+        }
+
+        return graph;
+    }
+
+
+    /**
+     * A node and a set of parents for it.
+     */
+    private static class Family {
+        private final int child;
+        private final Set<String> parents;
+
+
+        Family(int child, Set<String> parents) {
+            this.child = child;
+            this.parents = parents;
+        }
+
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Family)) {
+                return false;
+            }
+
+            Family family = (Family) other;
+
+            return this.child == family.child && this.parents.equals(family.parents);
+        }
+
+
+        @Override
+        public int hashCode() {
+            return 31 * this.child + this.parents.hashCode();
+        }
+    }
+
+
+    /**
+     * A change to a single edge of the current DAG, along with the families that it changes.
+     */
+    private static class Move {
+        private final MoveType type;
+        private final int from;
+        private final int to;
+        private final List<Family> families;
+        private double delta;
+
+
+        Move(MoveType type, int from, int to, Family... families) {
+            this.type = type;
+            this.from = from;
+            this.to = to;
+            this.families = Arrays.asList(families);
+        }
+
+
+        /**
+         * Retrieve the key of the pair of nodes that the move changes, which is the same regardless of the direction of
+         * the edge.
+         */
+        int getPairKey(int numberOfVariables) {
+            return Math.min(this.from, this.to) * numberOfVariables + Math.max(this.from, this.to);
+        }
+    }
+}
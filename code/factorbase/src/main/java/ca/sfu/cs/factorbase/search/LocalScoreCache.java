@@ -0,0 +1,135 @@
+package ca.sfu.cs.factorbase.search;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ca.sfu.cs.factorbase.exception.ScoringException;
+
+/**
+ * Class to store the local scores computed for the families of nodes during a structure search, so that they can be
+ * reused by other searches over data where the counts for those families are the same.  The cache can be shared by
+ * searches running at the same time.
+ * <p>
+ * The upper bounds used to prune the supersets of the parents are stored alongside the scores, so that a search
+ * reusing a cached score doesn't have to compute the score again to get its upper bound.
+ * </p>
+ */
+public class LocalScoreCache {
+    private Map<String, Map<Set<String>, Double>> scores = new ConcurrentHashMap<String, Map<Set<String>, Double>>();
+    private Map<String, Map<Set<String>, Double>> upperBounds = new ConcurrentHashMap<String, Map<Set<String>, Double>>();
+
+
+    /**
+     * Retrieve the cached score for the given family of nodes.
+     *
+     * @param child - name of child node.
+     * @param parents - name of parent nodes.
+     * @return the cached score of the given family of nodes, or null if the score hasn't been cached.
+     */
+    public Double get(String child, Set<String> parents) {
+        return get(this.scores, child, parents);
+    }
+
+
+    /**
+     * Cache the score for the given family of nodes along with its upper bound.
+     * <p>
+     * Note: The given set of parents should not be modified after it has been cached.
+     * </p>
+     *
+     * @param child - name of child node.
+     * @param parents - name of parent nodes.
+     * @param score - the score of the given family of nodes.
+     * @param upperBound - an upper bound on the score of the given child with any superset of the given parents.
+     */
+    public void put(String child, Set<String> parents, double score, double upperBound) {
+        put(this.scores, child, parents, score);
+        put(this.upperBounds, child, parents, upperBound);
+    }
+
+
+    /**
+     * Retrieve the cached upper bound for the given family of nodes, computing it with the given score and caching it
+     * if it hasn't been cached.
+     *
+     * @param discreteScore - the score to compute the upper bound with if it hasn't been cached.
+     * @param child - name of child node.
+     * @param parents - name of parent nodes.
+     * @return an upper bound on the score of the given child with any superset of the given parents.
+     * @throws ScoringException if an error occurs when trying to compute the upper bound.
+     */
+    public double getUpperBound(
+        DiscreteLocalScore discreteScore,
+        String child,
+        Set<String> parents
+    ) throws ScoringException {
+        Double upperBound = get(this.upperBounds, child, parents);
+        if (upperBound == null) {
+            upperBound = discreteScore.localScoreUpperBound(child, parents);
+            put(this.upperBounds, child, parents, upperBound);
+        }
+
+        return upperBound;
+    }
+
+
+    /**
+     * Add all the scores cached by the given {@code LocalScoreCache} to this one.
+     *
+     * @param scoreCache - the {@code LocalScoreCache} to copy the cached scores from.
+     */
+    public void addAll(LocalScoreCache scoreCache) {
+        for (Map.Entry<String, Map<Set<String>, Double>> childScores : scoreCache.scores.entrySet()) {
+            this.scores.computeIfAbsent(
+                childScores.getKey(),
+                key -> new ConcurrentHashMap<Set<String>, Double>()
+            ).putAll(childScores.getValue());
+        }
+
+        for (Map.Entry<String, Map<Set<String>, Double>> childUpperBounds : scoreCache.upperBounds.entrySet()) {
+            this.upperBounds.computeIfAbsent(
+                childUpperBounds.getKey(),
+                key -> new ConcurrentHashMap<Set<String>, Double>()
+            ).putAll(childUpperBounds.getValue());
+        }
+    }
+
+
+    /**
+     * Retrieve the number of families of nodes that have a cached score.
+     *
+     * @return the number of cached scores.
+     */
+    public int size() {
+        int size = 0;
+        for (Map<Set<String>, Double> childScores : this.scores.values()) {
+            size += childScores.size();
+        }
+
+        return size;
+    }
+
+
+    /**
+     * Retrieve the value stored for the given family of nodes.
+     *
+     * @return the value stored for the given family of nodes, or null if there isn't one.
+     */
+    private static Double get(Map<String, Map<Set<String>, Double>> values, String child, Set<String> parents) {
+        Map<Set<String>, Double> childValues = values.get(child);
+        if (childValues == null) {
+            return null;
+        }
+
+        return childValues.get(parents);
+    }
+
+
+    /**
+     * Store the given value for the given family of nodes.
+     */
+    private static void put(Map<String, Map<Set<String>, Double>> values, String child, Set<String> parents, double value) {
+        values.computeIfAbsent(child, key -> new ConcurrentHashMap<Set<String>, Double>()).put(parents, value);
+    }
+}
@@ -0,0 +1,371 @@
+package ca.sfu.cs.factorbase.search;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import edu.cmu.tetrad.graph.Edge;
+import edu.cmu.tetrad.graph.EdgeListGraph;
+import edu.cmu.tetrad.graph.Edges;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+
+/**
+ * Class to enumerate the DAGs in a pattern without building a graph for each of them.
+ * <p>
+ * Each DAG is given as a bit vector with one bit for each undirected edge of the pattern, where bit i is clear if
+ * undirected edge i is oriented from {@link #getFirstNode(int)} to {@link #getSecondNode(int)} and set if it is
+ * oriented the other way.  The DAGs are found by orienting the undirected edges one at a time, backtracking as soon as
+ * an orientation creates a cycle or a collider that isn't in the pattern, so only the current orientation is kept in
+ * memory.  The enumeration can be split across threads and stopped early.
+ * </p>
+ */
+public class PatternDagEnumerator {
+    private List<Node> nodes;
+    private BitSet[] adjacencies;
+    private BitSet[] patternParents;
+    private int[] firstNodes;
+    private int[] secondNodes;
+
+
+    /**
+     * Create a PatternDagEnumerator for the given pattern.
+     *
+     * @param pattern - the pattern to enumerate the DAGs of, which must only contain directed and undirected edges.
+     * @throws IllegalArgumentException if the pattern contains an edge that isn't directed or undirected.
+     */
+    public PatternDagEnumerator(Graph pattern) {
+        this.nodes = new ArrayList<Node>(pattern.getNodes());
+        int numberOfNodes = this.nodes.size();
+        this.adjacencies = new BitSet[numberOfNodes];
+        this.patternParents = new BitSet[numberOfNodes];
+        for (int node = 0; node < numberOfNodes; node++) {
+            this.adjacencies[node] = new BitSet(numberOfNodes);
+            this.patternParents[node] = new BitSet(numberOfNodes);
+        }
+
+        List<int[]> undirectedEdges = new ArrayList<int[]>();
+        for (Edge edge : pattern.getEdges()) {
+            int node1 = this.nodes.indexOf(edge.getNode1());
+            int node2 = this.nodes.indexOf(edge.getNode2());
+            this.adjacencies[node1].set(node2);
+            this.adjacencies[node2].set(node1);
+
+            if (Edges.isDirectedEdge(edge)) {
+                int tail = this.nodes.indexOf(Edges.getDirectedEdgeTail(edge));
+                int head = this.nodes.indexOf(Edges.getDirectedEdgeHead(edge));
+                this.patternParents[head].set(tail);
+            } else if (Edges.isUndirectedEdge(edge)) {
+                undirectedEdges.add(new int[] {Math.min(node1, node2), Math.max(node1, node2)});
+            } else {
+                throw new IllegalArgumentException("The pattern can only contain directed and undirected edges: " + edge);
+            }
+        }
+
+        // Orient the edges around the same nodes one after the other so that bad orientations are found early.
+        undirectedEdges.sort((edge1, edge2) -> edge1[0] != edge2[0] ? edge1[0] - edge2[0] : edge1[1] - edge2[1]);
+        this.firstNodes = new int[undirectedEdges.size()];
+        this.secondNodes = new int[undirectedEdges.size()];
+        for (int index = 0; index < undirectedEdges.size(); index++) {
+            this.firstNodes[index] = undirectedEdges.get(index)[0];
+            this.secondNodes[index] = undirectedEdges.get(index)[1];
+        }
+    }
+
+
+    /**
+     * Choose a DAG in the given pattern, i.e. the first DAG found by the enumeration.
+     *
+     * @param pattern - the pattern to choose a DAG from.
+     * @return a DAG in the given pattern, or null if the pattern contains an edge that isn't directed or undirected, or
+     *         none of the orientations of its undirected edges are DAGs in the pattern.
+     */
+    public static Graph chooseDag(Graph pattern) {
+        for (Edge edge : pattern.getEdges()) {
+            if (!Edges.isDirectedEdge(edge) && !Edges.isUndirectedEdge(edge)) {
+                return null;
+            }
+        }
+
+        PatternDagEnumerator enumerator = new PatternDagEnumerator(pattern);
+        List<BitSet> orientations = new ArrayList<BitSet>(1);
+        enumerator.enumerate(orientation -> {
+            orientations.add(orientation);
+
+            // Stop at the first DAG.
+            return false;
+        });
+        if (orientations.isEmpty()) {
+            return null;
+        }
+
+        return enumerator.toDag(orientations.get(0));
+    }
+
+
+    /**
+     * Retrieve the number of undirected edges in the pattern, i.e. the number of bits in each orientation.
+     *
+     * @return the number of undirected edges in the pattern.
+     */
+    public int getNumberOfUndirectedEdges() {
+        return this.firstNodes.length;
+    }
+
+
+    /**
+     * Retrieve the node that the given undirected edge points away from when its bit is clear.
+     *
+     * @param edge - the index of the undirected edge.
+     * @return the first node of the given undirected edge.
+     */
+    public Node getFirstNode(int edge) {
+        return this.nodes.get(this.firstNodes[edge]);
+    }
+
+
+    /**
+     * Retrieve the node that the given undirected edge points to when its bit is clear.
+     *
+     * @param edge - the index of the undirected edge.
+     * @return the second node of the given undirected edge.
+     */
+    public Node getSecondNode(int edge) {
+        return this.nodes.get(this.secondNodes[edge]);
+    }
+
+
+    /**
+     * Build the DAG for the given orientation of the undirected edges of the pattern.
+     *
+     * @param orientation - the orientation of the undirected edges given to the consumer of the enumeration.
+     * @return the DAG for the given orientation.
+     */
+    public Graph toDag(BitSet orientation) {
+        Graph dag = new EdgeListGraph(this.nodes);
+        for (int child = 0; child < this.nodes.size(); child++) {
+            for (int parent = this.patternParents[child].nextSetBit(0); parent >= 0; parent = this.patternParents[child].nextSetBit(parent + 1)) {
+                dag.addDirectedEdge(this.nodes.get(parent), this.nodes.get(child));
+            }
+        }
+
+        for (int edge = 0; edge < this.firstNodes.length; edge++) {
+            if (orientation.get(edge)) {
+                dag.addDirectedEdge(getSecondNode(edge), getFirstNode(edge));
+            } else {
+                dag.addDirectedEdge(getFirstNode(edge), getSecondNode(edge));
+            }
+        }
+
+        return dag;
+    }
+
+
+    /**
+     * Enumerate the DAGs in the pattern, giving the orientation of each one to the consumer until it asks to stop.
+     *
+     * @param consumer - receives the orientation of each DAG and returns true to continue the enumeration or false to
+     *                   stop it.  The orientation given to the consumer can be kept.
+     * @return the number of DAGs given to the consumer.
+     */
+    public long enumerate(Predicate<BitSet> consumer) {
+        AtomicLong numberOfDags = new AtomicLong();
+        new Orientation().enumerate(0, consumer, new AtomicBoolean(), numberOfDags);
+
+        return numberOfDags.get();
+    }
+
+
+    /**
+     * Enumerate the DAGs in the pattern using the given number of threads, giving the orientation of each one to the
+     * consumer until it asks to stop.  The enumeration is split by the orientations of the first few undirected
+     * edges, so the DAGs aren't given to the consumer in any particular order.
+     *
+     * @param consumer - receives the orientation of each DAG and returns true to continue the enumeration or false to
+     *                   stop it.  The consumer is called from several threads at the same time.
+     * @param numberOfThreads - the number of threads to enumerate the DAGs with.
+     * @return the number of DAGs given to the consumer.
+     * @throws InterruptedException if the thread is interrupted while waiting for the enumeration to finish.
+     * @throws ExecutionException if the consumer throws an exception.
+     */
+    public long enumerate(
+        Predicate<BitSet> consumer,
+        int numberOfThreads
+    ) throws InterruptedException, ExecutionException {
+        if (numberOfThreads < 2) {
+            return this.enumerate(consumer);
+        }
+
+        // Split the enumeration into several times more parts than threads so that the threads are kept busy even
+        // if the parts have different numbers of DAGs.
+        int splitDepth = 0;
+        while (splitDepth < this.firstNodes.length && (1 << splitDepth) < numberOfThreads * 4) {
+            splitDepth++;
+        }
+
+        List<BitSet> prefixes = new ArrayList<BitSet>();
+        new Orientation().collectPrefixes(0, splitDepth, prefixes);
+
+        AtomicBoolean stopped = new AtomicBoolean();
+        AtomicLong numberOfDags = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        List<Future<?>> parts = new ArrayList<Future<?>>(prefixes.size());
+        int depth = splitDepth;
+
+        try {
+            for (BitSet prefix : prefixes) {
+                parts.add(executor.submit(() -> {
+                    Orientation orientation = new Orientation();
+                    for (int edge = 0; edge < depth; edge++) {
+                        orientation.orient(edge, prefix.get(edge));
+                    }
+
+                    orientation.enumerate(depth, consumer, stopped, numberOfDags);
+                }));
+            }
+
+            for (Future<?> part : parts) {
+                part.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return numberOfDags.get();
+    }
+
+
+    /**
+     * A partial orientation of the undirected edges of the pattern, along with the parents of each node that it
+     * implies.
+     */
+    private class Orientation {
+        private BitSet orientation = new BitSet(firstNodes.length);
+        private BitSet[] parents = new BitSet[nodes.size()];
+
+
+        private Orientation() {
+            for (int node = 0; node < nodes.size(); node++) {
+                this.parents[node] = (BitSet) patternParents[node].clone();
+            }
+        }
+
+
+        /**
+         * Enumerate the orientations of the undirected edges from the given edge onwards.
+         *
+         * @return false if the enumeration was stopped; otherwise true.
+         */
+        private boolean enumerate(int edge, Predicate<BitSet> consumer, AtomicBoolean stopped, AtomicLong numberOfDags) {
+            if (stopped.get()) {
+                return false;
+            }
+
+            if (edge == firstNodes.length) {
+                numberOfDags.incrementAndGet();
+                if (!consumer.test((BitSet) this.orientation.clone())) {
+                    stopped.set(true);
+                    return false;
+                }
+
+                return true;
+            }
+
+            for (boolean reversed : new boolean[] {false, true}) {
+                if (this.orient(edge, reversed)) {
+                    boolean isRunning = this.enumerate(edge + 1, consumer, stopped, numberOfDags);
+                    this.unorient(edge, reversed);
+                    if (!isRunning) {
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        }
+
+
+        /**
+         * Collect the valid orientations of the undirected edges before the given depth.
+         */
+        private void collectPrefixes(int edge, int depth, List<BitSet> prefixes) {
+            if (edge == depth) {
+                prefixes.add((BitSet) this.orientation.clone());
+                return;
+            }
+
+            for (boolean reversed : new boolean[] {false, true}) {
+                if (this.orient(edge, reversed)) {
+                    this.collectPrefixes(edge + 1, depth, prefixes);
+                    this.unorient(edge, reversed);
+                }
+            }
+        }
+
+
+        /**
+         * Orient the given undirected edge if it doesn't create a cycle or a collider that isn't in the pattern.
+         *
+         * @return true if the edge was oriented; otherwise false.
+         */
+        private boolean orient(int edge, boolean reversed) {
+            int parent = reversed ? secondNodes[edge] : firstNodes[edge];
+            int child = reversed ? firstNodes[edge] : secondNodes[edge];
+
+            // Any other parent of the child that isn't adjacent to the new parent would form a new collider.
+            BitSet otherParents = (BitSet) this.parents[child].clone();
+            otherParents.andNot(adjacencies[parent]);
+            otherParents.clear(parent);
+            if (!otherParents.isEmpty() || this.isAncestor(child, parent)) {
+                return false;
+            }
+
+            this.parents[child].set(parent);
+            this.orientation.set(edge, reversed);
+
+            return true;
+        }
+
+
+        private void unorient(int edge, boolean reversed) {
+            int parent = reversed ? secondNodes[edge] : firstNodes[edge];
+            int child = reversed ? firstNodes[edge] : secondNodes[edge];
+            this.parents[child].clear(parent);
+            this.orientation.clear(edge);
+        }
+
+
+        /**
+         * Check if the given ancestor can reach the given node through the edges oriented so far.
+         */
+        private boolean isAncestor(int ancestor, int node) {
+            BitSet visited = new BitSet(nodes.size());
+            List<Integer> stack = new ArrayList<Integer>();
+            stack.add(node);
+            visited.set(node);
+            while (!stack.isEmpty()) {
+                int current = stack.remove(stack.size() - 1);
+                if (current == ancestor) {
+                    return true;
+                }
+
+                BitSet currentParents = this.parents[current];
+                for (int parent = currentParents.nextSetBit(0); parent >= 0; parent = currentParents.nextSetBit(parent + 1)) {
+                    if (!visited.get(parent)) {
+                        visited.set(parent);
+                        stack.add(parent);
+                    }
+                }
+            }
+
+            return false;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package ca.sfu.cs.factorbase.search;
+
+/**
+ * Class to limit how long a structure search can run for and to keep track of how much of the search was completed
+ * before the limit was reached.
+ * <p>
+ * Once the budget runs out, the search should stop at the next opportunity and return the best graph found so far.
+ * </p>
+ */
+public class SearchBudget {
+    private long timeLimit;
+    private long maxScoreEvaluations;
+    private long startTime;
+    private long endTime = -1;
+    private long numberOfScoreEvaluations = 0;
+    private long numberOfPrunedCandidates = 0;
+    private int numberOfInsertions = 0;
+    private int numberOfDeletions = 0;
+    private boolean forwardSearchCompleted = false;
+    private boolean backwardSearchCompleted = false;
+    private boolean exhausted = false;
+    private boolean started = false;
+    private double score = Double.NaN;
+
+
+    /**
+     * Create a budget for a structure search.
+     *
+     * @param timeLimit - the maximum number of milliseconds that the search can run for, 0 for no limit.
+     * @param maxScoreEvaluations - the maximum number of local scores that the search can compute, 0 for no limit.
+     */
+    public SearchBudget(long timeLimit, long maxScoreEvaluations) {
+        this.timeLimit = timeLimit;
+        this.maxScoreEvaluations = maxScoreEvaluations;
+        this.startTime = System.currentTimeMillis();
+    }
+
+
+    /**
+     * Create a new budget with the same limits as this one, for a search that runs alongside the search using this
+     * budget.
+     *
+     * @return a new budget with the same limits as this one.
+     */
+    public SearchBudget copyLimits() {
+        return new SearchBudget(this.timeLimit, this.maxScoreEvaluations);
+    }
+
+
+    /**
+     * Start the clock for the search.  If the budget is shared by searches that are run one after another, the clock
+     * keeps running from the start of the first search.
+     */
+    public void start() {
+        if (!this.started) {
+            this.startTime = System.currentTimeMillis();
+            this.started = true;
+        }
+
+        this.endTime = -1;
+    }
+
+
+    /**
+     * Stop the clock for the search.
+     */
+    public void stop() {
+        this.endTime = System.currentTimeMillis();
+    }
+
+
+    /**
+     * Check if the search has used up its budget.
+     *
+     * @return true if the search should stop; otherwise false.
+     */
+    public boolean isExhausted() {
+        if (!this.exhausted) {
+            this.exhausted =
+                (this.timeLimit > 0 && this.getElapsedTime() >= this.timeLimit) ||
+                (this.maxScoreEvaluations > 0 && this.numberOfScoreEvaluations >= this.maxScoreEvaluations);
+        }
+
+        return this.exhausted;
+    }
+
+
+    /**
+     * Record that a local score was computed.
+     */
+    public void recordScoreEvaluation() {
+        this.numberOfScoreEvaluations++;
+    }
+
+
+    /**
+     * Record that a candidate was skipped because an upper bound on its score showed that it couldn't improve the
+     * score.
+     */
+    public void recordPrunedCandidate() {
+        this.numberOfPrunedCandidates++;
+    }
+
+
+    /**
+     * Record that an edge was inserted by the forward search.
+     */
+    public void recordInsertion() {
+        this.numberOfInsertions++;
+    }
+
+
+    /**
+     * Record that an edge was deleted by the backward search.
+     */
+    public void recordDeletion() {
+        this.numberOfDeletions++;
+    }
+
+
+    /**
+     * Record that the forward search ran until there were no more edges worth inserting.
+     */
+    public void recordForwardSearchCompleted() {
+        this.forwardSearchCompleted = true;
+    }
+
+
+    /**
+     * Record that the backward search ran until there were no more edges worth deleting.
+     */
+    public void recordBackwardSearchCompleted() {
+        this.backwardSearchCompleted = true;
+    }
+
+
+    /**
+     * Record the score of the graph returned by the search.
+     *
+     * @param score - the score of the graph returned by the search.
+     */
+    public void recordScore(double score) {
+        this.score = score;
+    }
+
+
+    /**
+     * Retrieve the score of the graph returned by the search.
+     *
+     * @return the score of the graph returned by the search, NaN if the search hasn't recorded it.
+     */
+    public double getScore() {
+        return this.score;
+    }
+
+
+    /**
+     * Retrieve the number of milliseconds that the search has been running for.
+     *
+     * @return the number of milliseconds between the start of the search and its end, or now if it hasn't ended.
+     */
+    public long getElapsedTime() {
+        long end = this.endTime < 0 ? System.currentTimeMillis() : this.endTime;
+
+        return end - this.startTime;
+    }
+
+
+    /**
+     * Retrieve the number of local scores computed by the search.
+     *
+     * @return the number of local scores computed by the search.
+     */
+    public long getNumberOfScoreEvaluations() {
+        return this.numberOfScoreEvaluations;
+    }
+
+
+    /**
+     * Retrieve the number of candidates skipped by the search because of the upper bounds on their scores.
+     *
+     * @return the number of candidates skipped by the search because of the upper bounds on their scores.
+     */
+    public long getNumberOfPrunedCandidates() {
+        return this.numberOfPrunedCandidates;
+    }
+
+
+    /**
+     * Indicates whether or not the forward search was completed.
+     *
+     * @return true if the forward search ran until there were no more edges worth inserting; otherwise false.
+     */
+    public boolean isForwardSearchCompleted() {
+        return this.forwardSearchCompleted;
+    }
+
+
+    /**
+     * Indicates whether or not the backward search was completed.
+     *
+     * @return true if the backward search ran until there were no more edges worth deleting; otherwise false.
+     */
+    public boolean isBackwardSearchCompleted() {
+        return this.backwardSearchCompleted;
+    }
+
+
+    /**
+     * Describe how much of the search was completed.
+     *
+     * @return a summary of the progress of the search.
+     */
+    public String getProgress() {
+        return
+            "FES " + (this.forwardSearchCompleted ? "completed" : "stopped") + " after " + this.numberOfInsertions +
+            " insertion(s), BES " + (this.backwardSearchCompleted ? "completed" : "stopped") + " after " +
+            this.numberOfDeletions + " deletion(s), " + this.numberOfScoreEvaluations + " score evaluation(s), " +
+            this.numberOfPrunedCandidates + " candidate(s) pruned in " + this.getElapsedTime() + "ms, score " +
+            this.score;
+    }
+}
@@ -0,0 +1,36 @@
+package ca.sfu.cs.factorbase.search;
+
+
+/**
+ * enum to select the structure search algorithm used to learn the graph for each lattice point.
+ */
+public enum SearchEngine {
+    GES,
+    HillClimbing;
+
+    private static final String GREEDY_EQUIVALENCE_SEARCH = "0";
+    private static final String HILL_CLIMBING = "1";
+
+
+    /**
+     * Determine what structure search algorithm should be used based on the given configuration file setting.
+     *
+     * @param configurationValue - the structure search setting given in the configuration file.
+     * @return {@code SearchEngine} that has been set in the configuration file.
+     */
+    public static SearchEngine determineEngine(String configurationValue) {
+        SearchEngine engine;
+        switch (configurationValue) {
+        case GREEDY_EQUIVALENCE_SEARCH:
+            engine = GES;
+            break;
+        case HILL_CLIMBING:
+            engine = HillClimbing;
+            break;
+        default:
+            engine = null;
+        }
+
+        return engine;
+    }
+}
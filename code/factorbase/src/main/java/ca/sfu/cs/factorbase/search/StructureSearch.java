@@ -0,0 +1,57 @@
+package ca.sfu.cs.factorbase.search;
+
+import ca.sfu.cs.factorbase.exception.ScoringException;
+
+import edu.cmu.tetrad.data.Knowledge;
+import edu.cmu.tetrad.graph.Graph;
+
+/**
+ * Interface for the algorithms that search for the structure of a Bayesian network, so that the search used to learn
+ * the graph for each lattice point can be swapped without changing how the graph is learned.
+ */
+public interface StructureSearch {
+    /**
+     * Sets the background knowledge.
+     *
+     * @param knowledge - the knowledge object, specifying forbidden and required edges.
+     */
+    void setKnowledge(Knowledge knowledge);
+
+
+    /**
+     * Sets the limits on how long the search can run for.  Once the budget runs out, the search stops and returns the
+     * best graph found so far.
+     *
+     * @param searchBudget - the budget for the search, which is also updated with how much of the search was completed.
+     */
+    void setSearchBudget(SearchBudget searchBudget);
+
+
+    /**
+     * Sets the cache to retrieve the local scores from before computing them, and to store the computed local scores
+     * in.
+     *
+     * @param localScoreCache - the cache for the local scores, which should only contain scores computed from the same
+     *                          counts as the data being searched.
+     */
+    void setLocalScoreCache(LocalScoreCache localScoreCache);
+
+
+    /**
+     * Add an edge to the graph that the search starts from.  Edges that are forbidden, or that would create a cycle
+     * with the edges added before them, are ignored.
+     *
+     * @param from - the name of the parent node of the edge.
+     * @param to - the name of the child node of the edge.
+     */
+    void addInitialEdge(String from, String to);
+
+
+    /**
+     * Search for the graph with the best score.
+     *
+     * @return the resulting Pattern or DAG.
+     * @throws ScoringException if an error occurs when trying to compute the score for the graphs being generated.
+     */
+    Graph search() throws ScoringException;
+}
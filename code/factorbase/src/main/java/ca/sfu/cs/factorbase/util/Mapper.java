@@ -9,7 +9,7 @@ import java.util.function.Function;
  * Class related to Map objects used by FactorBase.
  */
 public final class Mapper {
-    private static StringBuilder builder = new StringBuilder();
+    private static final ThreadLocal<StringBuilder> builder = ThreadLocal.withInitial(StringBuilder::new);
 
     /**
      * Private constructor to prevent instantiation of the utility class.
@@ -45,11 +45,12 @@ public final class Mapper {
      * @return a key to retrieve the integer encoding for the variable assignment.
      */
     public static String generateVariableStateKey(String variable, String state) {
-        builder.setLength(0);
-        builder.append(variable);
-        builder.append(" = ");
-        builder.append(state);
-        return builder.toString();
+        StringBuilder keyBuilder = builder.get();
+        keyBuilder.setLength(0);
+        keyBuilder.append(variable);
+        keyBuilder.append(" = ");
+        keyBuilder.append(state);
+        return keyBuilder.toString();
     }
 
 
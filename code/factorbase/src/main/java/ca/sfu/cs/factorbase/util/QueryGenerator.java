@@ -12,8 +12,8 @@ public final class QueryGenerator {
 
     private static final String JOIN_ON_STRING_INCLUDE_NULL = "({0}.{2} = {1}.{2} OR {0}.{2} IS NULL AND {1}.{2} IS NULL)";
     private static final String JOIN_ON_STRING_NO_NULL = "{0}.{2} = {1}.{2}";
-    private static final StringBuilder builder = new StringBuilder();
-    private static final StringBuilder escapedBuilder = new StringBuilder();
+    private static final ThreadLocal<StringBuilder> queryBuilder = ThreadLocal.withInitial(StringBuilder::new);
+    private static final ThreadLocal<StringBuilder> escapedQueryBuilder = ThreadLocal.withInitial(StringBuilder::new);
 
     /**
      * Private constructor to prevent instantiation of the utility class.
@@ -38,6 +38,7 @@ public final class QueryGenerator {
             joinString = JOIN_ON_STRING_INCLUDE_NULL;
         }
 
+        StringBuilder escapedBuilder = escapedQueryBuilder.get();
         for (String column : columns) {
             escapedBuilder.setLength(0);
             escapedBuilder.append("`").append(column).append("`");
@@ -66,6 +67,7 @@ public final class QueryGenerator {
      */
     public static String createDifferenceQuery(String columnsA, List<String> columnsB, String tableA, String tableB) {
         String whereClauseJoin = constructWhereClauseJoin(columnsB, tableA, tableB, true);
+        StringBuilder builder = queryBuilder.get();
         builder.setLength(0);
         builder.append("SELECT ").append(columnsA).append(" ");
         builder.append("FROM ").append(tableA).append(" ");
@@ -89,6 +91,7 @@ public final class QueryGenerator {
      *         match any of the values in {@code inItems}.
      */
     public static String createSimpleInQuery(String tableName, String columnName, List<String> inItems) {
+        StringBuilder builder = queryBuilder.get();
         builder.setLength(0);
         builder.append("SELECT * ");
         builder.append("FROM ").append(tableName).append(" ");
@@ -132,6 +135,7 @@ public final class QueryGenerator {
         String subtractionColumn,
         List<String> joinOnColumns
     ) {
+        StringBuilder builder = queryBuilder.get();
         builder.setLength(0);
         builder.append("SELECT ");
         builder.append("SUBQUERY").append(".").append(subtractionColumn);
@@ -142,6 +146,7 @@ public final class QueryGenerator {
         builder.append(") AS ").append(subtractionColumn);
         StringJoiner csv = new StringJoiner(", ");
 
+        StringBuilder escapedBuilder = escapedQueryBuilder.get();
         for (String column : joinOnColumns) {
             escapedBuilder.setLength(0);
             escapedBuilder.append("SUBQUERY").append(".`").append(column).append("`");
@@ -170,6 +175,7 @@ public final class QueryGenerator {
      * @return a String that will insert the given variables into the specified table.
      */
     public static String createSimpleExtendedInsertQuery(String table, String child, Set<String> parents) {
+        StringBuilder builder = queryBuilder.get();
         builder.setLength(0);
         builder.append("INSERT INTO ");
         builder.append(table);
@@ -200,6 +206,7 @@ public final class QueryGenerator {
      * @return a String that will remove all the data from the specified table.
      */
     public static String createTruncateQuery(String table) {
+        StringBuilder builder = queryBuilder.get();
         builder.setLength(0);
         builder.append("TRUNCATE ");
         builder.append(table);
@@ -228,6 +235,7 @@ public final class QueryGenerator {
         String entryType,
         boolean selectDistinct
     ) {
+        StringBuilder builder = queryBuilder.get();
         builder.setLength(0);
         if (selectDistinct) {
             builder.append("SELECT DISTINCT Entries ");
@@ -259,6 +267,7 @@ public final class QueryGenerator {
      * @return a MySQL CREATE TABLE String that generates a table using the provided SELECT query.
      */
     public static String createSimpleCreateTableQuery(String tableName, String storageEngine, String selectQuery) {
+        StringBuilder builder = queryBuilder.get();
         builder.setLength(0);
         builder.append("CREATE TABLE `").append(tableName).append("` ENGINE = ").append(storageEngine).append(" AS ");
         builder.append(selectQuery);
@@ -277,6 +286,7 @@ public final class QueryGenerator {
      * @return a MySQL CREATE VIEW String that generates a view using the provided SELECT query.
      */
     public static String createSimpleCreateViewQuery(String viewName, String selectQuery) {
+        StringBuilder builder = queryBuilder.get();
         builder.setLength(0);
         builder.append("CREATE VIEW ").append(viewName).append(" AS ");
         builder.append(selectQuery);
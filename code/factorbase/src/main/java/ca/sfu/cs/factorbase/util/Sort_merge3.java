@@ -15,10 +15,13 @@ package ca.sfu.cs.factorbase.util;
  * try: Financial_std_Training1_db.`operation(trans0)_a_star`
  */
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
 import java.util.logging.Logger;
 
 /**
@@ -27,6 +30,8 @@ import java.util.logging.Logger;
  */
 public class Sort_merge3 {
     private static Logger logger = Logger.getLogger(Sort_merge3.class.getName());
+    private static final int FETCH_SIZE = 10000;
+    private static final int BATCH_SIZE = 10000;
 
 
     /**
@@ -50,24 +55,7 @@ public class Sort_merge3 {
     ) throws SQLException {
         // Ensure that all the table names are escaped before attempting to execute any queries with them.
         table2 = sourceDatabaseName + ".`" + table2 + "`";
-
-        Statement st1 = conn.createStatement();
-
-        ArrayList<String> joinOnList = new ArrayList<String>();
-
-        /**
-         * Get the JOIN ON columns using TABLE2.
-         */
-        ResultSet rst = st1.executeQuery(
-            "SHOW COLUMNS FROM " + table2 +
-            "WHERE field <> \"MULT\";"
-        );
-
-        while(rst.next()) {
-            joinOnList.add(rst.getString(1));
-        }
-        rst.close();
-        st1.close();
+        List<String> joinOnList = getJoinOnColumns(conn, table2);
 
         String selectQuery;
         if (joinOnList.size() > 0) {
@@ -81,4 +69,268 @@ public class Sort_merge3 {
 
         return selectQuery;
     }
-}
\ No newline at end of file
+
+
+    /**
+     * Subtract the MULT column of the rows in {@code table1Subquery} by the MULT column of the matching row in
+     * {@code table2}, storing the rows with a positive MULT in a new table.
+     * <p>
+     * Unlike {@link #sort_merge(Connection, String, String, String)}, the subtraction is done by streaming both tables,
+     * ordered by their join columns, through server side cursors and merging them in a single pass, which avoids
+     * relying on the plan chosen by MySQL for the large join.  The rows are compared using the binary value of their
+     * join columns, and rows with a NULL join column never match, which is the same as the JOIN used by
+     * {@link #sort_merge(Connection, String, String, String)} as long as the matching values are stored identically in
+     * both tables.
+     * </p>
+     * <p>
+     * Note: The given connection should be created with the "useCursorFetch" property enabled; otherwise the rows of
+     *       {@code table1Subquery} are read into memory at once.
+     * </p>
+     *
+     * @param conn - connection to the database containing {@code table1} and {@code table2}.
+     * @param sourceDatabaseName - the name of the database containing {@code table1} and {@code table2}.
+     * @param table1Subquery - a subquery that generates a table to have its values in the MULT column subtracted by
+     *                         the MULT column in {@code table2}.
+     * @param table2 - the table to match rows with in {@code table1} and subtract by the values found in the
+     *                 MULT column.
+     * @param outputTable - the name of the table to create in {@code sourceDatabaseName} for the result.
+     * @param storageEngine - the storage engine to use for {@code outputTable}.
+     * @return the number of rows inserted into {@code outputTable}.
+     * @throws SQLException if there are issues executing the queries.
+     */
+    public static long sort_merge_to_table(
+        Connection conn,
+        String sourceDatabaseName,
+        String table1Subquery,
+        String table2,
+        String outputTable,
+        String storageEngine
+    ) throws SQLException {
+        table2 = sourceDatabaseName + ".`" + table2 + "`";
+        String escapedOutputTable = sourceDatabaseName + ".`" + outputTable + "`";
+        List<String> joinOnList = getJoinOnColumns(conn, table2);
+
+        // The binary value of each join column is also selected so that the rows can be compared in the same order as
+        // they are sorted by MySQL.
+        StringJoiner selectColumns = new StringJoiner(", ");
+        StringJoiner sortColumns = new StringJoiner(", ");
+        StringJoiner orderByColumns = new StringJoiner(", ");
+        StringJoiner placeholders = new StringJoiner(", ");
+        selectColumns.add("`MULT`");
+        placeholders.add("?");
+        for (int index = 0; index < joinOnList.size(); index++) {
+            String column = joinOnList.get(index);
+            selectColumns.add("`" + column + "`");
+            sortColumns.add("CAST(`" + column + "` AS BINARY) AS `SORT_KEY" + index + "`");
+            orderByColumns.add("`SORT_KEY" + index + "`");
+            placeholders.add("?");
+        }
+
+        String readColumns = selectColumns.toString();
+        String orderByClause = "";
+        if (orderByColumns.length() != 0) {
+            readColumns += ", " + sortColumns.toString();
+            orderByClause = " ORDER BY " + orderByColumns.toString();
+        }
+
+        // Create the output table with the same columns as table2.
+        try (Statement statement = conn.createStatement()) {
+            statement.execute(
+                "CREATE TABLE " + escapedOutputTable + " ENGINE = " + storageEngine + " AS " +
+                "SELECT " + selectColumns.toString() + " " +
+                "FROM " + table2 + " " +
+                "LIMIT 0;"
+            );
+        }
+
+        long numberOfRows = 0;
+        try (
+            Statement table1Statement = createCursorStatement(conn);
+            Statement table2Statement = createCursorStatement(conn);
+            ResultSet table1Results = table1Statement.executeQuery(
+                "SELECT " + readColumns + " " +
+                "FROM (" + table1Subquery + ") AS SUBQUERY" +
+                orderByClause
+            );
+            ResultSet table2Results = table2Statement.executeQuery(
+                "SELECT " + readColumns + " " +
+                "FROM " + table2 +
+                orderByClause
+            );
+            PreparedStatement insertStatement = conn.prepareStatement(
+                "INSERT INTO " + escapedOutputTable + " (" + selectColumns.toString() + ") " +
+                "VALUES (" + placeholders.toString() + ");"
+            )
+        ) {
+            int numberOfColumns = joinOnList.size();
+            boolean hasTable2Row = table2Results.next();
+            int batchSize = 0;
+
+            // for loop to merge each row of table1 with the matching row of table2, if there is one.
+            while (table1Results.next()) {
+                // Skip the rows of table2 that come before the current row of table1.
+                int comparison = -1;
+                while (hasTable2Row) {
+                    comparison = compareJoinColumns(table1Results, table2Results, numberOfColumns);
+                    if (comparison <= 0) {
+                        break;
+                    }
+
+                    hasTable2Row = table2Results.next();
+                }
+
+                long mult = table1Results.getLong(1);
+                if (hasTable2Row && comparison == 0 && !hasNullJoinColumn(table1Results, numberOfColumns)) {
+                    mult -= table2Results.getLong(1);
+                }
+
+                if (mult > 0) {
+                    insertStatement.setLong(1, mult);
+                    for (int columnIndex = 2; columnIndex <= numberOfColumns + 1; columnIndex++) {
+                        insertStatement.setString(columnIndex, table1Results.getString(columnIndex));
+                    }
+
+                    insertStatement.addBatch();
+                    batchSize++;
+                    numberOfRows++;
+                    if (batchSize == BATCH_SIZE) {
+                        insertStatement.executeBatch();
+                        batchSize = 0;
+                    }
+                }
+            }
+
+            if (batchSize != 0) {
+                insertStatement.executeBatch();
+            }
+        }
+
+        logger.fine("Sort merged " + numberOfRows + " rows into " + escapedOutputTable + ".");
+        return numberOfRows;
+    }
+
+
+    /**
+     * Estimate the number of rows returned by the given query using the plan chosen by MySQL.
+     *
+     * @param conn - connection to the database that the query should be executed on.
+     * @param query - the SELECT query to estimate the number of rows for.
+     * @return the estimated number of rows returned by the given query.
+     * @throws SQLException if there are issues executing the queries.
+     */
+    public static double estimateRowCount(Connection conn, String query) throws SQLException {
+        double numberOfRows = 1;
+        try (
+            Statement statement = conn.createStatement();
+            ResultSet results = statement.executeQuery("EXPLAIN " + query)
+        ) {
+            while (results.next()) {
+                numberOfRows *= Math.max(1, results.getLong("rows")) * results.getDouble("filtered") / 100;
+            }
+        }
+
+        return numberOfRows;
+    }
+
+
+    /**
+     * Retrieve the columns of the given table, other than the MULT column.
+     *
+     * @param conn - connection to the database containing the given table.
+     * @param table - the escaped name of the table to retrieve the columns for.
+     * @return the columns of the given table, other than the MULT column.
+     * @throws SQLException if there are issues executing the queries.
+     */
+    private static List<String> getJoinOnColumns(Connection conn, String table) throws SQLException {
+        ArrayList<String> joinOnList = new ArrayList<String>();
+        try (
+            Statement statement = conn.createStatement();
+            ResultSet results = statement.executeQuery(
+                "SHOW COLUMNS FROM " + table +
+                "WHERE field <> \"MULT\";"
+            )
+        ) {
+            while (results.next()) {
+                joinOnList.add(results.getString(1));
+            }
+        }
+
+        return joinOnList;
+    }
+
+
+    /**
+     * Create a statement that fetches the rows of its results from the server in chunks.
+     *
+     * @param conn - connection to create the statement for.
+     * @return a forward only statement that fetches {@code FETCH_SIZE} rows at a time.
+     * @throws SQLException if there are issues creating the statement.
+     */
+    private static Statement createCursorStatement(Connection conn) throws SQLException {
+        Statement statement = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(FETCH_SIZE);
+        return statement;
+    }
+
+
+    /**
+     * Compare the join columns of the current rows of the given results, in the same order as
+     * "ORDER BY CAST(column AS BINARY)", using the binary values selected after the MULT and join columns.
+     *
+     * @param results1 - the results positioned on the first row to compare.
+     * @param results2 - the results positioned on the second row to compare.
+     * @param numberOfColumns - the number of join columns.
+     * @return a negative number, zero or a positive number if the row of {@code results1} comes before, is the same as
+     *         or comes after the row of {@code results2}.
+     * @throws SQLException if there are issues reading the results.
+     */
+    private static int compareJoinColumns(ResultSet results1, ResultSet results2, int numberOfColumns) throws SQLException {
+        for (int columnIndex = numberOfColumns + 2; columnIndex <= 2 * numberOfColumns + 1; columnIndex++) {
+            byte[] value1 = results1.getBytes(columnIndex);
+            byte[] value2 = results2.getBytes(columnIndex);
+
+            // NULL values come first.
+            if (value1 == null || value2 == null) {
+                if (value1 != value2) {
+                    return value1 == null ? -1 : 1;
+                }
+
+                continue;
+            }
+
+            int length = Math.min(value1.length, value2.length);
+            for (int index = 0; index < length; index++) {
+                int comparison = Integer.compare(value1[index] & 0xFF, value2[index] & 0xFF);
+                if (comparison != 0) {
+                    return comparison;
+                }
+            }
+
+            if (value1.length != value2.length) {
+                return Integer.compare(value1.length, value2.length);
+            }
+        }
+
+        return 0;
+    }
+
+
+    /**
+     * Check if any of the join columns of the current row of the given results is NULL.
+     *
+     * @param results - the results positioned on the row to check.
+     * @param numberOfColumns - the number of join columns, which start at the second column.
+     * @return true if any of the join columns is NULL; otherwise false.
+     * @throws SQLException if there are issues reading the results.
+     */
+    private static boolean hasNullJoinColumn(ResultSet results, int numberOfColumns) throws SQLException {
+        for (int columnIndex = 2; columnIndex <= numberOfColumns + 1; columnIndex++) {
+            results.getBytes(columnIndex);
+            if (results.wasNull()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -42,6 +42,9 @@ import ca.sfu.cs.factorbase.exception.ScoringException;
 import ca.sfu.cs.factorbase.search.BDeuScore;
 import ca.sfu.cs.factorbase.search.BDeuScoreOnDemand;
 import ca.sfu.cs.factorbase.search.DiscreteLocalScore;
+import ca.sfu.cs.factorbase.search.LocalScoreCache;
+import ca.sfu.cs.factorbase.search.SearchBudget;
+import ca.sfu.cs.factorbase.search.StructureSearch;
 
 import edu.cmu.tetrad.data.Knowledge;
 import edu.cmu.tetrad.data.KnowledgeEdge;
@@ -63,7 +66,7 @@ import edu.cmu.tetrad.graph.Node;
  * @author Joseph Ramsey, Revisions 10/2005
  */
 
-public class GesCT {
+public class GesCT implements StructureSearch {
 
     /**
      * Specification of forbidden and required edges.
@@ -97,9 +100,20 @@ public class GesCT {
     private DiscreteLocalScore discreteScore;
 
     /**
-     * The top n graphs found by the algorithm, where n is <code>numPatternsToStore</code>.
+     * The steps of the trajectory with the top n scores found by the algorithm, where n is
+     * <code>numPatternsToStore</code>.  The graphs are only reconstructed when they are requested.
      */
-    private SortedSet<ScoredGraph> topGraphs = new TreeSet<ScoredGraph>();
+    private SortedSet<TrajectoryStep> topSteps = new TreeSet<TrajectoryStep>();
+
+    /**
+     * The graph that the search started from, which the top graphs are reconstructed from.
+     */
+    private Graph startingGraph;
+
+    /**
+     * The insertions and deletions made by the search, in the order they were made.
+     */
+    private List<GraphOperation> trajectory = new ArrayList<GraphOperation>();
 
     /**
      * The number of top patterns to store.
@@ -114,6 +128,21 @@ public class GesCT {
     private Map<Node, Integer> nodesHash;
     private boolean storeGraphs = true;
 
+    /**
+     * Edges to add to the graph before starting the search, e.g. the edges learned for a smaller lattice point.
+     */
+    private List<KnowledgeEdge> initialEdges = new ArrayList<KnowledgeEdge>();
+
+    /**
+     * Cache of the local scores to reuse across searches, null if the scores shouldn't be shared.
+     */
+    private LocalScoreCache localScoreCache;
+
+    /**
+     * Limits on how long the search can run for, which also tracks how much of the search was completed.
+     */
+    private SearchBudget searchBudget = new SearchBudget(0, 0);
+
 
     //===========================CONSTRUCTORS=============================//
 
@@ -139,6 +168,26 @@ public class GesCT {
         }
     }
 
+    /**
+     * Create a GesCT using a contingency table that has already been generated and the given score, e.g. to share the
+     * summaries of the CT tables between searches using different hyperparameters.
+     *
+     * @param ctTableGenerator - {@code ContingencyTableGenerator} that extracts information from the contingency table
+     *                           of interest.
+     * @param discreteScore - the score to compute the local scores of the families of nodes with.
+     */
+    public GesCT(ContingencyTableGenerator ctTableGenerator, DiscreteLocalScore discreteScore) {
+        List<String> varNames = ctTableGenerator.getVariableNames();
+        this.variables = varNames.stream().map(name -> new GraphNode(name)).collect(Collectors.toList());
+        this.discrete = ctTableGenerator.isDiscrete();
+
+        if (!isDiscrete()) {
+            throw new UnsupportedOperationException("Not Implemented Yet!");
+        }
+
+        this.discreteScore = discreteScore;
+    }
+
     /**
      * Create a GesCT creating contingency tables as needed using the given FactorBaseDataBase.
      *
@@ -173,12 +222,14 @@ public class GesCT {
 
     /**
      * Greedy equivalence search: Start from the empty graph, add edges till model is significant. Then start deleting
-     * edges till a minimum is achieved.
+     * edges till a minimum is achieved.  If the search budget runs out, the search stops and the best Pattern found so
+     * far is returned.
      *
      * @return the resulting Pattern.
      * @throws ScoringException if an error occurs when trying to compute the score for the graphs being generated.
      */
     public Graph search() throws ScoringException {
+        this.searchBudget.start();
         Graph graph = new EdgeListGraph(getVariables());
 
         scoreHash = new WeakHashMap<Node, Map<Set<Node>, Double>>();
@@ -187,8 +238,14 @@ public class GesCT {
             scoreHash.put(node, new HashMap<Set<Node>, Double>());
         }
 
+        addInitialEdges(graph);
         addRequiredEdges(graph);
 
+        // Start the search from the pattern of the initial edges instead of the empty graph.
+        if (!this.initialEdges.isEmpty()) {
+            rebuildPattern(graph);
+        }
+
         // Method 1-- original.
 
         // Don't need to score the original graph; the BIC scores all up to a constant.
@@ -196,13 +253,18 @@ public class GesCT {
         double score = scoreGraph(graph);
         //Oct 30, bug? Arrow implies non-ancestor
         //score=0;
-        storeGraph(new EdgeListGraph(graph), score);
+        startTrajectory(graph, score);
 
        // System.out.println("######## finished the storing");
         // Do forward search.
         score = fes(graph, score);
-        // Do backward search.
-        score = bes(graph, score);
+        // Do backward search, unless the search budget ran out, in which case the graph is the best one found so far.
+        if (!this.searchBudget.isExhausted()) {
+            score = bes(graph, score);
+        }
+
+        this.searchBudget.recordScore(score);
+        this.searchBudget.stop();
 //zqian
  //       System.out.println("Bes Search is Done, here is  BDeu Score "+ score +"\n");
 //        score = fes(graph, score);
@@ -249,6 +311,97 @@ public class GesCT {
         return storeGraphs;
     }
 
+    /**
+     * Sets whether the top graphs found by the search are kept track of.
+     *
+     * @param storeGraphs - true if the top graphs should be available from {@link #getTopGraphs()}; otherwise false.
+     */
+    public void setStoreGraphs(boolean storeGraphs) {
+        this.storeGraphs = storeGraphs;
+    }
+
+    /**
+     * Retrieve the top n graphs found by the last search, where n is <code>numPatternsToStore</code>.  The graphs are
+     * reconstructed by replaying the insertions and deletions made by the search from the graph it started from.
+     *
+     * @return the top graphs found by the last search, which is empty if the graphs weren't stored.
+     */
+    public SortedSet<ScoredGraph> getTopGraphs() {
+        SortedSet<ScoredGraph> topGraphs = new TreeSet<ScoredGraph>();
+        if (this.startingGraph == null) {
+            return topGraphs;
+        }
+
+        Map<Integer, Double> scores = new HashMap<Integer, Double>();
+        int lastStep = 0;
+        for (TrajectoryStep topStep : this.topSteps) {
+            scores.put(topStep.step, topStep.score);
+            lastStep = Math.max(lastStep, topStep.step);
+        }
+
+        Graph graph = new EdgeListGraph(this.startingGraph);
+        if (scores.containsKey(0)) {
+            topGraphs.add(new ScoredGraph(new EdgeListGraph(graph), scores.get(0)));
+        }
+
+        // for loop to replay the operations of the search up to the last of the top graphs.
+        for (int step = 1; step <= lastStep; step++) {
+            GraphOperation operation = this.trajectory.get(step - 1);
+            if (operation.isInsertion) {
+                insert(operation.x, operation.y, operation.subset, graph, 0, false, operation.bump);
+            } else {
+                delete(operation.x, operation.y, operation.subset, graph, 0, false, operation.bump);
+            }
+
+            rebuildPattern(graph);
+
+            if (scores.containsKey(step)) {
+                topGraphs.add(new ScoredGraph(new EdgeListGraph(graph), scores.get(step)));
+            }
+        }
+
+        return topGraphs;
+    }
+
+    /**
+     * Add an edge to the graph that the search starts from.  Edges that are forbidden, or that would create a cycle
+     * with the edges added before them, are ignored.
+     *
+     * @param from - the name of the parent node of the edge.
+     * @param to - the name of the child node of the edge.
+     */
+    public void addInitialEdge(String from, String to) {
+        this.initialEdges.add(new KnowledgeEdge(from, to));
+    }
+
+    /**
+     * Sets the cache to retrieve the local scores from before computing them, and to store the computed local scores
+     * in.
+     *
+     * @param localScoreCache - the cache for the local scores, which should only contain scores computed from the same
+     *                          counts as the data being searched.
+     */
+    public void setLocalScoreCache(LocalScoreCache localScoreCache) {
+        this.localScoreCache = localScoreCache;
+    }
+
+    /**
+     * Sets the limits on how long the search can run for.  Once the budget runs out, the search stops and returns the
+     * best pattern found so far.
+     *
+     * @param searchBudget - the budget for the search, which is also updated with how much of the search was completed.
+     */
+    public void setSearchBudget(SearchBudget searchBudget) {
+        if (searchBudget == null) {
+            throw new NullPointerException("Search budget must not be null.");
+        }
+        this.searchBudget = searchBudget;
+    }
+
+    public SearchBudget getSearchBudget() {
+        return searchBudget;
+    }
+
 
     //===========================PRIVATE METHODS========================//
 
@@ -276,9 +429,17 @@ public class GesCT {
             nodesHash.put(node, ++index);
         }
 
-        initializeArrowsForward(nodes, graph);
+        if (this.initialEdges.isEmpty()) {
+            initializeArrowsForward(nodes, graph);
+        } else {
+            initializeArrowsForwardFromGraph(nodes, graph);
+        }
 
         while (!sortedArrows.isEmpty()) {
+            if (this.searchBudget.isExhausted()) {
+                return score;
+            }
+
             Arrow arrow = sortedArrows.first();
             sortedArrows.remove(arrow);
 
@@ -311,8 +472,9 @@ public class GesCT {
             score = score + bump;
             insert(x, y, t, graph, score, true, bump);
             rebuildPattern(graph);
+            this.searchBudget.recordInsertion();
 
-            storeGraph(graph, score);
+            storeGraph(new GraphOperation(true, x, y, t, bump), score);
 
             reevaluateFoward(graph, nodes, arrow);
 
@@ -321,6 +483,10 @@ public class GesCT {
             }
         }
 
+        if (!this.searchBudget.isExhausted()) {
+            this.searchBudget.recordForwardSearchCompleted();
+        }
+
         return score;
     }
 
@@ -334,6 +500,10 @@ public class GesCT {
         initializeArrowsBackward(graph);
 
         while (!sortedArrowsBackwards.isEmpty()) {
+            if (this.searchBudget.isExhausted()) {
+                return score;
+            }
+
             Arrow arrow = sortedArrowsBackwards.first();
             sortedArrowsBackwards.remove(arrow);
 
@@ -366,12 +536,17 @@ public class GesCT {
             score = score + bump;
             delete(x, y, h, graph, score, true, bump);
             rebuildPattern(graph);
+            this.searchBudget.recordDeletion();
 
-            storeGraph(graph, score);
+            storeGraph(new GraphOperation(false, x, y, h, bump), score);
 
             reevaluateBackward(graph, nodes, arrow);
         }
 
+        if (!this.searchBudget.isExhausted()) {
+            this.searchBudget.recordBackwardSearchCompleted();
+        }
+
         return score;
     }
 
@@ -379,6 +554,9 @@ public class GesCT {
         Set<Node> empty = Collections.emptySet();
 
         for (int j = 0; j < nodes.size(); j++) {
+            if (this.searchBudget.isExhausted()) {
+                return;
+            }
 
             for (int i = 0; i < nodes.size(); i++) {
                 if (j == i) continue;
@@ -411,6 +589,22 @@ public class GesCT {
 
     }
 
+    /**
+     * Initialize the arrows for a forward search that doesn't start from the empty graph, which only needs to consider
+     * the nodes that aren't adjacent yet.
+     */
+    private void initializeArrowsForwardFromGraph(List<Node> nodes, Graph graph) throws ScoringException {
+        for (int j = 0; j < nodes.size(); j++) {
+            if (this.searchBudget.isExhausted()) {
+                return;
+            }
+
+            for (int i = 0; i < nodes.size(); i++) {
+                calculateArrowsForward(i, j, nodes, graph);
+            }
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private void initializeArrowsBackward(Graph graph) throws ScoringException {
         List<Node> nodes = graph.getNodes();
@@ -419,6 +613,10 @@ public class GesCT {
 
         List<Edge> graphEdges = graph.getEdges();
         for (Edge edge : graphEdges) {
+            if (this.searchBudget.isExhausted()) {
+                return;
+            }
+
             Node _x = edge.getNode1();
             Node _y = edge.getNode2();
 
@@ -636,6 +834,47 @@ public class GesCT {
     }
 
 
+    /**
+     * An insertion or deletion made by the search, which is enough to replay it on the graph it was made on.
+     */
+    private static class GraphOperation {
+        private boolean isInsertion;
+        private Node x;
+        private Node y;
+        private Set<Node> subset;
+        private double bump;
+
+        public GraphOperation(boolean isInsertion, Node x, Node y, Set<Node> subset, double bump) {
+            this.isInsertion = isInsertion;
+            this.x = x;
+            this.y = y;
+            this.subset = new HashSet<Node>(subset);
+            this.bump = bump;
+        }
+    }
+
+    /**
+     * The score of the graph after the given number of operations of the trajectory.
+     */
+    private static class TrajectoryStep implements Comparable<TrajectoryStep> {
+        private int step;
+        private double score;
+
+        public TrajectoryStep(int step, double score) {
+            this.step = step;
+            this.score = score;
+        }
+
+        // Sorting is by score, low to high, and then by step.
+
+        @Override
+        public int compareTo(TrajectoryStep o) {
+            int comparison = Double.compare(score, o.score);
+            return comparison != 0 ? comparison : Integer.compare(step, o.step);
+        }
+    }
+
+
     /**
      * Get all nodes that are connected to Y by an undirected edge and not adjacent to X.
      */
@@ -675,7 +914,9 @@ public class GesCT {
     }
 
     /**
-     * Evaluate the Insert(X, Y, T) operator (Definition 12 from Chickering, 2002).
+     * Evaluate the Insert(X, Y, T) operator (Definition 12 from Chickering, 2002).  If the upper bound on the score of
+     * Y with any superset of its current parents shows that the insert can't be worth doing, the bound on the change
+     * in score is returned without scoring the new parents of Y.
      *
      * @throws ScoringException if an error occurs when trying to compute the score for the graphs being generated.
      */
@@ -688,9 +929,14 @@ public class GesCT {
         Set<Node> set1 = new HashSet<Node>(set2);
         set1.add(x);
 
-        double score = scoreGraphChange(y, set1, set2);
+        double score2 = computeScore(y, set2);
+        double maxBump = computeUpperBound(y, set2) - score2;
+        if (maxBump <= minJump) {
+            this.searchBudget.recordPrunedCandidate();
+            return maxBump;
+        }
 
-        return score;
+        return computeScore(y, set1) - score2;
     }
 
     /**
@@ -784,6 +1030,28 @@ public class GesCT {
 
     //---Background knowledge methods.
 
+    /**
+     * Add the initial edges to the graph, skipping the ones that are forbidden or that would create a cycle.
+     */
+    private void addInitialEdges(Graph graph) {
+        for (KnowledgeEdge initialEdge : this.initialEdges) {
+            Node parent = graph.getNode(initialEdge.getFrom());
+            Node child = graph.getNode(initialEdge.getTo());
+
+            if (parent == null || child == null || graph.isAdjacentTo(parent, child)) {
+                continue;
+            }
+
+            if (getKnowledge().edgeForbidden(parent.getName(), child.getName())) {
+                continue;
+            }
+
+            if (!graph.isAncestorOf(child, parent)) {
+                graph.addDirectedEdge(parent, child);
+            }
+        }
+    }
+
     /**/
     private void addRequiredEdges(Graph graph) {
         for (Iterator<KnowledgeEdge> it =
@@ -1007,13 +1275,39 @@ public class GesCT {
         return score;
     }
 
+    /**
+     * Compute an upper bound on the local score of the given child with any superset of the given parents.
+     *
+     * @throws ScoringException if there is an issue when computing the upper bound.
+     */
+    private double computeUpperBound(Node child, Set<Node> parents) throws ScoringException {
+        Set<String> parentNames = parents.stream().map(node -> node.getName()).collect(Collectors.toSet());
+        if (this.localScoreCache == null) {
+            return getDiscreteScore().localScoreUpperBound(child.getName(), parentNames);
+        }
+
+        return this.localScoreCache.getUpperBound(getDiscreteScore(), child.getName(), parentNames);
+    }
+
     /**
      * Compute the local BDeu score of (i, parents(i)). See (Chickering, 2002).
      *
      * @throws ScoringException if there is an issue when computing the score.
      */
     private double localDiscreteScore(String child, Set<String> parents) throws ScoringException {
-        return getDiscreteScore().localScore(child, parents);
+        if (this.localScoreCache == null) {
+            this.searchBudget.recordScoreEvaluation();
+            return getDiscreteScore().localScore(child, parents);
+        }
+
+        Double score = this.localScoreCache.get(child, parents);
+        if (score == null) {
+            this.searchBudget.recordScoreEvaluation();
+            score = getDiscreteScore().localScore(child, parents);
+            this.localScoreCache.put(child, parents, score, getDiscreteScore().localScoreUpperBound(child, parents));
+        }
+
+        return score;
     }
 
     private List<Node> getVariables() {
@@ -1025,22 +1319,35 @@ public class GesCT {
     }
 
 
+    /**
+     * Start recording the trajectory of the search from the given graph, which is the only graph that is copied.
+     */
+    private void startTrajectory(Graph graph, double score) {
+        this.topSteps.clear();
+        this.trajectory.clear();
+        this.startingGraph = null;
+
+        if (!isStoreGraphs()) return;
+
+        this.startingGraph = new EdgeListGraph(graph);
+        storeStep(0, score);
+    }
+
     // store top N graphs based on score , zqian
-    private void storeGraph(Graph graph, double score) {
+    private void storeGraph(GraphOperation operation, double score) {
         if (!isStoreGraphs()) return;
 
-        if (topGraphs.isEmpty() || score > topGraphs.first().getScore()) { // compare with the lowest score
-            //Oct 30, bug? Arrow implies non-ancestor
-            Graph graphCopy = new EdgeListGraph(graph);
+        // Every operation is logged so that the graphs after it can be replayed.
+        this.trajectory.add(operation);
+        storeStep(this.trajectory.size(), score);
+    }
 
-            //System.out.println("Storing " + score + " " + graphCopy);
-            if (topGraphs.size() > getNumPatternsToStore()) {  //should also check the size  before adding
-                topGraphs.remove(topGraphs.first());
-            }
-            topGraphs.add(new ScoredGraph(graphCopy, score));
+    private void storeStep(int step, double score) {
+        if (topSteps.isEmpty() || score > topSteps.first().score) { // compare with the lowest score
+            topSteps.add(new TrajectoryStep(step, score));
 
-            if (topGraphs.size() > getNumPatternsToStore()) {  //should also check the size  before adding 
-                topGraphs.remove(topGraphs.first());
+            if (topSteps.size() > getNumPatternsToStore()) {
+                topSteps.remove(topSteps.first());
             }
         }
     }
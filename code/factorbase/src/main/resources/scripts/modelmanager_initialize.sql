@@ -54,6 +54,49 @@ CREATE VIEW Final_Path_BayesNets_view AS
         );
 
 
+/**
+ * Create tables to store the fraction of the bootstrap replicates whose learned Bayes Net contains each edge when the
+ * BootstrapReplicates setting is used.
+ */
+CREATE TABLE Entity_BayesNets_Frequencies (
+    pvid VARCHAR(65) NOT NULL,
+    child VARCHAR(131) NOT NULL,
+    parent VARCHAR(131) NOT NULL,
+    frequency DOUBLE NOT NULL,
+    PRIMARY KEY (pvid, child, parent)
+);
+
+CREATE TABLE Path_BayesNets_Frequencies (
+    Rchain VARCHAR(255) NOT NULL,
+    child VARCHAR(197) NOT NULL,
+    parent VARCHAR(197) NOT NULL,
+    frequency DOUBLE NOT NULL,
+    PRIMARY KEY (Rchain, child, parent)
+);
+
+
+/**
+ * Create tables to store the Bayes Nets and their scores learned for each setting of the BDeu hyperparameters when
+ * the HyperparameterGrid setting is used.
+ */
+CREATE TABLE Hyperparameter_BayesNets (
+    id VARCHAR(255) NOT NULL,
+    samplePrior DOUBLE NOT NULL,
+    structurePrior DOUBLE NOT NULL,
+    child VARCHAR(197) NOT NULL,
+    parent VARCHAR(197) NOT NULL,
+    PRIMARY KEY (id, samplePrior, structurePrior, child, parent)
+);
+
+CREATE TABLE Hyperparameter_Scores (
+    id VARCHAR(255) NOT NULL,
+    samplePrior DOUBLE NOT NULL,
+    structurePrior DOUBLE NOT NULL,
+    score DOUBLE,
+    PRIMARY KEY (id, samplePrior, structurePrior)
+);
+
+
 /**
  * Prepare output view with longest rchain only.
  */
@@ -0,0 +1,123 @@
+package ca.sfu.cs.factorbase.data;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import ca.sfu.cs.factorbase.exception.DataExtractionException;
+
+/**
+ * Tests for the file ContingencyTableGenerator.java.
+ */
+public class ContingencyTableGeneratorTest {
+
+    private static final int CHILD_INDEX = 1; // popularity(prof0).
+    private static final int PARENT_INDEX = 2; // teachingability(prof0).
+    private static final int NUMBER_OF_STATES = 2;
+
+    @Test
+    public void resample_KeepsTotalAndSupport_WhenSmallCounts() throws DataExtractionException {
+        ContingencyTableGenerator ctGenerator = createInstance("inputfiles/prof0.tsv");
+        long[] counts = getCounts(ctGenerator);
+        SplittableRandom random = new SplittableRandom(0);
+
+        // for loop to check many replicates, since some rows aren't drawn in each replicate.
+        for (int replicate = 0; replicate < 1000; replicate++) {
+            long[] resampledCounts = getCounts(ctGenerator.resample(random));
+            assertThat(Arrays.stream(resampledCounts).sum(), equalTo(Arrays.stream(counts).sum()));
+            for (int index = 0; index < counts.length; index++) {
+                if (counts[index] == 0) {
+                    assertThat(resampledCounts[index], equalTo(0L));
+                }
+            }
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void resample_KeepsTotalAndSupport_WhenLargeCounts() throws DataExtractionException {
+        ContingencyTableGenerator ctGenerator = createInstance("inputfiles/prof0_large_counts.tsv");
+        long[] counts = getCounts(ctGenerator);
+        SplittableRandom random = new SplittableRandom(0);
+
+        // Drawing each of the 6 billion groundings separately would time out.
+        for (int replicate = 0; replicate < 100; replicate++) {
+            long[] resampledCounts = getCounts(ctGenerator.resample(random));
+            assertThat(Arrays.stream(resampledCounts).sum(), equalTo(6000000000L));
+            for (int index = 0; index < counts.length; index++) {
+                if (counts[index] == 0) {
+                    assertThat(resampledCounts[index], equalTo(0L));
+                } else {
+                    assertThat(resampledCounts[index], greaterThan(0L));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void drawBinomial_ReturnsAllOrNoTrials_WhenProbabilityIsOneOrZero() {
+        SplittableRandom random = new SplittableRandom(0);
+        assertThat(ContingencyTableGenerator.drawBinomial(random, 100, 0), equalTo(0L));
+        assertThat(ContingencyTableGenerator.drawBinomial(random, 100, 1), equalTo(100L));
+        assertThat(ContingencyTableGenerator.drawBinomial(random, 0, 0.5), equalTo(0L));
+    }
+
+    @Test
+    public void drawBinomial_ReturnsExpectedMean_WhenManyTrials() {
+        SplittableRandom random = new SplittableRandom(0);
+        long sum = 0;
+        for (int draw = 0; draw < 10000; draw++) {
+            long successes = ContingencyTableGenerator.drawBinomial(random, 1000000, 0.3);
+            assertThat(successes >= 0 && successes <= 1000000, equalTo(true));
+            sum += successes;
+        }
+
+        // The standard error of the mean is about 4.6, so this is more than 20 standard errors.
+        assertThat(Math.abs(sum / 10000.0 - 300000) < 100, equalTo(true));
+    }
+
+
+    /**
+     * Create a ContingencyTableGenerator for the given TSV file.
+     *
+     * @param fileName - the TSV file to generate the CT tables from.
+     * @return a ContingencyTableGenerator for the given TSV file.
+     * @throws DataExtractionException if unable to read the given TSV file.
+     */
+    private static ContingencyTableGenerator createInstance(String fileName) throws DataExtractionException {
+        URL url = ContingencyTableGeneratorTest.class.getClassLoader().getResource(fileName);
+        return new ContingencyTableGenerator(new TSVDataExtractor(url.getFile(), "MULT", true));
+    }
+
+
+    /**
+     * Retrieve the counts of every state of popularity(prof0) and teachingability(prof0).
+     *
+     * @param ctGenerator - the ContingencyTableGenerator to generate the CT table with.
+     * @return the counts of each combination of states.
+     */
+    private static long[] getCounts(ContingencyTableGenerator ctGenerator) {
+        ContingencyTable ct = ctGenerator.generateCT(
+            CHILD_INDEX,
+            new int[] {PARENT_INDEX},
+            NUMBER_OF_STATES * NUMBER_OF_STATES
+        );
+
+        long[] counts = new long[NUMBER_OF_STATES * NUMBER_OF_STATES];
+        for (int childState = 0; childState < NUMBER_OF_STATES; childState++) {
+            for (int parentState = 0; parentState < NUMBER_OF_STATES; parentState++) {
+                counts[childState * NUMBER_OF_STATES + parentState] = ct.getCounts(
+                    new RandomVariableAssignment(CHILD_INDEX, childState),
+                    Arrays.asList(new RandomVariableAssignment(PARENT_INDEX, parentState))
+                );
+            }
+        }
+
+        return counts;
+    }
+}
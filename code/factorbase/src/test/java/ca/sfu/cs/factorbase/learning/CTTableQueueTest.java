@@ -0,0 +1,209 @@
+package ca.sfu.cs.factorbase.learning;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import org.junit.Test;
+
+import ca.sfu.cs.factorbase.exception.DataBaseException;
+
+public class CTTableQueueTest {
+
+    private static final long TIMEOUT = 5000;
+
+
+    @Test(timeout = TIMEOUT)
+    public void take_ReturnsImmediately_WhenTableAlreadyBuilt() throws DataBaseException, InterruptedException {
+        CTTableQueue queue = new CTTableQueue(2, 100);
+        queue.put("a", 10);
+        queue.take("a");
+    }
+
+
+    @Test(timeout = TIMEOUT)
+    public void put_Blocks_WhenQueueIsFullAndNoLearnerIsWaiting() throws InterruptedException {
+        CTTableQueue queue = new CTTableQueue(1, 100);
+        queue.put("a", 10);
+
+        Thread builder = startPut(queue, "b", 10);
+        builder.join(200);
+
+        assertThat(builder.isAlive(), equalTo(true));
+        builder.interrupt();
+        builder.join();
+    }
+
+
+    @Test(timeout = TIMEOUT)
+    public void put_Blocks_WhenTooManyRowsArePending() throws InterruptedException {
+        CTTableQueue queue = new CTTableQueue(10, 100);
+        queue.put("a", 60);
+
+        Thread builder = startPut(queue, "b", 60);
+        builder.join(200);
+
+        assertThat(builder.isAlive(), equalTo(true));
+        builder.interrupt();
+        builder.join();
+    }
+
+
+    @Test(timeout = TIMEOUT)
+    public void put_Continues_WhenPendingTableIsTaken() throws DataBaseException, InterruptedException {
+        CTTableQueue queue = new CTTableQueue(1, 100);
+        queue.put("a", 10);
+
+        Thread builder = startPut(queue, "b", 10);
+        queue.take("a");
+        builder.join();
+
+        queue.take("b");
+    }
+
+
+    @Test(timeout = TIMEOUT)
+    public void put_Continues_WhenLearnerIsWaitingForUnbuiltTable() throws DataBaseException, InterruptedException {
+        CTTableQueue queue = new CTTableQueue(1, 100);
+        queue.put("a", 10);
+
+        // The learner skips "a", so "b" has to be built even though the queue is full.
+        Thread builder = startPut(queue, "b", 10);
+        queue.take("b");
+        builder.join();
+    }
+
+
+    @Test(timeout = TIMEOUT)
+    public void put_Continues_WhenLearningIsDone() throws DataBaseException, InterruptedException {
+        CTTableQueue queue = new CTTableQueue(1, 100);
+        queue.put("a", 10);
+
+        // "a" is never taken, which would block the construction forever without learningDone().
+        Thread builder = new Thread(() -> {
+            try {
+                queue.put("b", 10);
+                queue.put("c", 10);
+                queue.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        builder.start();
+
+        queue.learningDone();
+        queue.awaitClosed();
+        builder.join();
+    }
+
+
+    @Test(timeout = TIMEOUT)
+    public void put_Blocks_WhenOnlyPrefetcherIsWaitingForUnbuiltTable() throws DataBaseException, InterruptedException {
+        CTTableQueue queue = new CTTableQueue(1, 100);
+        queue.put("a", 10);
+
+        Thread prefetcher = new Thread(() -> {
+            try {
+                queue.awaitBuilt("b");
+            } catch (DataBaseException | InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        prefetcher.start();
+
+        Thread builder = startPut(queue, "b", 10);
+        builder.join(200);
+        assertThat(builder.isAlive(), equalTo(true));
+
+        // Taking the pending table lets both the construction and the prefetcher continue.
+        queue.take("a");
+        builder.join();
+        prefetcher.join();
+    }
+
+
+    @Test(timeout = TIMEOUT)
+    public void awaitBuilt_ReturnsNumberOfRows_WithoutTakingTable() throws DataBaseException, InterruptedException {
+        CTTableQueue queue = new CTTableQueue(1, 100);
+        queue.put("a", 10);
+
+        assertThat(queue.awaitBuilt("a"), equalTo(10L));
+
+        // The table is still pending since it hasn't been taken by a learner.
+        Thread builder = startPut(queue, "b", 10);
+        builder.join(200);
+        assertThat(builder.isAlive(), equalTo(true));
+        builder.interrupt();
+        builder.join();
+    }
+
+
+    @Test(timeout = TIMEOUT)
+    public void put_DoesNotBlock_WhenQueueIsEmpty() throws DataBaseException, InterruptedException {
+        CTTableQueue queue = new CTTableQueue(1, 100);
+
+        // A single table that is larger than the row limit is still handed off.
+        queue.put("a", 1000);
+        queue.take("a");
+    }
+
+
+    @Test(timeout = TIMEOUT, expected = IllegalStateException.class)
+    public void take_ThrowsException_WhenTableIsNeverBuilt() throws DataBaseException, InterruptedException {
+        CTTableQueue queue = new CTTableQueue(1, 100);
+        queue.put("a", 10);
+        queue.close();
+
+        queue.take("b");
+    }
+
+
+    @Test(timeout = TIMEOUT, expected = DataBaseException.class)
+    public void take_ThrowsException_WhenConstructionFails() throws DataBaseException, InterruptedException {
+        CTTableQueue queue = new CTTableQueue(1, 100);
+        queue.fail(new RuntimeException("Construction failed."));
+
+        queue.take("a");
+    }
+
+
+    @Test(timeout = TIMEOUT, expected = DataBaseException.class)
+    public void awaitClosed_ThrowsException_WhenConstructionFails() throws DataBaseException, InterruptedException {
+        CTTableQueue queue = new CTTableQueue(1, 100);
+        queue.fail(new RuntimeException("Construction failed."));
+
+        queue.awaitClosed();
+    }
+
+
+    @Test(timeout = TIMEOUT)
+    public void awaitOpen_ReturnsOnceOpened() throws DataBaseException, InterruptedException {
+        CTTableQueue queue = new CTTableQueue(1, 100);
+        Thread builder = new Thread(queue::open);
+        builder.start();
+
+        queue.awaitOpen();
+        builder.join();
+    }
+
+
+    /**
+     * Start a thread that hands off the given CT table to the given queue.
+     *
+     * @param queue - the queue to hand off the CT table to.
+     * @param id - the RChain or PVariable that the CT table was built for.
+     * @param numberOfRows - the number of rows in the CT table.
+     * @return the thread handing off the CT table.
+     */
+    private static Thread startPut(CTTableQueue queue, String id, long numberOfRows) {
+        Thread builder = new Thread(() -> {
+            try {
+                queue.put(id, numberOfRows);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        builder.start();
+
+        return builder;
+    }
+}
@@ -0,0 +1,117 @@
+package ca.sfu.cs.factorbase.learning;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import testframework.TestDatabaseConnection;
+
+/**
+ * Tests for the file GlobalCountsCache.java.
+ */
+public class GlobalCountsCacheTest {
+
+    private static final String COUNTS_TABLE = "a_counts";
+    private static final List<String> PROF_COLUMNS = Arrays.asList("popularity(prof0)", "teachingability(prof0)");
+    private static final List<String> ALL_COLUMNS = Arrays.asList(
+        "intelligence(student0)",
+        "a",
+        "teachingability(prof0)",
+        "popularity(prof0)"
+    );
+
+    private TestDatabaseConnection db;
+
+
+    @Before
+    public void setUp() {
+        this.db = new TestDatabaseConnection();
+    }
+
+    @Test
+    public void project_ReturnsSameRowsAsMySQL_WhenKeysArePacked() throws SQLException {
+        GlobalCountsCache cache = new GlobalCountsCache(TestDatabaseConnection.DATABASE_NAME);
+
+        // Two of the rows have the same popularity and teachingability, so their MULT is added up.
+        assertProjectionMatchesMySQL(cache, PROF_COLUMNS, 3);
+        assertProjectionMatchesMySQL(cache, Arrays.asList("popularity(prof0)"), 2);
+        assertProjectionMatchesMySQL(cache, ALL_COLUMNS, 4);
+    }
+
+    @Test
+    public void project_ReturnsSameRowsAsMySQL_WhenKeysAreLists() throws SQLException {
+        // Each projection has a column with at least 2 values, so the codes of its columns are never combined into a
+        // long key.
+        GlobalCountsCache cache = new GlobalCountsCache(TestDatabaseConnection.DATABASE_NAME, 1);
+
+        assertProjectionMatchesMySQL(cache, PROF_COLUMNS, 3);
+        assertProjectionMatchesMySQL(cache, Arrays.asList("popularity(prof0)"), 2);
+        assertProjectionMatchesMySQL(cache, ALL_COLUMNS, 4);
+    }
+
+
+    /**
+     * Check that projecting the test "_counts" table onto the given columns returns the same rows as running
+     * SUM(MULT) GROUP BY the given columns in MySQL.
+     *
+     * @param cache - the cache to project the test "_counts" table with.
+     * @param columns - the columns to project the test "_counts" table onto.
+     * @param expectedNumberOfRows - the expected number of rows in the projection.
+     * @throws SQLException if there are issues executing the queries.
+     */
+    private void assertProjectionMatchesMySQL(
+        GlobalCountsCache cache,
+        List<String> columns,
+        int expectedNumberOfRows
+    ) throws SQLException {
+        MobiusJoin.CountsTable projection = cache.project(this.db.con, COUNTS_TABLE, columns);
+        assertThat(projection.getColumns(), equalTo(columns));
+
+        List<String> actualRows = new ArrayList<String>();
+        for (int rowIndex = 0; rowIndex < projection.getNumberOfRows(); rowIndex++) {
+            StringBuilder row = new StringBuilder().append(projection.getMult(rowIndex));
+            for (String value : projection.getRows().get(rowIndex)) {
+                row.append(",").append(value);
+            }
+
+            actualRows.add(row.toString());
+        }
+
+        Collections.sort(actualRows);
+
+        String escapedColumns = "`" + String.join("`, `", columns) + "`";
+        List<String> expectedRows = new ArrayList<String>();
+        try (
+            Statement statement = this.db.con.createStatement();
+            ResultSet results = statement.executeQuery(
+                "SELECT SUM(MULT) AS `MULT`, " + escapedColumns + " " +
+                "FROM `" + COUNTS_TABLE + "` " +
+                "GROUP BY " + escapedColumns
+            )
+        ) {
+            while (results.next()) {
+                StringBuilder row = new StringBuilder().append(results.getLong("MULT"));
+                for (String column : columns) {
+                    row.append(",").append(results.getString(column));
+                }
+
+                expectedRows.add(row.toString());
+            }
+        }
+
+        Collections.sort(expectedRows);
+
+        assertThat(expectedRows.size(), equalTo(expectedNumberOfRows));
+        assertThat(actualRows, equalTo(expectedRows));
+    }
+}
@@ -0,0 +1,148 @@
+package ca.sfu.cs.factorbase.learning;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.sfu.cs.factorbase.util.QueryGenerator;
+import testframework.TestDatabaseConnection;
+
+/**
+ * Tests for the file InMemoryCounter.java.
+ */
+public class InMemoryCounterTest {
+
+    private TestDatabaseConnection db;
+    private InMemoryCounter counter;
+
+
+    @Before
+    public void setUp() {
+        this.db = new TestDatabaseConnection();
+        this.counter = new InMemoryCounter(TestDatabaseConnection.DATABASE_NAME, 2);
+    }
+
+    @After
+    public void tearDown() {
+        this.counter.close();
+    }
+
+    @Test
+    public void count_ReturnsSameCountsAsMySQL_WhenJoiningTables() throws SQLException {
+        // The relationship with a NULL student and the student with a NULL intelligence are handled the same as MySQL.
+        assertCountsMatchMySQL("counts-join", 4);
+    }
+
+    @Test
+    public void count_ReturnsSameCountsAsMySQL_WhenFilteringOnLiteral() throws SQLException {
+        assertCountsMatchMySQL("counts-filter", 1);
+    }
+
+    @Test
+    public void count_ReturnsNoCounts_WhenLiteralIsNotInData() throws SQLException {
+        // The NULL intelligence shouldn't match a literal that isn't in the data.
+        assertCountsMatchMySQL("counts-missing-literal", 0);
+    }
+
+
+    /**
+     * Check that the "_counts" table generated in memory for the given lattice point has the same rows as the
+     * "_counts" table generated by running its "Counts" MetaQueries in MySQL.
+     *
+     * @param latticePoint - the lattice point to generate the "_counts" table for.
+     * @param expectedNumberOfRows - the expected number of rows in the "_counts" table.
+     * @throws SQLException if there are issues executing the queries.
+     */
+    private void assertCountsMatchMySQL(String latticePoint, int expectedNumberOfRows) throws SQLException {
+        MobiusJoin.CountsTable countsTable = this.counter.count(this.db.con, latticePoint);
+        List<String> columns = countsTable.getColumns();
+        List<String> actualRows = new ArrayList<String>();
+        for (int rowIndex = 0; rowIndex < countsTable.getNumberOfRows(); rowIndex++) {
+            StringBuilder row = new StringBuilder().append(countsTable.getMult(rowIndex));
+            for (String value : countsTable.getRows().get(rowIndex)) {
+                row.append(",").append(value);
+            }
+
+            actualRows.add(row.toString());
+        }
+
+        Collections.sort(actualRows);
+
+        List<String> expectedRows = new ArrayList<String>();
+        try (
+            Statement statement = this.db.con.createStatement();
+            ResultSet results = statement.executeQuery(this.createCountsQuery(latticePoint))
+        ) {
+            while (results.next()) {
+                StringBuilder row = new StringBuilder().append(results.getLong("MULT"));
+                for (String column : columns) {
+                    row.append(",").append(results.getString(column));
+                }
+
+                expectedRows.add(row.toString());
+            }
+        }
+
+        Collections.sort(expectedRows);
+
+        assertThat(expectedRows.size(), equalTo(expectedNumberOfRows));
+        assertThat(actualRows, equalTo(expectedRows));
+    }
+
+
+    /**
+     * Create the "_counts" query for the given lattice point from its "Counts" MetaQueries, in the same way as
+     * {@link CountsManager}.
+     *
+     * @param latticePoint - the lattice point to create the "_counts" query for.
+     * @return the "_counts" query for the given lattice point.
+     * @throws SQLException if there are issues executing the queries.
+     */
+    private String createCountsQuery(String latticePoint) throws SQLException {
+        String query =
+            "SELECT " + String.join(", ", this.getEntries(latticePoint, "SELECT")) + " " +
+            "FROM " + String.join(", ", this.getEntries(latticePoint, "FROM"));
+
+        List<String> predicates = this.getEntries(latticePoint, "WHERE");
+        if (!predicates.isEmpty()) {
+            query += " WHERE " + String.join(" AND ", predicates);
+        }
+
+        return query + " GROUP BY " + String.join(", ", this.getEntries(latticePoint, "GROUPBY"));
+    }
+
+
+    /**
+     * Retrieve the "Counts" MetaQueries entries for the given lattice point.
+     *
+     * @param latticePoint - the lattice point to retrieve the entries for.
+     * @param clauseType - the clause to retrieve the entries for, e.g. SELECT.
+     * @return the entries for the given clause.
+     * @throws SQLException if there are issues executing the query.
+     */
+    private List<String> getEntries(String latticePoint, String clauseType) throws SQLException {
+        List<String> entries = new ArrayList<String>();
+        try (
+            Statement statement = this.db.con.createStatement();
+            ResultSet results = statement.executeQuery(
+                QueryGenerator.createMetaQueriesExtractionQuery(latticePoint, "Counts", clauseType, null, false)
+            )
+        ) {
+            while (results.next()) {
+                entries.add(results.getString("Entries"));
+            }
+        }
+
+        return entries;
+    }
+}
@@ -0,0 +1,137 @@
+package ca.sfu.cs.factorbase.learning;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import ca.sfu.cs.factorbase.util.Sort_merge3;
+import testframework.TestDatabaseConnection;
+
+/**
+ * Tests for the file MobiusJoin.java.
+ */
+public class MobiusJoinTest {
+
+    private static final String RCHAIN = "`RA(prof0,student0)`";
+    private static final String SHORT_RCHAIN = "a";
+    private static final List<String> CT_COLUMNS = Arrays.asList(
+        "a",
+        "popularity(prof0)",
+        "teachingability(prof0)",
+        "intelligence(student0)"
+    );
+    private static final String STAR_COLUMNS = "`popularity(prof0)`, `teachingability(prof0)`, `intelligence(student0)`";
+    private static final String JOIN_TABLE_QUERY = "SELECT \"F\" AS `a`";
+
+
+    @Test
+    public void buildCT_ReturnsSameRowsAsMySQL() throws SQLException {
+        TestDatabaseConnection db = new TestDatabaseConnection();
+        Map<String, String> joinTableQueries = new HashMap<String, String>();
+        joinTableQueries.put(SHORT_RCHAIN, JOIN_TABLE_QUERY);
+
+        MobiusJoin mobiusJoin = new MobiusJoin(
+            TestDatabaseConnection.DATABASE_NAME,
+            TestDatabaseConnection.DATABASE_NAME,
+            joinTableQueries
+        );
+        MobiusJoin.CountsTable ct = mobiusJoin.buildCT(db.con, RCHAIN, SHORT_RCHAIN);
+
+        List<String> actualRows = new ArrayList<String>();
+        int[] columnIndices = new int[CT_COLUMNS.size()];
+        for (int index = 0; index < columnIndices.length; index++) {
+            columnIndices[index] = ct.getColumnIndex(CT_COLUMNS.get(index));
+        }
+
+        for (int rowIndex = 0; rowIndex < ct.getNumberOfRows(); rowIndex++) {
+            StringBuilder row = new StringBuilder().append(ct.getMult(rowIndex));
+            for (int columnIndex : columnIndices) {
+                row.append(",").append(ct.getRows().get(rowIndex)[columnIndex]);
+            }
+
+            actualRows.add(row.toString());
+        }
+
+        Collections.sort(actualRows);
+
+        List<String> expectedRows = buildCTWithMySQL(db);
+
+        // The 4 rows where the relationship is true, plus 8 of the 9 rows where it is false since the counts of the
+        // remaining row are all true.
+        assertThat(expectedRows.size(), equalTo(12));
+        assertThat(actualRows, equalTo(expectedRows));
+    }
+
+
+    /**
+     * Build the "_CT" table for the test RChain with the same queries as {@link CountsManager}, i.e. by subtracting
+     * the "_flat" table from the star table and crossing the result with the JOIN table.
+     *
+     * @param db - the connection to the test database.
+     * @return the rows of the "_CT" table in the form "MULT,a,popularity,teachingability,intelligence", sorted.
+     * @throws SQLException if there are issues executing the queries.
+     */
+    private static List<String> buildCTWithMySQL(TestDatabaseConnection db) throws SQLException {
+        String flatTable = "mobius-join-flat";
+        String databaseName = "`" + TestDatabaseConnection.DATABASE_NAME + "`";
+        String starQuery =
+            "SELECT `prof0_counts`.MULT * `student0_counts`.MULT AS `MULT`, " + STAR_COLUMNS + " " +
+            "FROM `prof0_counts`, `student0_counts`";
+
+        List<String> rows = new ArrayList<String>();
+        try (Statement statement = db.con.createStatement()) {
+            statement.executeUpdate(
+                "CREATE TABLE `" + flatTable + "` AS " +
+                "SELECT SUM(MULT) AS `MULT`, " + STAR_COLUMNS + " " +
+                "FROM `" + SHORT_RCHAIN + "_counts` " +
+                "GROUP BY " + STAR_COLUMNS
+            );
+
+            String falseTableQuery = Sort_merge3.sort_merge(db.con, databaseName, starQuery, flatTable);
+            String ctColumns = "`MULT`, `a`, " + STAR_COLUMNS;
+            try (
+                ResultSet results = statement.executeQuery(
+                    "SELECT " + ctColumns + " " +
+                    "FROM `" + SHORT_RCHAIN + "_counts` " +
+                    "WHERE MULT > 0 " +
+
+                    "UNION ALL " +
+
+                    "SELECT " + ctColumns + " " +
+                    "FROM " +
+                        "(" + falseTableQuery + ") AS FALSE_TABLE, " +
+                        "(" + JOIN_TABLE_QUERY + ") AS JOIN_TABLE " +
+                    "WHERE MULT > 0"
+                )
+            ) {
+                while (results.next()) {
+                    StringBuilder row = new StringBuilder().append(results.getLong("MULT"));
+                    for (String column : CT_COLUMNS) {
+                        row.append(",").append(results.getString(column));
+                    }
+
+                    rows.add(row.toString());
+                }
+            }
+        } finally {
+            // Clean up the "_flat" table.
+            try (Statement statement = db.con.createStatement()) {
+                statement.executeUpdate("DROP TABLE IF EXISTS `" + flatTable + "`");
+            }
+        }
+
+        Collections.sort(rows);
+        return rows;
+    }
+}
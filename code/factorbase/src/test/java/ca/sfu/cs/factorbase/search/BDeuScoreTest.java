@@ -56,4 +56,22 @@ public class BDeuScoreTest {
         Double scoreValue = score.localScore(POPULARITY, new HashSet<>(Arrays.asList(TEACHINGABILITY)));
         assertThat(scoreValue, equalTo(-3.935739532045626));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void localScore_ReturnsCorrectResults_WhenFamilyCountsAreShared() throws SQLException {
+        FamilyCountsCache familyCountsCache = new FamilyCountsCache();
+        BDeuScore otherScore = new BDeuScore(ctGenerator, 1.0000, STRUCTURE_PRIOR, familyCountsCache);
+        otherScore.localScore(POPULARITY, new HashSet<>(Arrays.asList(TEACHINGABILITY)));
+
+        BDeuScore score = new BDeuScore(ctGenerator, SAMPLE_PRIOR, STRUCTURE_PRIOR, familyCountsCache);
+        Double scoreValue = score.localScore(POPULARITY, new HashSet<>(Arrays.asList(TEACHINGABILITY)));
+        assertThat(scoreValue, equalTo(-3.935739532045626));
+    }
+
+    @Test
+    public void upperBoundTerm_ReturnsTwiceLogOfChildStates_WhenMultipleChildStatesObserved() {
+        assertThat(BDeuScore.upperBoundTerm(0, 0, 3), equalTo(0.0));
+        assertThat(BDeuScore.upperBoundTerm(5, 1, 3), equalTo(-Math.log(3)));
+        assertThat(BDeuScore.upperBoundTerm(5, 2, 3), equalTo(-2 * Math.log(3)));
+    }
+}
@@ -0,0 +1,220 @@
+package ca.sfu.cs.factorbase.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ca.sfu.cs.factorbase.data.ContingencyTableGenerator;
+import ca.sfu.cs.factorbase.data.DataExtractor;
+import ca.sfu.cs.factorbase.data.TSVDataExtractor;
+import ca.sfu.cs.factorbase.exception.ScoringException;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+
+
+/**
+ * Tests for the file DynamicProgrammingSearch.java.
+ */
+public class DynamicProgrammingSearchTest {
+    public static final double SAMPLE_PRIOR = 10.0000;
+    public static final double STRUCTURE_PRIOR = 1.0000;
+    public static final double TOLERANCE = 1e-9;
+    public static final String COUNTS_COLUMN = "MULT";
+    public static final List<String> VARIABLES = Arrays.asList(
+        "popularity(prof0)",
+        "teachingability(prof0)",
+        "intelligence(student0)",
+        "ranking(student0)"
+    );
+
+    private static ContingencyTableGenerator ctGenerator;
+
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        URL url = DynamicProgrammingSearchTest.class.getClassLoader().getResource("inputfiles/prof0_student0.tsv");
+        DataExtractor dataExtractor = new TSVDataExtractor(url.getFile(), COUNTS_COLUMN, true);
+        ctGenerator = new ContingencyTableGenerator(dataExtractor);
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        ctGenerator = null;
+    }
+
+    @Test
+    public void search_ReturnsBestDag_WhenParentsAreNotLimited() throws ScoringException {
+        assertSearchMatchesBruteForce(VARIABLES.size() - 1);
+    }
+
+    @Test
+    public void search_ReturnsBestDag_WhenSingleParent() throws ScoringException {
+        assertSearchMatchesBruteForce(1);
+    }
+
+    @Test
+    public void search_ReturnsBestDag_WhenTwoParents() throws ScoringException {
+        assertSearchMatchesBruteForce(2);
+    }
+
+    @Test
+    public void search_ReturnsBestDag_WhenThreeVariables() throws ScoringException {
+        BDeuScore score = new BDeuScore(ctGenerator, SAMPLE_PRIOR, STRUCTURE_PRIOR);
+        List<String> variables = VARIABLES.subList(0, 3);
+        Graph dag = new DynamicProgrammingSearch(variables, score, 2).search();
+        assertThat(scoreDag(dag, variables, score), closeTo(bruteForce(variables, score, 2), TOLERANCE));
+    }
+
+    @Test
+    public void getMaxNumberOfVariables_ReturnsNumberOfVariablesThatFitInMemory() {
+        int maxNumberOfVariables = DynamicProgrammingSearch.getMaxNumberOfVariables(3);
+        assertThat(maxNumberOfVariables, lessThanOrEqualTo(DynamicProgrammingSearch.MAX_NUMBER_OF_VARIABLES));
+        assertThat(
+            DynamicProgrammingSearch.estimateMemory(maxNumberOfVariables, 3),
+            lessThanOrEqualTo(Runtime.getRuntime().maxMemory())
+        );
+    }
+
+    @Test
+    public void estimateMemory_IsTooLarge_WhenThirtyVariables() {
+        // The best scores alone need more than 64GB for 30 variables.
+        assertThat(
+            DynamicProgrammingSearch.estimateMemory(30, 3) > (64L << 30),
+            equalTo(true)
+        );
+    }
+
+
+    /**
+     * Check that the DAG found by the DynamicProgrammingSearch has the same score as the best DAG found by
+     * enumerating all the DAGs over {@link #VARIABLES}.
+     *
+     * @param maxParents - the maximum number of parents that a variable can have.
+     * @throws ScoringException if an error occurs when computing the local scores.
+     */
+    private static void assertSearchMatchesBruteForce(int maxParents) throws ScoringException {
+        BDeuScore score = new BDeuScore(ctGenerator, SAMPLE_PRIOR, STRUCTURE_PRIOR);
+        Graph dag = new DynamicProgrammingSearch(VARIABLES, score, maxParents).search();
+
+        for (Node node : dag.getNodes()) {
+            assertThat(dag.getParents(node).size(), lessThanOrEqualTo(maxParents));
+        }
+
+        assertThat(scoreDag(dag, VARIABLES, score), closeTo(bruteForce(VARIABLES, score, maxParents), TOLERANCE));
+    }
+
+
+    /**
+     * Compute the score of the given DAG, i.e. the sum of the local scores of its variables.
+     *
+     * @param dag - the DAG to score.
+     * @param variables - the variables of the DAG.
+     * @param score - the score to compute the local scores with.
+     * @return the score of the given DAG.
+     * @throws ScoringException if an error occurs when computing the local scores.
+     */
+    private static double scoreDag(Graph dag, List<String> variables, BDeuScore score) throws ScoringException {
+        double dagScore = 0;
+        for (String variable : variables) {
+            Set<String> parents = new HashSet<String>();
+            for (Node parent : dag.getParents(dag.getNode(variable))) {
+                parents.add(parent.getName());
+            }
+
+            dagScore += score.localScore(variable, parents);
+        }
+
+        return dagScore;
+    }
+
+
+    /**
+     * Find the best score of a DAG over the given variables by trying every combination of parent sets.
+     *
+     * @param variables - the variables to find the best DAG for.
+     * @param score - the score to compute the local scores with.
+     * @param maxParents - the maximum number of parents that a variable can have.
+     * @return the best score of a DAG over the given variables.
+     * @throws ScoringException if an error occurs when computing the local scores.
+     */
+    private static double bruteForce(List<String> variables, BDeuScore score, int maxParents) throws ScoringException {
+        int numberOfVariables = variables.size();
+        int numberOfSets = 1 << numberOfVariables;
+
+        // The local score of each variable for each parent set, encoded as bits.
+        double[][] localScores = new double[numberOfVariables][numberOfSets];
+        for (int child = 0; child < numberOfVariables; child++) {
+            for (int parentSet = 0; parentSet < numberOfSets; parentSet++) {
+                if ((parentSet & (1 << child)) != 0 || Integer.bitCount(parentSet) > maxParents) {
+                    localScores[child][parentSet] = Double.NaN;
+                    continue;
+                }
+
+                Set<String> parents = new HashSet<String>();
+                for (int parent = 0; parent < numberOfVariables; parent++) {
+                    if ((parentSet & (1 << parent)) != 0) {
+                        parents.add(variables.get(parent));
+                    }
+                }
+
+                localScores[child][parentSet] = score.localScore(variables.get(child), parents);
+            }
+        }
+
+        return bruteForce(localScores, new int[numberOfVariables], 0);
+    }
+
+
+    /**
+     * Recursively assign a parent set to each variable, starting from the given variable, and return the best score
+     * of the assignments that are acyclic.
+     */
+    private static double bruteForce(double[][] localScores, int[] parentSets, int child) {
+        if (child == parentSets.length) {
+            return isAcyclic(parentSets) ? 0 : Double.NEGATIVE_INFINITY;
+        }
+
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int parentSet = 0; parentSet < localScores[child].length; parentSet++) {
+            if (Double.isNaN(localScores[child][parentSet])) {
+                continue;
+            }
+
+            parentSets[child] = parentSet;
+            bestScore = Math.max(bestScore, localScores[child][parentSet] + bruteForce(localScores, parentSets, child + 1));
+        }
+
+        return bestScore;
+    }
+
+
+    /**
+     * Check whether the given parent sets form a DAG by repeatedly removing the variables without parents.
+     */
+    private static boolean isAcyclic(int[] parentSets) {
+        int remaining = (1 << parentSets.length) - 1;
+        boolean removed = true;
+        while (remaining != 0 && removed) {
+            removed = false;
+            for (int variable = 0; variable < parentSets.length; variable++) {
+                if ((remaining & (1 << variable)) != 0 && (parentSets[variable] & remaining) == 0) {
+                    remaining &= ~(1 << variable);
+                    removed = true;
+                }
+            }
+        }
+
+        return remaining == 0;
+    }
+}
@@ -0,0 +1,242 @@
+package ca.sfu.cs.factorbase.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+
+import edu.cmu.tetrad.data.Knowledge;
+import edu.cmu.tetrad.graph.Edge;
+import edu.cmu.tetrad.graph.EdgeListGraph;
+import edu.cmu.tetrad.graph.Edges;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphNode;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.DagInPatternIterator;
+
+
+/**
+ * Tests for the file PatternDagEnumerator.java.
+ */
+public class PatternDagEnumeratorTest {
+
+    @Test
+    public void enumerate_ReturnsSameDagsAsDagInPatternIterator_WhenChain() {
+        Graph pattern = createPattern(3);
+        addUndirectedEdge(pattern, 0, 1);
+        addUndirectedEdge(pattern, 1, 2);
+
+        Set<Set<String>> dags = enumerateDags(pattern);
+        assertThat(dags.size(), equalTo(3));
+        assertThat(dags, equalTo(iterateDags(pattern)));
+    }
+
+
+    @Test
+    public void enumerate_ReturnsSameDagsAsDagInPatternIterator_WhenTriangle() {
+        Graph pattern = createPattern(3);
+        addUndirectedEdge(pattern, 0, 1);
+        addUndirectedEdge(pattern, 1, 2);
+        addUndirectedEdge(pattern, 0, 2);
+
+        Set<Set<String>> dags = enumerateDags(pattern);
+        assertThat(dags.size(), equalTo(6));
+        assertThat(dags, equalTo(iterateDags(pattern)));
+    }
+
+
+    @Test
+    public void enumerate_ReturnsSameDagsAsDagInPatternIterator_WhenStar() {
+        Graph pattern = createPattern(4);
+        addUndirectedEdge(pattern, 0, 1);
+        addUndirectedEdge(pattern, 0, 2);
+        addUndirectedEdge(pattern, 0, 3);
+
+        Set<Set<String>> dags = enumerateDags(pattern);
+        assertThat(dags.size(), equalTo(4));
+        assertThat(dags, equalTo(iterateDags(pattern)));
+    }
+
+
+    @Test
+    public void enumerate_ReturnsSameDagsAsDagInPatternIterator_WhenColliderWithUndirectedEdges() {
+        // X0 -> X2 <- X1 with X2 - X3 and X3 - X4, where the undirected edges can only point away from X2.
+        Graph pattern = createPattern(5);
+        addDirectedEdge(pattern, 0, 2);
+        addDirectedEdge(pattern, 1, 2);
+        addUndirectedEdge(pattern, 2, 3);
+        addUndirectedEdge(pattern, 3, 4);
+
+        Set<Set<String>> dags = enumerateDags(pattern);
+        assertThat(dags.size(), equalTo(1));
+        assertThat(dags, equalTo(iterateDags(pattern)));
+    }
+
+
+    @Test
+    public void enumerate_ReturnsSameDagsAsDagInPatternIterator_WhenFourCycleWithChord() {
+        Graph pattern = createPattern(4);
+        addUndirectedEdge(pattern, 0, 1);
+        addUndirectedEdge(pattern, 1, 2);
+        addUndirectedEdge(pattern, 2, 3);
+        addUndirectedEdge(pattern, 3, 0);
+        addUndirectedEdge(pattern, 0, 2);
+
+        assertThat(enumerateDags(pattern), equalTo(iterateDags(pattern)));
+    }
+
+
+    @Test
+    public void enumerate_ReturnsSingleDag_WhenNoUndirectedEdges() {
+        Graph pattern = createPattern(3);
+        addDirectedEdge(pattern, 0, 1);
+        addDirectedEdge(pattern, 2, 1);
+
+        Set<Set<String>> dags = enumerateDags(pattern);
+        assertThat(dags.size(), equalTo(1));
+        assertThat(dags, equalTo(iterateDags(pattern)));
+    }
+
+
+    @Test
+    public void enumerate_StopsEarly_WhenConsumerReturnsFalse() {
+        Graph pattern = createPattern(3);
+        addUndirectedEdge(pattern, 0, 1);
+        addUndirectedEdge(pattern, 1, 2);
+        addUndirectedEdge(pattern, 0, 2);
+
+        long numberOfDags = new PatternDagEnumerator(pattern).enumerate(orientation -> false);
+        assertThat(numberOfDags, equalTo(1L));
+    }
+
+
+    @Test
+    public void enumerate_ReturnsSameDags_WhenSplitAcrossThreads() throws InterruptedException, ExecutionException {
+        Graph pattern = createPattern(4);
+        addUndirectedEdge(pattern, 0, 1);
+        addUndirectedEdge(pattern, 1, 2);
+        addUndirectedEdge(pattern, 2, 3);
+        addUndirectedEdge(pattern, 0, 2);
+
+        PatternDagEnumerator enumerator = new PatternDagEnumerator(pattern);
+        Set<BitSet> orientations = new HashSet<BitSet>();
+        long numberOfDags = enumerator.enumerate(
+            orientation -> {
+                synchronized (orientations) {
+                    orientations.add(orientation);
+                }
+
+                return true;
+            },
+            4
+        );
+
+        Set<Set<String>> dags = new HashSet<Set<String>>();
+        for (BitSet orientation : orientations) {
+            dags.add(getDirectedEdges(enumerator.toDag(orientation)));
+        }
+
+        assertThat(numberOfDags, equalTo((long) orientations.size()));
+        assertThat(dags, equalTo(iterateDags(pattern)));
+    }
+
+
+    @Test
+    public void chooseDag_ReturnsDagInPattern() {
+        Graph pattern = createPattern(4);
+        addDirectedEdge(pattern, 0, 2);
+        addDirectedEdge(pattern, 1, 2);
+        addUndirectedEdge(pattern, 2, 3);
+
+        Graph dag = PatternDagEnumerator.chooseDag(pattern);
+        assertThat(iterateDags(pattern).contains(getDirectedEdges(dag)), equalTo(true));
+    }
+
+
+    /**
+     * Create a pattern with the given number of nodes and no edges.
+     *
+     * @param numberOfNodes - the number of nodes in the pattern.
+     * @return a pattern with the nodes X0, X1, ... and no edges.
+     */
+    private static Graph createPattern(int numberOfNodes) {
+        List<Node> nodes = new ArrayList<Node>();
+        for (int index = 0; index < numberOfNodes; index++) {
+            nodes.add(new GraphNode("X" + index));
+        }
+
+        return new EdgeListGraph(nodes);
+    }
+
+
+    private static void addUndirectedEdge(Graph pattern, int node1, int node2) {
+        pattern.addUndirectedEdge(pattern.getNodes().get(node1), pattern.getNodes().get(node2));
+    }
+
+
+    private static void addDirectedEdge(Graph pattern, int tail, int head) {
+        pattern.addDirectedEdge(pattern.getNodes().get(tail), pattern.getNodes().get(head));
+    }
+
+
+    /**
+     * Enumerate the DAGs in the given pattern using the PatternDagEnumerator.
+     *
+     * @param pattern - the pattern to enumerate the DAGs of.
+     * @return the directed edges of each DAG in the pattern.
+     */
+    private static Set<Set<String>> enumerateDags(Graph pattern) {
+        PatternDagEnumerator enumerator = new PatternDagEnumerator(pattern);
+        Set<Set<String>> dags = new HashSet<Set<String>>();
+        long numberOfDags = enumerator.enumerate(orientation -> {
+            dags.add(getDirectedEdges(enumerator.toDag(orientation)));
+            return true;
+        });
+
+        // Each orientation should be a different DAG.
+        assertThat(numberOfDags, equalTo((long) dags.size()));
+
+        return dags;
+    }
+
+
+    /**
+     * Enumerate the DAGs in the given pattern using the DagInPatternIterator, without allowing new colliders.
+     *
+     * @param pattern - the pattern to enumerate the DAGs of.
+     * @return the directed edges of each DAG in the pattern.
+     */
+    private static Set<Set<String>> iterateDags(Graph pattern) {
+        DagInPatternIterator iterator = new DagInPatternIterator(new EdgeListGraph(pattern), new Knowledge(), false, false);
+        Set<Set<String>> dags = new HashSet<Set<String>>();
+        while (iterator.hasNext()) {
+            dags.add(getDirectedEdges(iterator.next()));
+        }
+
+        return dags;
+    }
+
+
+    /**
+     * Retrieve the directed edges of the given DAG.
+     *
+     * @param dag - the DAG to retrieve the directed edges of.
+     * @return the directed edges of the given DAG in the form "tail->head".
+     */
+    private static Set<String> getDirectedEdges(Graph dag) {
+        Set<String> edges = new HashSet<String>();
+        for (Edge edge : dag.getEdges()) {
+            assertThat(Edges.isDirectedEdge(edge), equalTo(true));
+            edges.add(Edges.getDirectedEdgeTail(edge).getName() + "->" + Edges.getDirectedEdgeHead(edge).getName());
+        }
+
+        return edges;
+    }
+}
@@ -8,6 +8,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -91,4 +94,87 @@ public class Sort_merge3Test {
             )
         );
     }
+
+
+    @Test
+    public void sort_merge_to_table_ReturnsSameRowsAsSortMerge() throws SQLException {
+        assertSortMergeToTableMatchesSortMerge("SELECT * FROM `sort-merge-t1`", 5);
+    }
+
+
+    @Test
+    public void sort_merge_to_table_SkipsRowsWithoutPositiveMult() throws SQLException {
+        // Capping the MULT at 5 makes the "match1, match2" row subtract to 0, which is then left out of the table.
+        assertSortMergeToTableMatchesSortMerge(
+            "SELECT LEAST(`MULT`, 5) AS `MULT`, `attr1`, `attr2` FROM `sort-merge-t1`",
+            4
+        );
+    }
+
+
+    /**
+     * Check that the table generated by {@link Sort_merge3#sort_merge_to_table} has the same rows as the query
+     * generated by {@link Sort_merge3#sort_merge}, keeping only the rows with a positive MULT.
+     *
+     * @param table1Subquery - the subquery to subtract the MULT of the "sort-merge-t2" table from.
+     * @param expectedNumberOfRows - the expected number of rows with a positive MULT.
+     * @throws SQLException if there are issues executing the queries.
+     */
+    private static void assertSortMergeToTableMatchesSortMerge(
+        String table1Subquery,
+        int expectedNumberOfRows
+    ) throws SQLException {
+        String SORT_MERGE_TABLE = "sort-merge-to-table-output";
+        String databaseName = "`" + TestDatabaseConnection.DATABASE_NAME + "`";
+        TestDatabaseConnection db = new TestDatabaseConnection();
+
+        String falseTableSubQuery = Sort_merge3.sort_merge(db.con, databaseName, table1Subquery, "sort-merge-t2");
+        long numberOfRows = Sort_merge3.sort_merge_to_table(
+            db.con,
+            databaseName,
+            table1Subquery,
+            "sort-merge-t2",
+            SORT_MERGE_TABLE,
+            "InnoDB"
+        );
+
+        try (Statement statement = db.con.createStatement()) {
+            List<String> expectedRows = readRows(
+                statement,
+                "SELECT * FROM (" + falseTableSubQuery + ") AS FALSE_TABLE WHERE `MULT` > 0"
+            );
+            List<String> actualRows = readRows(statement, "SELECT * FROM `" + SORT_MERGE_TABLE + "`");
+
+            assertThat(expectedRows.size(), equalTo(expectedNumberOfRows));
+            assertThat(numberOfRows, equalTo((long) expectedNumberOfRows));
+            assertThat(actualRows, equalTo(expectedRows));
+        } finally {
+            // Clean up the output sort merge table.
+            try (Statement statement = db.con.createStatement()) {
+                statement.executeUpdate("DROP TABLE IF EXISTS `" + SORT_MERGE_TABLE + "`");
+            }
+        }
+    }
+
+
+    /**
+     * Read the rows of the given query as "MULT,attr1,attr2" strings, sorted so that tables can be compared regardless
+     * of the order of their rows.
+     *
+     * @param statement - the statement to execute the query with.
+     * @param query - the query to read the rows of.
+     * @return the sorted rows of the given query.
+     * @throws SQLException if there are issues executing the query.
+     */
+    private static List<String> readRows(Statement statement, String query) throws SQLException {
+        List<String> rows = new ArrayList<String>();
+        try (ResultSet results = statement.executeQuery(query)) {
+            while (results.next()) {
+                rows.add(results.getLong("MULT") + "," + results.getString("attr1") + "," + results.getString("attr2"));
+            }
+        }
+
+        Collections.sort(rows);
+        return rows;
+    }
 }
@@ -23,6 +23,178 @@ CREATE DATABASE /*!32312 IF NOT EXISTS*/ `tests-database` /*!40100 DEFAULT CHARA
 
 USE `tests-database`;
 
+--
+-- Table structure for table `MetaQueries`
+--
+
+DROP TABLE IF EXISTS `MetaQueries`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `MetaQueries` (
+  `Lattice_Point` varchar(199) NOT NULL,
+  `TableType` varchar(100) NOT NULL,
+  `ClauseType` varchar(10) NOT NULL,
+  `EntryType` varchar(100) NOT NULL,
+  `Entries` varchar(150) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Dumping data for table `MetaQueries`
+--
+
+LOCK TABLES `MetaQueries` WRITE;
+/*!40000 ALTER TABLE `MetaQueries` DISABLE KEYS */;
+INSERT INTO `MetaQueries` VALUES ('`RA(prof0,student0)`','Star','SELECT','`RA(prof0,student0)`','`popularity(prof0)`'),('`RA(prof0,student0)`','Star','SELECT','`RA(prof0,student0)`','`teachingability(prof0)`'),('`RA(prof0,student0)`','Star','SELECT','`RA(prof0,student0)`','`intelligence(student0)`'),('`RA(prof0,student0)`','Star','FROM','`RA(prof0,student0)`','`prof0_counts`'),('`RA(prof0,student0)`','Star','FROM','`RA(prof0,student0)`','`student0_counts`'),('counts-join','Counts','SELECT','aggregate','COUNT(*) AS "MULT"'),('counts-join','Counts','SELECT','rnid','"T" AS `a`'),('counts-join','Counts','SELECT','1node','prof0.popularity AS `popularity(prof0)`'),('counts-join','Counts','SELECT','1node','student0.intelligence AS `intelligence(student0)`'),('counts-join','Counts','SELECT','2node','RA.capability AS `capability(prof0,student0)`'),('counts-join','Counts','FROM','table','`tests-database`.`counts-prof` AS prof0'),('counts-join','Counts','FROM','table','`tests-database`.`counts-student` AS student0'),('counts-join','Counts','FROM','table','`tests-database`.`counts-RA` AS RA'),('counts-join','Counts','WHERE','join','RA.prof_id = prof0.prof_id'),('counts-join','Counts','WHERE','join','RA.student_id = student0.student_id'),('counts-join','Counts','GROUPBY','column','`a`'),('counts-join','Counts','GROUPBY','column','`popularity(prof0)`'),('counts-join','Counts','GROUPBY','column','`intelligence(student0)`'),('counts-join','Counts','GROUPBY','column','`capability(prof0,student0)`'),('counts-filter','Counts','SELECT','aggregate','COUNT(*) AS "MULT"'),('counts-filter','Counts','SELECT','1node','student0.intelligence AS `intelligence(student0)`'),('counts-filter','Counts','FROM','table','`tests-database`.`counts-student` AS student0'),('counts-filter','Counts','WHERE','filter','student0.intelligence = "2"'),('counts-filter','Counts','GROUPBY','column','`intelligence(student0)`'),('counts-missing-literal','Counts','SELECT','aggregate','COUNT(*) AS "MULT"'),('counts-missing-literal','Counts','SELECT','1node','student0.intelligence AS `intelligence(student0)`'),('counts-missing-literal','Counts','FROM','table','`tests-database`.`counts-student` AS student0'),('counts-missing-literal','Counts','WHERE','filter','student0.intelligence = "x"'),('counts-missing-literal','Counts','GROUPBY','column','`intelligence(student0)`');
+/*!40000 ALTER TABLE `MetaQueries` ENABLE KEYS */;
+UNLOCK TABLES;
+
+--
+-- Table structure for table `a_counts`
+--
+
+DROP TABLE IF EXISTS `a_counts`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `a_counts` (
+  `MULT` bigint(21) NOT NULL DEFAULT '0',
+  `a` varchar(5) NOT NULL DEFAULT '',
+  `popularity(prof0)` varchar(45) DEFAULT NULL,
+  `teachingability(prof0)` varchar(45) DEFAULT NULL,
+  `intelligence(student0)` varchar(45) DEFAULT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Dumping data for table `a_counts`
+--
+
+LOCK TABLES `a_counts` WRITE;
+/*!40000 ALTER TABLE `a_counts` DISABLE KEYS */;
+INSERT INTO `a_counts` VALUES (2,'T','1','2','1'),(1,'T','2','2','2'),(1,'T','2','3','2'),(3,'T','2','3','3');
+/*!40000 ALTER TABLE `a_counts` ENABLE KEYS */;
+UNLOCK TABLES;
+
+--
+-- Table structure for table `counts-RA`
+--
+
+DROP TABLE IF EXISTS `counts-RA`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `counts-RA` (
+  `prof_id` varchar(10) DEFAULT NULL,
+  `student_id` varchar(10) DEFAULT NULL,
+  `capability` varchar(45) DEFAULT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Dumping data for table `counts-RA`
+--
+
+LOCK TABLES `counts-RA` WRITE;
+/*!40000 ALTER TABLE `counts-RA` DISABLE KEYS */;
+INSERT INTO `counts-RA` VALUES ('p1','s1','1'),('p1','s2','2'),('p2','s3','1'),('p3','s4','2'),('p3','s2','2'),('p2',NULL,'1');
+/*!40000 ALTER TABLE `counts-RA` ENABLE KEYS */;
+UNLOCK TABLES;
+
+--
+-- Table structure for table `counts-prof`
+--
+
+DROP TABLE IF EXISTS `counts-prof`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `counts-prof` (
+  `prof_id` varchar(10) NOT NULL DEFAULT '',
+  `popularity` varchar(45) DEFAULT NULL,
+  `teachingability` varchar(45) DEFAULT NULL,
+  PRIMARY KEY (`prof_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Dumping data for table `counts-prof`
+--
+
+LOCK TABLES `counts-prof` WRITE;
+/*!40000 ALTER TABLE `counts-prof` DISABLE KEYS */;
+INSERT INTO `counts-prof` VALUES ('p1','1','2'),('p2','2','2'),('p3','2','3');
+/*!40000 ALTER TABLE `counts-prof` ENABLE KEYS */;
+UNLOCK TABLES;
+
+--
+-- Table structure for table `counts-student`
+--
+
+DROP TABLE IF EXISTS `counts-student`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `counts-student` (
+  `student_id` varchar(10) NOT NULL DEFAULT '',
+  `intelligence` varchar(45) DEFAULT NULL,
+  PRIMARY KEY (`student_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Dumping data for table `counts-student`
+--
+
+LOCK TABLES `counts-student` WRITE;
+/*!40000 ALTER TABLE `counts-student` DISABLE KEYS */;
+INSERT INTO `counts-student` VALUES ('s1','1'),('s2','2'),('s3',NULL),('s4','2');
+/*!40000 ALTER TABLE `counts-student` ENABLE KEYS */;
+UNLOCK TABLES;
+
+--
+-- Table structure for table `lattice_mapping`
+--
+
+DROP TABLE IF EXISTS `lattice_mapping`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `lattice_mapping` (
+  `orig_rnid` varchar(200) NOT NULL,
+  `short_rnid` varchar(20) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Dumping data for table `lattice_mapping`
+--
+
+LOCK TABLES `lattice_mapping` WRITE;
+/*!40000 ALTER TABLE `lattice_mapping` DISABLE KEYS */;
+INSERT INTO `lattice_mapping` VALUES ('`RA(prof0,student0)`','a');
+/*!40000 ALTER TABLE `lattice_mapping` ENABLE KEYS */;
+UNLOCK TABLES;
+
+--
+-- Table structure for table `lattice_rel`
+--
+
+DROP TABLE IF EXISTS `lattice_rel`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `lattice_rel` (
+  `parent` varchar(200) NOT NULL,
+  `child` varchar(200) NOT NULL,
+  `removed` varchar(200) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Dumping data for table `lattice_rel`
+--
+
+LOCK TABLES `lattice_rel` WRITE;
+/*!40000 ALTER TABLE `lattice_rel` DISABLE KEYS */;
+INSERT INTO `lattice_rel` VALUES ('EmptySet','`RA(prof0,student0)`','`RA(prof0,student0)`');
+/*!40000 ALTER TABLE `lattice_rel` ENABLE KEYS */;
+UNLOCK TABLES;
+
 --
 -- Table structure for table `prof0_counts`
 --
@@ -118,6 +290,29 @@ INSERT INTO `sort-merge-t2` VALUES (5,'match1','match2'),(4,'match3','match4'),(
 /*!40000 ALTER TABLE `sort-merge-t2` ENABLE KEYS */;
 UNLOCK TABLES;
 
+--
+-- Table structure for table `student0_counts`
+--
+
+DROP TABLE IF EXISTS `student0_counts`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `student0_counts` (
+  `MULT` bigint(21) NOT NULL DEFAULT '0',
+  `intelligence(student0)` varchar(45) DEFAULT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Dumping data for table `student0_counts`
+--
+
+LOCK TABLES `student0_counts` WRITE;
+/*!40000 ALTER TABLE `student0_counts` DISABLE KEYS */;
+INSERT INTO `student0_counts` VALUES (2,'1'),(3,'2'),(1,'3');
+/*!40000 ALTER TABLE `student0_counts` ENABLE KEYS */;
+UNLOCK TABLES;
+
 --
 -- Table structure for table `t1`
 --